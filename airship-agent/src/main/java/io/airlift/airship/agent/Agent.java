@@ -37,6 +37,7 @@ import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import static io.airlift.airship.shared.AgentLifecycleState.ONLINE;
 import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
@@ -55,6 +56,11 @@ public class Agent
     private final URI internalUri;
     private final URI externalUri;
 
+    // long poll waiters are woken whenever a status read sees a new version;
+    // every mutating resource reads the agent status to build its response
+    private final Object statusMonitor = new Object();
+    private volatile String lastStatusVersion;
+
     @Inject
     public Agent(AgentConfig config,
             HttpServerInfo httpServerInfo,
@@ -178,6 +184,45 @@ public class Agent
             builder.add(slotStatus);
         }
         AgentStatus agentStatus = new AgentStatus(agentId, ONLINE, null, internalUri, externalUri, location, null, builder.build(), resources);
+
+        String version = agentStatus.getVersion();
+        if (!version.equals(lastStatusVersion)) {
+            lastStatusVersion = version;
+            synchronized (statusMonitor) {
+                statusMonitor.notifyAll();
+            }
+        }
+        return agentStatus;
+    }
+
+    /**
+     * Waits until the agent status no longer has the specified version or
+     * the max wait expires, and returns the latest status.  The status is
+     * rechecked at least every statusCheckInterval to catch changes made
+     * outside of the agent, such as a process exiting.
+     */
+    public AgentStatus waitForStatusChange(String currentVersion, Duration maxWait, Duration statusCheckInterval)
+            throws InterruptedException
+    {
+        Preconditions.checkNotNull(maxWait, "maxWait is null");
+        Preconditions.checkNotNull(statusCheckInterval, "statusCheckInterval is null");
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos((long) maxWait.toMillis());
+        long checkIntervalNanos = Math.max(TimeUnit.MILLISECONDS.toNanos((long) statusCheckInterval.toMillis()), 1);
+
+        AgentStatus agentStatus = getAgentStatus();
+        while (agentStatus.getVersion().equals(currentVersion)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            synchronized (statusMonitor) {
+                if (agentStatus.getVersion().equals(lastStatusVersion)) {
+                    TimeUnit.NANOSECONDS.timedWait(statusMonitor, Math.min(remaining, checkIntervalNanos));
+                }
+            }
+            agentStatus = getAgentStatus();
+        }
         return agentStatus;
     }
 
@@ -15,8 +15,11 @@ package io.airlift.airship.agent;
 
 import com.google.common.base.Preconditions;
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.util.concurrent.TimeUnit;
 
@@ -26,8 +29,16 @@ public class AgentConfig
     private String resourcesFile = "etc/resources.properties";
     private Duration launcherTimeout = new Duration(1, TimeUnit.SECONDS);
     private Duration launcherStopTimeout = new Duration(10, TimeUnit.SECONDS);
+    private Duration launcherStatusRefreshInterval = new Duration(1, TimeUnit.MINUTES);
     private Duration tarTimeout = new Duration(1, TimeUnit.MINUTES);
     private Duration maxLockWait = new Duration(1, TimeUnit.SECONDS);
+    private String artifactCacheDir;
+    private DataSize artifactCacheMaxSize = new DataSize(10, DataSize.Unit.GIGABYTE);
+    private int downloadMaxConnections = 4;
+    private DataSize downloadChunkSize = new DataSize(8, DataSize.Unit.MEGABYTE);
+    private DataSize downloadMaxBandwidth;
+    private int downloadMaxAttempts = 5;
+    private Duration downloadRetryDelay = new Duration(1, TimeUnit.SECONDS);
 
     @NotNull
     public String getSlotsDir()
@@ -81,6 +92,20 @@ public class AgentConfig
         return this;
     }
 
+    @NotNull
+    public Duration getLauncherStatusRefreshInterval()
+    {
+        return launcherStatusRefreshInterval;
+    }
+
+    @Config("agent.launcher-status-refresh-interval")
+    @ConfigDescription("Maximum time a tracked slot state is trusted before the launcher is asked again")
+    public AgentConfig setLauncherStatusRefreshInterval(Duration launcherStatusRefreshInterval)
+    {
+        this.launcherStatusRefreshInterval = launcherStatusRefreshInterval;
+        return this;
+    }
+
     @NotNull
     public Duration getTarTimeout()
     {
@@ -110,4 +135,97 @@ public class AgentConfig
         this.maxLockWait = lockWait;
         return this;
     }
+
+    public String getArtifactCacheDir()
+    {
+        return artifactCacheDir;
+    }
+
+    @Config("agent.artifact-cache-dir")
+    @ConfigDescription("Directory of the binary and config cache shared by all slots (defaults to a directory in the slots dir)")
+    public AgentConfig setArtifactCacheDir(String artifactCacheDir)
+    {
+        this.artifactCacheDir = artifactCacheDir;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getArtifactCacheMaxSize()
+    {
+        return artifactCacheMaxSize;
+    }
+
+    @Config("agent.artifact-cache-max-size")
+    public AgentConfig setArtifactCacheMaxSize(DataSize artifactCacheMaxSize)
+    {
+        this.artifactCacheMaxSize = artifactCacheMaxSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getDownloadMaxConnections()
+    {
+        return downloadMaxConnections;
+    }
+
+    @Config("agent.download.max-connections")
+    @ConfigDescription("Maximum number of concurrent ranged requests of all artifact downloads")
+    public AgentConfig setDownloadMaxConnections(int downloadMaxConnections)
+    {
+        this.downloadMaxConnections = downloadMaxConnections;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getDownloadChunkSize()
+    {
+        return downloadChunkSize;
+    }
+
+    @Config("agent.download.chunk-size")
+    public AgentConfig setDownloadChunkSize(DataSize downloadChunkSize)
+    {
+        this.downloadChunkSize = downloadChunkSize;
+        return this;
+    }
+
+    public DataSize getDownloadMaxBandwidth()
+    {
+        return downloadMaxBandwidth;
+    }
+
+    @Config("agent.download.max-bandwidth")
+    @ConfigDescription("Maximum number of bytes per second downloaded by the agent (unlimited if not set)")
+    public AgentConfig setDownloadMaxBandwidth(DataSize downloadMaxBandwidth)
+    {
+        this.downloadMaxBandwidth = downloadMaxBandwidth;
+        return this;
+    }
+
+    @Min(1)
+    public int getDownloadMaxAttempts()
+    {
+        return downloadMaxAttempts;
+    }
+
+    @Config("agent.download.max-attempts")
+    public AgentConfig setDownloadMaxAttempts(int downloadMaxAttempts)
+    {
+        this.downloadMaxAttempts = downloadMaxAttempts;
+        return this;
+    }
+
+    @NotNull
+    public Duration getDownloadRetryDelay()
+    {
+        return downloadRetryDelay;
+    }
+
+    @Config("agent.download.retry-delay")
+    @ConfigDescription("Delay before retrying a failed download, doubled after every attempt")
+    public AgentConfig setDownloadRetryDelay(Duration downloadRetryDelay)
+    {
+        this.downloadRetryDelay = downloadRetryDelay;
+        return this;
+    }
 }
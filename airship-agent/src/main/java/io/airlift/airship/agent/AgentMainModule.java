@@ -36,10 +36,20 @@ public class AgentMainModule
         binder.bind(SlotResource.class).in(Scopes.SINGLETON);
         binder.bind(AssignmentResource.class).in(Scopes.SINGLETON);
         binder.bind(LifecycleResource.class).in(Scopes.SINGLETON);
+        binder.bind(ArtifactResource.class).in(Scopes.SINGLETON);
         binder.bind(VersionConflictExceptionMapper.class).in(Scopes.SINGLETON);
 
         binder.bind(DeploymentManagerFactory.class).to(DirectoryDeploymentManagerFactory.class).in(Scopes.SINGLETON);
-        binder.bind(LifecycleManager.class).to(LauncherLifecycleManager.class).in(Scopes.SINGLETON);
+        binder.bind(ArtifactCache.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(ArtifactCache.class).withGeneratedName();
+        binder.bind(ArtifactDownloader.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(ArtifactDownloader.class).withGeneratedName();
+        binder.bind(InstallationStore.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(InstallationStore.class).withGeneratedName();
+        binder.bind(LauncherLifecycleManager.class).in(Scopes.SINGLETON);
+        binder.bind(CachingLifecycleManager.class).in(Scopes.SINGLETON);
+        binder.bind(LifecycleManager.class).to(CachingLifecycleManager.class);
+        MBeanModule.newExporter(binder).export(CachingLifecycleManager.class).withGeneratedName();
 
         binder.bind(ServiceInventoryResource.class).in(Scopes.SINGLETON);
 
@@ -17,18 +17,28 @@ import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.AgentStatusRepresentation;
+import io.airlift.units.Duration;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.concurrent.TimeUnit;
 
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_AGENT_VERSION_HEADER;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_MAX_WAIT_HEADER;
+import static io.airlift.airship.shared.VersionsUtil.isNotModified;
 
 @Path("/v1/agent/")
 public class AgentResource
 {
+    private static final Duration MAX_WAIT = new Duration(5, TimeUnit.MINUTES);
+    private static final Duration STATUS_CHECK_INTERVAL = new Duration(1, TimeUnit.SECONDS);
+
     private final Agent agent;
 
     @Inject
@@ -41,11 +51,29 @@ public class AgentResource
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllSlotsStatus()
+    public Response getAllSlotsStatus(@HeaderParam(IF_NONE_MATCH) String ifNoneMatch,
+            @HeaderParam(AIRSHIP_MAX_WAIT_HEADER) Duration maxWait)
+            throws InterruptedException
     {
         AgentStatus agentStatus = agent.getAgentStatus();
+
+        // client already has the current status, so hold the request until it changes
+        if (maxWait != null && isNotModified(ifNoneMatch, agentStatus.getVersion())) {
+            if (maxWait.compareTo(MAX_WAIT) > 0) {
+                maxWait = MAX_WAIT;
+            }
+            agentStatus = agent.waitForStatusChange(agentStatus.getVersion(), maxWait, STATUS_CHECK_INTERVAL);
+        }
+
+        if (isNotModified(ifNoneMatch, agentStatus.getVersion())) {
+            return Response.notModified(new EntityTag(agentStatus.getVersion()))
+                    .header(AIRSHIP_AGENT_VERSION_HEADER, agentStatus.getVersion())
+                    .build();
+        }
+
         AgentStatusRepresentation agentStatusRepresentation = AgentStatusRepresentation.from(agentStatus);
         return Response.ok(agentStatusRepresentation)
+                .tag(new EntityTag(agentStatus.getVersion()))
                 .header(AIRSHIP_AGENT_VERSION_HEADER, agentStatus.getVersion())
                 .build();
     }
@@ -0,0 +1,415 @@
+package io.airlift.airship.agent;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.inject.Inject;
+import io.airlift.airship.shared.ArtifactLeases;
+import io.airlift.log.Logger;
+import io.airlift.units.DataSize;
+import org.weakref.jmx.Managed;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.airlift.airship.shared.ArtifactUtils.MD5_PATTERN;
+import static io.airlift.airship.shared.ArtifactUtils.SHA1_PATTERN;
+import static io.airlift.airship.shared.ArtifactUtils.getPublishedChecksum;
+import static io.airlift.airship.shared.ArtifactUtils.isSnapshot;
+import static io.airlift.airship.shared.ArtifactUtils.toChecksum;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.FileUtils.listFiles;
+import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
+
+/**
+ * Agent wide cache of the binaries and config bundles installed into slots.
+ * Each artifact is stored once under its SHA-1 checksum and an index maps the
+ * download URI to that checksum, so installing the same artifact into several
+ * slots or rolling back to a previous version does not download it again.
+ * Snapshot artifacts can change under the same URI, so they are only served
+ * from the cache when the checksum published next to the artifact is known.
+ * <p/>
+ * When the cache grows beyond its maximum size the least recently used
+ * artifacts are deleted, except for artifacts that are currently being
+ * installed.
+ * <p/>
+ * Agents serve their cached artifacts to each other, so an install on many
+ * agents can be distributed through the agents instead of having every agent
+ * download from the repository.
+ * <p/>
+ * Partial downloads are kept until they complete, so a download that fails or
+ * is interrupted by a restart is resumed by the next install.
+ */
+public class ArtifactCache
+{
+    private static final Logger log = Logger.get(ArtifactCache.class);
+    private static final long PARTIAL_DOWNLOAD_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final File artifactDir;
+    private final File indexDir;
+    private final File tempDir;
+    private final File partialDir;
+    private final long maxSizeInBytes;
+    private final ArtifactDownloader downloader;
+
+    // artifacts are leased by checksum while they are installed
+    private final ArtifactLeases leases = new ArtifactLeases();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong peerDownloads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ArtifactCache(AgentConfig config)
+    {
+        this(config, new ArtifactDownloader(config));
+    }
+
+    @Inject
+    public ArtifactCache(AgentConfig config, ArtifactDownloader downloader)
+    {
+        this(getCacheDir(Preconditions.checkNotNull(config, "config is null")), config.getArtifactCacheMaxSize(), downloader);
+    }
+
+    public ArtifactCache(File cacheDir, DataSize maxSize)
+    {
+        this(cacheDir, maxSize, new ArtifactDownloader(new AgentConfig()));
+    }
+
+    public ArtifactCache(File cacheDir, DataSize maxSize, ArtifactDownloader downloader)
+    {
+        Preconditions.checkNotNull(cacheDir, "cacheDir is null");
+        Preconditions.checkNotNull(maxSize, "maxSize is null");
+        Preconditions.checkNotNull(downloader, "downloader is null");
+
+        artifactDir = new File(cacheDir, "artifacts");
+        indexDir = new File(cacheDir, "index");
+        tempDir = new File(cacheDir, "tmp");
+        partialDir = new File(cacheDir, "partial");
+        maxSizeInBytes = (long) maxSize.getValue(DataSize.Unit.BYTE);
+        this.downloader = downloader;
+
+        // discard temporary files from a previous run
+        deleteRecursively(tempDir);
+
+        for (File dir : new File[] {artifactDir, indexDir, tempDir, partialDir}) {
+            dir.mkdirs();
+            Preconditions.checkArgument(dir.isDirectory(), "Cache directory %s is not a directory", dir.getAbsolutePath());
+        }
+
+        // partial downloads that have not been resumed for a day are unlikely to be resumed
+        for (File file : listFiles(partialDir)) {
+            if (file.lastModified() < System.currentTimeMillis() - PARTIAL_DOWNLOAD_TTL_MILLIS) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the cached copy of the specified artifact, downloading it if
+     * necessary.  The artifact will not be evicted until the returned handle
+     * is closed.
+     */
+    public CachedArtifact get(URI uri)
+            throws IOException
+    {
+        return get(uri, ImmutableList.<URI>of());
+    }
+
+    /**
+     * Returns the cached copy of the specified artifact, downloading it from
+     * the first of the specified peer agents that has it cached if necessary.
+     * The peers are the ancestors of this agent in a distribution tree, so the
+     * nearest agent that already has the artifact serves it.  If no peer has
+     * the artifact it is downloaded from the repository.
+     */
+    public CachedArtifact get(URI uri, List<URI> peers)
+            throws IOException
+    {
+        Preconditions.checkNotNull(uri, "uri is null");
+        Preconditions.checkNotNull(peers, "peers is null");
+
+        // look up the published checksum before taking the lock, so a slow
+        // repository does not block installs of other artifacts on the stripe
+        boolean published = isSnapshot(uri) || readIndex(uri) == null;
+        String publishedChecksum = published ? getPublishedChecksum(uri) : null;
+
+        CachedArtifact artifact;
+        synchronized (leases.getLock(uri)) {
+            String checksum = isSnapshot(uri) ? publishedChecksum : readIndex(uri);
+            if (checksum != null) {
+                artifact = acquire(checksum);
+                if (artifact != null) {
+                    hits.incrementAndGet();
+                    return artifact;
+                }
+            }
+
+            misses.incrementAndGet();
+            if (!published) {
+                // the indexed artifact was evicted after the lookup
+                publishedChecksum = getPublishedChecksum(uri);
+            }
+            artifact = download(uri, peers, publishedChecksum);
+            writeIndex(uri, artifact.getChecksum());
+        }
+
+        evict();
+        return artifact;
+    }
+
+    /**
+     * Returns the cached copy of the specified artifact, or null if the
+     * artifact is not cached.  The repository is not contacted, so a snapshot
+     * may have changed since it was cached; callers verify the checksum.
+     */
+    public CachedArtifact getIfPresent(URI uri)
+    {
+        Preconditions.checkNotNull(uri, "uri is null");
+
+        String checksum = readIndex(uri);
+        if (checksum == null) {
+            return null;
+        }
+        CachedArtifact artifact = acquire(checksum);
+        if (artifact != null) {
+            hits.incrementAndGet();
+        }
+        return artifact;
+    }
+
+    @Managed
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    @Managed
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    @Managed
+    public long getPeerDownloads()
+    {
+        return peerDownloads.get();
+    }
+
+    @Managed
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    @Managed
+    public long getSizeInBytes()
+    {
+        long size = 0;
+        for (File file : listFiles(artifactDir)) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    private CachedArtifact download(URI uri, List<URI> peers, String publishedChecksum)
+            throws IOException
+    {
+        File file = null;
+        String checksum = null;
+        for (URI peer : peers) {
+            URI peerUri = toPeerUri(uri, peer);
+            file = getPartialFile(peerUri);
+            try {
+                checksum = fetch(peerUri, uri, file, publishedChecksum);
+                peerDownloads.incrementAndGet();
+                break;
+            }
+            catch (FileNotFoundException e) {
+                log.debug("Peer %s has not cached %s", peer, uri);
+                downloader.discard(file);
+            }
+            catch (IOException e) {
+                log.warn("Unable to download %s from peer %s: %s", uri, peer, e.getMessage());
+                downloader.discard(file);
+            }
+        }
+        if (checksum == null) {
+            file = getPartialFile(uri);
+            checksum = fetch(uri, uri, file, publishedChecksum);
+        }
+
+        try {
+            // acquire the artifact before it becomes visible to eviction
+            File artifactFile = new File(artifactDir, checksum);
+            synchronized (leases) {
+                if (!artifactFile.exists()) {
+                    java.nio.file.Files.move(file.toPath(), artifactFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+                return acquire(checksum);
+            }
+        }
+        finally {
+            downloader.discard(file);
+        }
+    }
+
+    /**
+     * Downloads the source and verifies it against the SHA-1 or MD5 checksum
+     * published next to the artifact in the repository.
+     */
+    private String fetch(URI source, URI artifactUri, File file, String expectedChecksum)
+            throws IOException
+    {
+        downloader.download(source, file);
+
+        String checksum = Files.hash(file, Hashing.sha1()).toString();
+        if (expectedChecksum != null && !expectedChecksum.equals(checksum)) {
+            downloader.discard(file);
+            throw new IOException(String.format("Checksum of %s is %s but expected %s", source, checksum, expectedChecksum));
+        }
+        if (expectedChecksum == null) {
+            String expectedMd5 = getPublishedChecksum(artifactUri, ".md5", MD5_PATTERN);
+            String md5 = expectedMd5 == null ? null : Files.hash(file, Hashing.md5()).toString();
+            if (expectedMd5 != null && !expectedMd5.equals(md5)) {
+                downloader.discard(file);
+                throw new IOException(String.format("MD5 checksum of %s is %s but expected %s", source, md5, expectedMd5));
+            }
+        }
+        return checksum;
+    }
+
+    private File getPartialFile(URI source)
+    {
+        return new File(partialDir, Hashing.sha1().hashString(source.toString(), Charsets.UTF_8).toString());
+    }
+
+    private static URI toPeerUri(URI uri, URI peer)
+    {
+        return uriBuilderFrom(peer)
+                .appendPath("/v1/agent/artifact")
+                .addParameter("uri", uri.toString())
+                .build();
+    }
+
+    private CachedArtifact acquire(String checksum)
+    {
+        File file = new File(artifactDir, checksum);
+        synchronized (leases) {
+            if (!file.isFile()) {
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            leases.acquire(checksum);
+        }
+        return new CachedArtifact(checksum, file);
+    }
+
+    private void evict()
+    {
+        List<File> evicted = leases.evict(listFiles(artifactDir), maxSizeInBytes);
+        if (evicted.isEmpty()) {
+            return;
+        }
+        for (File file : evicted) {
+            evictions.incrementAndGet();
+            log.debug("Evicted artifact %s from cache", file.getName());
+        }
+
+        // drop index entries of evicted artifacts
+        for (File indexFile : listFiles(indexDir)) {
+            String checksum = readChecksum(indexFile);
+            if (checksum == null || !new File(artifactDir, checksum).exists()) {
+                indexFile.delete();
+            }
+        }
+    }
+
+    private String readIndex(URI uri)
+    {
+        return readChecksum(getIndexFile(uri));
+    }
+
+    private void writeIndex(URI uri, String checksum)
+    {
+        File indexFile = getIndexFile(uri);
+        File tempFile = new File(tempDir, indexFile.getName() + ".index");
+        try {
+            Files.write(checksum, tempFile, Charsets.UTF_8);
+            java.nio.file.Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e) {
+            // the artifact is still cached by checksum, so the next install simply downloads it again
+            log.warn(e, "Unable to write cache index for %s", uri);
+            tempFile.delete();
+        }
+    }
+
+    private File getIndexFile(URI uri)
+    {
+        return new File(indexDir, Hashing.sha1().hashString(uri.toString(), Charsets.UTF_8).toString());
+    }
+
+    private static String readChecksum(File file)
+    {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return toChecksum(Files.toString(file, Charsets.UTF_8), SHA1_PATTERN);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static File getCacheDir(AgentConfig config)
+    {
+        if (config.getArtifactCacheDir() != null) {
+            return new File(config.getArtifactCacheDir());
+        }
+        return new File(config.getSlotsDir(), ".artifact-cache");
+    }
+
+    public class CachedArtifact
+            implements Closeable
+    {
+        private final String checksum;
+        private final File file;
+        private boolean released;
+
+        private CachedArtifact(String checksum, File file)
+        {
+            this.checksum = checksum;
+            this.file = file;
+        }
+
+        public String getChecksum()
+        {
+            return checksum;
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            if (!released) {
+                released = true;
+                leases.release(checksum);
+            }
+        }
+    }
+}
@@ -0,0 +1,591 @@
+package io.airlift.airship.agent;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import io.airlift.airship.shared.ArtifactUtils;
+import io.airlift.log.Logger;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads artifacts over HTTP in chunks fetched with parallel range
+ * requests.  The completed chunks are recorded in a progress file next to the
+ * partial download, so a failed download is retried, and a download
+ * interrupted by an agent restart is resumed, without fetching the completed
+ * chunks again.  If the artifact changes on the server, as detected by its
+ * length, ETag or Last-Modified header, the download starts over.
+ * <p/>
+ * All downloads share the configured number of connections and bandwidth,
+ * so installing large binaries does not starve the applications running on
+ * the host.  Servers that do not support range requests are read with a
+ * single request.  Artifacts that are not served over HTTP are copied.
+ */
+public class ArtifactDownloader
+{
+    private static final Logger log = Logger.get(ArtifactDownloader.class);
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes\\s+(?:(\\d+)-(\\d+)|\\*)/(\\d+)");
+    private static final String PROGRESS_SUFFIX = ".progress";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final long chunkSize;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final Throttle throttle;
+    private final ExecutorService executor;
+
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private final AtomicLong chunksDownloaded = new AtomicLong();
+    private final AtomicLong chunksResumed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    @Inject
+    public ArtifactDownloader(AgentConfig config)
+    {
+        this(Preconditions.checkNotNull(config, "config is null").getDownloadMaxConnections(),
+                config.getDownloadChunkSize(),
+                config.getDownloadMaxBandwidth(),
+                config.getDownloadMaxAttempts(),
+                config.getDownloadRetryDelay());
+    }
+
+    public ArtifactDownloader(int maxConnections, DataSize chunkSize, DataSize maxBandwidth, int maxAttempts, Duration retryDelay)
+    {
+        Preconditions.checkArgument(maxConnections > 0, "maxConnections must be at least 1");
+        Preconditions.checkNotNull(chunkSize, "chunkSize is null");
+        Preconditions.checkArgument(maxAttempts > 0, "maxAttempts must be at least 1");
+        Preconditions.checkNotNull(retryDelay, "retryDelay is null");
+
+        this.chunkSize = (long) chunkSize.getValue(DataSize.Unit.BYTE);
+        Preconditions.checkArgument(this.chunkSize > 0, "chunkSize must be at least 1 byte");
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+        this.throttle = maxBandwidth == null ? null : new Throttle((long) maxBandwidth.getValue(DataSize.Unit.BYTE));
+        this.executor = Executors.newFixedThreadPool(maxConnections, new ThreadFactoryBuilder().setNameFormat("agent-download-%s").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Downloads the source into the specified file, resuming a previous
+     * partial download into the same file.  If the download fails the
+     * partial file is kept so the next download can resume it; use
+     * {@link #discard(File)} to delete it.
+     */
+    public void download(URI source, File file)
+            throws IOException
+    {
+        Preconditions.checkNotNull(source, "source is null");
+        Preconditions.checkNotNull(file, "file is null");
+
+        if (!"http".equalsIgnoreCase(source.getScheme()) && !"https".equalsIgnoreCase(source.getScheme())) {
+            Files.copy(Resources.newInputStreamSupplier(source.toURL()), file);
+            return;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                downloadRanges(source, file);
+                getProgressFile(file).delete();
+                return;
+            }
+            catch (FileNotFoundException e) {
+                throw e;
+            }
+            catch (IOException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                long delay = (long) retryDelay.toMillis() << Math.min(attempt - 1, 16);
+                log.warn("Download of %s failed (attempt %s of %s), retrying in %sms: %s", source, attempt, maxAttempts, delay, e.getMessage());
+                retries.incrementAndGet();
+                try {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while downloading " + source, interrupted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes a partial download and its progress.
+     */
+    public void discard(File file)
+    {
+        file.delete();
+        getProgressFile(file).delete();
+    }
+
+    @Managed
+    public long getBytesDownloaded()
+    {
+        return bytesDownloaded.get();
+    }
+
+    @Managed
+    public long getChunksDownloaded()
+    {
+        return chunksDownloaded.get();
+    }
+
+    @Managed
+    public long getChunksResumed()
+    {
+        return chunksResumed.get();
+    }
+
+    @Managed
+    public long getRetries()
+    {
+        return retries.get();
+    }
+
+    private void downloadRanges(final URI source, File file)
+            throws IOException
+    {
+        final File progressFile = getProgressFile(file);
+        Progress progress = Progress.read(progressFile, chunkSize);
+        if (progress != null && progress.isComplete()) {
+            if (file.length() == progress.getLength()) {
+                return;
+            }
+            progress = null;
+        }
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // the first request runs on the download threads like all other requests, so it counts against the connection limit
+            final Progress previousProgress = progress;
+            Future<Progress> firstChunk = executor.submit(new Callable<Progress>()
+            {
+                @Override
+                public Progress call()
+                        throws IOException
+                {
+                    return downloadFirstChunk(source, channel, progressFile, previousProgress);
+                }
+            });
+            try {
+                progress = getResult(source, firstChunk);
+            }
+            finally {
+                firstChunk.cancel(true);
+            }
+            if (progress == null) {
+                return;
+            }
+
+            downloadRemainingChunks(source, channel, progress);
+            channel.truncate(progress.getLength());
+        }
+    }
+
+    /**
+     * Downloads the first missing chunk, which also tells whether the server
+     * supports ranges and whether the artifact changed.
+     *
+     * @return the progress of the download, or null if the whole artifact was
+     *         read from a server that does not support ranges
+     */
+    private Progress downloadFirstChunk(URI source, FileChannel channel, File progressFile, Progress progress)
+            throws IOException
+    {
+        int firstChunk = progress == null ? 0 : progress.nextMissingChunk(0);
+        long firstStart = firstChunk * chunkSize;
+        HttpURLConnection connection = openConnection(source, firstStart, firstStart + chunkSize - 1);
+        try {
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_OK) {
+                // ranges are not supported, so the whole artifact is read from this response
+                progressFile.delete();
+                channel.truncate(0);
+                long length = connection.getContentLengthLong();
+                long copied = copy(connection, channel, 0, length);
+                channel.truncate(copied);
+                return null;
+            }
+
+            ContentRange range = ContentRange.parse(connection.getHeaderField(HttpHeaders.CONTENT_RANGE));
+            if (status == 416 && range != null && range.getLength() == 0) {
+                progressFile.delete();
+                channel.truncate(0);
+                return null;
+            }
+            if (status != 206 || range == null || range.getStart() != firstStart) {
+                progressFile.delete();
+                if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                    throw new FileNotFoundException(source.toString());
+                }
+                throw new IOException(String.format("Unexpected response for range %s of %s: %s %s", firstStart, source, status, connection.getResponseMessage()));
+            }
+
+            String validator = getValidator(connection);
+            if (progress == null || progress.getLength() != range.getLength() || !progress.getValidator().equals(validator)) {
+                if (progress != null) {
+                    log.info("%s changed since the partial download, downloading it again", source);
+                }
+                channel.truncate(0);
+                progress = Progress.create(progressFile, range.getLength(), validator, chunkSize);
+            }
+            else {
+                chunksResumed.addAndGet(progress.getCompletedChunks());
+            }
+
+            downloadChunk(connection, channel, progress, firstChunk);
+            return progress;
+        }
+        finally {
+            connection.disconnect();
+        }
+    }
+
+    private void downloadRemainingChunks(final URI source, final FileChannel channel, final Progress progress)
+            throws IOException
+    {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int chunk = progress.nextMissingChunk(0); chunk >= 0; chunk = progress.nextMissingChunk(chunk + 1)) {
+            final int index = chunk;
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                        throws IOException
+                {
+                    HttpURLConnection connection = openConnection(source, progress.getStart(index), progress.getEnd(index));
+                    try {
+                        ContentRange range = ContentRange.parse(connection.getHeaderField(HttpHeaders.CONTENT_RANGE));
+                        if (connection.getResponseCode() != 206 || range == null || range.getStart() != progress.getStart(index) || range.getLength() != progress.getLength()) {
+                            throw new IOException(String.format("Unexpected response for range %s of %s: %s %s", progress.getStart(index), source, connection.getResponseCode(), connection.getResponseMessage()));
+                        }
+                        if (!progress.getValidator().equals(getValidator(connection))) {
+                            throw new IOException(String.format("%s changed during the download", source));
+                        }
+                        downloadChunk(connection, channel, progress, index);
+                        return null;
+                    }
+                    finally {
+                        connection.disconnect();
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Future<Void> future : futures) {
+                getResult(source, future);
+            }
+        }
+        finally {
+            // completed chunks are recorded, so the remaining requests can be abandoned
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static <T> T getResult(URI source, Future<T> future)
+            throws IOException
+    {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + source, e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Download of " + source + " failed", e.getCause());
+        }
+    }
+
+    private void downloadChunk(HttpURLConnection connection, FileChannel channel, Progress progress, int chunk)
+            throws IOException
+    {
+        long start = progress.getStart(chunk);
+        long length = progress.getEnd(chunk) - start + 1;
+        long copied = copy(connection, channel, start, length);
+        if (copied != length) {
+            throw new IOException(String.format("Expected %s bytes for range %s but received %s", length, start, copied));
+        }
+        // a chunk is recorded only once its data is on disk, so a crash never resumes over a hole
+        channel.force(false);
+        progress.markComplete(chunk);
+        chunksDownloaded.incrementAndGet();
+    }
+
+    private long copy(HttpURLConnection connection, FileChannel channel, long position, long length)
+            throws IOException
+    {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long copied = 0;
+        try (InputStream in = connection.getInputStream()) {
+            while (length < 0 || copied < length) {
+                int maxRead = length < 0 ? buffer.length : (int) Math.min(buffer.length, length - copied);
+                int read = in.read(buffer, 0, maxRead);
+                if (read < 0) {
+                    break;
+                }
+                if (throttle != null) {
+                    throttle.acquire(read);
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes, position + copied + bytes.position());
+                }
+                copied += read;
+                bytesDownloaded.addAndGet(read);
+            }
+        }
+        if (length >= 0 && copied != length) {
+            throw new IOException(String.format("Connection closed after %s of %s bytes", copied, length));
+        }
+        return copied;
+    }
+
+    private static HttpURLConnection openConnection(URI source, long start, long end)
+            throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) ArtifactUtils.openConnection(source);
+        connection.setRequestProperty(HttpHeaders.RANGE, "bytes=" + start + "-" + end);
+        return connection;
+    }
+
+    private static String getValidator(HttpURLConnection connection)
+    {
+        String etag = connection.getHeaderField(HttpHeaders.ETAG);
+        if (etag != null) {
+            return etag;
+        }
+        return Objects.firstNonNull(connection.getHeaderField(HttpHeaders.LAST_MODIFIED), "");
+    }
+
+    private static File getProgressFile(File file)
+    {
+        return new File(file.getPath() + PROGRESS_SUFFIX);
+    }
+
+    /**
+     * The value of a Content-Range response header.
+     */
+    private static class ContentRange
+    {
+        private final long start;
+        private final long length;
+
+        private ContentRange(long start, long length)
+        {
+            this.start = start;
+            this.length = length;
+        }
+
+        public static ContentRange parse(String header)
+        {
+            if (header == null) {
+                return null;
+            }
+            Matcher matcher = CONTENT_RANGE_PATTERN.matcher(header.trim());
+            if (!matcher.matches()) {
+                return null;
+            }
+            long start = matcher.group(1) == null ? -1 : Long.parseLong(matcher.group(1));
+            return new ContentRange(start, Long.parseLong(matcher.group(3)));
+        }
+
+        public long getStart()
+        {
+            return start;
+        }
+
+        public long getLength()
+        {
+            return length;
+        }
+    }
+
+    /**
+     * The chunks of a download that have been written to the partial file.
+     * The progress file holds the length, chunk size and validator of the
+     * artifact followed by the index of each completed chunk.
+     */
+    private static class Progress
+    {
+        private final File file;
+        private final long length;
+        private final String validator;
+        private final long chunkSize;
+        private final int chunks;
+
+        // guarded by this
+        private final BitSet completed = new BitSet();
+
+        private Progress(File file, long length, String validator, long chunkSize)
+        {
+            this.file = file;
+            this.length = length;
+            this.validator = validator;
+            this.chunkSize = chunkSize;
+            this.chunks = (int) ((length + chunkSize - 1) / chunkSize);
+        }
+
+        public static Progress create(File file, long length, String validator, long chunkSize)
+                throws IOException
+        {
+            Progress progress = new Progress(file, length, validator, chunkSize);
+            Files.write(Joiner.on('\n').join(length, chunkSize, validator.replace('\n', ' ')) + "\n", file, Charsets.UTF_8);
+            return progress;
+        }
+
+        public static Progress read(File file, long chunkSize)
+        {
+            if (!file.isFile()) {
+                return null;
+            }
+            try {
+                List<String> lines = ImmutableList.copyOf(Splitter.on('\n').split(Files.toString(file, Charsets.UTF_8)));
+                if (lines.size() < 3 || Long.parseLong(lines.get(1)) != chunkSize) {
+                    return null;
+                }
+                Progress progress = new Progress(file, Long.parseLong(lines.get(0)), lines.get(2), chunkSize);
+                for (String line : lines.subList(3, lines.size())) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    int chunk = Integer.parseInt(line);
+                    if (chunk >= 0 && chunk < progress.chunks) {
+                        progress.completed.set(chunk);
+                    }
+                }
+                return progress;
+            }
+            catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        public long getLength()
+        {
+            return length;
+        }
+
+        public String getValidator()
+        {
+            return validator;
+        }
+
+        public long getStart(int chunk)
+        {
+            return chunk * chunkSize;
+        }
+
+        public long getEnd(int chunk)
+        {
+            return Math.min((chunk + 1) * chunkSize, length) - 1;
+        }
+
+        public synchronized int getCompletedChunks()
+        {
+            return completed.cardinality();
+        }
+
+        public synchronized boolean isComplete()
+        {
+            return completed.cardinality() == chunks;
+        }
+
+        /**
+         * Returns the first chunk at or after the specified chunk that has not
+         * been downloaded, or -1 if there is none.
+         */
+        public synchronized int nextMissingChunk(int fromChunk)
+        {
+            int chunk = completed.nextClearBit(fromChunk);
+            return chunk < chunks ? chunk : -1;
+        }
+
+        public synchronized void markComplete(int chunk)
+                throws IOException
+        {
+            completed.set(chunk);
+            Files.append(chunk + "\n", file, Charsets.UTF_8);
+        }
+    }
+
+    /**
+     * Limits the rate of all downloads by reserving time for each block of
+     * bytes read.
+     */
+    private static class Throttle
+    {
+        private final long bytesPerSecond;
+
+        // guarded by this
+        private long nextFreeNanos = System.nanoTime();
+
+        private Throttle(long bytesPerSecond)
+        {
+            Preconditions.checkArgument(bytesPerSecond > 0, "bytesPerSecond must be at least 1");
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        public void acquire(int bytes)
+                throws IOException
+        {
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                waitNanos = Math.max(0, nextFreeNanos - now);
+                nextFreeNanos = Math.max(nextFreeNanos, now) + TimeUnit.SECONDS.toNanos(1) * bytes / bytesPerSecond;
+            }
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while throttling download", e);
+                }
+            }
+        }
+    }
+}
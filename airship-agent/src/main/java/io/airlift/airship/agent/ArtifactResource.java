@@ -0,0 +1,129 @@
+package io.airlift.airship.agent;
+
+import com.google.common.base.Preconditions;
+import com.google.common.net.HttpHeaders;
+import io.airlift.airship.agent.ArtifactCache.CachedArtifact;
+import io.airlift.airship.shared.ByteRange;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Serves the artifacts in the agent cache to other agents.  Only artifacts
+ * the agent has already downloaded are served, and the agent never fetches
+ * an artifact for a peer, so a request cannot make the agent contact other
+ * servers.  A request for an artifact that is not cached is answered
+ * immediately, so the requesting agent can move on to its next peer or the
+ * repository.  A single byte range may be requested, so the chunked
+ * downloads of the requesting agent work against a peer as they do against
+ * the repository.
+ */
+@Path("/v1/agent/artifact")
+public class ArtifactResource
+{
+    private static final int PARTIAL_CONTENT = 206;
+    private static final int REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
+    private final ArtifactCache artifactCache;
+
+    @Inject
+    public ArtifactResource(ArtifactCache artifactCache)
+    {
+        Preconditions.checkNotNull(artifactCache, "artifactCache is null");
+        this.artifactCache = artifactCache;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response getArtifact(@QueryParam("uri") URI uri, @HeaderParam(HttpHeaders.RANGE) String rangeHeader)
+    {
+        if (uri == null) {
+            return Response.status(Status.BAD_REQUEST).entity("uri is missing").type(MediaType.TEXT_PLAIN_TYPE).build();
+        }
+
+        final CachedArtifact artifact = artifactCache.getIfPresent(uri);
+        if (artifact == null) {
+            return Response.status(Status.NOT_FOUND).entity("Artifact is not cached").type(MediaType.TEXT_PLAIN_TYPE).build();
+        }
+
+        boolean streaming = false;
+        try {
+            long length = artifact.getFile().length();
+            ByteRange range;
+            try {
+                range = ByteRange.parse(rangeHeader, length);
+            }
+            catch (IllegalArgumentException e) {
+                return Response.status(REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                        .build();
+            }
+
+            ResponseBuilder builder;
+            final long offset;
+            final long count;
+            if (range == null) {
+                builder = Response.ok();
+                offset = 0;
+                count = length;
+            }
+            else {
+                builder = Response.status(PARTIAL_CONTENT).header(HttpHeaders.CONTENT_RANGE, range.toContentRange(length));
+                offset = range.getStart();
+                count = range.getLength();
+            }
+
+            builder.header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .header(HttpHeaders.CONTENT_LENGTH, count)
+                    .header(HttpHeaders.ETAG, "\"" + artifact.getChecksum() + "\"")
+                    .entity(new StreamingOutput()
+                    {
+                        @Override
+                        public void write(OutputStream output)
+                                throws IOException
+                        {
+                            try (FileChannel channel = FileChannel.open(artifact.getFile().toPath(), StandardOpenOption.READ)) {
+                                WritableByteChannel target = Channels.newChannel(output);
+                                long position = offset;
+                                long remaining = count;
+                                while (remaining > 0) {
+                                    long transferred = channel.transferTo(position, remaining, target);
+                                    if (transferred <= 0) {
+                                        throw new IOException("Artifact is shorter than expected");
+                                    }
+                                    position += transferred;
+                                    remaining -= transferred;
+                                }
+                            }
+                            finally {
+                                artifact.close();
+                            }
+                        }
+                    });
+            streaming = true;
+            return builder.build();
+        }
+        finally {
+            // the streaming output releases the artifact once it has been sent
+            if (!streaming) {
+                artifact.close();
+            }
+        }
+    }
+}
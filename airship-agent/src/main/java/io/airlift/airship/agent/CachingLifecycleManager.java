@@ -0,0 +1,248 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.airship.agent;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.io.Files;
+import com.google.inject.Inject;
+import io.airlift.airship.shared.SlotLifecycleState;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static io.airlift.airship.shared.SlotLifecycleState.UNKNOWN;
+
+/**
+ * Tracks the lifecycle state of each deployment so status requests do not
+ * fork the launcher.  The state reported by the last launcher command is
+ * reused until the launcher pid file or the process it names changes, or
+ * until the status refresh interval expires.
+ */
+public class CachingLifecycleManager implements LifecycleManager
+{
+    private static final File PROC_DIR = new File("/proc");
+
+    private final LifecycleManager delegate;
+    private final long statusRefreshIntervalNanos;
+    private final boolean procAvailable;
+    private final ConcurrentMap<File, TrackedState> states = new ConcurrentHashMap<>();
+
+    private final AtomicLong cachedStatusCount = new AtomicLong();
+    private final AtomicLong launcherStatusCount = new AtomicLong();
+
+    @Inject
+    public CachingLifecycleManager(LauncherLifecycleManager delegate, AgentConfig config)
+    {
+        this(delegate, config.getLauncherStatusRefreshInterval());
+    }
+
+    public CachingLifecycleManager(LifecycleManager delegate, Duration statusRefreshInterval)
+    {
+        Preconditions.checkNotNull(delegate, "delegate is null");
+        Preconditions.checkNotNull(statusRefreshInterval, "statusRefreshInterval is null");
+
+        this.delegate = delegate;
+        this.statusRefreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos((long) statusRefreshInterval.toMillis());
+        this.procAvailable = new File(PROC_DIR, "self").exists();
+    }
+
+    @Override
+    public SlotLifecycleState status(Deployment deployment)
+    {
+        TrackedState tracked = states.get(deployment.getDataDir());
+        if (tracked != null && tracked.getDeployment().equals(deployment)) {
+            boolean expired = System.nanoTime() - tracked.getCheckedAt() >= statusRefreshIntervalNanos;
+            if (!expired && tracked.getProcessFingerprint().equals(fingerprint(deployment))) {
+                cachedStatusCount.incrementAndGet();
+                return tracked.getState();
+            }
+        }
+
+        launcherStatusCount.incrementAndGet();
+        return track(deployment, delegate.status(deployment));
+    }
+
+    @Override
+    public SlotLifecycleState start(Deployment deployment)
+    {
+        // drop the cached state first so a failed command is re-checked by the next status call
+        invalidate(deployment);
+        return track(deployment, delegate.start(deployment));
+    }
+
+    @Override
+    public SlotLifecycleState restart(Deployment deployment)
+    {
+        invalidate(deployment);
+        return track(deployment, delegate.restart(deployment));
+    }
+
+    @Override
+    public SlotLifecycleState stop(Deployment deployment)
+    {
+        invalidate(deployment);
+        return track(deployment, delegate.stop(deployment));
+    }
+
+    @Override
+    public void updateNodeConfig(Deployment deployment)
+    {
+        delegate.updateNodeConfig(deployment);
+    }
+
+    @Managed
+    public long getCachedStatusCount()
+    {
+        return cachedStatusCount.get();
+    }
+
+    @Managed
+    public long getLauncherStatusCount()
+    {
+        return launcherStatusCount.get();
+    }
+
+    @VisibleForTesting
+    void invalidate(Deployment deployment)
+    {
+        states.remove(deployment.getDataDir());
+    }
+
+    private SlotLifecycleState track(Deployment deployment, SlotLifecycleState state)
+    {
+        if (state == UNKNOWN) {
+            // launcher did not give a definitive answer, so ask again next time
+            states.remove(deployment.getDataDir());
+        }
+        else {
+            states.put(deployment.getDataDir(), new TrackedState(deployment, state, fingerprint(deployment), System.nanoTime()));
+        }
+        return state;
+    }
+
+    private ProcessFingerprint fingerprint(Deployment deployment)
+    {
+        File pidFile = getPidFile(deployment);
+        if (!pidFile.isFile()) {
+            return new ProcessFingerprint(false, 0, null, false);
+        }
+
+        String pid = null;
+        try {
+            pid = Files.toString(pidFile, UTF_8).trim();
+        }
+        catch (IOException ignored) {
+            // pid file is being rewritten; the modification time will still differ
+        }
+
+        boolean alive = false;
+        if (procAvailable && pid != null && !pid.isEmpty()) {
+            alive = new File(PROC_DIR, pid).isDirectory();
+        }
+        return new ProcessFingerprint(true, pidFile.lastModified(), pid, alive);
+    }
+
+    private static File getPidFile(Deployment deployment)
+    {
+        // default location used by the airlift launcher
+        return new File(deployment.getDataDir(), "var/run/launcher.pid");
+    }
+
+    @Immutable
+    private static class TrackedState
+    {
+        private final Deployment deployment;
+        private final SlotLifecycleState state;
+        private final ProcessFingerprint processFingerprint;
+        private final long checkedAt;
+
+        private TrackedState(Deployment deployment, SlotLifecycleState state, ProcessFingerprint processFingerprint, long checkedAt)
+        {
+            this.deployment = deployment;
+            this.state = state;
+            this.processFingerprint = processFingerprint;
+            this.checkedAt = checkedAt;
+        }
+
+        public Deployment getDeployment()
+        {
+            return deployment;
+        }
+
+        public SlotLifecycleState getState()
+        {
+            return state;
+        }
+
+        public ProcessFingerprint getProcessFingerprint()
+        {
+            return processFingerprint;
+        }
+
+        public long getCheckedAt()
+        {
+            return checkedAt;
+        }
+    }
+
+    @Immutable
+    private static class ProcessFingerprint
+    {
+        private final boolean pidFileExists;
+        private final long pidFileModified;
+        private final String pid;
+        private final boolean processAlive;
+
+        private ProcessFingerprint(boolean pidFileExists, long pidFileModified, String pid, boolean processAlive)
+        {
+            this.pidFileExists = pidFileExists;
+            this.pidFileModified = pidFileModified;
+            this.pid = pid;
+            this.processAlive = processAlive;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            ProcessFingerprint that = (ProcessFingerprint) o;
+            return pidFileExists == that.pidFileExists &&
+                    pidFileModified == that.pidFileModified &&
+                    processAlive == that.processAlive &&
+                    Objects.equal(pid, that.pid);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hashCode(pidFileExists, pidFileModified, pid, processAlive);
+        }
+    }
+}
@@ -26,6 +26,19 @@ public interface DeploymentManager
 
     Deployment install(Installation installation);
 
+    /**
+     * Downloads and unpacks the installation next to the active deployment
+     * without affecting it, so the current server can keep running.  A
+     * previously staged installation is discarded.
+     */
+    void stage(Installation installation);
+
+    /**
+     * Replaces the active deployment with the staged installation.  The
+     * server of the active deployment must be stopped.
+     */
+    Deployment activate();
+
     Deployment getDeployment();
 
     void clear();
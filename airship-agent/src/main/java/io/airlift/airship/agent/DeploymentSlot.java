@@ -166,6 +166,9 @@ public class DeploymentSlot implements Slot
 
             log.info("Becoming %s with %s", installation.getAssignment().getBinary(), installation.getAssignment().getConfig());
 
+            // download and unpack the new server while the current server keeps running
+            deploymentManager.stage(installation);
+
             // stop current server
             Deployment oldDeployment = deploymentManager.getDeployment();
             if (oldDeployment != null) {
@@ -173,13 +176,10 @@ public class DeploymentSlot implements Slot
                 if (state != STOPPED) {
                     // todo error
                 }
-
-                // remove the deployment
-                deploymentManager.clear();
             }
 
-            // deploy new server
-            Deployment deployment = deploymentManager.install(installation);
+            // switch to the new server
+            Deployment deployment = deploymentManager.activate();
 
             // create node config file
             lifecycleManager.updateNodeConfig(deployment);
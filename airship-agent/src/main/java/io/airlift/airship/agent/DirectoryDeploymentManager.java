@@ -1,19 +1,25 @@
 package io.airlift.airship.agent;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
-import com.google.common.io.Resources;
+import com.google.common.io.PatternFilenameFilter;
+import io.airlift.airship.agent.ArtifactCache.CachedArtifact;
 import io.airlift.airship.shared.ConfigUtils;
 import io.airlift.json.JsonCodec;
 import io.airlift.airship.shared.Assignment;
-import io.airlift.airship.shared.CommandFailedException;
 import io.airlift.airship.shared.Installation;
 import io.airlift.log.Logger;
 import io.airlift.units.Duration;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
 import java.util.UUID;
 
@@ -21,28 +27,37 @@ import static com.google.common.base.Charsets.UTF_8;
 import static io.airlift.json.JsonCodec.jsonCodec;
 import static io.airlift.airship.shared.FileUtils.createTempDir;
 import static io.airlift.airship.shared.FileUtils.deleteRecursively;
-import static io.airlift.airship.shared.FileUtils.extractTar;
 import static io.airlift.airship.shared.FileUtils.listFiles;
 
 public class DirectoryDeploymentManager implements DeploymentManager
 {
     private static final Logger log = Logger.get(DirectoryDeploymentManager.class);
+    private static final String INSTALLATION_DIR = "installation";
+
     private final JsonCodec<DeploymentRepresentation> jsonCodec = jsonCodec(DeploymentRepresentation.class);
 
     private final UUID slotId;
     private final String location;
     private final Duration tarTimeout;
+    private final ArtifactCache artifactCache;
+    private final InstallationStore installationStore;
 
     private final File baseDir;
     private final File deploymentFile;
+    private final File previousDeploymentFile;
     private Deployment deployment;
+    private StagedInstallation stagedInstallation;
 
-    public DirectoryDeploymentManager(File baseDir, String location, Duration tarTimeout)
+    public DirectoryDeploymentManager(File baseDir, String location, Duration tarTimeout, ArtifactCache artifactCache, InstallationStore installationStore)
     {
         Preconditions.checkNotNull(location, "location is null");
         Preconditions.checkArgument(location.startsWith("/"), "location must start with /");
+        Preconditions.checkNotNull(artifactCache, "artifactCache is null");
+        Preconditions.checkNotNull(installationStore, "installationStore is null");
         this.location = location;
         this.tarTimeout = tarTimeout;
+        this.artifactCache = artifactCache;
+        this.installationStore = installationStore;
 
         Preconditions.checkNotNull(baseDir, "baseDir is null");
         baseDir.mkdirs();
@@ -56,6 +71,13 @@ public class DirectoryDeploymentManager implements DeploymentManager
             Preconditions.checkArgument(deploymentFile.canWrite(), "Can not write slot-id file %s", deploymentFile.getAbsolutePath());
         }
 
+        previousDeploymentFile = new File(baseDir, "airship-previous-deployment.json");
+
+        // remove installations that were staged but never activated
+        for (File tempDir : listFiles(baseDir, new PatternFilenameFilter("tmp-install-.*"))) {
+            deleteRecursively(tempDir);
+        }
+
         // load deployments
         if (deploymentFile.exists()) {
             try {
@@ -120,74 +142,129 @@ public class DirectoryDeploymentManager implements DeploymentManager
         Preconditions.checkNotNull(installation, "installation is null");
         Preconditions.checkState(deployment == null, "slot has an active deployment");
 
-        File deploymentDir = new File(baseDir, "installation");
+        stage(installation);
+        return activate();
+    }
+
+    @Override
+    public void stage(Installation installation)
+    {
+        Preconditions.checkNotNull(installation, "installation is null");
+
+        discardStagedInstallation();
 
         Assignment assignment = installation.getAssignment();
 
-        File dataDir = getDataDir();
+        // rolling back to the previous installation does not require a download
+        File previousInstallationDir = getPreviousInstallationDir();
+        if (previousInstallationDir != null && !isSnapshot(assignment)) {
+            Deployment previousDeployment = loadPreviousDeployment(previousInstallationDir);
+            if (previousDeployment != null && previousDeployment.getAssignment().equals(assignment)) {
+                stagedInstallation = new StagedInstallation(installation, previousInstallationDir, null);
+                return;
+            }
+        }
 
-        Deployment deployment = new Deployment(slotId, location, deploymentDir, dataDir, assignment, installation.getResources());
         File tempDir = createTempDir(baseDir, "tmp-install");
         try {
-            // download the binary
-            File binary = new File(tempDir, "airship-binary.tar.gz");
+            // download the binary (or get it from the cache)
+            CachedArtifact binary;
             try {
-                Files.copy(Resources.newInputStreamSupplier(installation.getBinaryFile().toURL()), binary);
+                binary = artifactCache.get(installation.getBinaryFile(), installation.getBinaryPeers());
             }
             catch (IOException e) {
                 throw new RuntimeException("Unable to download binary " + assignment.getBinary() + " from " + installation.getBinaryFile(), e);
             }
 
-            // unpack the binary into a temp unpack dir
-            File unpackDir = new File(tempDir, "unpack");
-            unpackDir.mkdirs();
+            // build the tree from the binary shared by all slots on this agent
+            File binaryRootDir = new File(tempDir, INSTALLATION_DIR);
             try {
-                extractTar(binary, unpackDir, tarTimeout);
+                installationStore.install(binary, binaryRootDir, tarTimeout);
             }
-            catch (CommandFailedException e) {
-                throw new RuntimeException("Unable to extract tar file " + assignment.getBinary() + ": " + e.getMessage());
+            catch (IOException e) {
+                throw new RuntimeException("Unable to extract tar file " + assignment.getBinary() + ": " + e.getMessage(), e);
             }
-
-            // find the archive root dir (it should be the only file in the temp unpack dir)
-            List<File> files = listFiles(unpackDir);
-            if (files.size() != 1) {
-                throw new RuntimeException("Invalid tar file: file does not have a root directory " + assignment.getBinary());
+            finally {
+                binary.close();
             }
-            File binaryRootDir = files.get(0);
 
-            // unpack config bundle
-            try {
-                URL url = installation.getConfigFile().toURL();
-                ConfigUtils.unpackConfig(Resources.newInputStreamSupplier(url), binaryRootDir);
+            // unpack config bundle next to the tree, since the files it replaces may be shared with other slots
+            File configDir = new File(tempDir, "config");
+            try (CachedArtifact config = artifactCache.get(installation.getConfigFile())) {
+                ConfigUtils.unpackConfig(Files.newInputStreamSupplier(config.getFile()), configDir);
+                if (configDir.exists()) {
+                    replaceFiles(configDir.toPath(), binaryRootDir.toPath());
+                }
             }
             catch (Exception e) {
                 throw new RuntimeException("Unable to extract config bundle " + assignment.getConfig() + ": " + e.getMessage());
             }
 
-            // save deployment versions file
-            try {
-                save(deployment);
+            stagedInstallation = new StagedInstallation(installation, binaryRootDir, tempDir);
+        }
+        catch (RuntimeException e) {
+            if (!deleteRecursively(tempDir)) {
+                log.warn("Unable to delete temp directory: %s", tempDir.getAbsolutePath());
             }
-            catch (IOException e) {
-                throw new RuntimeException("Unable to save deployment file", e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Deployment activate()
+    {
+        Preconditions.checkState(stagedInstallation != null, "slot does not have a staged installation");
+        StagedInstallation staged = stagedInstallation;
+        stagedInstallation = null;
+
+        try {
+            Installation installation = staged.getInstallation();
+            Deployment newDeployment = new Deployment(slotId,
+                    location,
+                    new File(baseDir, INSTALLATION_DIR),
+                    getDataDir(),
+                    installation.getAssignment(),
+                    installation.getResources());
+
+            // move the staged tree next to the active one
+            File installationDir = staged.getInstallationDir();
+            if (staged.getTempDir() != null) {
+                File targetDir = newInstallationDir();
+                installationStore.moveInstallation(installationDir, targetDir);
+                installationDir = targetDir;
             }
 
-            // move the binary root directory to the final target
-            try {
-                Files.move(binaryRootDir, deploymentDir);
+            // atomically point the installation link at the new tree
+            File replacedInstallationDir = getActiveInstallationDir();
+            switchInstallation(installationDir);
+
+            // save deployment versions file, and keep the replaced tree for rollback
+            save(newDeployment);
+            if (deployment != null && replacedInstallationDir != null) {
+                save(deployment, previousDeploymentFile);
             }
-            catch (IOException e) {
-                throw new RuntimeException("Unable to move deployment to final location", e);
+            else {
+                previousDeploymentFile.delete();
+                replacedInstallationDir = null;
             }
+            for (File dir : listInstallationDirs()) {
+                if (!dir.getName().equals(installationDir.getName()) && (replacedInstallationDir == null || !dir.getName().equals(replacedInstallationDir.getName()))) {
+                    deleteRecursively(dir);
+                }
+            }
+            installationStore.prune();
+
+            deployment = newDeployment;
+            return newDeployment;
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Unable to activate installation " + staged.getInstallation().getAssignment(), e);
         }
         finally {
-            if (!deleteRecursively(tempDir)) {
-                log.warn("Unable to delete temp directory: %s", tempDir.getAbsolutePath());
+            if (staged.getTempDir() != null && !deleteRecursively(staged.getTempDir())) {
+                log.warn("Unable to delete temp directory: %s", staged.getTempDir().getAbsolutePath());
             }
         }
-
-        this.deployment = deployment;
-        return deployment;
     }
 
     @Override
@@ -203,22 +280,35 @@ public class DirectoryDeploymentManager implements DeploymentManager
             return;
         }
         deploymentFile.delete();
+        previousDeploymentFile.delete();
         deleteRecursively(deployment.getDeploymentDir());
+        for (File dir : listInstallationDirs()) {
+            deleteRecursively(dir);
+        }
+        installationStore.prune();
         deployment = null;
     }
 
     @Override
     public void terminate()
     {
+        discardStagedInstallation();
         deleteRecursively(baseDir);
+        installationStore.prune();
         deployment = null;
     }
 
     public void save(Deployment deployment)
             throws IOException
+    {
+        save(deployment, deploymentFile);
+    }
+
+    private void save(Deployment deployment, File file)
+            throws IOException
     {
         String json = jsonCodec.toJson(DeploymentRepresentation.from(deployment));
-        Files.write(json, deploymentFile, UTF_8);
+        Files.write(json, file, UTF_8);
     }
 
     public Deployment load(File deploymentFile)
@@ -234,6 +324,135 @@ public class DirectoryDeploymentManager implements DeploymentManager
         return deployment;
     }
 
+    private Deployment loadPreviousDeployment(File installationDir)
+    {
+        if (!previousDeploymentFile.exists()) {
+            return null;
+        }
+        try {
+            String json = Files.toString(previousDeploymentFile, UTF_8);
+            return jsonCodec.fromJson(json).toDeployment(installationDir, getDataDir(), location);
+        }
+        catch (IOException | IllegalArgumentException e) {
+            log.warn(e, "Invalid previous deployment file: %s", previousDeploymentFile.getAbsolutePath());
+            return null;
+        }
+    }
+
+    private void discardStagedInstallation()
+    {
+        if (stagedInstallation != null && stagedInstallation.getTempDir() != null) {
+            deleteRecursively(stagedInstallation.getTempDir());
+        }
+        stagedInstallation = null;
+    }
+
+    /**
+     * Returns the tree the installation link points to.  An installation
+     * directory created by an older agent is first moved to a tree of its own
+     * so it can be replaced by a link.
+     */
+    private File getActiveInstallationDir()
+            throws IOException
+    {
+        Path link = new File(baseDir, INSTALLATION_DIR).toPath();
+        if (java.nio.file.Files.isSymbolicLink(link)) {
+            return new File(baseDir, java.nio.file.Files.readSymbolicLink(link).toString());
+        }
+        for (String name : ImmutableList.of(INSTALLATION_DIR, "deployment")) {
+            File dir = new File(baseDir, name);
+            if (dir.isDirectory()) {
+                File installationDir = newInstallationDir();
+                Files.move(dir, installationDir);
+                return installationDir;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the tree kept from the replaced deployment, if any.
+     */
+    private File getPreviousInstallationDir()
+    {
+        Path link = new File(baseDir, INSTALLATION_DIR).toPath();
+        if (!java.nio.file.Files.isSymbolicLink(link)) {
+            return null;
+        }
+        String activeName;
+        try {
+            activeName = java.nio.file.Files.readSymbolicLink(link).toString();
+        }
+        catch (IOException e) {
+            return null;
+        }
+        for (File dir : listInstallationDirs()) {
+            if (!dir.getName().equals(activeName)) {
+                return dir;
+            }
+        }
+        return null;
+    }
+
+    private void switchInstallation(File installationDir)
+            throws IOException
+    {
+        Path link = new File(baseDir, INSTALLATION_DIR).toPath();
+        Path tempLink = new File(baseDir, "." + INSTALLATION_DIR + ".tmp").toPath();
+        java.nio.file.Files.deleteIfExists(tempLink);
+        java.nio.file.Files.createSymbolicLink(tempLink, Paths.get(installationDir.getName()));
+        java.nio.file.Files.move(tempLink, link, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private List<File> listInstallationDirs()
+    {
+        return listFiles(baseDir, new PatternFilenameFilter(INSTALLATION_DIR + "-.*"));
+    }
+
+    private File newInstallationDir()
+    {
+        String baseName = INSTALLATION_DIR + "-" + System.currentTimeMillis();
+        for (int counter = 0; ; counter++) {
+            File dir = new File(baseDir, baseName + "-" + counter);
+            if (!dir.exists()) {
+                return dir;
+            }
+        }
+    }
+
+    /**
+     * Moves the files of the source tree into the target tree.  Existing files
+     * are replaced instead of overwritten, so files linked from the shared
+     * installation store are never modified.
+     */
+    private static void replaceFiles(final Path sourceDir, final Path targetDir)
+            throws IOException
+    {
+        java.nio.file.Files.walkFileTree(sourceDir, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes)
+                    throws IOException
+            {
+                java.nio.file.Files.createDirectories(targetDir.resolve(sourceDir.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+                    throws IOException
+            {
+                java.nio.file.Files.move(file, targetDir.resolve(sourceDir.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean isSnapshot(Assignment assignment)
+    {
+        return assignment.getBinary().contains("SNAPSHOT") || assignment.getConfig().contains("SNAPSHOT");
+    }
+
     private File getDataDir()
     {
         File dataDir = new File(baseDir, "data");
@@ -243,4 +462,36 @@ public class DirectoryDeploymentManager implements DeploymentManager
         }
         return dataDir;
     }
+
+    private static class StagedInstallation
+    {
+        private final Installation installation;
+        private final File installationDir;
+        private final File tempDir;
+
+        private StagedInstallation(Installation installation, File installationDir, File tempDir)
+        {
+            this.installation = installation;
+            this.installationDir = installationDir;
+            this.tempDir = tempDir;
+        }
+
+        public Installation getInstallation()
+        {
+            return installation;
+        }
+
+        public File getInstallationDir()
+        {
+            return installationDir;
+        }
+
+        /**
+         * Returns the directory holding the unpacked tree, or null if an existing tree is reused.
+         */
+        public File getTempDir()
+        {
+            return tempDir;
+        }
+    }
 }
@@ -24,21 +24,27 @@ public class DirectoryDeploymentManagerFactory implements DeploymentManagerFacto
     private final String location;
     private final Duration tarTimeout;
     private final File slotDir;
+    private final ArtifactCache artifactCache;
+    private final InstallationStore installationStore;
 
     @Inject
-    public DirectoryDeploymentManagerFactory(NodeInfo nodeInfo, AgentConfig config)
+    public DirectoryDeploymentManagerFactory(NodeInfo nodeInfo, AgentConfig config, ArtifactCache artifactCache, InstallationStore installationStore)
     {
-        this(nodeInfo.getLocation(), config.getSlotsDir(), config.getTarTimeout());
+        this(nodeInfo.getLocation(), config.getSlotsDir(), config.getTarTimeout(), artifactCache, installationStore);
     }
 
-    public DirectoryDeploymentManagerFactory(String location, String slotsDir, Duration tarTimeout)
+    public DirectoryDeploymentManagerFactory(String location, String slotsDir, Duration tarTimeout, ArtifactCache artifactCache, InstallationStore installationStore)
     {
         Preconditions.checkNotNull(location, "location is null");
         Preconditions.checkNotNull(slotsDir, "slotsDir is null");
         Preconditions.checkNotNull(tarTimeout, "tarTimeout is null");
+        Preconditions.checkNotNull(artifactCache, "artifactCache is null");
+        Preconditions.checkNotNull(installationStore, "installationStore is null");
 
         this.location = location;
         this.tarTimeout = tarTimeout;
+        this.artifactCache = artifactCache;
+        this.installationStore = installationStore;
 
         this.slotDir = new File(slotsDir);
 
@@ -54,7 +60,7 @@ public class DirectoryDeploymentManagerFactory implements DeploymentManagerFacto
         ImmutableList.Builder<DeploymentManager> builder = ImmutableList.builder();
         for (File dir : listFiles(slotDir)) {
             if (dir.isDirectory() && new File(dir, "airship-slot-id.txt").canRead()) {
-                DirectoryDeploymentManager deploymentManager = new DirectoryDeploymentManager(dir, location + "/" + dir.getName(), tarTimeout);
+                DirectoryDeploymentManager deploymentManager = new DirectoryDeploymentManager(dir, location + "/" + dir.getName(), tarTimeout, artifactCache, installationStore);
                 builder.add(deploymentManager);
             }
         }
@@ -65,7 +71,7 @@ public class DirectoryDeploymentManagerFactory implements DeploymentManagerFacto
     public DirectoryDeploymentManager createDeploymentManager(Installation installation)
     {
         File slotDirectory = getSlotDirectory(installation);
-        return new DirectoryDeploymentManager(slotDirectory, location + "/" + slotDirectory.getName(), tarTimeout);
+        return new DirectoryDeploymentManager(slotDirectory, location + "/" + slotDirectory.getName(), tarTimeout, artifactCache, installationStore);
     }
 
     private synchronized File getSlotDirectory(Installation installation)
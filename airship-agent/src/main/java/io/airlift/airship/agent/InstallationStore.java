@@ -0,0 +1,389 @@
+package io.airlift.airship.agent;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.common.io.PatternFilenameFilter;
+import com.google.inject.Inject;
+import io.airlift.airship.agent.ArtifactCache.CachedArtifact;
+import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.concurrent.GuardedBy;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.FileUtils.listFiles;
+import static io.airlift.airship.shared.TarExtractor.extractTarGz;
+
+/**
+ * Agent wide store of extracted binaries.  Each binary is extracted once into
+ * a read-only tree named after the checksum of the archive, and the slot
+ * installations are built from hard links into that tree, so slots running
+ * the same binary share one copy on disk and in the page cache.  Only the
+ * {@code etc} directory, which every slot fills with its own config bundle
+ * and node config, is copied into each installation.  Files are copied
+ * instead of linked when the slot is on another file system than the store.
+ * <p/>
+ * Every installation built from a tree holds a reference on it, which is a
+ * file in the {@code <checksum>.references} directory next to the tree that
+ * records the installation directory.  Installations are deleted without
+ * telling the store, so a reference whose directory no longer exists is
+ * dropped, and a tree is deleted once it has no references left.  This never
+ * affects the installations built from the tree, since their links keep the
+ * files alive.
+ */
+public class InstallationStore
+{
+    private static final Logger log = Logger.get(InstallationStore.class);
+    private static final Pattern CHECKSUM_PATTERN = Pattern.compile("[0-9a-f]{40}");
+    private static final int EXTRACT_LOCK_STRIPES = 64;
+    private static final String ETC_DIR = "etc";
+    private static final String REFERENCES_SUFFIX = ".references";
+
+    private final File storeDir;
+
+    // installs of the same binary wait for a single extraction
+    private final Object[] extractLocks = new Object[EXTRACT_LOCK_STRIPES];
+
+    // checksum -> number of installations being built from the tree; guarded by this
+    private final Map<String, Integer> leases = new HashMap<>();
+
+    private final AtomicLong extractions = new AtomicLong();
+    private final AtomicLong linkedFiles = new AtomicLong();
+    private final AtomicLong copiedFiles = new AtomicLong();
+
+    @Inject
+    public InstallationStore(AgentConfig config)
+    {
+        // the store must be on the same file system as the slots for hard links to work
+        this(new File(Preconditions.checkNotNull(config, "config is null").getSlotsDir(), ".installation-store"));
+    }
+
+    public InstallationStore(File storeDir)
+    {
+        Preconditions.checkNotNull(storeDir, "storeDir is null");
+        storeDir.mkdirs();
+        Preconditions.checkArgument(storeDir.isDirectory(), "Store directory %s is not a directory", storeDir.getAbsolutePath());
+        this.storeDir = storeDir;
+
+        // discard partial extractions from a previous run
+        for (File tempDir : listFiles(storeDir, new PatternFilenameFilter("tmp-.*"))) {
+            deleteRecursively(tempDir);
+        }
+
+        for (int i = 0; i < extractLocks.length; i++) {
+            extractLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Builds an installation of the binary in the target directory, which must
+     * not exist yet.  The binary is extracted into the store if necessary.
+     * Files outside of {@code etc} are shared with other installations, so
+     * they must be replaced rather than modified in place.
+     */
+    public void install(CachedArtifact binary, File targetDir, Duration tarTimeout)
+            throws IOException
+    {
+        Preconditions.checkNotNull(binary, "binary is null");
+        Preconditions.checkNotNull(targetDir, "targetDir is null");
+        Preconditions.checkNotNull(tarTimeout, "tarTimeout is null");
+
+        String checksum = binary.getChecksum();
+        File rootDir = acquire(binary, tarTimeout);
+        try {
+            addReference(checksum, targetDir);
+            try {
+                linkTree(rootDir.toPath(), targetDir.toPath());
+            }
+            catch (IOException | RuntimeException e) {
+                removeReference(checksum, targetDir);
+                throw e;
+            }
+        }
+        finally {
+            release(checksum);
+        }
+    }
+
+    /**
+     * Moves an installation to another directory on the same file system,
+     * and moves the reference it holds on its tree along with it.
+     */
+    public synchronized void moveInstallation(File sourceDir, File targetDir)
+            throws IOException
+    {
+        Preconditions.checkNotNull(sourceDir, "sourceDir is null");
+        Preconditions.checkNotNull(targetDir, "targetDir is null");
+
+        String checksum = findReference(sourceDir);
+        if (checksum != null) {
+            addReference(checksum, targetDir);
+        }
+        Files.move(sourceDir.toPath(), targetDir.toPath());
+        if (checksum != null) {
+            removeReference(checksum, sourceDir);
+        }
+    }
+
+    /**
+     * Deletes the trees no installation references anymore.
+     */
+    public synchronized void prune()
+    {
+        Set<String> checksums = new HashSet<>();
+        for (File file : listFiles(storeDir)) {
+            String name = file.getName();
+            if (name.endsWith(REFERENCES_SUFFIX)) {
+                name = name.substring(0, name.length() - REFERENCES_SUFFIX.length());
+            }
+            if (CHECKSUM_PATTERN.matcher(name).matches()) {
+                checksums.add(name);
+            }
+        }
+
+        for (String checksum : checksums) {
+            if (leases.containsKey(checksum) || hasReferences(checksum)) {
+                continue;
+            }
+            deleteRecursively(getReferencesDir(checksum));
+            if (deleteRecursively(new File(storeDir, checksum))) {
+                log.debug("Deleted unused installation tree %s", checksum);
+            }
+        }
+    }
+
+    @Managed
+    public long getExtractions()
+    {
+        return extractions.get();
+    }
+
+    @Managed
+    public long getLinkedFiles()
+    {
+        return linkedFiles.get();
+    }
+
+    @Managed
+    public long getCopiedFiles()
+    {
+        return copiedFiles.get();
+    }
+
+    private File acquire(CachedArtifact binary, Duration tarTimeout)
+            throws IOException
+    {
+        String checksum = binary.getChecksum();
+        synchronized (extractLocks[(checksum.hashCode() & Integer.MAX_VALUE) % extractLocks.length]) {
+            // lease the tree before looking at it, so it can not be pruned
+            synchronized (this) {
+                Integer count = leases.get(checksum);
+                leases.put(checksum, count == null ? 1 : count + 1);
+            }
+
+            try {
+                File entryDir = new File(storeDir, checksum);
+                if (!entryDir.isDirectory()) {
+                    extract(binary, entryDir, tarTimeout);
+                }
+                return getRootDir(entryDir);
+            }
+            catch (IOException | RuntimeException e) {
+                release(checksum);
+                throw e;
+            }
+        }
+    }
+
+    private synchronized void addReference(String checksum, File installationDir)
+            throws IOException
+    {
+        File referencesDir = getReferencesDir(checksum);
+        referencesDir.mkdirs();
+        File referenceFile = new File(referencesDir, getReferenceName(installationDir));
+        Files.write(referenceFile.toPath(), installationDir.getAbsolutePath().getBytes(Charsets.UTF_8));
+    }
+
+    private synchronized void removeReference(String checksum, File installationDir)
+    {
+        new File(getReferencesDir(checksum), getReferenceName(installationDir)).delete();
+    }
+
+    private synchronized String findReference(File installationDir)
+    {
+        String referenceName = getReferenceName(installationDir);
+        for (File referencesDir : listFiles(storeDir, new PatternFilenameFilter(CHECKSUM_PATTERN.pattern() + Pattern.quote(REFERENCES_SUFFIX)))) {
+            if (new File(referencesDir, referenceName).isFile()) {
+                return referencesDir.getName().substring(0, referencesDir.getName().length() - REFERENCES_SUFFIX.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops the references of installations that were deleted, and returns
+     * true if the tree is still referenced by an installation.
+     */
+    @GuardedBy("this")
+    private boolean hasReferences(String checksum)
+    {
+        boolean referenced = false;
+        for (File referenceFile : listFiles(getReferencesDir(checksum))) {
+            String installationDir;
+            try {
+                installationDir = new String(Files.readAllBytes(referenceFile.toPath()), Charsets.UTF_8);
+            }
+            catch (IOException e) {
+                // keep the tree if the reference can not be read
+                referenced = true;
+                continue;
+            }
+            if (new File(installationDir).isDirectory()) {
+                referenced = true;
+            }
+            else {
+                referenceFile.delete();
+            }
+        }
+        return referenced;
+    }
+
+    private File getReferencesDir(String checksum)
+    {
+        return new File(storeDir, checksum + REFERENCES_SUFFIX);
+    }
+
+    private static String getReferenceName(File installationDir)
+    {
+        return Hashing.sha1().hashString(installationDir.getAbsolutePath(), Charsets.UTF_8).toString();
+    }
+
+    private synchronized void release(String checksum)
+    {
+        Integer count = leases.get(checksum);
+        if (count == null || count <= 1) {
+            leases.remove(checksum);
+        }
+        else {
+            leases.put(checksum, count - 1);
+        }
+    }
+
+    private void extract(CachedArtifact binary, File entryDir, Duration tarTimeout)
+            throws IOException
+    {
+        File tempDir = createTempDir(storeDir, "tmp");
+        try {
+            try (InputStream in = new FileInputStream(binary.getFile())) {
+                // verify the cached copy while extracting it
+                extractTarGz(in, tempDir.toPath(), binary.getChecksum(), tarTimeout);
+            }
+            getRootDir(tempDir);
+
+            makeReadOnly(tempDir.toPath());
+            Files.move(tempDir.toPath(), entryDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            extractions.incrementAndGet();
+        }
+        finally {
+            if (tempDir.exists()) {
+                deleteRecursively(tempDir);
+            }
+        }
+    }
+
+    private void linkTree(final Path sourceDir, final Path targetDir)
+            throws IOException
+    {
+        Files.walkFileTree(sourceDir, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes)
+                    throws IOException
+            {
+                Files.copy(dir, targetDir.resolve(sourceDir.relativize(dir)), StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+                    throws IOException
+            {
+                Path relativePath = sourceDir.relativize(file);
+                Path targetFile = targetDir.resolve(relativePath);
+                if (attributes.isSymbolicLink()) {
+                    Files.copy(file, targetFile, LinkOption.NOFOLLOW_LINKS);
+                }
+                else if (relativePath.startsWith(ETC_DIR)) {
+                    copyFile(file, targetFile);
+                }
+                else {
+                    try {
+                        Files.createLink(targetFile, file);
+                        linkedFiles.incrementAndGet();
+                    }
+                    catch (IOException | UnsupportedOperationException e) {
+                        copyFile(file, targetFile);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void copyFile(Path file, Path targetFile)
+            throws IOException
+    {
+        Files.copy(file, targetFile, StandardCopyOption.COPY_ATTRIBUTES);
+        targetFile.toFile().setWritable(true, true);
+        copiedFiles.incrementAndGet();
+    }
+
+    private static File getRootDir(File dir)
+            throws IOException
+    {
+        // the archive root dir should be the only file in the dir
+        List<File> files = listFiles(dir);
+        if (files.size() != 1 || !files.get(0).isDirectory()) {
+            throw new IOException("Invalid tar file: file does not have a root directory");
+        }
+        return files.get(0);
+    }
+
+    private static void makeReadOnly(Path dir)
+            throws IOException
+    {
+        // directories stay writable so unused trees can be deleted
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+            {
+                if (attributes.isRegularFile()) {
+                    file.toFile().setWritable(false, false);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -24,6 +24,7 @@ public class MockDeploymentManager implements DeploymentManager
     private final String location;
     private final UUID slotId = UUID.randomUUID();
     private Deployment deployment;
+    private Installation stagedInstallation;
 
     public MockDeploymentManager()
     {
@@ -40,6 +41,23 @@ public class MockDeploymentManager implements DeploymentManager
         return deployment;
     }
 
+    @Override
+    public void stage(Installation installation)
+    {
+        Preconditions.checkNotNull(installation, "installation is null");
+        stagedInstallation = installation;
+    }
+
+    @Override
+    public Deployment activate()
+    {
+        Preconditions.checkState(stagedInstallation != null, "slot does not have a staged installation");
+
+        deployment = new Deployment(UUID.randomUUID(), location, new File("installation"), new File("data"), stagedInstallation.getAssignment(), stagedInstallation.getResources());
+        stagedInstallation = null;
+        return deployment;
+    }
+
     public UUID getSlotId()
     {
         return slotId;
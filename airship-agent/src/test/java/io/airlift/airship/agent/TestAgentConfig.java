@@ -15,6 +15,7 @@ package io.airlift.airship.agent;
 
 import com.google.common.collect.ImmutableMap;
 import io.airlift.configuration.testing.ConfigAssertions;
+import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
@@ -31,8 +32,16 @@ public class TestAgentConfig
                 .setResourcesFile("etc/resources.properties")
                 .setLauncherTimeout(new Duration(1, TimeUnit.SECONDS))
                 .setLauncherStopTimeout(new Duration(10, TimeUnit.SECONDS))
+                .setLauncherStatusRefreshInterval(new Duration(1, TimeUnit.MINUTES))
                 .setTarTimeout(new Duration(1, TimeUnit.MINUTES))
                 .setMaxLockWait(new Duration(1, TimeUnit.SECONDS))
+                .setArtifactCacheDir(null)
+                .setArtifactCacheMaxSize(new DataSize(10, DataSize.Unit.GIGABYTE))
+                .setDownloadMaxConnections(4)
+                .setDownloadChunkSize(new DataSize(8, DataSize.Unit.MEGABYTE))
+                .setDownloadMaxBandwidth(null)
+                .setDownloadMaxAttempts(5)
+                .setDownloadRetryDelay(new Duration(1, TimeUnit.SECONDS))
         );
     }
 
@@ -44,8 +53,16 @@ public class TestAgentConfig
                 .put("agent.resources-file", "resources-file")
                 .put("agent.launcher-timeout", "5m")
                 .put("agent.launcher-stop-timeout", "50m")
+                .put("agent.launcher-status-refresh-interval", "5s")
                 .put("agent.tar-timeout", "10m")
                 .put("agent.max-lock-wait", "1m")
+                .put("agent.artifact-cache-dir", "cache-dir")
+                .put("agent.artifact-cache-max-size", "2GB")
+                .put("agent.download.max-connections", "8")
+                .put("agent.download.chunk-size", "16MB")
+                .put("agent.download.max-bandwidth", "50MB")
+                .put("agent.download.max-attempts", "3")
+                .put("agent.download.retry-delay", "5s")
                 .build();
 
         AgentConfig expected = new AgentConfig()
@@ -53,8 +70,16 @@ public class TestAgentConfig
                 .setResourcesFile("resources-file")
                 .setLauncherTimeout(new Duration(5, TimeUnit.MINUTES))
                 .setLauncherStopTimeout(new Duration(50, TimeUnit.MINUTES))
+                .setLauncherStatusRefreshInterval(new Duration(5, TimeUnit.SECONDS))
                 .setTarTimeout(new Duration(10, TimeUnit.MINUTES))
-                .setMaxLockWait(new Duration(1, TimeUnit.MINUTES));
+                .setMaxLockWait(new Duration(1, TimeUnit.MINUTES))
+                .setArtifactCacheDir("cache-dir")
+                .setArtifactCacheMaxSize(new DataSize(2, DataSize.Unit.GIGABYTE))
+                .setDownloadMaxConnections(8)
+                .setDownloadChunkSize(new DataSize(16, DataSize.Unit.MEGABYTE))
+                .setDownloadMaxBandwidth(new DataSize(50, DataSize.Unit.MEGABYTE))
+                .setDownloadMaxAttempts(3)
+                .setDownloadRetryDelay(new Duration(5, TimeUnit.SECONDS));
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
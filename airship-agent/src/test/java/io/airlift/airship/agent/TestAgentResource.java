@@ -4,15 +4,21 @@ import io.airlift.airship.shared.AgentStatusRepresentation;
 import io.airlift.http.server.HttpServerConfig;
 import io.airlift.http.server.HttpServerInfo;
 import io.airlift.node.NodeInfo;
+import io.airlift.units.Duration;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import javax.ws.rs.core.Response;
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 import static io.airlift.airship.agent.ResourcesUtil.TEST_RESOURCES;
 import static io.airlift.airship.shared.AgentLifecycleState.ONLINE;
+import static io.airlift.airship.shared.InstallationHelper.APPLE_INSTALLATION;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_AGENT_VERSION_HEADER;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 public class TestAgentResource
 {
@@ -45,7 +51,7 @@ public class TestAgentResource
     @Test
     public void testGetAllSlotsStatus()
     {
-        Response response = agentResource.getAllSlotsStatus();
+        Response response = agentResource.getAllSlotsStatus(null, null);
         AgentStatusRepresentation actual = (AgentStatusRepresentation) response.getEntity();
         assertEquals(actual.getAgentId(), agent.getAgentId());
         assertEquals(actual.getState(), ONLINE);
@@ -54,4 +60,63 @@ public class TestAgentResource
         assertEquals(actual.getLocation(), agent.getLocation());
     }
 
+    @Test
+    public void testNotModified()
+            throws Exception
+    {
+        String version = agent.getAgentStatus().getVersion();
+
+        Response response = agentResource.getAllSlotsStatus("\"" + version + "\"", null);
+        assertEquals(response.getStatus(), Response.Status.NOT_MODIFIED.getStatusCode());
+        assertNull(response.getEntity());
+        assertEquals(response.getMetadata().getFirst(AIRSHIP_AGENT_VERSION_HEADER), version);
+
+        response = agentResource.getAllSlotsStatus("\"stale-version\"", null);
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        assertEquals(((AgentStatusRepresentation) response.getEntity()).getVersion(), version);
+    }
+
+    @Test
+    public void testLongPollTimeout()
+            throws Exception
+    {
+        String version = agent.getAgentStatus().getVersion();
+
+        long start = System.nanoTime();
+        Response response = agentResource.getAllSlotsStatus("\"" + version + "\"", new Duration(200, TimeUnit.MILLISECONDS));
+        assertEquals(response.getStatus(), Response.Status.NOT_MODIFIED.getStatusCode());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testLongPollReturnsOnChange()
+            throws Exception
+    {
+        String version = agent.getAgentStatus().getVersion();
+
+        Thread installer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                agent.install(APPLE_INSTALLATION);
+            }
+        };
+        installer.start();
+
+        Response response = agentResource.getAllSlotsStatus("\"" + version + "\"", new Duration(1, TimeUnit.MINUTES));
+        installer.join();
+
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        AgentStatusRepresentation actual = (AgentStatusRepresentation) response.getEntity();
+        assertEquals(actual.getSlots().size(), 1);
+    }
+
 }
@@ -0,0 +1,157 @@
+package io.airlift.airship.agent;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import io.airlift.airship.agent.ArtifactCache.CachedArtifact;
+import io.airlift.units.DataSize;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestArtifactCache
+{
+    private File tempDir;
+    private File repoDir;
+    private File cacheDir;
+
+    @BeforeMethod
+    public void setUp()
+            throws Exception
+    {
+        tempDir = Files.createTempDir().getCanonicalFile();
+        repoDir = new File(tempDir, "repo");
+        repoDir.mkdirs();
+        cacheDir = new File(tempDir, "cache");
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        if (tempDir != null) {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Test
+    public void testRepeatedGetDoesNotDownload()
+            throws Exception
+    {
+        ArtifactCache cache = new ArtifactCache(cacheDir, new DataSize(1, DataSize.Unit.MEGABYTE));
+        File artifact = writeArtifact("apple-1.0.tar.gz", "apple", false);
+
+        assertContents(cache, artifact, "apple");
+        assertEquals(cache.getMisses(), 1);
+
+        // the artifact is served from the cache even though it is no longer available
+        artifact.delete();
+        assertContents(cache, artifact, "apple");
+        assertEquals(cache.getMisses(), 1);
+        assertEquals(cache.getHits(), 1);
+
+        // the index survives a restart
+        cache = new ArtifactCache(cacheDir, new DataSize(1, DataSize.Unit.MEGABYTE));
+        assertContents(cache, artifact, "apple");
+        assertEquals(cache.getHits(), 1);
+    }
+
+    @Test
+    public void testSnapshotUsesPublishedChecksum()
+            throws Exception
+    {
+        ArtifactCache cache = new ArtifactCache(cacheDir, new DataSize(1, DataSize.Unit.MEGABYTE));
+        File artifact = writeArtifact("apple-1.0-SNAPSHOT.tar.gz", "apple", true);
+
+        assertContents(cache, artifact, "apple");
+        assertContents(cache, artifact, "apple");
+        assertEquals(cache.getMisses(), 1);
+        assertEquals(cache.getHits(), 1);
+
+        // a new snapshot is published under the same name
+        writeArtifact("apple-1.0-SNAPSHOT.tar.gz", "new apple", true);
+        assertContents(cache, artifact, "new apple");
+        assertEquals(cache.getMisses(), 2);
+
+        // without a published checksum the snapshot is always downloaded
+        new File(repoDir, "apple-1.0-SNAPSHOT.tar.gz.sha1").delete();
+        assertContents(cache, artifact, "new apple");
+        assertEquals(cache.getMisses(), 3);
+    }
+
+    @Test
+    public void testChecksumMismatch()
+            throws Exception
+    {
+        ArtifactCache cache = new ArtifactCache(cacheDir, new DataSize(1, DataSize.Unit.MEGABYTE));
+        File artifact = writeArtifact("apple-1.0.tar.gz", "apple", true);
+        Files.write("banana", artifact, Charsets.UTF_8);
+
+        try {
+            cache.get(artifact.toURI());
+            fail("expected IOException");
+        }
+        catch (IOException expected) {
+        }
+        assertEquals(cache.getSizeInBytes(), 0);
+    }
+
+    @Test
+    public void testEviction()
+            throws Exception
+    {
+        ArtifactCache cache = new ArtifactCache(cacheDir, new DataSize(10, DataSize.Unit.BYTE));
+        File apple = writeArtifact("apple-1.0.tar.gz", "apple-1", false);
+        File banana = writeArtifact("banana-1.0.tar.gz", "banana-1", false);
+
+        try (CachedArtifact appleArtifact = cache.get(apple.toURI())) {
+            // apple is in use, so it is not evicted even though the cache is full
+            try (CachedArtifact bananaArtifact = cache.get(banana.toURI())) {
+                assertTrue(appleArtifact.getFile().exists());
+                assertTrue(bananaArtifact.getFile().exists());
+            }
+            assertEquals(cache.getEvictions(), 0);
+
+            // apple is still in use, so banana is evicted
+            File cherry = writeArtifact("cherry-1.0.tar.gz", "cherry-1", false);
+            try (CachedArtifact cherryArtifact = cache.get(cherry.toURI())) {
+                assertTrue(appleArtifact.getFile().exists());
+                assertTrue(cherryArtifact.getFile().exists());
+            }
+            assertEquals(cache.getEvictions(), 1);
+        }
+
+        // banana must be downloaded again
+        assertContents(cache, banana, "banana-1");
+        assertEquals(cache.getMisses(), 4);
+        assertFalse(cache.getSizeInBytes() > 10);
+    }
+
+    private File writeArtifact(String name, String contents, boolean publishChecksum)
+            throws IOException
+    {
+        File file = new File(repoDir, name);
+        Files.write(contents, file, Charsets.UTF_8);
+        if (publishChecksum) {
+            String checksum = Hashing.sha1().hashString(contents, Charsets.UTF_8).toString();
+            Files.write(checksum + "  " + name, new File(repoDir, name + ".sha1"), Charsets.UTF_8);
+        }
+        return file;
+    }
+
+    private static void assertContents(ArtifactCache cache, File artifact, String expected)
+            throws IOException
+    {
+        try (CachedArtifact cachedArtifact = cache.get(artifact.toURI())) {
+            assertEquals(Files.toString(cachedArtifact.getFile(), Charsets.UTF_8), expected);
+        }
+    }
+}
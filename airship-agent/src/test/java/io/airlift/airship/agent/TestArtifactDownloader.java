@@ -0,0 +1,234 @@
+package io.airlift.airship.agent;
+
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestArtifactDownloader
+{
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final DataSize CHUNK_SIZE = new DataSize(10, DataSize.Unit.KILOBYTE);
+
+    private File tempDir;
+    private File file;
+    private HttpServer server;
+    private URI artifactUri;
+
+    private volatile byte[] content;
+    private volatile String etag = "\"v1\"";
+    private volatile boolean rangesSupported = true;
+    private volatile int failingRequest = -1;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeMethod
+    public void setUp()
+            throws Exception
+    {
+        tempDir = Files.createTempDir().getCanonicalFile();
+        file = new File(tempDir, "artifact");
+        content = randomBytes(100_000, 1);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/artifact", new ArtifactHandler());
+        server.start();
+        artifactUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/artifact");
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (tempDir != null) {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Test
+    public void testParallelRanges()
+            throws Exception
+    {
+        ArtifactDownloader downloader = createDownloader(4, 1);
+        downloader.download(artifactUri, file);
+
+        assertEquals(Files.toByteArray(file), content);
+        assertEquals(downloader.getChunksDownloaded(), 10);
+        assertEquals(downloader.getBytesDownloaded(), content.length);
+        assertEquals(requests.get(), 10);
+    }
+
+    @Test
+    public void testRetry()
+            throws Exception
+    {
+        failingRequest = 3;
+        ArtifactDownloader downloader = createDownloader(1, 3);
+        downloader.download(artifactUri, file);
+
+        assertEquals(Files.toByteArray(file), content);
+        assertEquals(downloader.getRetries(), 1);
+        assertEquals(downloader.getChunksResumed(), 2);
+    }
+
+    @Test
+    public void testResume()
+            throws Exception
+    {
+        failingRequest = 3;
+        try {
+            createDownloader(1, 1).download(artifactUri, file);
+            fail("expected IOException");
+        }
+        catch (IOException expected) {
+        }
+
+        // a new downloader, as after an agent restart, only fetches the missing chunks
+        failingRequest = -1;
+        ArtifactDownloader downloader = createDownloader(1, 1);
+        downloader.download(artifactUri, file);
+
+        assertEquals(Files.toByteArray(file), content);
+        assertEquals(downloader.getChunksResumed(), 2);
+        assertEquals(downloader.getChunksDownloaded(), 8);
+    }
+
+    @Test
+    public void testChangedArtifactDownloadedAgain()
+            throws Exception
+    {
+        failingRequest = 3;
+        try {
+            createDownloader(1, 1).download(artifactUri, file);
+            fail("expected IOException");
+        }
+        catch (IOException expected) {
+        }
+
+        failingRequest = -1;
+        content = randomBytes(55_000, 2);
+        etag = "\"v2\"";
+        ArtifactDownloader downloader = createDownloader(1, 1);
+        downloader.download(artifactUri, file);
+
+        assertEquals(Files.toByteArray(file), content);
+        assertEquals(downloader.getChunksResumed(), 0);
+        assertEquals(downloader.getChunksDownloaded(), 6);
+    }
+
+    @Test
+    public void testRangesNotSupported()
+            throws Exception
+    {
+        rangesSupported = false;
+        ArtifactDownloader downloader = createDownloader(4, 1);
+        downloader.download(artifactUri, file);
+
+        assertEquals(Files.toByteArray(file), content);
+        assertEquals(requests.get(), 1);
+    }
+
+    @Test
+    public void testNotFound()
+            throws Exception
+    {
+        ArtifactDownloader downloader = createDownloader(4, 3);
+        try {
+            downloader.download(artifactUri.resolve("/missing"), file);
+            fail("expected FileNotFoundException");
+        }
+        catch (FileNotFoundException expected) {
+        }
+        assertEquals(downloader.getRetries(), 0);
+    }
+
+    @Test
+    public void testBandwidthLimit()
+            throws Exception
+    {
+        ArtifactDownloader downloader = new ArtifactDownloader(4, CHUNK_SIZE, new DataSize(200, DataSize.Unit.KILOBYTE), 1, new Duration(1, TimeUnit.MILLISECONDS));
+        long start = System.nanoTime();
+        downloader.download(artifactUri, file);
+
+        // 100KB at 200KB/s, less the first block which is not delayed
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+        assertEquals(Files.toByteArray(file), content);
+    }
+
+    private static ArtifactDownloader createDownloader(int maxConnections, int maxAttempts)
+    {
+        return new ArtifactDownloader(maxConnections, CHUNK_SIZE, null, maxAttempts, new Duration(1, TimeUnit.MILLISECONDS));
+    }
+
+    private static byte[] randomBytes(int length, long seed)
+    {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private class ArtifactHandler
+            implements HttpHandler
+    {
+        @Override
+        public void handle(HttpExchange exchange)
+                throws IOException
+        {
+            int request = requests.incrementAndGet();
+            byte[] bytes = content;
+            try {
+                if (!exchange.getRequestURI().getPath().equals("/artifact")) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+
+                int start = 0;
+                int end = bytes.length - 1;
+                int status = 200;
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                if (rangesSupported && range != null) {
+                    Matcher matcher = RANGE_PATTERN.matcher(range);
+                    assertTrue(matcher.matches(), range);
+                    start = Integer.parseInt(matcher.group(1));
+                    end = Math.min(Integer.parseInt(matcher.group(2)), bytes.length - 1);
+                    status = 206;
+                    exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + bytes.length);
+                }
+                exchange.getResponseHeaders().add("ETag", etag);
+
+                int length = end - start + 1;
+                exchange.sendResponseHeaders(status, length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    // a failing request is cut off half way through the body
+                    out.write(bytes, start, request == failingRequest ? length / 2 : length);
+                }
+            }
+            finally {
+                exchange.close();
+            }
+        }
+    }
+}
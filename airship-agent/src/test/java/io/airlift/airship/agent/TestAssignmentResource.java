@@ -13,6 +13,7 @@
  */
 package io.airlift.airship.agent;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.airlift.airship.shared.Assignment;
 import io.airlift.airship.shared.AssignmentRepresentation;
@@ -48,7 +49,8 @@ public class TestAssignmentResource
             AssignmentRepresentation.from(APPLE_V2),
             "fetch://binary.tar.gz",
             "fetch://config.config",
-            ImmutableMap.of("memory", 512)
+            ImmutableMap.of("memory", 512),
+            ImmutableList.of("http://peer:8080/")
     );
 
     @BeforeMethod
@@ -0,0 +1,132 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.airship.agent;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import io.airlift.airship.shared.SlotLifecycleState;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static org.testng.Assert.assertEquals;
+
+public class TestCachingLifecycleManager extends AbstractLifecycleManagerTest
+{
+    private File tempDir;
+    private CountingLifecycleManager delegate;
+
+    @BeforeMethod
+    protected void setUp()
+            throws Exception
+    {
+        tempDir = Files.createTempDir().getCanonicalFile();
+        delegate = new CountingLifecycleManager();
+        manager = new CachingLifecycleManager(delegate, new Duration(1, TimeUnit.DAYS));
+        appleDeployment = new Deployment(
+                UUID.randomUUID(),
+                "location/apple",
+                new File(tempDir, "apple"),
+                new File(tempDir, "apple-data"),
+                APPLE_ASSIGNMENT,
+                ImmutableMap.<String, Integer>of("memory", 512));
+        bananaDeployment = new Deployment(
+                UUID.randomUUID(),
+                "location/banana",
+                new File(tempDir, "banana"),
+                new File(tempDir, "banana-data"),
+                BANANA_ASSIGNMENT,
+                ImmutableMap.<String, Integer>of("cpu", 1));
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        if (tempDir != null) {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Test
+    public void testStatusIsCached()
+    {
+        assertEquals(manager.status(appleDeployment), STOPPED);
+        assertEquals(manager.status(appleDeployment), STOPPED);
+        assertEquals(manager.status(appleDeployment), STOPPED);
+        assertEquals(delegate.getStatusCount(), 1);
+
+        // lifecycle commands update the tracked state without asking for status
+        assertEquals(manager.start(appleDeployment), RUNNING);
+        assertEquals(manager.status(appleDeployment), RUNNING);
+        assertEquals(delegate.getStatusCount(), 1);
+    }
+
+    @Test
+    public void testPidFileChangeTriggersRefresh()
+            throws Exception
+    {
+        assertEquals(manager.status(appleDeployment), STOPPED);
+        assertEquals(delegate.getStatusCount(), 1);
+
+        // process started outside of the agent
+        delegate.start(appleDeployment);
+        File pidFile = new File(appleDeployment.getDataDir(), "var/run/launcher.pid");
+        pidFile.getParentFile().mkdirs();
+        Files.write("12345\n", pidFile, UTF_8);
+
+        assertEquals(manager.status(appleDeployment), RUNNING);
+        assertEquals(delegate.getStatusCount(), 2);
+        assertEquals(manager.status(appleDeployment), RUNNING);
+        assertEquals(delegate.getStatusCount(), 2);
+    }
+
+    @Test
+    public void testRefreshInterval()
+    {
+        manager = new CachingLifecycleManager(delegate, new Duration(0, TimeUnit.MILLISECONDS));
+
+        assertEquals(manager.status(appleDeployment), STOPPED);
+        delegate.start(appleDeployment);
+        assertEquals(manager.status(appleDeployment), RUNNING);
+        assertEquals(delegate.getStatusCount(), 2);
+    }
+
+    private static class CountingLifecycleManager extends MockLifecycleManager
+    {
+        private int statusCount;
+
+        @Override
+        public SlotLifecycleState status(Deployment deployment)
+        {
+            statusCount++;
+            return super.status(deployment);
+        }
+
+        public int getStatusCount()
+        {
+            return statusCount;
+        }
+    }
+}
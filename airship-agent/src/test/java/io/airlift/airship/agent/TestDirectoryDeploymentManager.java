@@ -13,6 +13,7 @@
  */
 package io.airlift.airship.agent;
 
+import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 import io.airlift.airship.shared.InstallationHelper;
 import org.testng.annotations.AfterMethod;
@@ -22,14 +23,20 @@ import org.testng.annotations.Test;
 import java.io.File;
 
 import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.FileUtils.listFiles;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 public class TestDirectoryDeploymentManager extends AbstractDeploymentManagerTest
 {
     private File tempDir;
+    private File cacheDir;
     private InstallationHelper installationHelper;
+    private ArtifactCache artifactCache;
+    private InstallationStore installationStore;
 
     @BeforeMethod
     public void setUp()
@@ -40,7 +47,10 @@ public class TestDirectoryDeploymentManager extends AbstractDeploymentManagerTes
         bananaInstallation = installationHelper.getBananaInstallation();
         tempDir = Files.createTempDir().getCanonicalFile();
         final AgentConfig config = new AgentConfig();
-        manager = new DirectoryDeploymentManager(tempDir, "/location/test", config.getTarTimeout());
+        cacheDir = Files.createTempDir().getCanonicalFile();
+        artifactCache = new ArtifactCache(cacheDir, config.getArtifactCacheMaxSize());
+        installationStore = new InstallationStore(new File(cacheDir, "installations"));
+        manager = new DirectoryDeploymentManager(tempDir, "/location/test", config.getTarTimeout(), artifactCache, installationStore);
     }
 
     @AfterMethod
@@ -49,6 +59,9 @@ public class TestDirectoryDeploymentManager extends AbstractDeploymentManagerTes
         if (tempDir != null) {
             deleteRecursively(tempDir);
         }
+        if (cacheDir != null) {
+            deleteRecursively(cacheDir);
+        }
         if (installationHelper != null) {
             installationHelper.destroy();
         }
@@ -63,9 +76,92 @@ public class TestDirectoryDeploymentManager extends AbstractDeploymentManagerTes
 
         // replace the deployment manager with a new one, which will cause the persistent data to reload
         final AgentConfig config = new AgentConfig();
-        manager = new DirectoryDeploymentManager(tempDir, appleDeployment.getLocation(), config.getTarTimeout());
+        manager = new DirectoryDeploymentManager(tempDir, appleDeployment.getLocation(), config.getTarTimeout(), artifactCache, installationStore);
 
         // active deployment should still be apple
         assertEquals(manager.getDeployment(), appleDeployment);
     }
+
+    @Test
+    public void testReinstallUsesCache()
+    {
+        manager.install(appleInstallation);
+        manager.clear();
+        manager.install(bananaInstallation);
+
+        // apple and banana use the same binary and config file
+        assertEquals(artifactCache.getMisses(), 2);
+        assertEquals(artifactCache.getHits(), 2);
+    }
+
+    @Test
+    public void testStagedUpgrade()
+            throws Exception
+    {
+        Deployment appleDeployment = manager.install(appleInstallation);
+        File appleInstallationDir = appleDeployment.getDeploymentDir().getCanonicalFile();
+
+        // staging does not touch the active deployment
+        manager.stage(bananaInstallation);
+        assertEquals(manager.getDeployment(), appleDeployment);
+        assertEquals(appleDeployment.getDeploymentDir().getCanonicalFile(), appleInstallationDir);
+
+        Deployment bananaDeployment = manager.activate();
+        assertEquals(manager.getDeployment(), bananaDeployment);
+        assertEquals(bananaDeployment.getAssignment(), bananaInstallation.getAssignment());
+        assertEquals(bananaDeployment.getDeploymentDir(), appleDeployment.getDeploymentDir());
+
+        // the apple tree is kept for rollback
+        assertTrue(appleInstallationDir.isDirectory());
+        File bananaInstallationDir = bananaDeployment.getDeploymentDir().getCanonicalFile();
+        assertFalse(bananaInstallationDir.equals(appleInstallationDir));
+
+        // rolling back reuses the kept tree without downloading anything
+        long requests = artifactCache.getHits() + artifactCache.getMisses();
+        manager.stage(appleInstallation);
+        assertEquals(manager.activate(), appleDeployment);
+        assertEquals(appleDeployment.getDeploymentDir().getCanonicalFile(), appleInstallationDir);
+        assertEquals(artifactCache.getHits() + artifactCache.getMisses(), requests);
+
+        // the reloaded slot sees the rolled back deployment
+        manager = new DirectoryDeploymentManager(tempDir, appleDeployment.getLocation(), new AgentConfig().getTarTimeout(), artifactCache, installationStore);
+        assertEquals(manager.getDeployment(), appleDeployment);
+    }
+
+    @Test
+    public void testInstallationsShareBinary()
+            throws Exception
+    {
+        File otherSlotDir = new File(tempDir, "other-slot");
+        DirectoryDeploymentManager otherManager = new DirectoryDeploymentManager(otherSlotDir, "/location/other", new AgentConfig().getTarTimeout(), artifactCache, installationStore);
+
+        File appleDir = manager.install(appleInstallation).getDeploymentDir();
+        File bananaDir = otherManager.install(bananaInstallation).getDeploymentDir();
+
+        // apple and banana use the same binary, which is extracted once and linked into both slots
+        assertEquals(installationStore.getExtractions(), 1);
+        assertTrue(installationStore.getLinkedFiles() > 0);
+        assertEquals(getLinkCount(new File(appleDir, "bin/launcher")), 3);
+        assertEquals(getLinkCount(new File(bananaDir, "bin/launcher")), 3);
+
+        // the node config is written into the private etc dir of each slot
+        File appleConfig = new File(appleDir, "etc/node.properties");
+        appleConfig.getParentFile().mkdirs();
+        Files.write("node.id=apple", appleConfig, Charsets.UTF_8);
+        assertEquals(getLinkCount(appleConfig), 1);
+        assertFalse(new File(bananaDir, "etc/node.properties").exists());
+
+        // the tree is deleted once no slot uses it
+        manager.clear();
+        assertEquals(getLinkCount(new File(bananaDir, "bin/launcher")), 2);
+        assertEquals(listFiles(new File(cacheDir, "installations")).size(), 2, "tree and references of the banana slot");
+        otherManager.clear();
+        assertEquals(listFiles(new File(cacheDir, "installations")).size(), 0);
+    }
+
+    private static int getLinkCount(File file)
+            throws Exception
+    {
+        return (Integer) java.nio.file.Files.getAttribute(file.toPath(), "unix:nlink");
+    }
 }
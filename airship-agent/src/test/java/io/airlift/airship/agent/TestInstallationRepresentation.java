@@ -14,6 +14,7 @@
 package io.airlift.airship.agent;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
 import io.airlift.json.JsonCodec;
@@ -34,7 +35,8 @@ public class TestInstallationRepresentation
             AssignmentRepresentation.from(APPLE_ASSIGNMENT),
             "fetch://binary.tar.gz",
             "fetch://config.config",
-            ImmutableMap.of("memory", 512)
+            ImmutableMap.of("memory", 512),
+            ImmutableList.of("http://peer:8080/")
     );
 
     @Test
@@ -43,6 +45,7 @@ public class TestInstallationRepresentation
         String json = codec.toJson(expected);
         InstallationRepresentation actual = codec.fromJson(json);
         assertEquals(actual, expected);
+        assertEquals(actual.getBinaryPeers(), expected.getBinaryPeers());
     }
 
     @Test
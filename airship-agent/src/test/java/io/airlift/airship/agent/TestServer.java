@@ -13,10 +13,14 @@
  */
 package io.airlift.airship.agent;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 import com.google.common.io.Resources;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import io.airlift.airship.agent.ArtifactCache.CachedArtifact;
 import io.airlift.airship.shared.HttpUriBuilder;
 import io.airlift.airship.shared.Installation;
 import io.airlift.airship.shared.InstallationHelper;
@@ -39,6 +43,7 @@ import io.airlift.jaxrs.JaxrsModule;
 import io.airlift.json.JsonCodec;
 import io.airlift.json.JsonModule;
 import io.airlift.node.testing.TestingNodeModule;
+import io.airlift.units.DataSize;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
@@ -54,7 +59,9 @@ import java.util.Map;
 import java.util.UUID;
 
 import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.net.HttpHeaders.CONTENT_RANGE;
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static com.google.common.net.HttpHeaders.RANGE;
 import static io.airlift.airship.shared.ExtraAssertions.assertEqualsNoOrder;
 import static io.airlift.airship.shared.FileUtils.createTempDir;
 import static io.airlift.airship.shared.FileUtils.deleteRecursively;
@@ -223,6 +230,73 @@ public class TestServer
         assertEqualsNoOrder(response, expected);
     }
 
+    @Test
+    public void testDownloadArtifactFromPeer()
+            throws Exception
+    {
+        // the agent caches the binary while installing it
+        agent.install(appleInstallation);
+
+        File cacheDir = createTempDir("peer-cache");
+        try {
+            ArtifactCache artifactCache = new ArtifactCache(cacheDir, new DataSize(1, DataSize.Unit.GIGABYTE));
+            try (CachedArtifact artifact = artifactCache.get(appleInstallation.getBinaryFile(), ImmutableList.of(server.getBaseUrl()))) {
+                assertEquals(Files.hash(artifact.getFile(), Hashing.sha1()), Files.hash(new File(appleInstallation.getBinaryFile()), Hashing.sha1()));
+            }
+            assertEquals(artifactCache.getPeerDownloads(), 1);
+        }
+        finally {
+            deleteRecursively(cacheDir);
+        }
+    }
+
+    @Test
+    public void testUncachedLocalArtifactNotServed()
+            throws Exception
+    {
+        URI uri = uriBuilderFrom(server.getBaseUrl())
+                .appendPath("/v1/agent/artifact")
+                .addParameter("uri", new File(tempDir, "airship-slot-id.txt").toURI().toString())
+                .build();
+        Request request = Request.Builder.prepareGet().setUri(uri).build();
+        StatusResponse response = client.execute(request, createStatusResponseHandler());
+        assertEquals(response.getStatusCode(), Status.NOT_FOUND.getStatusCode());
+    }
+
+    @Test
+    public void testUncachedRemoteArtifactNotFetched()
+            throws Exception
+    {
+        // the agent must not fetch arbitrary urls on behalf of a peer
+        URI uri = uriBuilderFrom(server.getBaseUrl())
+                .appendPath("/v1/agent/artifact")
+                .addParameter("uri", uriBuilderFrom(server.getBaseUrl()).appendPath("/v1/agent/slot").build().toString())
+                .build();
+        Request request = Request.Builder.prepareGet().setUri(uri).build();
+        StatusResponse response = client.execute(request, createStatusResponseHandler());
+        assertEquals(response.getStatusCode(), Status.NOT_FOUND.getStatusCode());
+    }
+
+    @Test
+    public void testServeArtifactRange()
+            throws Exception
+    {
+        agent.install(appleInstallation);
+        long length = new File(appleInstallation.getBinaryFile()).length();
+
+        URI uri = uriBuilderFrom(server.getBaseUrl())
+                .appendPath("/v1/agent/artifact")
+                .addParameter("uri", appleInstallation.getBinaryFile().toString())
+                .build();
+        Request request = Request.Builder.prepareGet()
+                .setUri(uri)
+                .setHeader(RANGE, "bytes=0-9")
+                .build();
+        StatusResponse response = client.execute(request, createStatusResponseHandler());
+        assertEquals(response.getStatusCode(), 206);
+        assertEquals(response.getHeader(CONTENT_RANGE), "bytes 0-9/" + length);
+    }
+
     @Test
     public void testInstallSlot()
             throws Exception
@@ -263,6 +263,9 @@ public class Airship
             if ("true".equalsIgnoreCase(config.get("environment." + environmentRef + ".use-internal-address"))) {
                 commanderFactory.setUseInternalAddress(true);
             }
+            if (!"false".equalsIgnoreCase(config.get("environment." + environmentRef + ".response-cache"))) {
+                commanderFactory.setResponseCacheDir(new File(HttpResponseCache.DEFAULT_CACHE_DIR, environmentRef));
+            }
 
             Commander commander = commanderFactory.build();
 
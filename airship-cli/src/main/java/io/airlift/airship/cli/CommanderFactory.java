@@ -7,11 +7,15 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.net.InetAddresses;
 import io.airlift.airship.agent.Agent;
+import io.airlift.airship.agent.AgentConfig;
+import io.airlift.airship.agent.ArtifactCache;
 import io.airlift.airship.agent.DeploymentManagerFactory;
 import io.airlift.airship.agent.DirectoryDeploymentManagerFactory;
+import io.airlift.airship.agent.InstallationStore;
 import io.airlift.airship.agent.LauncherLifecycleManager;
 import io.airlift.airship.agent.LifecycleManager;
 import io.airlift.airship.agent.Slot;
+import io.airlift.airship.coordinator.ArtifactExistenceChecker;
 import io.airlift.airship.coordinator.Coordinator;
 import io.airlift.airship.coordinator.CoordinatorConfig;
 import io.airlift.airship.coordinator.HttpRepository;
@@ -37,6 +41,7 @@ import io.airlift.airship.shared.Repository;
 import io.airlift.airship.shared.RepositorySet;
 import io.airlift.airship.shared.SlotStatus;
 import io.airlift.discovery.client.ServiceDescriptor;
+import io.airlift.http.client.ApacheHttpClient;
 import io.airlift.json.JsonCodec;
 import io.airlift.units.Duration;
 
@@ -67,6 +72,7 @@ public class CommanderFactory
     private String externalAddress;
     private boolean useInternalAddress;
     private boolean allowDuplicateInstallations;
+    private File responseCacheDir;
 
     public CommanderFactory setEnvironment(String environment)
     {
@@ -146,6 +152,11 @@ public class CommanderFactory
         this.useInternalAddress = useInternalAddress;
     }
 
+    public void setResponseCacheDir(File responseCacheDir)
+    {
+        this.responseCacheDir = responseCacheDir;
+    }
+
     public Commander build()
             throws IOException
     {
@@ -153,7 +164,11 @@ public class CommanderFactory
 
         String scheme = coordinatorUri.getScheme();
         if ("http".equals(scheme)) {
-            return new HttpCommander(coordinatorUri, useInternalAddress);
+            HttpResponseCache responseCache = null;
+            if (responseCacheDir != null) {
+                responseCache = new HttpResponseCache(responseCacheDir);
+            }
+            return new HttpCommander(coordinatorUri, useInternalAddress, responseCache);
         }
         else if ("file".equals(scheme) || scheme == null) {
             return createLocalCommander();
@@ -172,7 +187,11 @@ public class CommanderFactory
         //
         String slotsDir = coordinatorUri.getPath();
         String agentLocation = this.location == null ? Joiner.on('/').join("", "local", agentId, "agent") : location;
-        DeploymentManagerFactory deploymentManagerFactory = new DirectoryDeploymentManagerFactory(agentLocation, slotsDir, COMMAND_TIMEOUT);
+        DeploymentManagerFactory deploymentManagerFactory = new DirectoryDeploymentManagerFactory(agentLocation,
+                slotsDir,
+                COMMAND_TIMEOUT,
+                new ArtifactCache(new AgentConfig().setSlotsDir(slotsDir)),
+                new InstallationStore(new AgentConfig().setSlotsDir(slotsDir)));
 
         LifecycleManager lifecycleManager = new LauncherLifecycleManager(
                 environment,
@@ -199,9 +218,10 @@ public class CommanderFactory
         CoordinatorConfig coordinatorConfig = new CoordinatorConfig()
                 .setRepositories(repositories)
                 .setDefaultRepositoryGroupId(mavenDefaultGroupIds);
+        ArtifactExistenceChecker existenceChecker = new ArtifactExistenceChecker(new ApacheHttpClient(), coordinatorConfig);
         Repository repository = new RepositorySet(ImmutableSet.<Repository>of(
-                new MavenRepository(coordinatorConfig),
-                new HttpRepository(coordinatorConfig)));
+                new MavenRepository(coordinatorConfig, existenceChecker),
+                new HttpRepository(coordinatorConfig, existenceChecker)));
         ServiceInventory serviceInventory = new HttpServiceInventory(repository,
                 JsonCodec.listJsonCodec(ServiceDescriptor.class),
                 new File(slotsDir, "service-inventory-cache"));
@@ -3,6 +3,8 @@ package io.airlift.airship.cli;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import io.airlift.airship.cli.HttpResponseCache.CachedResponse;
+import io.airlift.airship.cli.HttpResponseCache.CachedResponseHandler;
 import io.airlift.airship.coordinator.AgentProvisioningRepresentation;
 import io.airlift.airship.coordinator.CoordinatorProvisioningRepresentation;
 import io.airlift.airship.shared.AgentLifecycleState;
@@ -16,7 +18,6 @@ import io.airlift.airship.shared.SlotStatusRepresentation;
 import io.airlift.airship.shared.UpgradeVersions;
 import io.airlift.http.client.ApacheHttpClient;
 import io.airlift.http.client.BodyGenerator;
-import io.airlift.http.client.FullJsonResponseHandler.JsonResponse;
 import io.airlift.http.client.HttpClient;
 import io.airlift.http.client.HttpClientConfig;
 import io.airlift.http.client.Request;
@@ -30,12 +31,12 @@ import java.util.Map;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
 import static io.airlift.airship.cli.CommanderResponse.createCommanderResponse;
 import static io.airlift.airship.cli.HttpCommander.TextBodyGenerator.textBodyGenerator;
 import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_AGENTS_VERSION_HEADER;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SLOTS_VERSION_HEADER;
-import static io.airlift.http.client.FullJsonResponseHandler.createFullJsonResponseHandler;
 import static io.airlift.http.client.JsonBodyGenerator.jsonBodyGenerator;
 import static io.airlift.http.client.JsonResponseHandler.createJsonResponseHandler;
 
@@ -55,26 +56,29 @@ public class HttpCommander implements Commander
     private final HttpClient client;
     private final URI coordinatorUri;
     private final boolean useInternalAddress;
+    private final HttpResponseCache responseCache;
 
     public HttpCommander(URI coordinatorUri, boolean useInternalAddress)
             throws IOException
+    {
+        this(coordinatorUri, useInternalAddress, null);
+    }
+
+    public HttpCommander(URI coordinatorUri, boolean useInternalAddress, HttpResponseCache responseCache)
+            throws IOException
     {
         Preconditions.checkNotNull(coordinatorUri, "coordinatorUri is null");
         this.coordinatorUri = coordinatorUri;
         this.client = new ApacheHttpClient(new HttpClientConfig());
         this.useInternalAddress = useInternalAddress;
+        this.responseCache = responseCache;
     }
 
     @Override
     public CommanderResponse<List<SlotStatusRepresentation>> show(SlotFilter slotFilter)
     {
         URI uri = slotFilter.toUri(uriBuilderFrom(coordinatorUri).replacePath("/v1/slot"));
-        Request request = Request.Builder.prepareGet()
-                .setUri(uri)
-                .build();
-
-        JsonResponse<List<SlotStatusRepresentation>> response = client.execute(request, createFullJsonResponseHandler(SLOTS_CODEC));
-        return createCommanderResponse(response.getHeader(AIRSHIP_SLOTS_VERSION_HEADER), response.getValue());
+        return executeCachedGet(uri, AIRSHIP_SLOTS_VERSION_HEADER, SLOTS_CODEC);
     }
 
     @Override
@@ -178,12 +182,7 @@ public class HttpCommander implements Commander
     public List<CoordinatorStatusRepresentation> showCoordinators(CoordinatorFilter coordinatorFilter)
     {
         URI uri = coordinatorFilter.toUri(uriBuilderFrom(coordinatorUri).replacePath("v1/admin/coordinator"));
-        Request request = Request.Builder.prepareGet()
-                .setUri(uri)
-                .build();
-
-        List<CoordinatorStatusRepresentation> coordinators = client.execute(request, createJsonResponseHandler(COORDINATORS_CODEC));
-        return coordinators;
+        return executeCachedGet(uri, null, COORDINATORS_CODEC).getValue();
     }
 
     @Override
@@ -273,15 +272,7 @@ public class HttpCommander implements Commander
     public CommanderResponse<List<AgentStatusRepresentation>> showAgents(AgentFilter agentFilter)
     {
         URI uri = agentFilter.toUri(uriBuilderFrom(coordinatorUri).replacePath("v1/admin/agent"));
-        Request request = Request.Builder.prepareGet()
-                .setUri(uri)
-                .build();
-
-        JsonResponse<List<AgentStatusRepresentation>> response = client.execute(request, createFullJsonResponseHandler(AGENTS_CODEC));
-        if (response.getStatusCode() != 200) {
-            throw new RuntimeException(response.getStatusMessage());
-        }
-        return CommanderResponse.createCommanderResponse(response.getHeader(AIRSHIP_AGENTS_VERSION_HEADER), response.getValue());
+        return executeCachedGet(uri, AIRSHIP_AGENTS_VERSION_HEADER, AGENTS_CODEC);
     }
 
     @Override
@@ -381,6 +372,31 @@ public class HttpCommander implements Commander
         return true;
     }
 
+    private <T> CommanderResponse<T> executeCachedGet(URI uri, String versionHeader, JsonCodec<T> codec)
+    {
+        CachedResponse cachedResponse = null;
+        if (responseCache != null) {
+            cachedResponse = responseCache.get(uri);
+        }
+
+        Request.Builder requestBuilder = Request.Builder.prepareGet().setUri(uri);
+        if (cachedResponse != null) {
+            requestBuilder.setHeader(IF_NONE_MATCH, cachedResponse.getEntityTag());
+        }
+
+        CachedResponse response = client.execute(requestBuilder.build(), new CachedResponseHandler(versionHeader));
+        if (response == null) {
+            // not modified
+            Preconditions.checkState(cachedResponse != null, "Coordinator returned 304 for unconditional request %s", uri);
+            response = cachedResponse;
+        }
+        else if (responseCache != null) {
+            responseCache.put(uri, response);
+        }
+
+        return createCommanderResponse(response.getVersion(), codec.fromJson(response.getBody()));
+    }
+
     public static class TextBodyGenerator implements BodyGenerator
     {
         public static TextBodyGenerator textBodyGenerator(String instance)
@@ -0,0 +1,174 @@
+package io.airlift.airship.cli;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.json.JsonCodec;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+
+import static com.google.common.net.HttpHeaders.ETAG;
+
+/**
+ * Stores the last response for a GET request on disk so the next request
+ * can be sent with If-None-Match.  The cache is best effort: any IO problem
+ * simply results in a full request.
+ */
+public class HttpResponseCache
+{
+    public static final File DEFAULT_CACHE_DIR = new File(System.getProperty("user.home", "."), ".airship/cache");
+
+    private static final JsonCodec<CachedResponse> CACHED_RESPONSE_CODEC = JsonCodec.jsonCodec(CachedResponse.class);
+
+    private final File cacheDir;
+
+    public HttpResponseCache(File cacheDir)
+    {
+        Preconditions.checkNotNull(cacheDir, "cacheDir is null");
+        this.cacheDir = cacheDir;
+    }
+
+    public CachedResponse get(URI uri)
+    {
+        File file = getCacheFile(uri);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            CachedResponse response = CACHED_RESPONSE_CODEC.fromJson(Files.toString(file, Charsets.UTF_8));
+            // guard against hash collisions
+            if (!uri.toString().equals(response.getUri())) {
+                return null;
+            }
+            return response;
+        }
+        catch (IOException | IllegalArgumentException ignored) {
+            return null;
+        }
+    }
+
+    public void put(URI uri, CachedResponse response)
+    {
+        if (response.getEntityTag() == null) {
+            return;
+        }
+
+        File file = getCacheFile(uri);
+        File tempFile = new File(cacheDir, file.getName() + ".tmp");
+        try {
+            Files.createParentDirs(file);
+            Files.write(CACHED_RESPONSE_CODEC.toJson(response), tempFile, Charsets.UTF_8);
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+            }
+        }
+        catch (IOException ignored) {
+            tempFile.delete();
+        }
+    }
+
+    private File getCacheFile(URI uri)
+    {
+        return new File(cacheDir, Hashing.md5().hashString(uri.toString(), Charsets.UTF_8).toString() + ".json");
+    }
+
+    public static class CachedResponse
+    {
+        private final String uri;
+        private final String entityTag;
+        private final String version;
+        private final String body;
+
+        @JsonCreator
+        public CachedResponse(@JsonProperty("uri") String uri,
+                @JsonProperty("entityTag") String entityTag,
+                @JsonProperty("version") String version,
+                @JsonProperty("body") String body)
+        {
+            this.uri = uri;
+            this.entityTag = entityTag;
+            this.version = version;
+            this.body = body;
+        }
+
+        @JsonProperty
+        public String getUri()
+        {
+            return uri;
+        }
+
+        @JsonProperty
+        public String getEntityTag()
+        {
+            return entityTag;
+        }
+
+        @JsonProperty
+        public String getVersion()
+        {
+            return version;
+        }
+
+        @JsonProperty
+        public String getBody()
+        {
+            return body;
+        }
+    }
+
+    /**
+     * Reads the raw body, entity tag and version header of a response.
+     * Returns null if the server answered 304 Not Modified.
+     */
+    public static class CachedResponseHandler implements ResponseHandler<CachedResponse, RuntimeException>
+    {
+        private final String versionHeader;
+
+        public CachedResponseHandler(String versionHeader)
+        {
+            this.versionHeader = versionHeader;
+        }
+
+        @Override
+        public RuntimeException handleException(Request request, Exception exception)
+        {
+            if (exception instanceof RuntimeException) {
+                return (RuntimeException) exception;
+            }
+            return new RuntimeException("Error requesting " + request.getUri(), exception);
+        }
+
+        @Override
+        public CachedResponse handle(Request request, Response response)
+        {
+            if (response.getStatusCode() == 304) {
+                return null;
+            }
+            if (response.getStatusCode() != 200) {
+                throw new RuntimeException(response.getStatusMessage());
+            }
+
+            String body;
+            try {
+                body = CharStreams.toString(new InputStreamReader(response.getInputStream(), Charsets.UTF_8));
+            }
+            catch (IOException e) {
+                throw new RuntimeException("Error reading response from " + request.getUri(), e);
+            }
+            return new CachedResponse(request.getUri().toString(),
+                    response.getHeader(ETAG),
+                    versionHeader == null ? null : response.getHeader(versionHeader),
+                    body);
+        }
+    }
+}
@@ -69,7 +69,7 @@ public class LocalCommander implements Commander
         // update just in case something changed
         updateServiceInventory();
 
-        return createCommanderResponse(createSlotsVersion(slots), transform(slots, fromSlotStatus(coordinator.getAllSlotStatus(), repository)));
+        return createCommanderResponse(createSlotsVersion(slots), transform(slots, fromSlotStatus(coordinator.getSnapshot().getSlotStatusRepresentationFactory(repository))));
     }
 
     @Override
@@ -93,7 +93,7 @@ public class LocalCommander implements Commander
         updateServiceInventory();
 
         // calculate unique prefix size with the new slots included
-        return transform(slots, fromSlotStatus(coordinator.getAllSlotStatus(), repository));
+        return transform(slots, fromSlotStatus(coordinator.getSnapshot().getSlotStatusRepresentationFactory(repository)));
     }
 
     @Override
@@ -110,7 +110,7 @@ public class LocalCommander implements Commander
         updateServiceInventory();
 
         // build results
-        return transform(slots, fromSlotStatus(coordinator.getAllSlotStatus(), repository));
+        return transform(slots, fromSlotStatus(coordinator.getSnapshot().getSlotStatusRepresentationFactory(repository)));
     }
 
     @Override
@@ -130,7 +130,7 @@ public class LocalCommander implements Commander
         updateServiceInventory();
 
         // build results
-        return transform(slots, fromSlotStatus(coordinator.getAllSlotStatus(), repository));
+        return transform(slots, fromSlotStatus(coordinator.getSnapshot().getSlotStatusRepresentationFactory(repository)));
     }
 
     @Override
@@ -147,7 +147,7 @@ public class LocalCommander implements Commander
         updateServiceInventory();
 
         // build results
-        return transform(slots, fromSlotStatus(coordinator.getAllSlotStatus(), repository));
+        return transform(slots, fromSlotStatus(coordinator.getSnapshot().getSlotStatusRepresentationFactory(repository)));
     }
 
     @Override
@@ -164,7 +164,7 @@ public class LocalCommander implements Commander
         updateServiceInventory();
 
         // build results
-        return transform(slots, fromSlotStatus(coordinator.getAllSlotStatus(), repository));
+        return transform(slots, fromSlotStatus(coordinator.getSnapshot().getSlotStatusRepresentationFactory(repository)));
     }
 
     @Override
@@ -233,7 +233,7 @@ public class LocalCommander implements Commander
 
         // update just in case something changed
         updateServiceInventory();
-        return createCommanderResponse(createAgentsVersion(agentStatuses), transform(agentStatuses, fromAgentStatus(coordinator.getAgents(), repository)));
+        return createCommanderResponse(createAgentsVersion(agentStatuses), transform(agentStatuses, fromAgentStatus(coordinator.getSnapshot().getAgentStatusRepresentationFactory(repository))));
     }
 
     @Override
@@ -9,10 +9,12 @@ import io.airlift.airship.shared.SlotStatus;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -20,11 +22,15 @@ import javax.ws.rs.core.UriInfo;
 import java.util.List;
 
 import static com.google.common.collect.Lists.transform;
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
 import static io.airlift.airship.shared.AgentStatus.idGetter;
 import static io.airlift.airship.shared.AgentStatusRepresentation.fromAgentStatus;
 import static io.airlift.airship.shared.CoordinatorStatusRepresentation.fromCoordinatorStatus;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_AGENTS_VERSION_HEADER;
+import static io.airlift.airship.shared.VersionsUtil.createAgentsEntityTag;
 import static io.airlift.airship.shared.VersionsUtil.createAgentsVersion;
+import static io.airlift.airship.shared.VersionsUtil.createCoordinatorsEntityTag;
+import static io.airlift.airship.shared.VersionsUtil.isNotModified;
 
 @Path("/v1/admin/")
 public class AdminResource
@@ -42,11 +48,20 @@ public class AdminResource
     @GET
     @Path("/coordinator")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllCoordinators(@Context UriInfo uriInfo)
+    public Response getAllCoordinators(@Context UriInfo uriInfo, @HeaderParam(IF_NONE_MATCH) String ifNoneMatch)
     {
+        List<CoordinatorStatus> allCoordinators = coordinator.getCoordinators();
+
+        EntityTag entityTag = new EntityTag(createCoordinatorsEntityTag(uriInfo.getRequestUri().getRawQuery(), allCoordinators));
+        if (isNotModified(ifNoneMatch, entityTag.getValue())) {
+            return Response.notModified(entityTag).build();
+        }
+
         Predicate<CoordinatorStatus> coordinatorPredicate = CoordinatorFilterBuilder.build(uriInfo);
         List<CoordinatorStatus> coordinators = coordinator.getCoordinators(coordinatorPredicate);
-        return Response.ok(transform(coordinators, fromCoordinatorStatus(coordinator.getCoordinators()))).build();
+        return Response.ok(transform(coordinators, fromCoordinatorStatus(allCoordinators)))
+                .tag(entityTag)
+                .build();
     }
 
     @POST
@@ -72,18 +87,28 @@ public class AdminResource
     @GET
     @Path("/agent")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllAgents(@Context UriInfo uriInfo)
+    public Response getAllAgents(@Context UriInfo uriInfo, @HeaderParam(IF_NONE_MATCH) String ifNoneMatch)
     {
-        List<SlotStatus> allSlotStatus = coordinator.getAllSlotStatus();
+        ClusterSnapshot snapshot = coordinator.getSnapshot();
+        List<AgentStatus> allAgents = snapshot.getAgents();
+        List<SlotStatus> allSlotStatus = snapshot.getSlots();
+
+        // skip building the representation if the client already has it
+        EntityTag entityTag = new EntityTag(createAgentsEntityTag(uriInfo.getRequestUri().getRawQuery(), allAgents, transform(allSlotStatus, SlotStatus.uuidGetter())));
+        if (isNotModified(ifNoneMatch, entityTag.getValue())) {
+            return Response.notModified(entityTag).build();
+        }
+
         Predicate<AgentStatus> agentPredicate = AgentFilterBuilder.build(uriInfo,
-                transform(coordinator.getAgents(), idGetter()),
+                transform(allAgents, idGetter()),
                 transform(allSlotStatus, SlotStatus.uuidGetter()),
                 false,
                 repository);
 
-        List<AgentStatus> agents = coordinator.getAgents(agentPredicate);
+        List<AgentStatus> agents = snapshot.getAgents(agentPredicate);
 
-        return Response.ok(transform(agents, fromAgentStatus(coordinator.getAgents(), repository)))
+        return Response.ok(transform(agents, fromAgentStatus(snapshot.getAgentStatusRepresentationFactory(repository))))
+                .tag(entityTag)
                 .header(AIRSHIP_AGENTS_VERSION_HEADER, createAgentsVersion(agents))
                 .build();
     }
@@ -105,7 +130,7 @@ public class AdminResource
                 provisioning.getKeyPair(),
                 provisioning.getSecurityGroup());
 
-        return Response.ok(transform(agents, fromAgentStatus(coordinator.getAgents(), repository))).build();
+        return Response.ok(transform(agents, fromAgentStatus(coordinator.getSnapshot().getAgentStatusRepresentationFactory(repository)))).build();
     }
 
     @DELETE
@@ -0,0 +1,196 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Closeables;
+import com.google.common.net.HttpHeaders;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.StatusResponseHandler.StatusResponse;
+import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+
+import javax.inject.Inject;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
+
+/**
+ * Checks whether artifacts exist in a repository.  HTTP locations are checked
+ * with a HEAD request on a shared, pooled client, falling back to a GET of the
+ * first byte for servers that reject HEAD, so no check downloads the artifact.
+ * Other locations, such as file repositories, are checked by opening them.
+ * <p/>
+ * Results are kept in a bounded cache.  Locations that exist and are known to
+ * be immutable are kept until evicted; everything else expires after the TTL.
+ * Only a definitive answer is cached: a location is remembered as missing
+ * only when the repository says so (404 or 410, or a missing file), so a
+ * timeout or server error is reported as missing but checked again next time.
+ */
+public class ArtifactExistenceChecker
+{
+    private static final Logger log = Logger.get(ArtifactExistenceChecker.class);
+
+    private final HttpClient httpClient;
+    private final LookupCache<URI, Boolean> existence;
+
+    private final AtomicLong headFallbacks = new AtomicLong();
+    private final AtomicLong transientFailures = new AtomicLong();
+
+    @Inject
+    public ArtifactExistenceChecker(@Global HttpClient httpClient, CoordinatorConfig config)
+    {
+        this(httpClient, Preconditions.checkNotNull(config, "config is null").getRepositoryCacheTtl(), config.getRepositoryCacheMaxSize());
+    }
+
+    public ArtifactExistenceChecker(HttpClient httpClient, Duration cacheTtl, long cacheMaxSize)
+    {
+        Preconditions.checkNotNull(httpClient, "httpClient is null");
+
+        this.httpClient = httpClient;
+        this.existence = new LookupCache<>(cacheTtl, cacheMaxSize);
+    }
+
+    public boolean exists(URI uri)
+    {
+        return exists(uri, false);
+    }
+
+    /**
+     * Checks whether the location exists.  If the location is immutable, a
+     * location that exists is remembered until evicted from the cache.
+     */
+    public boolean exists(final URI uri, boolean immutable)
+    {
+        Preconditions.checkNotNull(uri, "uri is null");
+
+        Boolean exists;
+        try {
+            exists = existence.get(uri, immutable, new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call()
+                {
+                    return check(uri) ? Boolean.TRUE : null;
+                }
+            });
+        }
+        catch (CheckFailedException e) {
+            // not cached, so the next check asks the repository again
+            log.debug(e.getCause(), "error checking URI: %s", uri);
+            transientFailures.incrementAndGet();
+            return false;
+        }
+        return exists != null;
+    }
+
+    @Managed
+    public long getCacheRequests()
+    {
+        return existence.getRequests();
+    }
+
+    @Managed
+    public long getCacheLoads()
+    {
+        return existence.getLoads();
+    }
+
+    @Managed
+    public long getHeadFallbacks()
+    {
+        return headFallbacks.get();
+    }
+
+    @Managed
+    public long getTransientFailures()
+    {
+        return transientFailures.get();
+    }
+
+    @Managed
+    public void flushCache()
+    {
+        existence.invalidateAll();
+    }
+
+    /**
+     * @throws CheckFailedException if the repository did not give a definitive answer
+     */
+    private boolean check(URI uri)
+    {
+        log.debug("checking URI: %s", uri);
+        if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+            return open(uri);
+        }
+
+        int status;
+        try {
+            status = httpClient.execute(Request.Builder.prepareHead().setUri(uri).build(), createStatusResponseHandler()).getStatusCode();
+            if (!isSuccess(status) && !isMissing(status)) {
+                // some servers, such as presigned object stores, reject HEAD
+                headFallbacks.incrementAndGet();
+                Request request = Request.Builder.prepareGet()
+                        .setUri(uri)
+                        .setHeader(HttpHeaders.RANGE, "bytes=0-0")
+                        .build();
+                StatusResponse response = httpClient.execute(request, createStatusResponseHandler());
+                status = response.getStatusCode();
+            }
+        }
+        catch (Exception e) {
+            throw new CheckFailedException(e);
+        }
+
+        if (isSuccess(status)) {
+            return true;
+        }
+        if (isMissing(status)) {
+            return false;
+        }
+        throw new CheckFailedException(new IOException(String.format("Repository returned %s for %s", status, uri)));
+    }
+
+    private static boolean isSuccess(int status)
+    {
+        return status >= 200 && status < 300;
+    }
+
+    private static boolean isMissing(int status)
+    {
+        return status == 404 || status == 410;
+    }
+
+    private static boolean open(URI uri)
+    {
+        InputStream in = null;
+        try {
+            in = uri.toURL().openStream();
+            return true;
+        }
+        catch (FileNotFoundException e) {
+            log.debug("URI does not exist: %s", uri);
+            return false;
+        }
+        catch (Exception e) {
+            throw new CheckFailedException(e);
+        }
+        finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    private static class CheckFailedException
+            extends RuntimeException
+    {
+        private CheckFailedException(Throwable cause)
+        {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,591 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.google.common.io.PatternFilenameFilter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.airlift.airship.shared.ArtifactLeases;
+import io.airlift.log.Logger;
+import io.airlift.units.DataSize;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.GuardedBy;
+import javax.inject.Inject;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.airlift.airship.shared.ArtifactUtils.SHA1_PATTERN;
+import static io.airlift.airship.shared.ArtifactUtils.getPublishedChecksum;
+import static io.airlift.airship.shared.ArtifactUtils.isSnapshot;
+import static io.airlift.airship.shared.ArtifactUtils.openConnection;
+import static io.airlift.airship.shared.ArtifactUtils.toChecksum;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.FileUtils.listFiles;
+
+/**
+ * Disk cache of the binaries and config bundles the coordinator serves to
+ * agents.  Each artifact is downloaded from the upstream repository once, and
+ * the requests for it are served from the partial download while it is being
+ * written, so agents do not wait for the whole artifact.  The download is
+ * verified against the SHA-1 checksum published next to it when there is one,
+ * and the last byte is only served once the artifact has been verified.
+ * Snapshot artifacts can change under the same URI, so they are downloaded
+ * again when the published checksum no longer matches the cached copy.
+ * <p/>
+ * When the cache grows beyond its maximum size the least recently used
+ * artifacts are deleted, except for artifacts that are currently being sent
+ * to an agent.
+ */
+public class ArtifactProxy
+{
+    private static final Logger log = Logger.get(ArtifactProxy.class);
+    private static final String CHECKSUM_SUFFIX = ".sha1";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File cacheDir;
+    private final File tempDir;
+    private final long maxSizeInBytes;
+    private final ExecutorService executor;
+
+    // artifacts are leased by cache key while they are sent to an agent
+    private final ArtifactLeases leases = new ArtifactLeases();
+
+    // cache key -> download in progress
+    private final ConcurrentMap<String, Download> downloads = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Inject
+    public ArtifactProxy(CoordinatorConfig config)
+    {
+        this(new File(Preconditions.checkNotNull(config, "config is null").getArtifactProxyCacheDir()), config.getArtifactProxyMaxSize());
+    }
+
+    public ArtifactProxy(File cacheDir, DataSize maxSize)
+    {
+        Preconditions.checkNotNull(cacheDir, "cacheDir is null");
+        Preconditions.checkNotNull(maxSize, "maxSize is null");
+
+        this.cacheDir = cacheDir;
+        this.tempDir = new File(cacheDir, "tmp");
+        this.maxSizeInBytes = (long) maxSize.getValue(DataSize.Unit.BYTE);
+        this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("artifact-proxy-%s").setDaemon(true).build());
+
+        // discard partial downloads from a previous run; the directories are created on first use
+        if (tempDir.isDirectory()) {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the cached copy of the specified upstream artifact, starting a
+     * download if necessary.  The returned artifact may still be downloading,
+     * in which case reads wait for the bytes to arrive.  The artifact will not
+     * be evicted until the returned handle is closed.
+     */
+    public CachedArtifact get(URI uri)
+            throws IOException
+    {
+        Preconditions.checkNotNull(uri, "uri is null");
+
+        String key = toKey(uri);
+
+        // look up the published checksum before taking the lock, so a slow
+        // repository does not block requests for other artifacts on the stripe
+        boolean published = isSnapshot(uri) || !new File(cacheDir, key).isFile();
+        String publishedChecksum = published ? getPublishedChecksum(uri) : null;
+
+        synchronized (leases.getLock(key)) {
+            // join the download started by another request for the artifact
+            Download download = downloads.get(key);
+            if (download != null) {
+                CachedArtifact artifact = download.acquire();
+                if (artifact != null) {
+                    hits.incrementAndGet();
+                    return artifact;
+                }
+            }
+
+            if (!isSnapshot(uri) || (publishedChecksum != null && publishedChecksum.equals(readChecksum(key)))) {
+                CachedArtifact artifact = acquire(key);
+                if (artifact != null) {
+                    hits.incrementAndGet();
+                    return artifact;
+                }
+            }
+
+            misses.incrementAndGet();
+            if (!published) {
+                // the cached artifact was evicted after the lookup
+                publishedChecksum = getPublishedChecksum(uri);
+            }
+            download = new Download(uri, key, publishedChecksum);
+            try {
+                return download.acquire();
+            }
+            finally {
+                // the download fills the cache even if this request cannot read it
+                downloads.put(key, download);
+                executor.execute(download);
+            }
+        }
+    }
+
+    /**
+     * Returns the SHA-1 checksum of the specified upstream artifact as this
+     * proxy serves it, so agents downloading through the proxy can verify the
+     * download.  The checksum of a cached release artifact is read from the
+     * cache; otherwise the checksum published by the repository is returned,
+     * which the proxy verifies the artifact against when it downloads it.
+     * Returns null if the checksum is not known.  Nothing is downloaded.
+     */
+    public String getChecksum(URI uri)
+    {
+        Preconditions.checkNotNull(uri, "uri is null");
+
+        if (!isSnapshot(uri)) {
+            String checksum = readChecksum(toKey(uri));
+            if (checksum != null) {
+                return checksum;
+            }
+        }
+        return getPublishedChecksum(uri);
+    }
+
+    /**
+     * Returns the length of the specified upstream artifact, or -1 if the
+     * length is not known.  The length of a cached release artifact is read
+     * from the cache; otherwise the repository is asked for the length
+     * without downloading the artifact.
+     *
+     * @throws FileNotFoundException if the repository does not have the artifact
+     */
+    public long getLength(URI uri)
+            throws IOException
+    {
+        Preconditions.checkNotNull(uri, "uri is null");
+
+        String key = toKey(uri);
+        if (!isSnapshot(uri) && readChecksum(key) != null) {
+            File file = new File(cacheDir, key);
+            if (file.isFile()) {
+                return file.length();
+            }
+        }
+
+        URLConnection connection = openConnection(uri);
+        try {
+            if (connection instanceof HttpURLConnection) {
+                HttpURLConnection httpConnection = (HttpURLConnection) connection;
+                httpConnection.setRequestMethod("HEAD");
+                int status = httpConnection.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE) {
+                    throw new FileNotFoundException(uri.toString());
+                }
+                if (status >= 400) {
+                    throw new IOException(String.format("Repository returned %s for %s", status, uri));
+                }
+            }
+            else {
+                // throws FileNotFoundException for a missing file
+                connection.getInputStream().close();
+            }
+            return connection.getContentLengthLong();
+        }
+        finally {
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+    }
+
+    @Managed
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    @Managed
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    @Managed
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    @Managed
+    public long getDownloadsInProgress()
+    {
+        return downloads.size();
+    }
+
+    @Managed
+    public long getSizeInBytes()
+    {
+        long size = 0;
+        for (File file : listArtifactFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    private static String toKey(URI uri)
+    {
+        return Hashing.sha1().hashString(uri.toString(), Charsets.UTF_8).toString();
+    }
+
+    private CachedArtifact acquire(String key)
+    {
+        File file = new File(cacheDir, key);
+        synchronized (leases) {
+            String checksum = readChecksum(key);
+            if (!file.isFile() || checksum == null) {
+                return null;
+            }
+
+            // the open channel keeps reading this copy even if a new snapshot replaces the file
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
+            catch (IOException e) {
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            leases.acquire(key);
+            return new CachedArtifact(key, checksum, channel, null);
+        }
+    }
+
+    private void evict()
+    {
+        synchronized (leases) {
+            for (File file : leases.evict(listArtifactFiles(), maxSizeInBytes)) {
+                new File(cacheDir, file.getName() + CHECKSUM_SUFFIX).delete();
+                evictions.incrementAndGet();
+                log.debug("Evicted artifact %s from proxy cache", file.getName());
+            }
+        }
+    }
+
+    private List<File> listArtifactFiles()
+    {
+        return listFiles(cacheDir, new PatternFilenameFilter(SHA1_PATTERN));
+    }
+
+    private String readChecksum(String key)
+    {
+        File file = new File(cacheDir, key + CHECKSUM_SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return toChecksum(Files.toString(file, Charsets.UTF_8), SHA1_PATTERN);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Copies an artifact from the upstream repository into the cache while
+     * the requests for it read the bytes written so far.
+     */
+    private class Download
+            implements Runnable
+    {
+        private final URI uri;
+        private final String key;
+        private final String publishedChecksum;
+        private final URLConnection connection;
+        private final InputStream input;
+        private final long length;
+        private final File file;
+
+        @GuardedBy("this")
+        private long written;
+        @GuardedBy("this")
+        private boolean complete;
+        @GuardedBy("this")
+        private IOException failure;
+
+        private Download(URI uri, String key, String publishedChecksum)
+                throws IOException
+        {
+            this.uri = uri;
+            this.key = key;
+            this.publishedChecksum = publishedChecksum;
+
+            // open the connection in the requesting thread, so a missing artifact is reported to the request
+            connection = openConnection(uri);
+            try {
+                input = connection.getInputStream();
+                length = connection.getContentLengthLong();
+                tempDir.mkdirs();
+                file = File.createTempFile("download", ".tmp", tempDir);
+            }
+            catch (IOException e) {
+                disconnect();
+                throw e;
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                String checksum = copy();
+                if (publishedChecksum != null && !publishedChecksum.equals(checksum)) {
+                    throw new IOException(String.format("Checksum of %s is %s but expected %s", uri, checksum, publishedChecksum));
+                }
+                complete(checksum);
+            }
+            catch (IOException e) {
+                log.warn("Unable to download %s: %s", uri, e.getMessage());
+                fail(e);
+            }
+            finally {
+                downloads.remove(key, this);
+                disconnect();
+                file.delete();
+            }
+        }
+
+        /**
+         * Returns a handle that reads this download, or null if the download
+         * has already completed or failed.
+         */
+        public synchronized CachedArtifact acquire()
+                throws IOException
+        {
+            if (complete || failure != null) {
+                return null;
+            }
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            leases.acquire(key);
+            return new CachedArtifact(key, publishedChecksum, channel, this);
+        }
+
+        /**
+         * Returns the length of the artifact, waiting for the download to
+         * complete if the repository did not send the length.
+         */
+        public synchronized long awaitLength()
+                throws IOException
+        {
+            while (length < 0 && !complete && failure == null) {
+                await();
+            }
+            checkFailure();
+            return length < 0 ? written : length;
+        }
+
+        /**
+         * Waits until the bytes after the specified position can be read and
+         * returns how many can be read.
+         */
+        public synchronized long awaitAvailable(long position)
+                throws IOException
+        {
+            while (getReadable() <= position && !complete && failure == null) {
+                await();
+            }
+            checkFailure();
+            return getReadable() - position;
+        }
+
+        @GuardedBy("this")
+        private long getReadable()
+        {
+            // hold back the last byte until the artifact has been verified
+            return complete ? written : Math.min(written, length - 1);
+        }
+
+        @GuardedBy("this")
+        private void await()
+                throws InterruptedIOException
+        {
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for download of " + uri);
+            }
+        }
+
+        @GuardedBy("this")
+        private void checkFailure()
+                throws IOException
+        {
+            if (failure != null) {
+                throw new IOException(String.format("Download of %s failed: %s", uri, failure.getMessage()), failure);
+            }
+        }
+
+        private String copy()
+                throws IOException
+        {
+            Hasher hasher = Hashing.sha1().newHasher();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long copied = 0;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                while (true) {
+                    int count = input.read(buffer);
+                    if (count < 0) {
+                        break;
+                    }
+                    hasher.putBytes(buffer, 0, count);
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, count);
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    copied += count;
+                    synchronized (this) {
+                        written = copied;
+                        notifyAll();
+                    }
+                }
+            }
+            if (length >= 0 && copied != length) {
+                throw new IOException(String.format("Connection closed after %s of %s bytes", copied, length));
+            }
+            return hasher.hash().toString();
+        }
+
+        private synchronized void complete(String checksum)
+                throws IOException
+        {
+            // requests still reading a replaced snapshot keep their open file
+            synchronized (leases) {
+                Files.write(checksum, new File(cacheDir, key + CHECKSUM_SUFFIX), Charsets.UTF_8);
+                java.nio.file.Files.move(file.toPath(), new File(cacheDir, key).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            evict();
+            complete = true;
+            notifyAll();
+        }
+
+        private synchronized void fail(IOException e)
+        {
+            failure = e;
+            notifyAll();
+        }
+
+        private void disconnect()
+        {
+            Closeables.closeQuietly(input);
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+    }
+
+    public class CachedArtifact
+            implements Closeable
+    {
+        private final String key;
+        private final String checksum;
+        private final FileChannel channel;
+        private final Download download;
+        private boolean released;
+
+        private CachedArtifact(String key, String checksum, FileChannel channel, Download download)
+        {
+            this.key = key;
+            this.checksum = checksum;
+            this.channel = channel;
+            this.download = download;
+        }
+
+        /**
+         * Returns the SHA-1 checksum of the artifact, or null if the artifact
+         * is still being downloaded and the repository does not publish one.
+         */
+        public String getChecksum()
+        {
+            return checksum;
+        }
+
+        public long getLength()
+                throws IOException
+        {
+            if (download != null) {
+                return download.awaitLength();
+            }
+            return channel.size();
+        }
+
+        /**
+         * Transfers the specified bytes of the artifact to the target, waiting
+         * for them to be downloaded if necessary.
+         */
+        public void transferTo(long position, long count, WritableByteChannel target)
+                throws IOException
+        {
+            long remaining = count;
+            while (remaining > 0) {
+                long available = remaining;
+                if (download != null) {
+                    available = Math.min(remaining, download.awaitAvailable(position));
+                }
+                // let the file channel move the bytes instead of copying them through a heap buffer
+                long transferred = available > 0 ? channel.transferTo(position, available, target) : 0;
+                if (transferred <= 0) {
+                    throw new IOException("Artifact is shorter than expected");
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            if (!released) {
+                released = true;
+                try {
+                    channel.close();
+                }
+                catch (IOException ignored) {
+                }
+                leases.release(key);
+            }
+        }
+    }
+}
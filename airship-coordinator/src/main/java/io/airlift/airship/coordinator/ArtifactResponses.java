@@ -0,0 +1,197 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.net.HttpHeaders;
+import io.airlift.airship.coordinator.ArtifactProxy.CachedArtifact;
+import io.airlift.airship.shared.ByteRange;
+import io.airlift.log.Logger;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+
+import static io.airlift.airship.shared.ArtifactUtils.MD5_PATTERN;
+import static io.airlift.airship.shared.ArtifactUtils.getPublishedChecksum;
+
+/**
+ * Builds the responses for artifacts served from the {@link ArtifactProxy}.
+ */
+final class ArtifactResponses
+{
+    private static final Logger log = Logger.get(ArtifactResponses.class);
+    private static final int PARTIAL_CONTENT = 206;
+    private static final int REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+    private static final int BAD_GATEWAY = 502;
+    private static final String SHA1_SUFFIX = ".sha1";
+    private static final String MD5_SUFFIX = ".md5";
+
+    private ArtifactResponses()
+    {
+    }
+
+    /**
+     * Serves the upstream artifact from the proxy cache.  A single byte range
+     * may be requested, so agents can resume interrupted downloads.
+     */
+    public static Response serve(ArtifactProxy artifactProxy, URI uri, String rangeHeader)
+    {
+        CachedArtifact artifact;
+        try {
+            artifact = artifactProxy.get(uri);
+        }
+        catch (FileNotFoundException e) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+        catch (IOException e) {
+            log.warn("Unable to download %s: %s", uri, e.getMessage());
+            return Response.status(BAD_GATEWAY).entity(e.getMessage()).type(MediaType.TEXT_PLAIN_TYPE).build();
+        }
+
+        boolean streaming = false;
+        try {
+            long length = artifact.getLength();
+            ByteRange range;
+            try {
+                range = ByteRange.parse(rangeHeader, length);
+            }
+            catch (IllegalArgumentException e) {
+                return Response.status(REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                        .build();
+            }
+
+            ResponseBuilder builder;
+            long offset = 0;
+            long count = length;
+            if (range == null) {
+                builder = Response.ok();
+            }
+            else {
+                builder = Response.status(PARTIAL_CONTENT).header(HttpHeaders.CONTENT_RANGE, range.toContentRange(length));
+                offset = range.getStart();
+                count = range.getLength();
+            }
+            builder.type(MediaType.APPLICATION_OCTET_STREAM_TYPE)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .header(HttpHeaders.CONTENT_LENGTH, count);
+            if (artifact.getChecksum() != null) {
+                builder.header(HttpHeaders.ETAG, "\"" + artifact.getChecksum() + "\"");
+            }
+            builder.entity(new ArtifactStreamingOutput(artifact, offset, count));
+            streaming = true;
+            return builder.build();
+        }
+        catch (IOException e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR).entity(e.getMessage()).type(MediaType.TEXT_PLAIN_TYPE).build();
+        }
+        finally {
+            // the streaming output releases the artifact once it has been sent
+            if (!streaming) {
+                artifact.close();
+            }
+        }
+    }
+
+    /**
+     * Answers a HEAD request for the upstream artifact without downloading it
+     * into the proxy cache.
+     */
+    public static Response head(ArtifactProxy artifactProxy, URI uri)
+    {
+        long length;
+        try {
+            length = artifactProxy.getLength(uri);
+        }
+        catch (FileNotFoundException e) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+        catch (IOException e) {
+            log.warn("Unable to look up %s: %s", uri, e.getMessage());
+            return Response.status(BAD_GATEWAY).build();
+        }
+
+        ResponseBuilder builder = Response.ok()
+                .type(MediaType.APPLICATION_OCTET_STREAM_TYPE)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (length >= 0) {
+            builder.header(HttpHeaders.CONTENT_LENGTH, length);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Serves the checksum file published next to the upstream artifact.  The
+     * SHA-1 checksum is the one the proxy verifies the artifact against, so an
+     * agent downloading through the proxy verifies the bytes it was sent.
+     */
+    public static Response serveChecksum(ArtifactProxy artifactProxy, URI uri, String suffix, boolean includeBody)
+    {
+        String checksum;
+        if (suffix.equals(SHA1_SUFFIX)) {
+            checksum = artifactProxy.getChecksum(uri);
+        }
+        else {
+            checksum = getPublishedChecksum(uri, MD5_SUFFIX, MD5_PATTERN);
+        }
+        if (checksum == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+
+        ResponseBuilder builder = Response.ok()
+                .type(MediaType.TEXT_PLAIN_TYPE)
+                .header(HttpHeaders.CONTENT_LENGTH, checksum.length());
+        if (includeBody) {
+            builder.entity(checksum);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the checksum file suffix of the specified name, or null if the
+     * name does not refer to a checksum file.
+     */
+    public static String getChecksumSuffix(String name)
+    {
+        if (name.endsWith(SHA1_SUFFIX)) {
+            return SHA1_SUFFIX;
+        }
+        if (name.endsWith(MD5_SUFFIX)) {
+            return MD5_SUFFIX;
+        }
+        return null;
+    }
+
+    private static class ArtifactStreamingOutput
+            implements StreamingOutput
+    {
+        private final CachedArtifact artifact;
+        private final long offset;
+        private final long count;
+
+        private ArtifactStreamingOutput(CachedArtifact artifact, long offset, long count)
+        {
+            this.artifact = artifact;
+            this.offset = offset;
+            this.count = count;
+        }
+
+        @Override
+        public void write(OutputStream output)
+                throws IOException
+        {
+            try {
+                // the artifact may still be downloading, in which case this waits for the bytes
+                artifact.transferTo(offset, count, Channels.newChannel(output));
+            }
+            finally {
+                artifact.close();
+            }
+        }
+    }
+}
@@ -29,6 +29,7 @@ import com.google.inject.Scopes;
 import io.airlift.configuration.ConfigurationModule;
 import io.airlift.airship.coordinator.auth.AuthorizedKeyStore;
 import io.airlift.airship.coordinator.auth.S3AuthorizedKeyStore;
+import org.weakref.jmx.guice.MBeanModule;
 
 import javax.inject.Singleton;
 import java.io.File;
@@ -45,7 +46,10 @@ public class AwsProvisionerModule
         binder.requireExplicitBindings();
 
         binder.bind(Provisioner.class).to(AwsProvisioner.class).in(Scopes.SINGLETON);
-        binder.bind(StateManager.class).to(SimpleDbStateManager.class).in(Scopes.SINGLETON);
+        binder.bind(CachingStateManager.class).in(Scopes.SINGLETON);
+        binder.bind(StateManager.class).to(CachingStateManager.class);
+        binder.bind(StateManager.class).annotatedWith(ForCachingStateManager.class).to(SimpleDbStateManager.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(CachingStateManager.class).withGeneratedName();
         binder.bind(AuthorizedKeyStore.class).to(S3AuthorizedKeyStore.class).in(Scopes.SINGLETON);
         ConfigurationModule.bindConfig(binder).to(AwsProvisionerConfig.class);
     }
@@ -1,60 +1,121 @@
 package io.airlift.airship.coordinator;
 
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.Resources;
+import com.google.common.net.HttpHeaders;
 import io.airlift.airship.shared.MavenCoordinates;
 import io.airlift.airship.shared.Repository;
 
 import javax.inject.Inject;
 import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
+import java.util.List;
 
+/**
+ * Serves binaries by Maven coordinates
+ * ({@code groupId/artifactId/version/packaging[/classifier]}) or by binary
+ * spec.  When the artifact proxy is enabled the binaries are served from the
+ * coordinator cache, otherwise they are streamed from the repository.  The
+ * {@code .sha1} and {@code .md5} checksum files of each binary are served
+ * next to it, so agents can verify the binaries they download from here.
+ */
 @Path("/v1/binary/")
 public class BinaryResource
 {
     private final Repository repository;
+    private final ArtifactProxy artifactProxy;
+    private final boolean artifactProxyEnabled;
 
     @Inject
-    public BinaryResource(Repository repository)
+    public BinaryResource(Repository repository, ArtifactProxy artifactProxy, CoordinatorConfig config)
     {
+        this(repository, artifactProxy, Preconditions.checkNotNull(config, "config is null").isArtifactProxyEnabled());
+    }
+
+    public BinaryResource(Repository repository, ArtifactProxy artifactProxy, boolean artifactProxyEnabled)
+    {
+        Preconditions.checkNotNull(repository, "repository is null");
+        Preconditions.checkNotNull(artifactProxy, "artifactProxy is null");
+
         this.repository = repository;
+        this.artifactProxy = artifactProxy;
+        this.artifactProxyEnabled = artifactProxyEnabled;
     }
 
     @GET
-    @Path("{groupId}/{artifactId}/{version}/{packaging}")
-    public Response getBinary(@PathParam("groupId") String groupId,
-            @PathParam("artifactId") String artifactId,
-            @PathParam("version") String version,
-            @PathParam("packaging") String packaging)
+    @Path("{binary: .+}")
+    public Response getBinary(@PathParam("binary") String binary, @HeaderParam(HttpHeaders.RANGE) String range)
     {
-        return getBinary(groupId, artifactId, version, packaging, null);
+        return serve(binary, range, true);
     }
 
-    @GET
-    @Path("{groupId}/{artifactId}/{version}/{packaging}/{classifier}")
-    public Response getBinary(@PathParam("groupId") String groupId,
-            @PathParam("artifactId") String artifactId,
-            @PathParam("version") String version,
-            @PathParam("packaging") String packaging,
-            @PathParam("classifier") String classifier)
+    @HEAD
+    @Path("{binary: .+}")
+    public Response headBinary(@PathParam("binary") String binary)
     {
-        MavenCoordinates coordinates = new MavenCoordinates(groupId, artifactId, version, packaging, classifier, null);
+        return serve(binary, null, false);
+    }
 
-        URL binaryUrl = null;
+    private Response serve(String binary, String range, boolean includeBody)
+    {
+        // agents verify a download against the checksum file published next to it
+        String checksumSuffix = ArtifactResponses.getChecksumSuffix(binary);
+        if (checksumSuffix != null) {
+            binary = binary.substring(0, binary.length() - checksumSuffix.length());
+        }
+
+        URI binaryUri;
         try {
-            binaryUrl = repository.binaryToHttpUri(coordinates.toGAV()).toURL();
+            binaryUri = repository.binaryToHttpUri(toBinarySpec(binary));
         }
-        catch (MalformedURLException e) {
+        catch (IllegalArgumentException e) {
+            binaryUri = null;
         }
-
-        if (binaryUrl == null) {
+        if (binaryUri == null) {
             return Response.status(Status.NOT_FOUND).build();
         }
 
+        if (artifactProxyEnabled) {
+            if (checksumSuffix != null) {
+                return ArtifactResponses.serveChecksum(artifactProxy, binaryUri, checksumSuffix, includeBody);
+            }
+            if (!includeBody) {
+                return ArtifactResponses.head(artifactProxy, binaryUri);
+            }
+            return ArtifactResponses.serve(artifactProxy, binaryUri, range);
+        }
+
+        URL binaryUrl;
+        try {
+            binaryUrl = URI.create(binaryUri.toString() + Objects.firstNonNull(checksumSuffix, "")).toURL();
+        }
+        catch (MalformedURLException | IllegalArgumentException e) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+        if (!includeBody) {
+            return Response.ok().build();
+        }
         return Response.ok(new InputSupplierStreamingOutput(Resources.newInputStreamSupplier(binaryUrl))).build();
     }
+
+    private static String toBinarySpec(String binary)
+    {
+        List<String> parts = ImmutableList.copyOf(Splitter.on('/').split(binary));
+        if (parts.size() == 4 || parts.size() == 5) {
+            String classifier = parts.size() == 5 ? parts.get(4) : null;
+            return new MavenCoordinates(parts.get(0), parts.get(1), parts.get(2), parts.get(3), classifier, null).toGAV();
+        }
+        return binary;
+    }
 }
@@ -0,0 +1,260 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.airlift.airship.shared.ExpectedSlotStatus;
+import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.inject.Inject;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * Serves expected slot states from memory.  Writes go to the backing store
+ * first and then to the cache, and the cache is periodically reconciled with
+ * the backing store to pick up changes made by other coordinators.  Every
+ * change increments the version, and {@link #getAllExpectedStates()} returns
+ * the same collection instance until the version changes.
+ */
+public class CachingStateManager implements StateManager
+{
+    private static final Logger log = Logger.get(CachingStateManager.class);
+
+    private final StateManager delegate;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService refreshExecutor;
+
+    private final Object writeLock = new Object();
+
+    @GuardedBy("writeLock")
+    private long writeCount;
+
+    private volatile CachedStates cachedStates;
+
+    private final AtomicLong reconcileCount = new AtomicLong();
+    private final AtomicLong reconcileChangeCount = new AtomicLong();
+
+    @Inject
+    public CachingStateManager(@ForCachingStateManager StateManager delegate, CoordinatorConfig config)
+    {
+        this(delegate, Preconditions.checkNotNull(config, "config is null").getExpectedStateRefreshInterval());
+    }
+
+    public CachingStateManager(StateManager delegate, Duration refreshInterval)
+    {
+        Preconditions.checkNotNull(delegate, "delegate is null");
+        Preconditions.checkNotNull(refreshInterval, "refreshInterval is null");
+
+        this.delegate = delegate;
+        this.refreshInterval = refreshInterval;
+        this.refreshExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("expected-state-refresh").setDaemon(true).build());
+        this.cachedStates = new CachedStates(0, ExpectedStates.indexById(delegate.getAllExpectedStates()));
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        refreshExecutor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    reconcile();
+                }
+                catch (Throwable e) {
+                    log.error(e, "Unexpected exception reconciling expected state");
+                }
+            }
+        }, (long) refreshInterval.toMillis(), (long) refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        refreshExecutor.shutdownNow();
+    }
+
+    @Override
+    public Collection<ExpectedSlotStatus> getAllExpectedStates()
+    {
+        return cachedStates.getValues();
+    }
+
+    @Override
+    public void deleteExpectedState(UUID slotId)
+    {
+        Preconditions.checkNotNull(slotId, "slotId is null");
+
+        synchronized (writeLock) {
+            delegate.deleteExpectedState(slotId);
+            writeCount++;
+
+            CachedStates current = cachedStates;
+            if (current.getStates().containsKey(slotId)) {
+                Map<UUID, ExpectedSlotStatus> states = newHashMap(current.getStates());
+                states.remove(slotId);
+                cachedStates = new CachedStates(current.getVersion() + 1, states);
+            }
+        }
+    }
+
+    @Override
+    public void setExpectedState(ExpectedSlotStatus slotStatus)
+    {
+        Preconditions.checkNotNull(slotStatus, "slotStatus is null");
+
+        synchronized (writeLock) {
+            delegate.setExpectedState(slotStatus);
+            writeCount++;
+
+            CachedStates current = cachedStates;
+            Map<UUID, ExpectedSlotStatus> states = newHashMap(current.getStates());
+            states.put(slotStatus.getId(), slotStatus);
+            cachedStates = new CachedStates(current.getVersion() + 1, states);
+        }
+    }
+
+    @Override
+    public void deleteExpectedStates(Collection<UUID> slotIds)
+    {
+        Preconditions.checkNotNull(slotIds, "slotIds is null");
+        if (slotIds.isEmpty()) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            delegate.deleteExpectedStates(slotIds);
+            writeCount++;
+
+            CachedStates current = cachedStates;
+            Map<UUID, ExpectedSlotStatus> states = newHashMap(current.getStates());
+            if (states.keySet().removeAll(slotIds)) {
+                cachedStates = new CachedStates(current.getVersion() + 1, states);
+            }
+        }
+    }
+
+    @Override
+    public void setExpectedStates(Collection<ExpectedSlotStatus> slotStatuses)
+    {
+        Preconditions.checkNotNull(slotStatuses, "slotStatuses is null");
+        if (slotStatuses.isEmpty()) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            delegate.setExpectedStates(slotStatuses);
+            writeCount++;
+
+            CachedStates current = cachedStates;
+            Map<UUID, ExpectedSlotStatus> states = newHashMap(current.getStates());
+            for (ExpectedSlotStatus slotStatus : slotStatuses) {
+                states.put(slotStatus.getId(), slotStatus);
+            }
+            cachedStates = new CachedStates(current.getVersion() + 1, states);
+        }
+    }
+
+    /**
+     * Reloads all expected states from the backing store.  The result is
+     * discarded if a write happened while the store was being read, since the
+     * read may not include that write; the next reconcile will pick it up.
+     *
+     * @return true if the cache was replaced
+     */
+    @VisibleForTesting
+    boolean reconcile()
+    {
+        long startWriteCount;
+        synchronized (writeLock) {
+            startWriteCount = writeCount;
+        }
+
+        Map<UUID, ExpectedSlotStatus> states = ExpectedStates.indexById(delegate.getAllExpectedStates());
+        reconcileCount.incrementAndGet();
+
+        synchronized (writeLock) {
+            if (writeCount != startWriteCount) {
+                return false;
+            }
+            CachedStates current = cachedStates;
+            if (ExpectedStates.equivalent(current.getStates(), states)) {
+                return false;
+            }
+            cachedStates = new CachedStates(current.getVersion() + 1, states);
+            reconcileChangeCount.incrementAndGet();
+            return true;
+        }
+    }
+
+    @Managed(description = "Version of the cached expected state; incremented on every change")
+    public long getVersion()
+    {
+        return cachedStates.getVersion();
+    }
+
+    @Managed
+    public int getExpectedStateCount()
+    {
+        return cachedStates.getStates().size();
+    }
+
+    @Managed(description = "Number of times the cache was reconciled with the backing store")
+    public long getReconcileCount()
+    {
+        return reconcileCount.get();
+    }
+
+    @Managed(description = "Number of reconciles that found changes not made through this coordinator")
+    public long getReconcileChangeCount()
+    {
+        return reconcileChangeCount.get();
+    }
+
+    @Immutable
+    private static class CachedStates
+    {
+        private final long version;
+        private final Map<UUID, ExpectedSlotStatus> states;
+        private final Collection<ExpectedSlotStatus> values;
+
+        private CachedStates(long version, Map<UUID, ExpectedSlotStatus> states)
+        {
+            this.version = version;
+            this.states = ImmutableMap.copyOf(states);
+            this.values = ImmutableList.copyOf(states.values());
+        }
+
+        public long getVersion()
+        {
+            return version;
+        }
+
+        public Map<UUID, ExpectedSlotStatus> getStates()
+        {
+            return states;
+        }
+
+        public Collection<ExpectedSlotStatus> getValues()
+        {
+            return values;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.AgentStatusRepresentation.AgentStatusRepresentationFactory;
+import io.airlift.airship.shared.ExpectedSlotStatus;
+import io.airlift.airship.shared.Repository;
+import io.airlift.airship.shared.SlotLifecycleState;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.airship.shared.SlotStatusRepresentation.SlotStatusRepresentationFactory;
+
+import javax.annotation.concurrent.Immutable;
+import java.net.URI;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.UUID;
+
+import static com.google.common.collect.Iterables.filter;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Maps.newTreeMap;
+
+/**
+ * Immutable view of the agents, slots and expected slot states known to the
+ * coordinator at one point in time.  Slot statuses already include the
+ * expected state, so a request can be answered entirely from one snapshot.
+ * <p/>
+ * The snapshot also indexes agents by agent id, and slots by id, host, binary
+ * and config.  The indexes are built once with the snapshot, and the snapshot
+ * is replaced as a whole when an agent status changes, so point lookups never
+ * see a partially updated index and do not scan every agent and slot.
+ * <p/>
+ * Filters built by {@link SlotFilterBuilder} use these indexes to find their
+ * candidate slots, see {@link IndexedSlotPredicate}.  Globs are evaluated once
+ * per distinct host, machine, binary or config instead of once per slot, and
+ * short slot ids are expanded with a range lookup on the sorted slot ids.
+ * <p/>
+ * The sizes used to shorten ids and locations in representations are taken
+ * from a {@link ShortNameIndex} when the snapshot is built, so responses do
+ * not recompute them from every agent and slot.
+ */
+@Immutable
+public class ClusterSnapshot
+{
+    private final long version;
+    private final List<AgentStatus> agents;
+    private final Collection<ExpectedSlotStatus> expectedStatesSource;
+    private final Map<UUID, ExpectedSlotStatus> expectedStates;
+    private final List<SlotStatus> slots;
+
+    private final Map<String, AgentStatus> agentsByAgentId;
+    private final Map<UUID, AgentStatus> agentsBySlotId;
+    private final Map<UUID, SlotStatus> slotsById;
+    private final Map<SlotStatus, Integer> slotPositions;
+    private final SortedMap<String, UUID> slotIds;
+    private final ListMultimap<SlotLifecycleState, SlotStatus> slotsByState;
+    private final ListMultimap<String, SlotStatus> slotsByMachine;
+    private final ListMultimap<String, SlotStatus> slotsByHost;
+    private final ListMultimap<String, SlotStatus> slotsByBinary;
+    private final ListMultimap<String, SlotStatus> slotsByConfig;
+
+    private final int agentShortIdPrefixSize;
+    private final int agentCommonLocationParts;
+    private final int slotShortIdPrefixSize;
+    private final int slotCommonLocationParts;
+
+    public ClusterSnapshot(long version, List<AgentStatus> agents, Collection<ExpectedSlotStatus> expectedStates, List<SlotStatus> slots)
+    {
+        this(version, agents, expectedStates, slots, new ShortNameIndex());
+    }
+
+    /**
+     * Creates a snapshot and updates the short name index to the agents and
+     * slots of the snapshot.  The caller must not update the index concurrently.
+     */
+    ClusterSnapshot(long version, List<AgentStatus> agents, Collection<ExpectedSlotStatus> expectedStates, List<SlotStatus> slots, ShortNameIndex shortNames)
+    {
+        Preconditions.checkNotNull(agents, "agents is null");
+        Preconditions.checkNotNull(expectedStates, "expectedStates is null");
+        Preconditions.checkNotNull(slots, "slots is null");
+        Preconditions.checkNotNull(shortNames, "shortNames is null");
+
+        this.version = version;
+        this.agents = ImmutableList.copyOf(agents);
+        this.expectedStatesSource = expectedStates;
+        this.expectedStates = ExpectedStates.indexById(expectedStates);
+        this.slots = ImmutableList.copyOf(slots);
+
+        Map<String, AgentStatus> agentsByAgentId = newHashMap();
+        Map<UUID, AgentStatus> agentsBySlotId = newHashMap();
+        for (AgentStatus agent : this.agents) {
+            // agents that are still provisioning do not have an id yet
+            if (agent.getAgentId() != null && !agentsByAgentId.containsKey(agent.getAgentId())) {
+                agentsByAgentId.put(agent.getAgentId(), agent);
+            }
+            for (SlotStatus slot : agent.getSlotStatuses()) {
+                if (!agentsBySlotId.containsKey(slot.getId())) {
+                    agentsBySlotId.put(slot.getId(), agent);
+                }
+            }
+        }
+        this.agentsByAgentId = ImmutableMap.copyOf(agentsByAgentId);
+        this.agentsBySlotId = ImmutableMap.copyOf(agentsBySlotId);
+
+        Map<UUID, SlotStatus> slotsById = newHashMap();
+        Map<SlotStatus, Integer> slotPositions = Maps.newIdentityHashMap();
+        SortedMap<String, UUID> slotIds = newTreeMap();
+        ImmutableListMultimap.Builder<SlotLifecycleState, SlotStatus> slotsByState = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, SlotStatus> slotsByMachine = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, SlotStatus> slotsByHost = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, SlotStatus> slotsByBinary = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, SlotStatus> slotsByConfig = ImmutableListMultimap.builder();
+        for (int position = 0; position < this.slots.size(); position++) {
+            SlotStatus slot = this.slots.get(position);
+            if (!slotsById.containsKey(slot.getId())) {
+                slotsById.put(slot.getId(), slot);
+                slotIds.put(slot.getId().toString().toLowerCase(), slot.getId());
+            }
+            slotPositions.put(slot, position);
+
+            slotsByState.put(slot.getState(), slot);
+            if (slot.getInstanceId() != null) {
+                slotsByMachine.put(slot.getInstanceId(), slot);
+            }
+
+            String internalHost = getHost(slot.getSelf());
+            if (internalHost != null) {
+                slotsByHost.put(internalHost, slot);
+            }
+            String externalHost = getHost(slot.getExternalUri());
+            if (externalHost != null && !externalHost.equals(internalHost)) {
+                slotsByHost.put(externalHost, slot);
+            }
+
+            if (slot.getAssignment() != null) {
+                slotsByBinary.put(slot.getAssignment().getBinary(), slot);
+                slotsByConfig.put(slot.getAssignment().getConfig(), slot);
+            }
+        }
+        this.slotsById = ImmutableMap.copyOf(slotsById);
+        this.slotPositions = slotPositions;
+        this.slotIds = ImmutableSortedMap.copyOfSorted(slotIds);
+        this.slotsByState = slotsByState.build();
+        this.slotsByMachine = slotsByMachine.build();
+        this.slotsByHost = slotsByHost.build();
+        this.slotsByBinary = slotsByBinary.build();
+        this.slotsByConfig = slotsByConfig.build();
+
+        shortNames.update(this.agents, this.slots);
+        this.agentShortIdPrefixSize = shortNames.getAgentShortIdPrefixSize();
+        this.agentCommonLocationParts = shortNames.getAgentCommonLocationParts();
+        this.slotShortIdPrefixSize = shortNames.getSlotShortIdPrefixSize();
+        this.slotCommonLocationParts = shortNames.getSlotCommonLocationParts();
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public List<AgentStatus> getAgents()
+    {
+        return agents;
+    }
+
+    public List<AgentStatus> getAgents(Predicate<AgentStatus> agentFilter)
+    {
+        return ImmutableList.copyOf(filter(agents, agentFilter));
+    }
+
+    public List<SlotStatus> getSlots()
+    {
+        return slots;
+    }
+
+    public List<SlotStatus> getSlots(Predicate<SlotStatus> slotFilter)
+    {
+        Collection<SlotStatus> candidates = null;
+        if (slotFilter instanceof IndexedSlotPredicate) {
+            candidates = ((IndexedSlotPredicate) slotFilter).getCandidates(this);
+        }
+        if (candidates == null) {
+            return ImmutableList.copyOf(filter(slots, slotFilter));
+        }
+
+        // evaluate the full filter on the candidates only, keeping the order of the snapshot
+        BitSet positions = new BitSet(slots.size());
+        for (SlotStatus candidate : candidates) {
+            Integer position = slotPositions.get(candidate);
+            if (position != null) {
+                positions.set(position);
+            }
+        }
+        ImmutableList.Builder<SlotStatus> result = ImmutableList.builder();
+        for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+            SlotStatus slot = slots.get(position);
+            if (slotFilter.apply(slot)) {
+                result.add(slot);
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * Returns the agent with the specified agent id, or null if there is no such agent.
+     */
+    public AgentStatus getAgentByAgentId(String agentId)
+    {
+        return agentsByAgentId.get(agentId);
+    }
+
+    /**
+     * Returns the agent running the specified slot, or null if no agent reports the slot.
+     */
+    public AgentStatus getAgentBySlotId(UUID slotId)
+    {
+        return agentsBySlotId.get(slotId);
+    }
+
+    /**
+     * Returns the slot with the specified id, or null if there is no such slot.
+     */
+    public SlotStatus getSlot(UUID slotId)
+    {
+        return slotsById.get(slotId);
+    }
+
+    /**
+     * Returns the ids of the slots whose id starts with the specified prefix,
+     * ignoring case.
+     */
+    public List<UUID> getSlotIdsByPrefix(String prefix)
+    {
+        prefix = prefix.toLowerCase();
+        return ImmutableList.copyOf(slotIds.subMap(prefix, prefix + Character.MAX_VALUE).values());
+    }
+
+    public List<SlotStatus> getSlotsByState(SlotLifecycleState state)
+    {
+        return slotsByState.get(state);
+    }
+
+    /**
+     * Returns the slots on a machine whose instance id matches the predicate.
+     */
+    public List<SlotStatus> getSlotsByMachine(Predicate<? super String> instanceIdPredicate)
+    {
+        return getMatchingSlots(slotsByMachine, instanceIdPredicate);
+    }
+
+    /**
+     * Returns the slots with an internal or external uri on a host matching
+     * the predicate.  The predicate is applied to lower case host names.
+     */
+    public List<SlotStatus> getSlotsByHost(Predicate<? super String> hostPredicate)
+    {
+        return getMatchingSlots(slotsByHost, hostPredicate);
+    }
+
+    /**
+     * Returns the slots assigned a binary matching the predicate.
+     */
+    public List<SlotStatus> getSlotsByBinary(Predicate<? super String> binaryPredicate)
+    {
+        return getMatchingSlots(slotsByBinary, binaryPredicate);
+    }
+
+    /**
+     * Returns the slots assigned a config matching the predicate.
+     */
+    public List<SlotStatus> getSlotsByConfig(Predicate<? super String> configPredicate)
+    {
+        return getMatchingSlots(slotsByConfig, configPredicate);
+    }
+
+    /**
+     * Returns the slots with an internal or external uri on the specified host.
+     * Host names are compared ignoring case.
+     */
+    public List<SlotStatus> getSlotsByHost(String host)
+    {
+        return slotsByHost.get(host.toLowerCase());
+    }
+
+    /**
+     * Returns the slots assigned exactly the specified binary.
+     */
+    public List<SlotStatus> getSlotsByBinary(String binary)
+    {
+        return slotsByBinary.get(binary);
+    }
+
+    /**
+     * Returns the slots assigned exactly the specified config.
+     */
+    public List<SlotStatus> getSlotsByConfig(String config)
+    {
+        return slotsByConfig.get(config);
+    }
+
+    /**
+     * Returns a factory for agent representations with ids and locations
+     * shortened for all the agents in this snapshot.
+     */
+    public AgentStatusRepresentationFactory getAgentStatusRepresentationFactory(Repository repository)
+    {
+        return new AgentStatusRepresentationFactory(agentShortIdPrefixSize, agentCommonLocationParts, repository);
+    }
+
+    /**
+     * Returns a factory for slot representations with ids and locations
+     * shortened for all the slots in this snapshot.
+     */
+    public SlotStatusRepresentationFactory getSlotStatusRepresentationFactory(Repository repository)
+    {
+        return new SlotStatusRepresentationFactory(slotShortIdPrefixSize, slotCommonLocationParts, repository);
+    }
+
+    /**
+     * Returns true if this snapshot was built from exactly these agent statuses
+     * and equivalent expected states.  Agent statuses are immutable and replaced
+     * on every change, so they are compared by identity.
+     */
+    boolean isCurrent(List<AgentStatus> currentAgents, Collection<ExpectedSlotStatus> currentExpectedStates)
+    {
+        if (agents.size() != currentAgents.size()) {
+            return false;
+        }
+        for (int i = 0; i < agents.size(); i++) {
+            if (agents.get(i) != currentAgents.get(i)) {
+                return false;
+            }
+        }
+
+        // a caching state manager returns the same collection until something changes
+        if (currentExpectedStates == expectedStatesSource) {
+            return true;
+        }
+        return ExpectedStates.equivalent(expectedStates, ExpectedStates.indexById(currentExpectedStates));
+    }
+
+    private static List<SlotStatus> getMatchingSlots(ListMultimap<String, SlotStatus> index, Predicate<? super String> predicate)
+    {
+        // evaluate the predicate once per distinct value instead of once per slot
+        ImmutableList.Builder<SlotStatus> slots = ImmutableList.builder();
+        for (Entry<String, Collection<SlotStatus>> entry : index.asMap().entrySet()) {
+            if (predicate.apply(entry.getKey())) {
+                slots.addAll(entry.getValue());
+            }
+        }
+        return slots.build();
+    }
+
+    private static String getHost(URI uri)
+    {
+        if (uri == null || uri.getHost() == null) {
+            return null;
+        }
+        return uri.getHost().toLowerCase();
+    }
+}
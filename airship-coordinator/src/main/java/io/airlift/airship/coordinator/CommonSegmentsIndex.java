@@ -0,0 +1,98 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.List;
+import java.util.TreeMap;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Keeps the number of leading segments shared by every string in a changing
+ * set, with the same result as
+ * {@link io.airlift.airship.shared.Strings#commonPrefixSegments(char, java.util.Collection, int)}.
+ * <p/>
+ * When the strings are sorted segment by segment, the segments shared by all
+ * of them are the segments shared by the first and the last one.  Adding or
+ * removing a string is O(log n), and the shortest string is tracked the same
+ * way so the minimum number of unshared segments can still be applied.
+ */
+@NotThreadSafe
+public class CommonSegmentsIndex
+{
+    private final Splitter splitter;
+    private final int minSize;
+    private final TreeMap<List<String>, Integer> strings = new TreeMap<>(Ordering.<String>natural().lexicographical());
+    private final TreeMap<Integer, Integer> segmentCounts = new TreeMap<>();
+
+    public CommonSegmentsIndex(char separator, int minSize)
+    {
+        Preconditions.checkArgument(minSize >= 0, "minSize is negative");
+        this.splitter = Splitter.on(separator);
+        this.minSize = minSize;
+    }
+
+    public void add(String string)
+    {
+        List<String> segments = split(string);
+
+        Integer count = strings.get(segments);
+        strings.put(segments, count == null ? 1 : count + 1);
+
+        count = segmentCounts.get(segments.size());
+        segmentCounts.put(segments.size(), count == null ? 1 : count + 1);
+    }
+
+    public void remove(String string)
+    {
+        List<String> segments = split(string);
+
+        Integer count = strings.get(segments);
+        Preconditions.checkArgument(count != null, "%s is not in the index", string);
+        if (count == 1) {
+            strings.remove(segments);
+        }
+        else {
+            strings.put(segments, count - 1);
+        }
+
+        count = segmentCounts.get(segments.size());
+        if (count == 1) {
+            segmentCounts.remove(segments.size());
+        }
+        else {
+            segmentCounts.put(segments.size(), count - 1);
+        }
+    }
+
+    public int getCommonPrefixSegments()
+    {
+        if (strings.isEmpty()) {
+            return 0;
+        }
+
+        int maxNumberOfSharedSegments = max(segmentCounts.firstKey() - minSize, 0);
+
+        List<String> first = strings.firstKey();
+        List<String> last = strings.lastKey();
+        int commonSegments = 0;
+        while (commonSegments < maxNumberOfSharedSegments && first.get(commonSegments).equals(last.get(commonSegments))) {
+            commonSegments++;
+        }
+        return commonSegments;
+    }
+
+    private List<String> split(String string)
+    {
+        Preconditions.checkNotNull(string, "string is null");
+
+        List<String> segments = ImmutableList.copyOf(splitter.split(string));
+        Preconditions.checkArgument(segments.get(0).isEmpty(), "All strings must start with the separator character");
+        return segments.subList(1, segments.size());
+    }
+}
@@ -0,0 +1,90 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.net.HttpHeaders;
+import io.airlift.airship.shared.Repository;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import java.net.URI;
+
+/**
+ * Serves config bundles by config spec from the coordinator cache.  Agents
+ * download from here instead of the repository when the artifact proxy is
+ * enabled, and verify the bundles against the {@code .sha1} and {@code .md5}
+ * checksum files served next to them.
+ */
+@Path("/v1/config/")
+public class ConfigResource
+{
+    private final Repository repository;
+    private final ArtifactProxy artifactProxy;
+    private final boolean artifactProxyEnabled;
+
+    @Inject
+    public ConfigResource(Repository repository, ArtifactProxy artifactProxy, CoordinatorConfig config)
+    {
+        this(repository, artifactProxy, Preconditions.checkNotNull(config, "config is null").isArtifactProxyEnabled());
+    }
+
+    public ConfigResource(Repository repository, ArtifactProxy artifactProxy, boolean artifactProxyEnabled)
+    {
+        Preconditions.checkNotNull(repository, "repository is null");
+        Preconditions.checkNotNull(artifactProxy, "artifactProxy is null");
+
+        this.repository = repository;
+        this.artifactProxy = artifactProxy;
+        this.artifactProxyEnabled = artifactProxyEnabled;
+    }
+
+    @GET
+    @Path("{config}")
+    public Response getConfig(@PathParam("config") String config, @HeaderParam(HttpHeaders.RANGE) String range)
+    {
+        return serve(config, range, true);
+    }
+
+    @HEAD
+    @Path("{config}")
+    public Response headConfig(@PathParam("config") String config)
+    {
+        return serve(config, null, false);
+    }
+
+    private Response serve(String config, String range, boolean includeBody)
+    {
+        if (!artifactProxyEnabled) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+
+        // agents verify a download against the checksum file published next to it
+        String checksumSuffix = ArtifactResponses.getChecksumSuffix(config);
+        if (checksumSuffix != null) {
+            config = config.substring(0, config.length() - checksumSuffix.length());
+        }
+
+        URI configUri;
+        try {
+            configUri = repository.configToHttpUri(config);
+        }
+        catch (IllegalArgumentException e) {
+            configUri = null;
+        }
+        if (configUri == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+        if (checksumSuffix != null) {
+            return ArtifactResponses.serveChecksum(artifactProxy, configUri, checksumSuffix, includeBody);
+        }
+        if (!includeBody) {
+            return ArtifactResponses.head(artifactProxy, configUri);
+        }
+        return ArtifactResponses.serve(artifactProxy, configUri, range);
+    }
+}
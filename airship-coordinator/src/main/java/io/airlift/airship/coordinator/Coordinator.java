@@ -15,6 +15,7 @@ import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import io.airlift.airship.coordinator.AgentFilterBuilder.StatePredicate;
+import io.airlift.airship.coordinator.SlotInstallExecutor.InstallResult;
 import io.airlift.airship.shared.AgentLifecycleState;
 import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.Assignment;
@@ -33,30 +34,43 @@ import io.airlift.log.Logger;
 import io.airlift.node.NodeInfo;
 import io.airlift.units.Duration;
 
+import org.weakref.jmx.Managed;
+
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Sets.newHashSet;
+import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
 import static io.airlift.airship.shared.SlotLifecycleState.RESTARTING;
 import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
 import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
@@ -74,13 +88,36 @@ public class Coordinator
     private final CoordinatorStatus coordinatorStatus;
     private final Repository repository;
     private final ScheduledExecutorService timerService;
+    private final ExecutorService agentUpdateExecutor;
+    private final SlotOperationExecutor slotOperationExecutor;
+    private final SlotInstallExecutor slotInstallExecutor;
     private final Duration statusExpiration;
+    private final Duration agentStatusSweepTimeout;
     private final Provisioner provisioner;
     private final RemoteCoordinatorFactory remoteCoordinatorFactory;
     private final RemoteAgentFactory remoteAgentFactory;
     private final ServiceInventory serviceInventory;
     private final StateManager stateManager;
     private final boolean allowDuplicateInstallationsOnAnAgent;
+    private final int artifactFanout;
+    private final boolean artifactProxyEnabled;
+    private final PlacementScheduler placementScheduler;
+
+    // agents with a status update still in flight; a slow agent is skipped by later sweeps until it answers
+    private final Set<RemoteAgent> agentsUpdating = Sets.newSetFromMap(new ConcurrentHashMap<RemoteAgent, Boolean>());
+
+    private final AtomicLong lastSweepStartNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong lastSweepCompletedNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong lastSweepDurationNanos = new AtomicLong();
+    private final AtomicLong lastCompletedSweepStartTime = new AtomicLong();
+    private final AtomicLong lastSweepTimedOutAgents = new AtomicLong();
+    private final AtomicLong lastSweepSkippedAgents = new AtomicLong();
+    private final AtomicLong totalTimedOutAgents = new AtomicLong();
+    private final AtomicLong totalSkippedAgents = new AtomicLong();
+
+    private final AtomicReference<ClusterSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong snapshotVersion = new AtomicLong();
+    private final ShortNameIndex shortNames = new ShortNameIndex();
 
     @Inject
     public Coordinator(NodeInfo nodeInfo,
@@ -90,7 +127,8 @@ public class Coordinator
             RemoteAgentFactory remoteAgentFactory,
             Repository repository,
             Provisioner provisioner,
-            StateManager stateManager, ServiceInventory serviceInventory)
+            StateManager stateManager, ServiceInventory serviceInventory,
+            PlacementScheduler placementScheduler)
     {
         this(
                 new CoordinatorStatus(nodeInfo.getInstanceId(),
@@ -107,7 +145,15 @@ public class Coordinator
                 stateManager,
                 serviceInventory,
                 checkNotNull(config, "config is null").getStatusExpiration(),
-                config.isAllowDuplicateInstallationsOnAnAgent());
+                config.isAllowDuplicateInstallationsOnAnAgent(),
+                config.getAgentStatusMaxConcurrency(),
+                config.getAgentStatusSweepTimeout(),
+                config.getSlotOperationMaxConcurrency(),
+                config.getSlotOperationTimeout(),
+                config.getArtifactFanout(),
+                config.isArtifactProxyEnabled(),
+                config.getInstallMaxConcurrency(),
+                placementScheduler);
     }
 
     public Coordinator(CoordinatorStatus coordinatorStatus,
@@ -119,6 +165,43 @@ public class Coordinator
             ServiceInventory serviceInventory,
             Duration statusExpiration,
             boolean allowDuplicateInstallationsOnAnAgent)
+    {
+        this(coordinatorStatus,
+                remoteCoordinatorFactory,
+                remoteAgentFactory,
+                repository,
+                provisioner,
+                stateManager,
+                serviceInventory,
+                statusExpiration,
+                allowDuplicateInstallationsOnAnAgent,
+                new CoordinatorConfig().getAgentStatusMaxConcurrency(),
+                statusExpiration,
+                new CoordinatorConfig().getSlotOperationMaxConcurrency(),
+                new CoordinatorConfig().getSlotOperationTimeout(),
+                new CoordinatorConfig().getArtifactFanout(),
+                new CoordinatorConfig().isArtifactProxyEnabled(),
+                new CoordinatorConfig().getInstallMaxConcurrency(),
+                new ResourcePlacementScheduler(new CoordinatorConfig()));
+    }
+
+    public Coordinator(CoordinatorStatus coordinatorStatus,
+            RemoteCoordinatorFactory remoteCoordinatorFactory,
+            RemoteAgentFactory remoteAgentFactory,
+            Repository repository,
+            Provisioner provisioner,
+            StateManager stateManager,
+            ServiceInventory serviceInventory,
+            Duration statusExpiration,
+            boolean allowDuplicateInstallationsOnAnAgent,
+            int agentStatusMaxConcurrency,
+            Duration agentStatusSweepTimeout,
+            int slotOperationMaxConcurrency,
+            Duration slotOperationTimeout,
+            int artifactFanout,
+            boolean artifactProxyEnabled,
+            int installMaxConcurrency,
+            PlacementScheduler placementScheduler)
     {
         Preconditions.checkNotNull(coordinatorStatus, "coordinatorStatus is null");
         Preconditions.checkNotNull(remoteCoordinatorFactory, "remoteCoordinatorFactory is null");
@@ -128,6 +211,10 @@ public class Coordinator
         Preconditions.checkNotNull(stateManager, "stateManager is null");
         Preconditions.checkNotNull(serviceInventory, "serviceInventory is null");
         Preconditions.checkNotNull(statusExpiration, "statusExpiration is null");
+        Preconditions.checkArgument(agentStatusMaxConcurrency > 0, "agentStatusMaxConcurrency must be at least 1");
+        Preconditions.checkNotNull(agentStatusSweepTimeout, "agentStatusSweepTimeout is null");
+        Preconditions.checkArgument(artifactFanout >= 0, "artifactFanout is negative");
+        Preconditions.checkNotNull(placementScheduler, "placementScheduler is null");
 
         this.coordinatorStatus = coordinatorStatus;
         this.remoteCoordinatorFactory = remoteCoordinatorFactory;
@@ -138,8 +225,15 @@ public class Coordinator
         this.serviceInventory = serviceInventory;
         this.statusExpiration = statusExpiration;
         this.allowDuplicateInstallationsOnAnAgent = allowDuplicateInstallationsOnAnAgent;
+        this.agentStatusSweepTimeout = agentStatusSweepTimeout;
+        this.artifactFanout = artifactFanout;
+        this.artifactProxyEnabled = artifactProxyEnabled;
+        this.placementScheduler = placementScheduler;
 
         timerService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("coordinator-agent-monitor").setDaemon(true).build());
+        agentUpdateExecutor = Executors.newFixedThreadPool(agentStatusMaxConcurrency, new ThreadFactoryBuilder().setNameFormat("coordinator-agent-update-%s").setDaemon(true).build());
+        slotOperationExecutor = new SlotOperationExecutor(slotOperationMaxConcurrency, slotOperationTimeout);
+        slotInstallExecutor = new SlotInstallExecutor(installMaxConcurrency);
 
         updateAllCoordinators();
         updateAllAgents();
@@ -169,6 +263,15 @@ public class Coordinator
         }, 0, (long) statusExpiration.toMillis(), TimeUnit.MILLISECONDS);
     }
 
+    @PreDestroy
+    public void stop()
+    {
+        timerService.shutdownNow();
+        agentUpdateExecutor.shutdownNow();
+        slotOperationExecutor.stop();
+        slotInstallExecutor.stop();
+    }
+
     public CoordinatorStatus status()
     {
         return coordinatorStatus;
@@ -268,13 +371,12 @@ public class Coordinator
 
     public AgentStatus getAgentByAgentId(String agentId)
     {
-        for (RemoteAgent remoteAgent : agents.values()) {
-            AgentStatus status = remoteAgent.status();
-            if (agentId.equals(status.getAgentId())) {
-                return status;
-            }
-        }
-        return null;
+        return getSnapshot().getAgentByAgentId(agentId);
+    }
+
+    public SlotStatus getSlot(UUID slotId)
+    {
+        return getSnapshot().getSlot(slotId);
     }
 
     @VisibleForTesting
@@ -335,11 +437,179 @@ public class Coordinator
         // remove any agents not in the provisioner list
         agents.keySet().retainAll(instanceIds);
 
-        List<ServiceDescriptor> serviceDescriptors = serviceInventory.getServiceInventory(transform(getAllSlots(), getSlotStatus()));
-        for (RemoteAgent remoteAgent : agents.values()) {
-            remoteAgent.updateStatus();
-            remoteAgent.setServiceInventory(serviceDescriptors);
+        final List<ServiceDescriptor> serviceDescriptors = serviceInventory.getServiceInventory(transform(getAllSlots(), getSlotStatus()));
+
+        long sweepStartTime = System.currentTimeMillis();
+        long sweepStart = System.nanoTime();
+        lastSweepStartNanos.set(sweepStart);
+
+        // poll every agent in parallel so a slow or dead agent never delays the others
+        Map<RemoteAgent, Future<?>> updates = Maps.newHashMap();
+        int skipped = 0;
+        for (final RemoteAgent remoteAgent : agents.values()) {
+            if (!agentsUpdating.add(remoteAgent)) {
+                // previous update for this agent has not finished yet
+                skipped++;
+                continue;
+            }
+            try {
+                updates.put(remoteAgent, agentUpdateExecutor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try {
+                            remoteAgent.updateStatus();
+                            remoteAgent.setServiceInventory(serviceDescriptors);
+                        }
+                        finally {
+                            agentsUpdating.remove(remoteAgent);
+                        }
+                    }
+                }));
+            }
+            catch (RuntimeException e) {
+                agentsUpdating.remove(remoteAgent);
+                throw e;
+            }
         }
+
+        // wait for the updates until the sweep budget is exhausted; stragglers keep running in the background
+        long deadline = sweepStart + TimeUnit.MILLISECONDS.toNanos((long) agentStatusSweepTimeout.toMillis());
+        int timedOut = 0;
+        for (Entry<RemoteAgent, Future<?>> entry : updates.entrySet()) {
+            try {
+                entry.getValue().get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            }
+            catch (TimeoutException e) {
+                timedOut++;
+            }
+            catch (ExecutionException e) {
+                log.error(e.getCause(), "Unexpected exception updating agent %s", entry.getKey().status().getInstanceId());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        long sweepEnd = System.nanoTime();
+        lastSweepDurationNanos.set(sweepEnd - sweepStart);
+        lastSweepCompletedNanos.set(sweepEnd);
+        lastCompletedSweepStartTime.set(sweepStartTime);
+        lastSweepTimedOutAgents.set(timedOut);
+        lastSweepSkippedAgents.set(skipped);
+        totalTimedOutAgents.addAndGet(timedOut);
+        totalSkippedAgents.addAndGet(skipped);
+        if (timedOut > 0 || skipped > 0) {
+            log.warn("Agent sweep did not complete for all agents: %s timed out, %s skipped because a previous update is still running", timedOut, skipped);
+        }
+    }
+
+    /**
+     * Returns the wall clock time in milliseconds at which the last completed
+     * agent status sweep started.  The status of every agent the sweep reached
+     * was polled after this time.
+     */
+    public long getLastAgentSweepStartTime()
+    {
+        return lastCompletedSweepStartTime.get();
+    }
+
+    @Managed(description = "Duration of the last agent status sweep in milliseconds")
+    public double getLastAgentSweepDurationMillis()
+    {
+        return lastSweepDurationNanos.get() / 1_000_000.0;
+    }
+
+    @Managed(description = "Time since the last agent status sweep completed in milliseconds")
+    public double getAgentSweepLagMillis()
+    {
+        return (System.nanoTime() - lastSweepCompletedNanos.get()) / 1_000_000.0;
+    }
+
+    @Managed(description = "Time since the last agent status sweep started in milliseconds")
+    public double getTimeSinceAgentSweepStartMillis()
+    {
+        return (System.nanoTime() - lastSweepStartNanos.get()) / 1_000_000.0;
+    }
+
+    @Managed(description = "Number of agents that did not respond within the last sweep budget")
+    public long getLastAgentSweepTimedOutAgents()
+    {
+        return lastSweepTimedOutAgents.get();
+    }
+
+    @Managed(description = "Number of agents skipped in the last sweep because a previous update was still running")
+    public long getLastAgentSweepSkippedAgents()
+    {
+        return lastSweepSkippedAgents.get();
+    }
+
+    @Managed(description = "Total number of agent updates that exceeded the sweep budget")
+    public long getTotalTimedOutAgents()
+    {
+        return totalTimedOutAgents.get();
+    }
+
+    @Managed(description = "Total number of agent updates skipped because a previous update was still running")
+    public long getTotalSkippedAgents()
+    {
+        return totalSkippedAgents.get();
+    }
+
+    @Managed(description = "Number of agent status updates currently in flight")
+    public int getAgentUpdatesInFlight()
+    {
+        return agentsUpdating.size();
+    }
+
+    @Managed(description = "Number of slot operations currently running")
+    public int getSlotOperationsInFlight()
+    {
+        return slotOperationExecutor.getOperationsInFlight();
+    }
+
+    @Managed(description = "Total number of slot operations executed")
+    public long getTotalSlotOperations()
+    {
+        return slotOperationExecutor.getTotalOperations();
+    }
+
+    @Managed(description = "Total number of slot operations that failed with an exception")
+    public long getTotalFailedSlotOperations()
+    {
+        return slotOperationExecutor.getFailedOperations();
+    }
+
+    @Managed(description = "Total number of slot operations that exceeded the slot operation timeout")
+    public long getTotalTimedOutSlotOperations()
+    {
+        return slotOperationExecutor.getTimedOutOperations();
+    }
+
+    @Managed(description = "Number of slot installs currently running")
+    public int getSlotInstallsInFlight()
+    {
+        return slotInstallExecutor.getInstallsInFlight();
+    }
+
+    @Managed(description = "Total number of slot installs sent to agents")
+    public long getTotalSlotInstalls()
+    {
+        return slotInstallExecutor.getTotalInstalls();
+    }
+
+    @Managed(description = "Total number of slot installs that failed on an agent")
+    public long getTotalFailedSlotInstalls()
+    {
+        return slotInstallExecutor.getFailedInstalls();
+    }
+
+    @Managed(description = "Total number of failed slot installs retried on another agent")
+    public long getTotalRetriedSlotInstalls()
+    {
+        return slotInstallExecutor.getRetriedInstalls();
     }
 
     public List<AgentStatus> provisionAgents(String agentConfigSpec,
@@ -372,16 +642,13 @@ public class Coordinator
 
     public AgentStatus terminateAgent(String agentId)
     {
-        RemoteAgent agent = null;
-        for (Iterator<Entry<String, RemoteAgent>> iterator = agents.entrySet().iterator(); iterator.hasNext(); ) {
-            Entry<String, RemoteAgent> entry = iterator.next();
-            if (entry.getValue().status().getAgentId().equals(agentId)) {
-                iterator.remove();
-                agent = entry.getValue();
-                break;
-            }
+        AgentStatus agentStatus = getSnapshot().getAgentByAgentId(agentId);
+        if (agentStatus == null) {
+            return null;
         }
-        if (agent == null) {
+        RemoteAgent agent = agents.get(agentStatus.getInstanceId());
+        if (agent == null || !agentId.equals(agent.status().getAgentId()) || !agents.remove(agentStatus.getInstanceId(), agent)) {
+            // agent was removed or replaced concurrently
             return null;
         }
         if (!agent.getSlots().isEmpty()) {
@@ -394,24 +661,40 @@ public class Coordinator
 
     public List<SlotStatus> install(Predicate<AgentStatus> filter, int limit, Assignment assignment)
     {
-        Installation installation = InstallationUtils.toInstallation(repository, assignment);
+        Installation installation = toProxyInstallation(InstallationUtils.toInstallation(repository, assignment));
 
-        List<RemoteAgent> targetAgents = selectAgents(filter, installation);
+        // agents in placement order; the agents past the limit replace agents that fail to install
+        List<RemoteAgent> candidates = selectAgents(filter, installation);
+        List<RemoteAgent> targetAgents = candidates.subList(0, Math.min(limit, candidates.size()));
 
-        // randomize agents so all processes don't end up on the same node
-        // todo sort agents by number of process already installed on them
-        List<SlotStatus> slots = newArrayList();
+        // distribute the binary through the agents instead of having every agent download it
+        List<URI> agentUris = newArrayList();
         for (RemoteAgent agent : targetAgents) {
-            if (slots.size() >= limit) {
-                break;
-            }
+            agentUris.add(agent.status().getInternalUri());
+        }
+
+        // a replacement agent downloads through the same peers as the agent it replaces
+        List<Installation> installations = newArrayList();
+        for (int i = 0; i < targetAgents.size(); i++) {
+            installations.add(installation.withBinaryPeers(DistributionTree.getPeers(agentUris, i, artifactFanout)));
+        }
+
+        InstallResult result = slotInstallExecutor.install(candidates, installations);
 
-            // install
-            SlotStatus slotStatus = agent.install(installation);
-            stateManager.setExpectedState(new ExpectedSlotStatus(slotStatus.getId(), STOPPED, installation.getAssignment()));
-            slots.add(slotStatus);
+        List<ExpectedSlotStatus> expectedStates = newArrayList();
+        for (SlotStatus slotStatus : result.getSlots()) {
+            expectedStates.add(new ExpectedSlotStatus(slotStatus.getId(), STOPPED, installation.getAssignment()));
+        }
+        stateManager.setExpectedStates(expectedStates);
+
+        if (!result.getFailures().isEmpty()) {
+            String failures = Joiner.on(", ").withKeyValueSeparator(": ").join(result.getFailures());
+            if (result.getSlots().isEmpty()) {
+                throw new IllegalStateException("Install failed on every agent: " + failures);
+            }
+            log.warn("Installed %s of %s slots of %s, install failed on agents: %s", result.getSlots().size(), installations.size(), installation.getAssignment(), failures);
         }
-        return ImmutableList.copyOf(slots);
+        return result.getSlots();
     }
 
     private List<RemoteAgent> selectAgents(Predicate<AgentStatus> filter, Installation installation)
@@ -429,23 +712,7 @@ public class Coordinator
             }
         }
 
-        // todo sort agents by number of process already installed on them?
-        Collections.shuffle(allAgents);
-
-        List<RemoteAgent> targetAgents = newArrayList();
-        for (RemoteAgent agent : allAgents) {
-            // agents without declared resources are considered to have unlimited resources
-            AgentStatus status = agent.status();
-            if (!status.getResources().isEmpty()) {
-                // verify that required resources are available
-                Map<String, Integer> availableResources = InstallationUtils.getAvailableResources(status);
-                if (!InstallationUtils.resourcesAreAvailable(availableResources, installation.getResources())) {
-                    continue;
-                }
-            }
-
-            targetAgents.add(agent);
-        }
+        List<RemoteAgent> targetAgents = placementScheduler.selectAgents(allAgents, installation, allAgents.size());
         if (targetAgents.isEmpty()) {
             throw new IllegalStateException("No agents have the available resources to run the specified binary and configuration.");
         }
@@ -456,47 +723,157 @@ public class Coordinator
     {
         List<RemoteSlot> filteredSlots = selectRemoteSlots(filter, expectedSlotsVersion);
 
-        HashSet<Assignment> newAssignments = new HashSet<Assignment>();
         List<RemoteSlot> slotsToUpgrade = new ArrayList<RemoteSlot>();
         for (RemoteSlot slot : filteredSlots) {
-            SlotStatus status = slot.status();
-            SlotLifecycleState state = status.getState();
-            if (state != TERMINATED && state != UNKNOWN) {
-                Assignment assignment = upgradeVersions.upgradeAssignment(repository, status.getAssignment());
-                newAssignments.add(assignment);
+            if (isUpgradable(slot.status())) {
                 slotsToUpgrade.add(slot);
             }
         }
 
         // no slots to upgrade
-        if (newAssignments.isEmpty()) {
+        Assignment assignment = getUpgradeAssignment(transform(slotsToUpgrade, getSlotStatus()), upgradeVersions);
+        if (assignment == null) {
+            return ImmutableList.of();
+        }
+
+        return assignSlots(slotsToUpgrade, assignment);
+    }
+
+    /**
+     * Assigns every upgradable slot matching the filter that does not already
+     * have the specified assignment.
+     */
+    public List<SlotStatus> upgrade(Predicate<SlotStatus> filter, Assignment assignment)
+    {
+        Preconditions.checkNotNull(filter, "filter is null");
+        Preconditions.checkNotNull(assignment, "assignment is null");
+
+        List<RemoteSlot> slotsToUpgrade = new ArrayList<RemoteSlot>();
+        for (RemoteSlot slot : getRemoteSlots(filter)) {
+            SlotStatus status = slot.status();
+            if (isUpgradable(status) && !assignment.equals(status.getAssignment())) {
+                slotsToUpgrade.add(slot);
+            }
+        }
+        if (slotsToUpgrade.isEmpty()) {
             return ImmutableList.of();
         }
+        return assignSlots(slotsToUpgrade, assignment);
+    }
+
+    /**
+     * Returns the single assignment the upgradable slots would be upgraded to,
+     * or null if none of the slots can be upgraded.
+     *
+     * @throws AmbiguousUpgradeException if the slots would be upgraded to different assignments
+     */
+    public Assignment getUpgradeAssignment(Iterable<SlotStatus> slots, UpgradeVersions upgradeVersions)
+    {
+        Preconditions.checkNotNull(slots, "slots is null");
+        Preconditions.checkNotNull(upgradeVersions, "upgradeVersions is null");
+
+        HashSet<Assignment> newAssignments = new HashSet<Assignment>();
+        for (SlotStatus status : slots) {
+            if (isUpgradable(status)) {
+                newAssignments.add(upgradeVersions.upgradeAssignment(repository, status.getAssignment()));
+            }
+        }
+
+        if (newAssignments.isEmpty()) {
+            return null;
+        }
 
         // must upgrade to a single new version
         if (newAssignments.size() != 1) {
             throw new AmbiguousUpgradeException(newAssignments);
         }
-        Assignment assignment = newAssignments.iterator().next();
+        return newAssignments.iterator().next();
+    }
 
+    public static boolean isUpgradable(SlotStatus status)
+    {
+        SlotLifecycleState state = status.getState();
+        return state != TERMINATED && state != UNKNOWN;
+    }
+
+    private List<SlotStatus> assignSlots(List<RemoteSlot> slotsToUpgrade, Assignment assignment)
+    {
         URI configFile = repository.configToHttpUri(assignment.getConfig());
 
-        final Installation installation = new Installation(
+        Installation installation = toProxyInstallation(new Installation(
                 repository.configShortName(assignment.getConfig()),
                 assignment,
                 repository.binaryToHttpUri(assignment.getBinary()),
-                configFile, ImmutableMap.<String, Integer>of());
+                configFile, ImmutableMap.<String, Integer>of()));
 
-        return ImmutableList.copyOf(transform(slotsToUpgrade, new Function<RemoteSlot, SlotStatus>()
-        {
-            @Override
-            public SlotStatus apply(RemoteSlot slot)
-            {
-                SlotStatus slotStatus = slot.assign(installation);
-                stateManager.setExpectedState(new ExpectedSlotStatus(slotStatus.getId(), STOPPED, installation.getAssignment()));
-                return slotStatus;
+        // distribute the binary through the agents instead of having every agent download it
+        Map<UUID, URI> slotAgentUris = newHashMap();
+        for (RemoteAgent agent : agents.values()) {
+            for (RemoteSlot slot : agent.getSlots()) {
+                slotAgentUris.put(slot.getId(), agent.status().getInternalUri());
             }
-        }));
+        }
+        List<URI> agentUris = newArrayList();
+        for (RemoteSlot slot : slotsToUpgrade) {
+            URI agentUri = slotAgentUris.get(slot.getId());
+            if (agentUri != null && !agentUris.contains(agentUri)) {
+                agentUris.add(agentUri);
+            }
+        }
+        final Map<UUID, Installation> installations = newHashMap();
+        for (RemoteSlot slot : slotsToUpgrade) {
+            int index = agentUris.indexOf(slotAgentUris.get(slot.getId()));
+            installations.put(slot.getId(), index < 0 ? installation : installation.withBinaryPeers(DistributionTree.getPeers(agentUris, index, artifactFanout)));
+        }
+
+        // upgrade one level of the distribution tree at a time, so every agent finds the binary cached by its parent
+        SortedMap<Integer, List<RemoteSlot>> levels = new TreeMap<>();
+        for (RemoteSlot slot : slotsToUpgrade) {
+            int depth = installations.get(slot.getId()).getBinaryPeers().size();
+            List<RemoteSlot> level = levels.get(depth);
+            if (level == null) {
+                level = newArrayList();
+                levels.put(depth, level);
+            }
+            level.add(slot);
+        }
+        List<SlotStatus> slotStatuses = newArrayList();
+        for (List<RemoteSlot> level : levels.values()) {
+            slotStatuses.addAll(slotOperationExecutor.execute(level, new Function<RemoteSlot, SlotStatus>()
+            {
+                @Override
+                public SlotStatus apply(RemoteSlot slot)
+                {
+                    return slot.assign(installations.get(slot.getId()));
+                }
+            }));
+        }
+
+        List<ExpectedSlotStatus> expectedStates = newArrayList();
+        for (SlotStatus slotStatus : slotStatuses) {
+            expectedStates.add(new ExpectedSlotStatus(slotStatus.getId(), STOPPED, installation.getAssignment()));
+        }
+        stateManager.setExpectedStates(expectedStates);
+        return slotStatuses;
+    }
+
+    /**
+     * Points the installation at the artifact proxy of this coordinator, if
+     * the proxy is enabled.
+     */
+    private Installation toProxyInstallation(Installation installation)
+    {
+        URI coordinatorUri = coordinatorStatus.getInternalUri();
+        if (!artifactProxyEnabled || coordinatorUri == null) {
+            return installation;
+        }
+        Assignment assignment = installation.getAssignment();
+        return new Installation(installation.getShortName(),
+                assignment,
+                uriBuilderFrom(coordinatorUri).appendPath("/v1/binary/").appendPath(assignment.getBinary()).build(),
+                uriBuilderFrom(coordinatorUri).appendPath("/v1/config/").appendPath(assignment.getConfig()).build(),
+                installation.getResources(),
+                installation.getBinaryPeers());
     }
 
     public List<SlotStatus> terminate(Predicate<SlotStatus> filter, String expectedSlotsVersion)
@@ -506,17 +883,30 @@ public class Coordinator
         // filter the slots
         List<RemoteSlot> filteredSlots = selectRemoteSlots(filter, expectedSlotsVersion);
 
-        ImmutableList.Builder<SlotStatus> builder = ImmutableList.builder();
+        List<RemoteSlot> slotsToTerminate = newArrayList();
         for (RemoteSlot slot : filteredSlots) {
             if (filter.apply(slot.status())) {
-                SlotStatus slotStatus = slot.terminate();
-                if (slotStatus.getState() == TERMINATED) {
-                    stateManager.deleteExpectedState(slotStatus.getId());
-                }
-                builder.add(slotStatus);
+                slotsToTerminate.add(slot);
             }
         }
-        return builder.build();
+
+        List<SlotStatus> slotStatuses = slotOperationExecutor.execute(slotsToTerminate, new Function<RemoteSlot, SlotStatus>()
+        {
+            @Override
+            public SlotStatus apply(RemoteSlot slot)
+            {
+                return slot.terminate();
+            }
+        });
+
+        List<UUID> terminatedSlots = newArrayList();
+        for (SlotStatus slotStatus : slotStatuses) {
+            if (slotStatus.getState() == TERMINATED) {
+                terminatedSlots.add(slotStatus.getId());
+            }
+        }
+        stateManager.deleteExpectedStates(terminatedSlots);
+        return slotStatuses;
     }
 
     public List<SlotStatus> setState(final SlotLifecycleState state, Predicate<SlotStatus> filter, String expectedSlotsVersion)
@@ -526,33 +916,31 @@ public class Coordinator
         // filter the slots
         List<RemoteSlot> filteredSlots = selectRemoteSlots(filter, expectedSlotsVersion);
 
-        return ImmutableList.copyOf(transform(filteredSlots, new Function<RemoteSlot, SlotStatus>()
+        List<SlotStatus> slotStatuses = slotOperationExecutor.execute(filteredSlots, new Function<RemoteSlot, SlotStatus>()
         {
             @Override
             public SlotStatus apply(RemoteSlot slot)
             {
-                SlotStatus slotStatus;
-                SlotLifecycleState expectedState;
                 switch (state) {
                     case RUNNING:
-                        slotStatus = slot.start();
-                        expectedState = RUNNING;
-                        break;
+                        return slot.start();
                     case RESTARTING:
-                        slotStatus = slot.restart();
-                        expectedState = RUNNING;
-                        break;
+                        return slot.restart();
                     case STOPPED:
-                        slotStatus = slot.stop();
-                        expectedState = STOPPED;
-                        break;
+                        return slot.stop();
                     default:
                         throw new IllegalArgumentException("Unexpected state transition " + state);
                 }
-                stateManager.setExpectedState(new ExpectedSlotStatus(slotStatus.getId(), expectedState, slotStatus.getAssignment()));
-                return slotStatus;
             }
-        }));
+        });
+
+        SlotLifecycleState expectedState = state == STOPPED ? STOPPED : RUNNING;
+        List<ExpectedSlotStatus> expectedStates = newArrayList();
+        for (SlotStatus slotStatus : slotStatuses) {
+            expectedStates.add(new ExpectedSlotStatus(slotStatus.getId(), expectedState, slotStatus.getAssignment()));
+        }
+        stateManager.setExpectedStates(expectedStates);
+        return slotStatuses;
     }
 
     public List<SlotStatus> resetExpectedState(Predicate<SlotStatus> filter, String expectedSlotsVersion)
@@ -563,26 +951,25 @@ public class Coordinator
         // verify the state of the system hasn't changed
         checkSlotsVersion(expectedSlotsVersion, filteredSlots);
 
-        return ImmutableList.copyOf(transform(filteredSlots, new Function<SlotStatus, SlotStatus>()
-        {
-            @Override
-            public SlotStatus apply(SlotStatus slotStatus)
-            {
-                if (slotStatus.getState() != SlotLifecycleState.UNKNOWN) {
-                    stateManager.setExpectedState(new ExpectedSlotStatus(slotStatus.getId(), slotStatus.getState(), slotStatus.getAssignment()));
-                }
-                else {
-                    stateManager.deleteExpectedState(slotStatus.getId());
-                }
-                return slotStatus;
+        List<ExpectedSlotStatus> expectedStates = newArrayList();
+        List<UUID> unknownSlots = newArrayList();
+        for (SlotStatus slotStatus : filteredSlots) {
+            if (slotStatus.getState() != SlotLifecycleState.UNKNOWN) {
+                expectedStates.add(new ExpectedSlotStatus(slotStatus.getId(), slotStatus.getState(), slotStatus.getAssignment()));
             }
-        }));
+            else {
+                unknownSlots.add(slotStatus.getId());
+            }
+        }
+        stateManager.setExpectedStates(expectedStates);
+        stateManager.deleteExpectedStates(unknownSlots);
+        return ImmutableList.copyOf(filteredSlots);
     }
 
     private List<RemoteSlot> selectRemoteSlots(Predicate<SlotStatus> filter, String expectedSlotsVersion)
     {
         // filter the slots
-        List<RemoteSlot> filteredSlots = ImmutableList.copyOf(filter(getAllSlots(), filterSlotsBy(filter)));
+        List<RemoteSlot> filteredSlots = getRemoteSlots(filter);
 
         // verify the state of the system hasn't changed
         checkSlotsVersion(expectedSlotsVersion, getAllSlotsStatus(filter, filteredSlots));
@@ -590,20 +977,76 @@ public class Coordinator
         return filteredSlots;
     }
 
+    /**
+     * Returns a consistent view of all agents and slots.  The previous snapshot
+     * is reused as long as no agent status or expected state has changed.
+     */
+    public ClusterSnapshot getSnapshot()
+    {
+        List<AgentStatus> agentStatuses = getAgents();
+        Collection<ExpectedSlotStatus> expectedStateList = stateManager.getAllExpectedStates();
+
+        ClusterSnapshot current = snapshot.get();
+        if (current != null && current.isCurrent(agentStatuses, expectedStateList)) {
+            return current;
+        }
+
+        // the short name index is updated incrementally, so snapshots are built one at a time
+        synchronized (shortNames) {
+            // another request may have built a snapshot while this one was waiting
+            agentStatuses = getAgents();
+            expectedStateList = stateManager.getAllExpectedStates();
+            current = snapshot.get();
+            if (current != null && current.isCurrent(agentStatuses, expectedStateList)) {
+                return current;
+            }
+            return buildSnapshot(agentStatuses, expectedStateList);
+        }
+    }
+
+    private ClusterSnapshot buildSnapshot(List<AgentStatus> agentStatuses, Collection<ExpectedSlotStatus> expectedStateList)
+    {
+        ImmutableMap<UUID, ExpectedSlotStatus> expectedStates = ExpectedStates.indexById(expectedStateList);
+
+        List<SlotStatus> slotStatuses = mergeExpectedStates(concat(transform(agentStatuses, new Function<AgentStatus, List<SlotStatus>>()
+        {
+            @Override
+            public List<SlotStatus> apply(AgentStatus agentStatus)
+            {
+                return agentStatus.getSlotStatuses();
+            }
+        })), expectedStates, Predicates.<SlotStatus>alwaysTrue());
+
+        ClusterSnapshot newSnapshot = new ClusterSnapshot(snapshotVersion.incrementAndGet(), agentStatuses, expectedStateList, slotStatuses, shortNames);
+        snapshot.set(newSnapshot);
+        return newSnapshot;
+    }
+
+    @Managed(description = "Version of the current cluster snapshot; incremented every time the snapshot is rebuilt")
+    public long getSnapshotVersion()
+    {
+        return snapshotVersion.get();
+    }
+
     public List<SlotStatus> getAllSlotStatus()
     {
-        return getAllSlotsStatus(Predicates.<SlotStatus>alwaysTrue());
+        return getSnapshot().getSlots();
     }
 
     public List<SlotStatus> getAllSlotsStatus(Predicate<SlotStatus> slotFilter)
     {
-        return getAllSlotsStatus(slotFilter, getAllSlots());
+        return getSnapshot().getSlots(slotFilter);
     }
 
     private List<SlotStatus> getAllSlotsStatus(Predicate<SlotStatus> slotFilter, List<RemoteSlot> allSlots)
     {
         ImmutableMap<UUID, ExpectedSlotStatus> expectedStates = Maps.uniqueIndex(stateManager.getAllExpectedStates(), ExpectedSlotStatus.uuidGetter());
-        ImmutableMap<UUID, SlotStatus> actualStates = Maps.uniqueIndex(transform(allSlots, getSlotStatus()), SlotStatus.uuidGetter());
+        return mergeExpectedStates(transform(allSlots, getSlotStatus()), expectedStates, slotFilter);
+    }
+
+    private static List<SlotStatus> mergeExpectedStates(Iterable<SlotStatus> slotStatuses, Map<UUID, ExpectedSlotStatus> expectedStates, Predicate<SlotStatus> slotFilter)
+    {
+        ImmutableMap<UUID, SlotStatus> actualStates = Maps.uniqueIndex(slotStatuses, SlotStatus.uuidGetter());
 
         ArrayList<SlotStatus> stats = newArrayList();
         for (UUID uuid : Sets.union(actualStates.keySet(), expectedStates.keySet())) {
@@ -674,6 +1117,36 @@ public class Coordinator
         };
     }
 
+    /**
+     * Returns the remote slots matching the filter.  A filter that can use the
+     * snapshot indexes only evaluates the slots of the agents reporting one of
+     * its candidate slots.
+     */
+    private List<RemoteSlot> getRemoteSlots(Predicate<SlotStatus> filter)
+    {
+        if (!(filter instanceof IndexedSlotPredicate)) {
+            return ImmutableList.copyOf(filter(getAllSlots(), filterSlotsBy(filter)));
+        }
+
+        ClusterSnapshot snapshot = getSnapshot();
+        Set<String> instanceIds = new LinkedHashSet<>();
+        for (SlotStatus slotStatus : snapshot.getSlots(filter)) {
+            AgentStatus agentStatus = snapshot.getAgentBySlotId(slotStatus.getId());
+            if (agentStatus != null) {
+                instanceIds.add(agentStatus.getInstanceId());
+            }
+        }
+
+        ImmutableList.Builder<RemoteSlot> slots = ImmutableList.builder();
+        for (String instanceId : instanceIds) {
+            RemoteAgent agent = agents.get(instanceId);
+            if (agent != null) {
+                slots.addAll(filter(agent.getSlots(), filterSlotsBy(filter)));
+            }
+        }
+        return slots.build();
+    }
+
     private List<RemoteSlot> getAllSlots()
     {
         return ImmutableList.copyOf(concat(Iterables.transform(agents.values(), new Function<RemoteAgent, List<? extends RemoteSlot>>()
@@ -18,8 +18,10 @@ import com.google.common.collect.ImmutableList;
 import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
 import io.airlift.configuration.LegacyConfig;
+import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -30,9 +32,31 @@ public class CoordinatorConfig
 
     private String airshipVersion;
     private Duration statusExpiration = new Duration(30, TimeUnit.SECONDS);
+    private int agentStatusMaxConcurrency = 32;
+    private Duration agentStatusTimeout = new Duration(10, TimeUnit.SECONDS);
+    private Duration agentStatusSweepTimeout = new Duration(30, TimeUnit.SECONDS);
+    private Duration agentStatusLongPollWait = new Duration(0, TimeUnit.SECONDS);
+    private Duration expectedStateRefreshInterval = new Duration(30, TimeUnit.SECONDS);
+    private int slotOperationMaxConcurrency = 64;
+    private Duration slotOperationTimeout = new Duration(5, TimeUnit.MINUTES);
+    private int artifactFanout = 4;
+    private PlacementStrategy placementStrategy = PlacementStrategy.SPREAD;
+    private int placementFailureDomainDepth = 3;
+    private int installMaxConcurrency = 16;
+    private String rolloutDir = "rollouts";
+    private Duration rolloutHealthCheckInterval = new Duration(5, TimeUnit.SECONDS);
+    private Duration rolloutWaveTimeout = new Duration(10, TimeUnit.MINUTES);
+    private Duration rolloutMinHealthyTime = new Duration(30, TimeUnit.SECONDS);
 
     private String serviceInventoryCacheDir = "service-inventory-cache";
 
+    private boolean artifactProxyEnabled;
+    private String artifactProxyCacheDir = "artifact-proxy-cache";
+    private DataSize artifactProxyMaxSize = new DataSize(10, DataSize.Unit.GIGABYTE);
+
+    private Duration repositoryCacheTtl = new Duration(1, TimeUnit.MINUTES);
+    private long repositoryCacheMaxSize = 10_000;
+
     private String agentDefaultConfig;
     private boolean allowDuplicateInstallationsOnAnAgent;
 
@@ -70,6 +94,217 @@ public class CoordinatorConfig
         return this;
     }
 
+    @Min(1)
+    public int getAgentStatusMaxConcurrency()
+    {
+        return agentStatusMaxConcurrency;
+    }
+
+    @Config("coordinator.agent-status.max-concurrency")
+    @ConfigDescription("Maximum number of agents polled concurrently")
+    public CoordinatorConfig setAgentStatusMaxConcurrency(int agentStatusMaxConcurrency)
+    {
+        this.agentStatusMaxConcurrency = agentStatusMaxConcurrency;
+        return this;
+    }
+
+    @NotNull
+    public Duration getAgentStatusTimeout()
+    {
+        return agentStatusTimeout;
+    }
+
+    @Config("coordinator.agent-status.timeout")
+    @ConfigDescription("Connect and read timeout for a single agent status request")
+    public CoordinatorConfig setAgentStatusTimeout(Duration agentStatusTimeout)
+    {
+        this.agentStatusTimeout = agentStatusTimeout;
+        return this;
+    }
+
+    @NotNull
+    public Duration getAgentStatusSweepTimeout()
+    {
+        return agentStatusSweepTimeout;
+    }
+
+    @Config("coordinator.agent-status.sweep-timeout")
+    @ConfigDescription("Maximum time to wait for all agents to be polled before the sweep completes")
+    public CoordinatorConfig setAgentStatusSweepTimeout(Duration agentStatusSweepTimeout)
+    {
+        this.agentStatusSweepTimeout = agentStatusSweepTimeout;
+        return this;
+    }
+
+    @NotNull
+    public Duration getAgentStatusLongPollWait()
+    {
+        return agentStatusLongPollWait;
+    }
+
+    @Config("coordinator.agent-status.long-poll-wait")
+    @ConfigDescription("Time an agent may hold a status request until its status changes; zero disables long polling. " +
+            "Each held request occupies a poller thread, so max-concurrency should cover every agent when enabled.")
+    public CoordinatorConfig setAgentStatusLongPollWait(Duration agentStatusLongPollWait)
+    {
+        this.agentStatusLongPollWait = agentStatusLongPollWait;
+        return this;
+    }
+
+    @NotNull
+    public Duration getExpectedStateRefreshInterval()
+    {
+        return expectedStateRefreshInterval;
+    }
+
+    @Config("coordinator.expected-state.refresh-interval")
+    @ConfigDescription("Interval at which the cached expected slot states are reconciled with the backing store")
+    public CoordinatorConfig setExpectedStateRefreshInterval(Duration expectedStateRefreshInterval)
+    {
+        this.expectedStateRefreshInterval = expectedStateRefreshInterval;
+        return this;
+    }
+
+    @Min(1)
+    public int getSlotOperationMaxConcurrency()
+    {
+        return slotOperationMaxConcurrency;
+    }
+
+    @Config("coordinator.slot-operation.max-concurrency")
+    @ConfigDescription("Maximum number of slot lifecycle, upgrade or terminate requests sent to agents concurrently")
+    public CoordinatorConfig setSlotOperationMaxConcurrency(int slotOperationMaxConcurrency)
+    {
+        this.slotOperationMaxConcurrency = slotOperationMaxConcurrency;
+        return this;
+    }
+
+    @NotNull
+    public Duration getSlotOperationTimeout()
+    {
+        return slotOperationTimeout;
+    }
+
+    @Config("coordinator.slot-operation.timeout")
+    @ConfigDescription("Maximum time to wait for a single slot operation; slots that do not answer in time are reported with an unknown state")
+    public CoordinatorConfig setSlotOperationTimeout(Duration slotOperationTimeout)
+    {
+        this.slotOperationTimeout = slotOperationTimeout;
+        return this;
+    }
+
+    @Min(0)
+    public int getArtifactFanout()
+    {
+        return artifactFanout;
+    }
+
+    @Config("coordinator.artifact.fanout")
+    @ConfigDescription("Number of agents that download a binary from the repository, and the number of agents each of them serves; zero makes every agent download from the repository")
+    public CoordinatorConfig setArtifactFanout(int artifactFanout)
+    {
+        this.artifactFanout = artifactFanout;
+        return this;
+    }
+
+    @NotNull
+    public PlacementStrategy getPlacementStrategy()
+    {
+        return placementStrategy;
+    }
+
+    @Config("coordinator.placement.strategy")
+    @ConfigDescription("How agents are chosen for new slots: SPREAD, BINPACK or LEAST_LOADED")
+    public CoordinatorConfig setPlacementStrategy(PlacementStrategy placementStrategy)
+    {
+        this.placementStrategy = placementStrategy;
+        return this;
+    }
+
+    @Min(0)
+    public int getPlacementFailureDomainDepth()
+    {
+        return placementFailureDomainDepth;
+    }
+
+    @Config("coordinator.placement.failure-domain-depth")
+    @ConfigDescription("Number of leading agent location segments that identify a failure domain; copies of a service are spread across failure domains (0 disables)")
+    public CoordinatorConfig setPlacementFailureDomainDepth(int placementFailureDomainDepth)
+    {
+        this.placementFailureDomainDepth = placementFailureDomainDepth;
+        return this;
+    }
+
+    @Min(1)
+    public int getInstallMaxConcurrency()
+    {
+        return installMaxConcurrency;
+    }
+
+    @Config("coordinator.install.max-concurrency")
+    @ConfigDescription("Maximum number of slot installs sent to agents concurrently")
+    public CoordinatorConfig setInstallMaxConcurrency(int installMaxConcurrency)
+    {
+        this.installMaxConcurrency = installMaxConcurrency;
+        return this;
+    }
+
+    @NotNull
+    public String getRolloutDir()
+    {
+        return rolloutDir;
+    }
+
+    @Config("coordinator.rollout.dir")
+    @ConfigDescription("Directory where the progress of rolling upgrades is stored")
+    public CoordinatorConfig setRolloutDir(String rolloutDir)
+    {
+        this.rolloutDir = rolloutDir;
+        return this;
+    }
+
+    @NotNull
+    public Duration getRolloutHealthCheckInterval()
+    {
+        return rolloutHealthCheckInterval;
+    }
+
+    @Config("coordinator.rollout.health-check-interval")
+    @ConfigDescription("Interval at which running rollouts check the health of the current wave")
+    public CoordinatorConfig setRolloutHealthCheckInterval(Duration rolloutHealthCheckInterval)
+    {
+        this.rolloutHealthCheckInterval = rolloutHealthCheckInterval;
+        return this;
+    }
+
+    @NotNull
+    public Duration getRolloutWaveTimeout()
+    {
+        return rolloutWaveTimeout;
+    }
+
+    @Config("coordinator.rollout.wave-timeout")
+    @ConfigDescription("Maximum time for the slots of a rollout wave to become healthy before the rollout fails")
+    public CoordinatorConfig setRolloutWaveTimeout(Duration rolloutWaveTimeout)
+    {
+        this.rolloutWaveTimeout = rolloutWaveTimeout;
+        return this;
+    }
+
+    @NotNull
+    public Duration getRolloutMinHealthyTime()
+    {
+        return rolloutMinHealthyTime;
+    }
+
+    @Config("coordinator.rollout.min-healthy-time")
+    @ConfigDescription("Minimum time the slots of a rollout wave must stay running before the next wave starts")
+    public CoordinatorConfig setRolloutMinHealthyTime(Duration rolloutMinHealthyTime)
+    {
+        this.rolloutMinHealthyTime = rolloutMinHealthyTime;
+        return this;
+    }
+
     @NotNull
     public String getServiceInventoryCacheDir()
     {
@@ -83,6 +318,75 @@ public class CoordinatorConfig
         return this;
     }
 
+    public boolean isArtifactProxyEnabled()
+    {
+        return artifactProxyEnabled;
+    }
+
+    @Config("coordinator.artifact-proxy.enabled")
+    @ConfigDescription("Have agents download binaries and config bundles through a cache on the coordinator instead of from the repository")
+    public CoordinatorConfig setArtifactProxyEnabled(boolean artifactProxyEnabled)
+    {
+        this.artifactProxyEnabled = artifactProxyEnabled;
+        return this;
+    }
+
+    @NotNull
+    public String getArtifactProxyCacheDir()
+    {
+        return artifactProxyCacheDir;
+    }
+
+    @Config("coordinator.artifact-proxy.cache-dir")
+    @ConfigDescription("Directory where the artifact proxy caches binaries and config bundles")
+    public CoordinatorConfig setArtifactProxyCacheDir(String artifactProxyCacheDir)
+    {
+        this.artifactProxyCacheDir = artifactProxyCacheDir;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getArtifactProxyMaxSize()
+    {
+        return artifactProxyMaxSize;
+    }
+
+    @Config("coordinator.artifact-proxy.max-size")
+    @ConfigDescription("Maximum size of the artifact proxy cache; the least recently used artifacts are evicted first")
+    public CoordinatorConfig setArtifactProxyMaxSize(DataSize artifactProxyMaxSize)
+    {
+        this.artifactProxyMaxSize = artifactProxyMaxSize;
+        return this;
+    }
+
+    @NotNull
+    public Duration getRepositoryCacheTtl()
+    {
+        return repositoryCacheTtl;
+    }
+
+    @Config("coordinator.repository.cache-ttl")
+    @ConfigDescription("How long snapshot resolutions and missing artifacts are remembered; resolved release versions are remembered until evicted")
+    public CoordinatorConfig setRepositoryCacheTtl(Duration repositoryCacheTtl)
+    {
+        this.repositoryCacheTtl = repositoryCacheTtl;
+        return this;
+    }
+
+    @Min(0)
+    public long getRepositoryCacheMaxSize()
+    {
+        return repositoryCacheMaxSize;
+    }
+
+    @Config("coordinator.repository.cache-max-size")
+    @ConfigDescription("Maximum number of repository lookups remembered")
+    public CoordinatorConfig setRepositoryCacheMaxSize(long repositoryCacheMaxSize)
+    {
+        this.repositoryCacheMaxSize = repositoryCacheMaxSize;
+        return this;
+    }
+
     @NotNull
     public List<String> getRepositories()
     {
@@ -33,6 +33,8 @@ import io.airlift.discovery.client.ServiceDescriptorsRepresentation;
 import io.airlift.http.server.TheServlet;
 import io.airlift.json.JsonCodecBinder;
 
+import org.weakref.jmx.guice.MBeanModule;
+
 import javax.servlet.Filter;
 
 import static io.airlift.configuration.ConfigurationModule.bindConfig;
@@ -47,24 +49,37 @@ public class CoordinatorMainModule
         binder.requireExplicitBindings();
 
         binder.bind(Coordinator.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(Coordinator.class).withGeneratedName();
         binder.bind(CoordinatorResource.class).in(Scopes.SINGLETON);
         binder.bind(CoordinatorSlotResource.class).in(Scopes.SINGLETON);
         binder.bind(CoordinatorAssignmentResource.class).in(Scopes.SINGLETON);
         binder.bind(CoordinatorLifecycleResource.class).in(Scopes.SINGLETON);
+        binder.bind(RolloutManager.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(RolloutManager.class).withGeneratedName();
+        binder.bind(CoordinatorRolloutResource.class).in(Scopes.SINGLETON);
         binder.bind(ExpectedStateResource.class).in(Scopes.SINGLETON);
         binder.bind(InvalidSlotFilterExceptionMapper.class).in(Scopes.SINGLETON);
         binder.bind(AdminResource.class).in(Scopes.SINGLETON);
         binder.bind(VersionConflictExceptionMapper.class).in(Scopes.SINGLETON);
         binder.bind(RemoteCoordinatorFactory.class).to(HttpRemoteCoordinatorFactory.class).in(Scopes.SINGLETON);
         binder.bind(RemoteAgentFactory.class).to(HttpRemoteAgentFactory.class).in(Scopes.SINGLETON);
+        binder.bind(PlacementScheduler.class).to(ResourcePlacementScheduler.class).in(Scopes.SINGLETON);
 
         binder.bind(Repository.class).to(RepositorySet.class).in(Scopes.SINGLETON);
+        binder.bind(ArtifactExistenceChecker.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(ArtifactExistenceChecker.class).withGeneratedName();
+        binder.bind(MavenRepository.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(MavenRepository.class).withGeneratedName();
         Multibinder.newSetBinder(binder, Repository.class).addBinding().to(MavenRepository.class).in(Scopes.SINGLETON);
         Multibinder.newSetBinder(binder, Repository.class).addBinding().to(HttpRepository.class).in(Scopes.SINGLETON);
 
+        binder.bind(ArtifactProxy.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(ArtifactProxy.class).withGeneratedName();
         binder.bind(BinaryResource.class).in(Scopes.SINGLETON);
+        binder.bind(ConfigResource.class).in(Scopes.SINGLETON);
 
         binder.bind(ServiceInventory.class).to(HttpServiceInventory.class).in(Scopes.SINGLETON);
+        binder.bind(ServiceInventoryJson.class).in(Scopes.SINGLETON);
         binder.bind(ServiceInventoryResource.class).in(Scopes.SINGLETON);
 
         binder.bind(SignatureVerifier.class).in(Scopes.SINGLETON);
@@ -77,6 +92,7 @@ public class CoordinatorMainModule
         JsonCodecBinder.jsonCodecBinder(binder).bindJsonCodec(SlotStatusRepresentation.class);
         JsonCodecBinder.jsonCodecBinder(binder).bindJsonCodec(ServiceDescriptorsRepresentation.class);
         JsonCodecBinder.jsonCodecBinder(binder).bindJsonCodec(ExpectedSlotStatus.class);
+        JsonCodecBinder.jsonCodecBinder(binder).bindJsonCodec(Rollout.class);
         JsonCodecBinder.jsonCodecBinder(binder).bindListJsonCodec(ServiceDescriptor.class);
 
         bindConfig(binder).to(CoordinatorConfig.class);
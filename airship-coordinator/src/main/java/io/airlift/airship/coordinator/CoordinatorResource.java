@@ -14,17 +14,23 @@
 package io.airlift.airship.coordinator;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import io.airlift.airship.shared.CoordinatorStatus;
 import io.airlift.airship.shared.CoordinatorStatusRepresentation;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_COORDINATOR_VERSION_HEADER;
+import static io.airlift.airship.shared.VersionsUtil.createCoordinatorsEntityTag;
+import static io.airlift.airship.shared.VersionsUtil.isNotModified;
 
 @Path("/v1/coordinator/")
 public class CoordinatorResource
@@ -41,11 +47,20 @@ public class CoordinatorResource
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllSlotsStatus()
+    public Response getAllSlotsStatus(@HeaderParam(IF_NONE_MATCH) String ifNoneMatch)
     {
         CoordinatorStatus coordinatorStatus = coordinator.status();
+
+        EntityTag entityTag = new EntityTag(createCoordinatorsEntityTag(null, ImmutableList.of(coordinatorStatus)));
+        if (isNotModified(ifNoneMatch, entityTag.getValue())) {
+            return Response.notModified(entityTag)
+                    .header(AIRSHIP_COORDINATOR_VERSION_HEADER, coordinatorStatus.getVersion())
+                    .build();
+        }
+
         CoordinatorStatusRepresentation coordinatorStatusRepresentation = CoordinatorStatusRepresentation.from(coordinatorStatus);
         return Response.ok(coordinatorStatusRepresentation)
+                .tag(entityTag)
                 .header(AIRSHIP_COORDINATOR_VERSION_HEADER, coordinatorStatus.getVersion())
                 .build();
     }
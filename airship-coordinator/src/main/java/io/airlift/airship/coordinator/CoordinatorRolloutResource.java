@@ -0,0 +1,131 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.inject.Inject;
+import io.airlift.airship.shared.SlotStatus;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.util.UUID;
+
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SLOTS_VERSION_HEADER;
+
+@Path("/v1/slot/rollout")
+public class CoordinatorRolloutResource
+{
+    private final Coordinator coordinator;
+    private final RolloutManager rolloutManager;
+
+    @Inject
+    public CoordinatorRolloutResource(Coordinator coordinator, RolloutManager rolloutManager)
+    {
+        Preconditions.checkNotNull(coordinator, "coordinator must not be null");
+        Preconditions.checkNotNull(rolloutManager, "rolloutManager is null");
+
+        this.coordinator = coordinator;
+        this.rolloutManager = rolloutManager;
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response createRollout(RolloutRequest rolloutRequest,
+            @Context UriInfo uriInfo,
+            @HeaderParam(AIRSHIP_SLOTS_VERSION_HEADER) String expectedSlotsVersion)
+    {
+        Preconditions.checkNotNull(rolloutRequest, "rolloutRequest must not be null");
+
+        // build filter
+        Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, true, coordinator.getSnapshot());
+
+        Rollout rollout;
+        try {
+            rollout = rolloutManager.createRollout(slotFilter, rolloutRequest, expectedSlotsVersion);
+        }
+        catch (IllegalStateException e) {
+            return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).type(MediaType.TEXT_PLAIN_TYPE).build();
+        }
+        if (rollout == null) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        return Response.created(uriInfo.getBaseUriBuilder().path(CoordinatorRolloutResource.class).path(rollout.getId().toString()).build())
+                .entity(rollout)
+                .build();
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getRollouts()
+    {
+        return Response.ok(rolloutManager.getRollouts()).build();
+    }
+
+    @GET
+    @Path("{rolloutId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getRollout(@PathParam("rolloutId") String rolloutId)
+    {
+        UUID id = parseRolloutId(rolloutId);
+        if (id == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        Rollout rollout = rolloutManager.getRollout(id);
+        if (rollout == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(rollout).build();
+    }
+
+    @PUT
+    @Path("{rolloutId}/state")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response setState(@PathParam("rolloutId") String rolloutId, String newState)
+    {
+        Preconditions.checkNotNull(newState, "newState must not be null");
+
+        RolloutState state = RolloutState.lookup(newState);
+        if (state == null || state == RolloutState.FAILED || state == RolloutState.COMPLETED) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        UUID id = parseRolloutId(rolloutId);
+        if (id == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        Rollout rollout;
+        try {
+            rollout = rolloutManager.setState(id, state);
+        }
+        catch (IllegalStateException e) {
+            return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).type(MediaType.TEXT_PLAIN_TYPE).build();
+        }
+        if (rollout == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(rollout).build();
+    }
+
+    private static UUID parseRolloutId(String rolloutId)
+    {
+        try {
+            return UUID.fromString(rolloutId);
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
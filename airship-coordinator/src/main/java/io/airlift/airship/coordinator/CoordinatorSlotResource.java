@@ -33,20 +33,23 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.util.List;
-import java.util.UUID;
 
 import static com.google.common.collect.Lists.transform;
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
 import static io.airlift.airship.shared.AgentStatus.idGetter;
 import static io.airlift.airship.shared.SlotStatus.uuidGetter;
 import static io.airlift.airship.shared.SlotStatusRepresentation.fromSlotStatus;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_AGENTS_VERSION_HEADER;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SLOTS_VERSION_HEADER;
 import static io.airlift.airship.shared.VersionsUtil.checkAgentsVersion;
+import static io.airlift.airship.shared.VersionsUtil.createSlotsEntityTag;
 import static io.airlift.airship.shared.VersionsUtil.createSlotsVersion;
+import static io.airlift.airship.shared.VersionsUtil.isNotModified;
 
 @Path("/v1/slot")
 public class CoordinatorSlotResource
@@ -68,17 +71,26 @@ public class CoordinatorSlotResource
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllSlots(@Context UriInfo uriInfo)
+    public Response getAllSlots(@Context UriInfo uriInfo, @HeaderParam(IF_NONE_MATCH) String ifNoneMatch)
     {
+        ClusterSnapshot snapshot = coordinator.getSnapshot();
+        List<SlotStatus> allSlotStatus = snapshot.getSlots();
+
+        // skip building the representation if the client already has it
+        EntityTag entityTag = new EntityTag(createSlotsEntityTag(uriInfo.getRequestUri().getRawQuery(), allSlotStatus));
+        if (isNotModified(ifNoneMatch, entityTag.getValue())) {
+            return Response.notModified(entityTag).build();
+        }
+
         // build filter
-        List<UUID> uuids = transform(coordinator.getAllSlotStatus(), uuidGetter());
-        Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, false, uuids);
+        Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, false, snapshot);
 
         // select slots
-        List<SlotStatus> slots = coordinator.getAllSlotsStatus(slotFilter);
+        List<SlotStatus> slots = snapshot.getSlots(slotFilter);
 
         // build response
-        return Response.ok(Iterables.transform(slots, fromSlotStatus(coordinator.getAllSlotStatus(), repository)))
+        return Response.ok(Iterables.transform(slots, fromSlotStatus(snapshot.getSlotStatusRepresentationFactory(repository))))
+                .tag(entityTag)
                 .header(AIRSHIP_SLOTS_VERSION_HEADER, createSlotsVersion(slots))
                 .build();
     }
@@ -98,12 +110,13 @@ public class CoordinatorSlotResource
         Assignment assignment = assignmentRepresentation.toAssignment();
 
         // select the target agents
+        ClusterSnapshot snapshot = coordinator.getSnapshot();
         Predicate<AgentStatus> agentFilter = AgentFilterBuilder.build(uriInfo,
-                transform(coordinator.getAgents(), idGetter()),
-                transform(coordinator.getAllSlotStatus(), uuidGetter()),
+                transform(snapshot.getAgents(), idGetter()),
+                transform(snapshot.getSlots(), uuidGetter()),
                 false,
                 repository);
-        List<AgentStatus> agents = coordinator.getAgents(agentFilter);
+        List<AgentStatus> agents = snapshot.getAgents(agentFilter);
 
         // verify the expected status of agents
         checkAgentsVersion(expectedAgentsVersion, agents);
@@ -112,7 +125,7 @@ public class CoordinatorSlotResource
         List<SlotStatus> slots = coordinator.install(agentFilter, limit, assignment);
 
         // calculate unique prefix size with the new slots included
-        return Response.ok(transform(slots, fromSlotStatus(coordinator.getAllSlotStatus(), repository)))
+        return Response.ok(transform(slots, fromSlotStatus(coordinator.getSnapshot().getSlotStatusRepresentationFactory(repository))))
                 .header(AIRSHIP_SLOTS_VERSION_HEADER, createSlotsVersion(slots))
                 .build();
     }
@@ -123,14 +136,13 @@ public class CoordinatorSlotResource
             @HeaderParam(AIRSHIP_SLOTS_VERSION_HEADER) String expectedSlotsVersion)
     {
         // build filter
-        List<UUID> uuids = transform(coordinator.getAllSlotStatus(), uuidGetter());
-        Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, true, uuids);
+        Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, true, coordinator.getSnapshot());
 
         // terminate slots
         List<SlotStatus> result = coordinator.terminate(slotFilter, expectedSlotsVersion);
 
         // build response
-        return Response.ok(transform(result, fromSlotStatus(coordinator.getAllSlotStatus(), repository)))
+        return Response.ok(transform(result, fromSlotStatus(coordinator.getSnapshot().getSlotStatusRepresentationFactory(repository))))
                 .header(AIRSHIP_SLOTS_VERSION_HEADER, createSlotsVersion(result))
                 .build();
     }
@@ -0,0 +1,47 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Plans how a binary is distributed to a list of agents.  The first
+ * {@code fanout} agents download the binary from the repository, and every
+ * other agent downloads it from a parent agent that serves at most
+ * {@code fanout} children.  Agents only serve binaries they have completely
+ * downloaded, so the installs are dispatched one level of the tree at a time
+ * (see {@link SlotInstallExecutor}); the repository then serves only the
+ * first {@code fanout} agents, however many agents install the binary.
+ */
+final class DistributionTree
+{
+    private DistributionTree()
+    {
+    }
+
+    /**
+     * Returns the agents the agent at the specified index downloads through:
+     * its parent first, followed by the ancestors of the parent.  Agents
+     * without a known uri are skipped.  A fanout of zero disables the tree.
+     */
+    public static List<URI> getPeers(List<URI> agentUris, int index, int fanout)
+    {
+        Preconditions.checkNotNull(agentUris, "agentUris is null");
+        Preconditions.checkElementIndex(index, agentUris.size(), "index");
+        Preconditions.checkArgument(fanout >= 0, "fanout is negative");
+
+        ImmutableList.Builder<URI> peers = ImmutableList.builder();
+        if (fanout == 0) {
+            return peers.build();
+        }
+        for (int i = index; i >= fanout; ) {
+            i = i / fanout - 1;
+            if (agentUris.get(i) != null) {
+                peers.add(agentUris.get(i));
+            }
+        }
+        return peers.build();
+    }
+}
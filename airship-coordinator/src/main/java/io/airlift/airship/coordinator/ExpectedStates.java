@@ -0,0 +1,42 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import io.airlift.airship.shared.ExpectedSlotStatus;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+final class ExpectedStates
+{
+    private ExpectedStates()
+    {
+    }
+
+    static ImmutableMap<UUID, ExpectedSlotStatus> indexById(Iterable<ExpectedSlotStatus> expectedStates)
+    {
+        return Maps.uniqueIndex(expectedStates, ExpectedSlotStatus.uuidGetter());
+    }
+
+    /**
+     * Compares the state and assignment of every slot.  This is needed because
+     * ExpectedSlotStatus equality only considers the slot id.
+     */
+    static boolean equivalent(Map<UUID, ExpectedSlotStatus> left, Map<UUID, ExpectedSlotStatus> right)
+    {
+        if (left.size() != right.size()) {
+            return false;
+        }
+        for (Entry<UUID, ExpectedSlotStatus> entry : left.entrySet()) {
+            ExpectedSlotStatus other = right.get(entry.getKey());
+            if (other == null ||
+                    other.getStatus() != entry.getValue().getStatus() ||
+                    !Objects.equal(other.getAssignment(), entry.getValue().getAssignment())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,12 +1,16 @@
 package io.airlift.airship.coordinator;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 public class FileStateManagerConfig
 {
     private String expectedStateDir = "expected-state";
+    private boolean logEnabled;
+    private int logCompactionThreshold = 10000;
 
     @NotNull
     public String getExpectedStateDir()
@@ -20,4 +24,31 @@ public class FileStateManagerConfig
         this.expectedStateDir = expectedStateDir;
         return this;
     }
+
+    public boolean isLogEnabled()
+    {
+        return logEnabled;
+    }
+
+    @Config("coordinator.expected-state.log.enabled")
+    @ConfigDescription("Store expected state in an append-only log with snapshots instead of one file per slot")
+    public FileStateManagerConfig setLogEnabled(boolean logEnabled)
+    {
+        this.logEnabled = logEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getLogCompactionThreshold()
+    {
+        return logCompactionThreshold;
+    }
+
+    @Config("coordinator.expected-state.log.compaction-threshold")
+    @ConfigDescription("Number of log records after which the log is compacted into a new snapshot")
+    public FileStateManagerConfig setLogCompactionThreshold(int logCompactionThreshold)
+    {
+        this.logCompactionThreshold = logCompactionThreshold;
+        return this;
+    }
 }
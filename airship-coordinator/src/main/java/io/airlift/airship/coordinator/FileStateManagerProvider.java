@@ -0,0 +1,78 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import io.airlift.airship.shared.ExpectedSlotStatus;
+import io.airlift.json.JsonCodec;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.ObjectNames;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.GuardedBy;
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+/**
+ * Creates the file based state manager selected by the configuration.
+ * <p/>
+ * The state manager is created here instead of by the injector, so the
+ * injector never runs the lifecycle methods of the log structured state
+ * manager nor exports it.  This provider does both for the instance it
+ * created.
+ */
+public class FileStateManagerProvider implements Provider<StateManager>
+{
+    private final FileStateManagerConfig config;
+    private final JsonCodec<ExpectedSlotStatus> codec;
+
+    @GuardedBy("this")
+    private MBeanExporter exporter;
+    @GuardedBy("this")
+    private LogStructuredStateManager logStructuredStateManager;
+    @GuardedBy("this")
+    private String objectName;
+
+    @Inject
+    public FileStateManagerProvider(FileStateManagerConfig config, JsonCodec<ExpectedSlotStatus> codec)
+    {
+        Preconditions.checkNotNull(config, "config is null");
+        Preconditions.checkNotNull(codec, "codec is null");
+        this.config = config;
+        this.codec = codec;
+    }
+
+    @com.google.inject.Inject(optional = true)
+    public synchronized void setExporter(MBeanExporter exporter)
+    {
+        this.exporter = exporter;
+    }
+
+    @Override
+    public synchronized StateManager get()
+    {
+        if (!config.isLogEnabled()) {
+            return new FileStateManager(config, codec);
+        }
+
+        Preconditions.checkState(logStructuredStateManager == null, "state manager already created");
+        logStructuredStateManager = new LogStructuredStateManager(config, codec);
+        if (exporter != null) {
+            objectName = ObjectNames.generatedNameOf(LogStructuredStateManager.class);
+            exporter.export(objectName, logStructuredStateManager);
+        }
+        return logStructuredStateManager;
+    }
+
+    @PreDestroy
+    public synchronized void stop()
+    {
+        if (logStructuredStateManager == null) {
+            return;
+        }
+        if (objectName != null) {
+            exporter.unexport(objectName);
+            objectName = null;
+        }
+        logStructuredStateManager.stop();
+        logStructuredStateManager = null;
+    }
+}
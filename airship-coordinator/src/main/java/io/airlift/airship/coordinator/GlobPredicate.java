@@ -1,14 +1,30 @@
 package io.airlift.airship.coordinator;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 import java.util.regex.Pattern;
 
 public class GlobPredicate extends RegexPredicate
 {
+    // filters are rebuilt for every request, but the same few globs are used over and over
+    private static final LoadingCache<String, Pattern> PATTERNS = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .build(new CacheLoader<String, Pattern>()
+            {
+                @Override
+                public Pattern load(String glob)
+                {
+                    return globToPattern(glob);
+                }
+            });
+
     private final String glob;
 
     public GlobPredicate(String glob)
     {
-        super(globToPattern(glob));
+        super(PATTERNS.getUnchecked(glob));
         this.glob = glob;
     }
 
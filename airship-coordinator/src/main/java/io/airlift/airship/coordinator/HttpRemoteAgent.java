@@ -2,6 +2,7 @@ package io.airlift.airship.coordinator;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
@@ -15,23 +16,31 @@ import io.airlift.airship.shared.SlotStatusRepresentation;
 import io.airlift.discovery.client.ServiceDescriptor;
 import io.airlift.discovery.client.ServiceDescriptorsRepresentation;
 import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.JsonResponseHandler;
 import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
 import io.airlift.json.JsonCodec;
 import io.airlift.log.Logger;
+import io.airlift.units.Duration;
 
 import javax.ws.rs.core.Response.Status;
+import java.net.ConnectException;
 import java.net.URI;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
 import static io.airlift.airship.shared.AgentLifecycleState.OFFLINE;
 import static io.airlift.airship.shared.AgentLifecycleState.ONLINE;
 import static io.airlift.airship.shared.AgentLifecycleState.PROVISIONING;
 import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_AGENT_VERSION_HEADER;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_MAX_WAIT_HEADER;
 import static io.airlift.http.client.JsonBodyGenerator.jsonBodyGenerator;
 import static io.airlift.http.client.JsonResponseHandler.createJsonResponseHandler;
+import static io.airlift.http.client.StaticBodyGenerator.createStaticBodyGenerator;
 import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
@@ -42,11 +51,14 @@ public class HttpRemoteAgent implements RemoteAgent
     private final JsonCodec<InstallationRepresentation> installationCodec;
     private final JsonCodec<AgentStatusRepresentation> agentStatusCodec;
     private final JsonCodec<SlotStatusRepresentation> slotStatusCodec;
-    private final JsonCodec<ServiceDescriptorsRepresentation> serviceDescriptorsCodec;
+    private final ServiceInventoryJson serviceInventoryJson;
 
-    private AgentStatus agentStatus;
-    private String environment;
+    private volatile AgentStatus agentStatus;
+    private final String environment;
     private final HttpClient httpClient;
+    private final HttpClient statusHttpClient;
+    private final HttpClient longPollHttpClient;
+    private final Duration longPollWait;
 
     private final AtomicBoolean serviceInventoryUp = new AtomicBoolean(true);
 
@@ -56,19 +68,55 @@ public class HttpRemoteAgent implements RemoteAgent
             JsonCodec<InstallationRepresentation> installationCodec,
             JsonCodec<AgentStatusRepresentation> agentStatusCodec,
             JsonCodec<SlotStatusRepresentation> slotStatusCodec,
-            JsonCodec<ServiceDescriptorsRepresentation> serviceDescriptorsCodec)
+            JsonCodec<ServiceDescriptorsRepresentation> serviceDescriptorsCodec,
+            Duration longPollWait)
+    {
+        this(agentStatus,
+                environment,
+                httpClient,
+                httpClient,
+                httpClient,
+                installationCodec,
+                agentStatusCodec,
+                slotStatusCodec,
+                new ServiceInventoryJson(environment, serviceDescriptorsCodec),
+                longPollWait);
+    }
+
+    /**
+     * @param httpClient client for installs and slot lifecycle operations, which may run for a long time
+     * @param statusHttpClient client for status requests, which should fail fast when the agent is down
+     * @param longPollHttpClient client for status requests that wait up to {@code longPollWait} for a change
+     */
+    public HttpRemoteAgent(AgentStatus agentStatus,
+            String environment,
+            HttpClient httpClient,
+            HttpClient statusHttpClient,
+            HttpClient longPollHttpClient,
+            JsonCodec<InstallationRepresentation> installationCodec,
+            JsonCodec<AgentStatusRepresentation> agentStatusCodec,
+            JsonCodec<SlotStatusRepresentation> slotStatusCodec,
+            ServiceInventoryJson serviceInventoryJson,
+            Duration longPollWait)
     {
         Preconditions.checkNotNull(agentStatus, "agentStatus is null");
         Preconditions.checkNotNull(environment, "environment is null");
         Preconditions.checkNotNull(httpClient, "httpClient is null");
+        Preconditions.checkNotNull(statusHttpClient, "statusHttpClient is null");
+        Preconditions.checkNotNull(longPollHttpClient, "longPollHttpClient is null");
+        Preconditions.checkNotNull(serviceInventoryJson, "serviceInventoryJson is null");
+        Preconditions.checkNotNull(longPollWait, "longPollWait is null");
 
         this.agentStatus = agentStatus;
         this.environment = environment;
         this.httpClient = httpClient;
+        this.statusHttpClient = statusHttpClient;
+        this.longPollHttpClient = longPollHttpClient;
         this.installationCodec = installationCodec;
         this.agentStatusCodec = agentStatusCodec;
         this.slotStatusCodec = slotStatusCodec;
-        this.serviceDescriptorsCodec = serviceDescriptorsCodec;
+        this.serviceInventoryJson = serviceInventoryJson;
+        this.longPollWait = longPollWait;
     }
 
     @Override
@@ -106,7 +154,7 @@ public class HttpRemoteAgent implements RemoteAgent
                 Request request = Request.Builder.preparePut()
                         .setUri(uriBuilderFrom(internalUri).appendPath("/v1/serviceInventory").build())
                         .setHeader(CONTENT_TYPE, APPLICATION_JSON)
-                        .setBodyGenerator(jsonBodyGenerator(serviceDescriptorsCodec, new ServiceDescriptorsRepresentation(environment, serviceInventory)))
+                        .setBodyGenerator(createStaticBodyGenerator(serviceInventoryJson.toJsonBytes(serviceInventory)))
                         .build();
                 httpClient.execute(request, createStatusResponseHandler());
 
@@ -129,11 +177,24 @@ public class HttpRemoteAgent implements RemoteAgent
         URI internalUri = agentStatus.getInternalUri();
         if (internalUri != null) {
             try {
-                Request request = Request.Builder.prepareGet()
-                        .setUri(uriBuilderFrom(internalUri).replacePath("/v1/agent/").build())
-                        .build();
-                AgentStatusRepresentation agentStatusRepresentation = httpClient.execute(request, createJsonResponseHandler(agentStatusCodec));
-                agentStatus = agentStatusRepresentation.toAgentStatus(agentStatus.getInstanceId(), agentStatus.getInstanceType());
+                Request.Builder requestBuilder = Request.Builder.prepareGet()
+                        .setUri(uriBuilderFrom(internalUri).replacePath("/v1/agent/").build());
+
+                // only transfer the status when it differs from the version we already have
+                HttpClient client = statusHttpClient;
+                AgentStatus currentStatus = agentStatus;
+                if (currentStatus.getState() == ONLINE) {
+                    requestBuilder.setHeader(IF_NONE_MATCH, "\"" + currentStatus.getVersion() + "\"");
+                    if (longPollWait.toMillis() > 0) {
+                        requestBuilder.setHeader(AIRSHIP_MAX_WAIT_HEADER, longPollWait.toString());
+                        client = longPollHttpClient;
+                    }
+                }
+
+                AgentStatusRepresentation agentStatusRepresentation = client.execute(requestBuilder.build(), new AgentStatusResponseHandler(createJsonResponseHandler(agentStatusCodec)));
+                if (agentStatusRepresentation != null) {
+                    agentStatus = agentStatusRepresentation.toAgentStatus(agentStatus.getInstanceId(), agentStatus.getInstanceType());
+                }
                 return;
             }
             catch (Exception ignored) {
@@ -153,8 +214,9 @@ public class HttpRemoteAgent implements RemoteAgent
         this.agentStatus = agentStatus;
     }
 
-    public void setSlotStatus(SlotStatus slotStatus)
+    public synchronized void setSlotStatus(SlotStatus slotStatus)
     {
+        // slots of one agent may be updated concurrently by bulk operations
         agentStatus = agentStatus.changeSlotStatus(slotStatus);
     }
 
@@ -163,7 +225,9 @@ public class HttpRemoteAgent implements RemoteAgent
     {
         Preconditions.checkNotNull(installation, "installation is null");
         URI internalUri = agentStatus.getInternalUri();
-        Preconditions.checkState(internalUri != null, "agent is down");
+        if (internalUri == null) {
+            throw new SlotNotCreatedException("agent is down");
+        }
         try {
             Request request = Request.Builder.preparePost()
                     .setUri(uriBuilderFrom(internalUri).replacePath("/v1/agent/slot/").build())
@@ -171,10 +235,10 @@ public class HttpRemoteAgent implements RemoteAgent
                     .setHeader(AIRSHIP_AGENT_VERSION_HEADER, status().getVersion())
                     .setBodyGenerator(jsonBodyGenerator(installationCodec, InstallationRepresentation.from(installation)))
                     .build();
-            SlotStatusRepresentation slotStatusRepresentation = httpClient.execute(request, createJsonResponseHandler(slotStatusCodec, Status.CREATED.getStatusCode()));
+            SlotStatusRepresentation slotStatusRepresentation = httpClient.execute(request, new InstallResponseHandler(createJsonResponseHandler(slotStatusCodec, Status.CREATED.getStatusCode())));
 
             SlotStatus slotStatus = slotStatusRepresentation.toSlotStatus(agentStatus.getInstanceId());
-            agentStatus = agentStatus.changeSlotStatus(slotStatus);
+            setSlotStatus(slotStatus);
 
             return slotStatus;
         }
@@ -182,5 +246,61 @@ public class HttpRemoteAgent implements RemoteAgent
             throw Throwables.propagate(e);
         }
     }
-}
 
+    private static class InstallResponseHandler implements ResponseHandler<SlotStatusRepresentation, RuntimeException>
+    {
+        private final JsonResponseHandler<SlotStatusRepresentation> jsonResponseHandler;
+
+        private InstallResponseHandler(JsonResponseHandler<SlotStatusRepresentation> jsonResponseHandler)
+        {
+            this.jsonResponseHandler = jsonResponseHandler;
+        }
+
+        @Override
+        public RuntimeException handleException(Request request, Exception exception)
+        {
+            // the request never reached the agent; any other I/O error, such as a read timeout, may hide a created slot
+            if (Iterables.any(Throwables.getCausalChain(exception), Predicates.instanceOf(ConnectException.class))) {
+                return new SlotNotCreatedException("Unable to connect to agent: " + exception.getMessage(), exception);
+            }
+            return jsonResponseHandler.handleException(request, exception);
+        }
+
+        @Override
+        public SlotStatusRepresentation handle(Request request, Response response)
+        {
+            // the agent rejected the install before creating a slot
+            int statusCode = response.getStatusCode();
+            if (statusCode >= 400 && statusCode < 500) {
+                throw new SlotNotCreatedException("Agent rejected install with status " + statusCode);
+            }
+            return jsonResponseHandler.handle(request, response);
+        }
+    }
+
+    private static class AgentStatusResponseHandler implements ResponseHandler<AgentStatusRepresentation, RuntimeException>
+    {
+        private final JsonResponseHandler<AgentStatusRepresentation> jsonResponseHandler;
+
+        private AgentStatusResponseHandler(JsonResponseHandler<AgentStatusRepresentation> jsonResponseHandler)
+        {
+            this.jsonResponseHandler = jsonResponseHandler;
+        }
+
+        @Override
+        public RuntimeException handleException(Request request, Exception exception)
+        {
+            return jsonResponseHandler.handleException(request, exception);
+        }
+
+        @Override
+        public AgentStatusRepresentation handle(Request request, Response response)
+        {
+            // agent status has not changed
+            if (response.getStatusCode() == Status.NOT_MODIFIED.getStatusCode()) {
+                return null;
+            }
+            return jsonResponseHandler.handle(request, response);
+        }
+    }
+}
@@ -3,7 +3,6 @@ package io.airlift.airship.coordinator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
-import io.airlift.discovery.client.ServiceDescriptorsRepresentation;
 import io.airlift.airship.shared.AgentLifecycleState;
 import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.AgentStatusRepresentation;
@@ -12,31 +11,53 @@ import io.airlift.airship.shared.SlotStatus;
 import io.airlift.airship.shared.SlotStatusRepresentation;
 import io.airlift.http.client.ApacheHttpClient;
 import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.HttpClientConfig;
 import io.airlift.json.JsonCodec;
 import io.airlift.node.NodeInfo;
+import io.airlift.units.Duration;
+
+import java.util.concurrent.TimeUnit;
 
 public class HttpRemoteAgentFactory implements RemoteAgentFactory
 {
     private final String environment;
     private final HttpClient httpClient;
+    private final HttpClient statusHttpClient;
+    private final HttpClient longPollHttpClient;
     private final JsonCodec<InstallationRepresentation> installationCodec;
     private final JsonCodec<AgentStatusRepresentation> agentStatusCodec;
     private final JsonCodec<SlotStatusRepresentation> slotStatusCodec;
-    private final JsonCodec<ServiceDescriptorsRepresentation> serviceDescriptorsCodec;
+    private final ServiceInventoryJson serviceInventoryJson;
+    private final Duration longPollWait;
 
     @Inject
     public HttpRemoteAgentFactory(NodeInfo nodeInfo,
+            CoordinatorConfig config,
             JsonCodec<InstallationRepresentation> installationCodec,
             JsonCodec<SlotStatusRepresentation> slotStatusCodec,
             JsonCodec<AgentStatusRepresentation> agentStatusCodec,
-            JsonCodec<ServiceDescriptorsRepresentation> serviceDescriptorsCodec)
+            ServiceInventoryJson serviceInventoryJson)
     {
         environment = nodeInfo.getEnvironment();
         this.agentStatusCodec = agentStatusCodec;
+        this.longPollWait = config.getAgentStatusLongPollWait();
+
+        // installs download and unpack the binary, so lifecycle calls keep the default timeouts
         this.httpClient = new ApacheHttpClient();
+
+        // agents are polled concurrently, so a dead agent must fail fast instead of holding a poller thread
+        this.statusHttpClient = new ApacheHttpClient(new HttpClientConfig()
+                .setConnectTimeout(config.getAgentStatusTimeout())
+                .setReadTimeout(config.getAgentStatusTimeout()));
+
+        // a long poll is expected to stay silent for up to the wait, so only those requests get the longer read timeout
+        Duration longPollReadTimeout = new Duration(config.getAgentStatusTimeout().toMillis() + longPollWait.toMillis(), TimeUnit.MILLISECONDS);
+        this.longPollHttpClient = new ApacheHttpClient(new HttpClientConfig()
+                .setConnectTimeout(config.getAgentStatusTimeout())
+                .setReadTimeout(longPollReadTimeout));
         this.installationCodec = installationCodec;
         this.slotStatusCodec = slotStatusCodec;
-        this.serviceDescriptorsCodec = serviceDescriptorsCodec;
+        this.serviceInventoryJson = serviceInventoryJson;
     }
 
     @Override
@@ -52,6 +73,6 @@ public class HttpRemoteAgentFactory implements RemoteAgentFactory
                 ImmutableList.<SlotStatus>of(),
                 ImmutableMap.<String, Integer>of());
 
-        return new HttpRemoteAgent(agentStatus, environment, httpClient, installationCodec, agentStatusCodec, slotStatusCodec, serviceDescriptorsCodec);
+        return new HttpRemoteAgent(agentStatus, environment, httpClient, statusHttpClient, longPollHttpClient, installationCodec, agentStatusCodec, slotStatusCodec, serviceInventoryJson, longPollWait);
     }
 }
@@ -4,15 +4,11 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.io.ByteProcessor;
-import com.google.common.io.ByteStreams;
-import com.google.common.io.InputSupplier;
-import com.google.common.io.Resources;
 import io.airlift.airship.shared.Repository;
+import io.airlift.http.client.ApacheHttpClient;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
-import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
 import java.util.Set;
@@ -30,9 +26,15 @@ public class HttpRepository implements Repository
     private final Pattern configShortNamePattern;
     private final Pattern configVersionPattern;
     private final Pattern binaryVersionPattern;
+    private final ArtifactExistenceChecker existenceChecker;
 
-    @Inject
     public HttpRepository(CoordinatorConfig config)
+    {
+        this(config, new ArtifactExistenceChecker(new ApacheHttpClient(), config));
+    }
+
+    @Inject
+    public HttpRepository(CoordinatorConfig config, ArtifactExistenceChecker existenceChecker)
     {
         this(
                 Lists.transform(config.getRepositories(), new Function<String, URI>()
@@ -45,14 +47,26 @@ public class HttpRepository implements Repository
                 }),
                 config.getHttpShortNamePattern(),
                 config.getHttpRepoConfigVersionPattern(),
-                config.getHttpRepoBinaryVersionPattern());
+                config.getHttpRepoBinaryVersionPattern(),
+                existenceChecker);
     }
 
     public HttpRepository(Iterable<URI> baseUris, String configShortNamePattern, String configVersionPattern, String binaryVersionPattern)
+    {
+        this(baseUris,
+                configShortNamePattern,
+                configVersionPattern,
+                binaryVersionPattern,
+                new ArtifactExistenceChecker(new ApacheHttpClient(), new CoordinatorConfig()));
+    }
+
+    public HttpRepository(Iterable<URI> baseUris, String configShortNamePattern, String configVersionPattern, String binaryVersionPattern, ArtifactExistenceChecker existenceChecker)
     {
         Preconditions.checkNotNull(baseUris, "baseUris is null");
+        Preconditions.checkNotNull(existenceChecker, "existenceChecker is null");
 
         this.baseUris = ImmutableList.copyOf(baseUris);
+        this.existenceChecker = existenceChecker;
 
         if (configShortNamePattern != null) {
             this.configShortNamePattern = Pattern.compile(configShortNamePattern);
@@ -296,29 +310,7 @@ public class HttpRepository implements Repository
 
     private boolean isValidLocation(URI uri)
     {
-        try {
-            InputSupplier<InputStream> inputSupplier = Resources.newInputStreamSupplier(uri.toURL());
-            ByteStreams.readBytes(inputSupplier, new ByteProcessor<Void>()
-            {
-                private int count;
-
-                public boolean processBytes(byte[] buffer, int offset, int length)
-                {
-                    count += length;
-                    // make sure we got at least 10 bytes
-                    return count < 10;
-                }
-
-                public Void getResult()
-                {
-                    return null;
-                }
-            });
-            return true;
-        }
-        catch (Exception ignored) {
-        }
-        return false;
+        return existenceChecker.exists(uri);
     }
 
     public static String upgradePath(String spec, String version, Pattern versionPattern)
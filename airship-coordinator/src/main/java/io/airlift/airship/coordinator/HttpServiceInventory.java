@@ -14,7 +14,10 @@
 package io.airlift.airship.coordinator;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.CharStreams;
@@ -32,18 +35,29 @@ import io.airlift.airship.shared.SlotStatus;
 import io.airlift.json.JsonCodec;
 import io.airlift.log.Logger;
 
+import javax.annotation.concurrent.GuardedBy;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Builds the service inventory from the airship-service-inventory.json file
+ * in the config of each slot.
+ * <p/>
+ * The descriptors of each config are parsed once and kept in memory, with a
+ * copy on disk so a restarted coordinator does not download every config
+ * again.  The inventory is only rebuilt when the slots change; while they are
+ * unchanged the same inventory instance is returned, so it is serialized once
+ * and shared by every agent update and request (see {@link ServiceInventoryJson}).
+ */
 public class HttpServiceInventory implements ServiceInventory
 {
     private static final Logger log = Logger.get(HttpServiceInventory.class);
@@ -52,6 +66,14 @@ public class HttpServiceInventory implements ServiceInventory
     private final Set<String> invalidServiceInventory = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private final File cacheDir;
 
+    private final ConcurrentMap<String, List<DescriptorTemplate>> templatesByConfig = new ConcurrentHashMap<>();
+
+    @GuardedBy("this")
+    private List<SlotKey> inventoryKeys;
+
+    @GuardedBy("this")
+    private ImmutableList<ServiceDescriptor> inventory = ImmutableList.of();
+
     @Inject
     public HttpServiceInventory(Repository repository, JsonCodec<List<ServiceDescriptor>> descriptorsJsonCodec, CoordinatorConfig config)
     {
@@ -69,60 +91,70 @@ public class HttpServiceInventory implements ServiceInventory
     }
 
     @Override
-    public ImmutableList<ServiceDescriptor> getServiceInventory(Iterable<SlotStatus> allSlotStatus)
+    public synchronized ImmutableList<ServiceDescriptor> getServiceInventory(Iterable<SlotStatus> allSlotStatus)
     {
-        ImmutableList.Builder<ServiceDescriptor> newDescriptors = ImmutableList.builder();
+        ImmutableList.Builder<SlotKey> keys = ImmutableList.builder();
         for (SlotStatus slotStatus : allSlotStatus) {
             // if the self reference is null, the slot is totally offline so skip for now
-            if (slotStatus.getSelf() == null) {
+            if (slotStatus.getSelf() == null || slotStatus.getAssignment() == null) {
                 continue;
             }
+            keys.add(new SlotKey(slotStatus));
+        }
+        List<SlotKey> newKeys = keys.build();
+        if (newKeys.equals(inventoryKeys)) {
+            return inventory;
+        }
 
-            List<ServiceDescriptor> serviceDescriptors = getServiceInventory(slotStatus);
-            if (serviceDescriptors == null) {
+        boolean complete = true;
+        ImmutableList.Builder<ServiceDescriptor> newInventory = ImmutableList.builder();
+        for (SlotKey key : newKeys) {
+            List<DescriptorTemplate> templates = getTemplates(key.getConfig());
+            if (templates == null) {
+                // the config could not be read, so try again on the next call
+                complete = false;
                 continue;
             }
-            for (ServiceDescriptor serviceDescriptor : serviceDescriptors) {
-                newDescriptors.add(new ServiceDescriptor(null,
-                        slotStatus.getId().toString(),
-                        serviceDescriptor.getType(),
-                        serviceDescriptor.getPool(),
-                        slotStatus.getLocation(),
-                        slotStatus.getState() == SlotLifecycleState.RUNNING ? ServiceState.RUNNING : ServiceState.STOPPED,
-                        interpolateProperties(serviceDescriptor.getProperties(), slotStatus)));
-            }
+            newInventory.addAll(key.createDescriptors(templates));
         }
-        return newDescriptors.build();
-    }
 
-    private Map<String, String> interpolateProperties(Map<String, String> properties, SlotStatus slotStatus)
-    {
-        ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
-        for (Entry<String, String> entry : properties.entrySet()) {
-            String key = entry.getKey();
-            String value = entry.getValue();
-            value = value.replaceAll(Pattern.quote("${airship.host}"), slotStatus.getSelf().getHost());
-            builder.put(key, value);
-        }
-        return builder.build();
+        inventoryKeys = complete ? newKeys : null;
+        inventory = newInventory.build();
+        return inventory;
     }
 
-    private List<ServiceDescriptor> getServiceInventory(SlotStatus slotStatus)
+    private List<DescriptorTemplate> getTemplates(String config)
     {
-        Assignment assignment = slotStatus.getAssignment();
-        if (assignment == null) {
-            return null;
+        List<DescriptorTemplate> templates = templatesByConfig.get(config);
+        if (templates == null) {
+            List<ServiceDescriptor> descriptors = getServiceInventory(config);
+            if (descriptors == null) {
+                return null;
+            }
+            ImmutableList.Builder<DescriptorTemplate> builder = ImmutableList.builder();
+            for (ServiceDescriptor descriptor : descriptors) {
+                builder.add(new DescriptorTemplate(descriptor));
+            }
+            templates = builder.build();
+            templatesByConfig.put(config, templates);
         }
+        return templates;
+    }
 
-        String config = assignment.getConfig();
-
+    /**
+     * Reads the service descriptors of the config, returning an empty list if
+     * the config has no service inventory, or null if the config can not be
+     * read.
+     */
+    private List<ServiceDescriptor> getServiceInventory(String config)
+    {
         File cacheFile = getCacheFile(config);
         if (cacheFile.canRead()) {
             try {
                 String json = CharStreams.toString(Files.newReaderSupplier(cacheFile, Charsets.UTF_8));
                 List<ServiceDescriptor> descriptors = descriptorsJsonCodec.fromJson(json);
                 invalidServiceInventory.remove(config);
-                return descriptors;
+                return Objects.firstNonNull(descriptors, ImmutableList.<ServiceDescriptor>of());
             }
             catch (Exception ignored) {
                 // delete the bad cache file
@@ -152,11 +184,11 @@ public class HttpServiceInventory implements ServiceInventory
             Files.write(json, cacheFile, Charsets.UTF_8);
 
             List<ServiceDescriptor> descriptors = descriptorsJsonCodec.fromJson(json);
-            return descriptors;
+            return Objects.firstNonNull(descriptors, ImmutableList.<ServiceDescriptor>of());
         }
         catch (Exception e) {
             if (invalidServiceInventory.add(config)) {
-                log.error(e, "Unable to read service inventory for %s" + config);
+                log.error(e, "Unable to read service inventory for %s", config);
             }
         }
         return null;
@@ -173,4 +205,114 @@ public class HttpServiceInventory implements ServiceInventory
         cacheName = cacheName + "_" + DigestUtils.md5Hex(cacheName);
         return new File(cacheDir, cacheName).getAbsoluteFile();
     }
+
+    /**
+     * The parts of a slot status the service descriptors of the slot depend on.
+     */
+    private static class SlotKey
+    {
+        private final UUID id;
+        private final String config;
+        private final String host;
+        private final String location;
+        private final ServiceState state;
+
+        private SlotKey(SlotStatus slotStatus)
+        {
+            this.id = slotStatus.getId();
+            this.config = slotStatus.getAssignment().getConfig();
+            this.host = slotStatus.getSelf().getHost();
+            this.location = slotStatus.getLocation();
+            this.state = slotStatus.getState() == SlotLifecycleState.RUNNING ? ServiceState.RUNNING : ServiceState.STOPPED;
+        }
+
+        public String getConfig()
+        {
+            return config;
+        }
+
+        public List<ServiceDescriptor> createDescriptors(List<DescriptorTemplate> templates)
+        {
+            ImmutableList.Builder<ServiceDescriptor> descriptors = ImmutableList.builder();
+            for (DescriptorTemplate template : templates) {
+                descriptors.add(new ServiceDescriptor(null,
+                        id.toString(),
+                        template.getType(),
+                        template.getPool(),
+                        location,
+                        state,
+                        template.interpolateProperties(host)));
+            }
+            return descriptors.build();
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SlotKey slotKey = (SlotKey) o;
+            return id.equals(slotKey.id) &&
+                    config.equals(slotKey.config) &&
+                    Objects.equal(host, slotKey.host) &&
+                    Objects.equal(location, slotKey.location) &&
+                    state == slotKey.state;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hashCode(id, config, host, location, state);
+        }
+    }
+
+    /**
+     * A service descriptor with its property values split around the
+     * ${airship.host} placeholder, so interpolating the host of a slot is a
+     * concatenation.
+     */
+    private static class DescriptorTemplate
+    {
+        private static final Splitter HOST_SPLITTER = Splitter.on("${airship.host}");
+
+        private final String type;
+        private final String pool;
+        private final Map<String, List<String>> properties;
+
+        private DescriptorTemplate(ServiceDescriptor descriptor)
+        {
+            this.type = descriptor.getType();
+            this.pool = descriptor.getPool();
+
+            ImmutableMap.Builder<String, List<String>> properties = ImmutableMap.builder();
+            for (Entry<String, String> entry : descriptor.getProperties().entrySet()) {
+                properties.put(entry.getKey(), ImmutableList.copyOf(HOST_SPLITTER.split(entry.getValue())));
+            }
+            this.properties = properties.build();
+        }
+
+        public String getType()
+        {
+            return type;
+        }
+
+        public String getPool()
+        {
+            return pool;
+        }
+
+        public Map<String, String> interpolateProperties(String host)
+        {
+            ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+            for (Entry<String, List<String>> entry : properties.entrySet()) {
+                List<String> parts = entry.getValue();
+                builder.put(entry.getKey(), parts.size() == 1 ? parts.get(0) : Joiner.on(host).join(parts));
+            }
+            return builder.build();
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Predicate;
+import io.airlift.airship.shared.SlotStatus;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+
+/**
+ * A slot filter that can use the indexes of a {@link ClusterSnapshot} to
+ * find the slots it may match, so only those slots need to be evaluated.
+ */
+public interface IndexedSlotPredicate
+        extends Predicate<SlotStatus>
+{
+    /**
+     * Returns every slot of the snapshot this predicate may match, possibly
+     * with duplicates and slots that do not match, or null if every slot must
+     * be evaluated.
+     */
+    @Nullable
+    Collection<SlotStatus> getCandidates(ClusterSnapshot snapshot);
+}
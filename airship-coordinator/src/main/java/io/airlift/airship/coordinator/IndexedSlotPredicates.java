@@ -0,0 +1,120 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import io.airlift.airship.shared.SlotStatus;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Combines slot filters while keeping their index lookups.  A conjunction
+ * only needs the candidates of its most selective indexed term, and a
+ * disjunction needs the candidates of every term.
+ */
+public final class IndexedSlotPredicates
+{
+    private IndexedSlotPredicates()
+    {
+    }
+
+    public static IndexedSlotPredicate and(List<? extends Predicate<SlotStatus>> predicates)
+    {
+        return new AndPredicate(predicates);
+    }
+
+    public static IndexedSlotPredicate or(List<? extends Predicate<SlotStatus>> predicates)
+    {
+        return new OrPredicate(predicates);
+    }
+
+    private static Collection<SlotStatus> getCandidates(Predicate<SlotStatus> predicate, ClusterSnapshot snapshot)
+    {
+        if (predicate instanceof IndexedSlotPredicate) {
+            return ((IndexedSlotPredicate) predicate).getCandidates(snapshot);
+        }
+        return null;
+    }
+
+    private static class AndPredicate
+            implements IndexedSlotPredicate
+    {
+        private final List<Predicate<SlotStatus>> predicates;
+        private final Predicate<SlotStatus> predicate;
+
+        private AndPredicate(List<? extends Predicate<SlotStatus>> predicates)
+        {
+            this.predicates = ImmutableList.copyOf(predicates);
+            this.predicate = Predicates.and(this.predicates);
+        }
+
+        @Override
+        public boolean apply(@Nullable SlotStatus slotStatus)
+        {
+            return predicate.apply(slotStatus);
+        }
+
+        @Override
+        public Collection<SlotStatus> getCandidates(ClusterSnapshot snapshot)
+        {
+            Collection<SlotStatus> best = null;
+            for (Predicate<SlotStatus> predicate : predicates) {
+                Collection<SlotStatus> candidates = IndexedSlotPredicates.getCandidates(predicate, snapshot);
+                if (candidates != null && (best == null || candidates.size() < best.size())) {
+                    best = candidates;
+                    if (best.isEmpty()) {
+                        break;
+                    }
+                }
+            }
+            return best;
+        }
+
+        @Override
+        public String toString()
+        {
+            return predicate.toString();
+        }
+    }
+
+    private static class OrPredicate
+            implements IndexedSlotPredicate
+    {
+        private final List<Predicate<SlotStatus>> predicates;
+        private final Predicate<SlotStatus> predicate;
+
+        private OrPredicate(List<? extends Predicate<SlotStatus>> predicates)
+        {
+            this.predicates = ImmutableList.copyOf(predicates);
+            this.predicate = Predicates.or(this.predicates);
+        }
+
+        @Override
+        public boolean apply(@Nullable SlotStatus slotStatus)
+        {
+            return predicate.apply(slotStatus);
+        }
+
+        @Override
+        public Collection<SlotStatus> getCandidates(ClusterSnapshot snapshot)
+        {
+            ImmutableList.Builder<SlotStatus> candidates = ImmutableList.builder();
+            for (Predicate<SlotStatus> predicate : predicates) {
+                Collection<SlotStatus> termCandidates = IndexedSlotPredicates.getCandidates(predicate, snapshot);
+                if (termCandidates == null) {
+                    return null;
+                }
+                candidates.addAll(termCandidates);
+            }
+            return candidates.build();
+        }
+
+        @Override
+        public String toString()
+        {
+            return predicate.toString();
+        }
+    }
+}
@@ -0,0 +1,517 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.google.common.io.PatternFilenameFilter;
+import io.airlift.airship.shared.ExpectedSlotStatus;
+import io.airlift.airship.shared.FileUtils;
+import io.airlift.json.JsonCodec;
+import io.airlift.log.Logger;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.GuardedBy;
+import javax.inject.Inject;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * File based expected state store that appends every change to a log
+ * instead of rewriting one file per slot.  The log is periodically compacted
+ * into a snapshot, so startup only reads the newest snapshot plus the
+ * records appended after it.
+ * <p/>
+ * Every write is fsynced before it returns, but concurrent writers share a
+ * single fsync (group commit).  To compact, the log is retired as a numbered
+ * segment and writers continue in a fresh log, while the snapshot is written
+ * without holding the locks; the retired segments are deleted once the
+ * snapshot is durable.  Snapshots are written to a temporary file and
+ * atomically renamed, and log records are idempotent, so a crash at any point
+ * leaves a state that replays to the last acknowledged write.
+ */
+public class LogStructuredStateManager implements StateManager
+{
+    private static final Logger log = Logger.get(LogStructuredStateManager.class);
+
+    static final String SNAPSHOT_FILE_NAME = "expected-state.snapshot";
+    static final String LOG_FILE_NAME = "expected-state.log";
+
+    private static final Pattern SEGMENT_FILE_PATTERN = Pattern.compile(Pattern.quote(LOG_FILE_NAME) + "\\.(\\d+)");
+    private static final String SET_RECORD = "set ";
+    private static final String DELETE_RECORD = "delete ";
+
+    private final File dataDir;
+    private final File snapshotFile;
+    private final File logFile;
+    private final JsonCodec<ExpectedSlotStatus> codec;
+    private final JsonCodec<List<ExpectedSlotStatus>> snapshotCodec = JsonCodec.listJsonCodec(ExpectedSlotStatus.class);
+    private final int compactionThreshold;
+
+    private final Map<UUID, ExpectedSlotStatus> expectedStates = new ConcurrentHashMap<>();
+
+    // lock ordering: syncLock before appendLock
+    private final Object syncLock = new Object();
+    private final Object appendLock = new Object();
+
+    @GuardedBy("appendLock")
+    private FileChannel logChannel;
+    @GuardedBy("appendLock")
+    private long appendedSequence;
+    @GuardedBy("appendLock")
+    private int logRecordCount;
+    @GuardedBy("appendLock")
+    private boolean tornRecord;
+    @GuardedBy("appendLock")
+    private long nextSegment;
+    @GuardedBy("appendLock")
+    private boolean compacting;
+
+    @GuardedBy("syncLock")
+    private long syncedSequence;
+
+    private volatile long syncCount;
+    private volatile long compactionCount;
+
+    @Inject
+    public LogStructuredStateManager(FileStateManagerConfig config, JsonCodec<ExpectedSlotStatus> codec)
+    {
+        this(new File(checkNotNull(config, "config is null").getExpectedStateDir()), codec, config.getLogCompactionThreshold());
+    }
+
+    public LogStructuredStateManager(File dataDir, JsonCodec<ExpectedSlotStatus> codec, int compactionThreshold)
+    {
+        Preconditions.checkNotNull(dataDir, "dataDir is null");
+        Preconditions.checkNotNull(codec, "codec is null");
+        Preconditions.checkArgument(compactionThreshold > 0, "compactionThreshold must be at least 1");
+
+        this.dataDir = dataDir;
+        this.snapshotFile = new File(dataDir, SNAPSHOT_FILE_NAME);
+        this.logFile = new File(dataDir, LOG_FILE_NAME);
+        this.codec = codec;
+        this.compactionThreshold = compactionThreshold;
+
+        dataDir.mkdirs();
+        Preconditions.checkArgument(dataDir.isDirectory(), "dataDir is not a directory");
+
+        try {
+            recover();
+            List<ExpectedSlotStatus> snapshot;
+            long segment;
+            synchronized (syncLock) {
+                synchronized (appendLock) {
+                    logChannel = new RandomAccessFile(logFile, "rw").getChannel();
+                    // start with a clean log so a torn record at the end of the old log is never followed by new records
+                    segment = retireLog();
+                    snapshot = ImmutableList.copyOf(expectedStates.values());
+                }
+            }
+            writeSnapshot(snapshot, segment);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Unable to load expected state from " + dataDir, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        synchronized (appendLock) {
+            Closeables.closeQuietly(logChannel);
+        }
+    }
+
+    @Override
+    public Collection<ExpectedSlotStatus> getAllExpectedStates()
+    {
+        return ImmutableList.copyOf(expectedStates.values());
+    }
+
+    @Override
+    public void deleteExpectedState(UUID slotId)
+    {
+        Preconditions.checkNotNull(slotId, "slotId is null");
+        try {
+            long sequence;
+            synchronized (appendLock) {
+                sequence = append(DELETE_RECORD + slotId);
+                expectedStates.remove(slotId);
+            }
+            sync(sequence);
+        }
+        catch (IOException e) {
+            log.error(e, "Error writing expected slot status");
+        }
+    }
+
+    @Override
+    public void setExpectedState(ExpectedSlotStatus slotStatus)
+    {
+        Preconditions.checkNotNull(slotStatus, "slotStatus is null");
+        try {
+            long sequence;
+            synchronized (appendLock) {
+                sequence = append(SET_RECORD + toSingleLine(codec.toJson(slotStatus)));
+                expectedStates.put(slotStatus.getId(), slotStatus);
+            }
+            sync(sequence);
+        }
+        catch (IOException e) {
+            log.error(e, "Error writing expected slot status");
+        }
+    }
+
+    @Override
+    public void deleteExpectedStates(Collection<UUID> slotIds)
+    {
+        Preconditions.checkNotNull(slotIds, "slotIds is null");
+        if (slotIds.isEmpty()) {
+            return;
+        }
+        List<String> records = new ArrayList<>(slotIds.size());
+        for (UUID slotId : slotIds) {
+            records.add(DELETE_RECORD + slotId);
+        }
+
+        try {
+            long sequence;
+            synchronized (appendLock) {
+                sequence = append(records);
+                for (UUID slotId : slotIds) {
+                    expectedStates.remove(slotId);
+                }
+            }
+            sync(sequence);
+        }
+        catch (IOException e) {
+            log.error(e, "Error writing expected slot status");
+        }
+    }
+
+    @Override
+    public void setExpectedStates(Collection<ExpectedSlotStatus> slotStatuses)
+    {
+        Preconditions.checkNotNull(slotStatuses, "slotStatuses is null");
+        if (slotStatuses.isEmpty()) {
+            return;
+        }
+
+        // encode outside of the lock
+        List<String> records = new ArrayList<>(slotStatuses.size());
+        for (ExpectedSlotStatus slotStatus : slotStatuses) {
+            records.add(SET_RECORD + toSingleLine(codec.toJson(slotStatus)));
+        }
+
+        try {
+            long sequence;
+            synchronized (appendLock) {
+                sequence = append(records);
+                for (ExpectedSlotStatus slotStatus : slotStatuses) {
+                    expectedStates.put(slotStatus.getId(), slotStatus);
+                }
+            }
+            sync(sequence);
+        }
+        catch (IOException e) {
+            log.error(e, "Error writing expected slot status");
+        }
+    }
+
+    @Managed(description = "Number of expected slot states")
+    public int getExpectedStateCount()
+    {
+        return expectedStates.size();
+    }
+
+    @Managed(description = "Number of records in the log since the last compaction")
+    public int getLogRecordCount()
+    {
+        synchronized (appendLock) {
+            return logRecordCount;
+        }
+    }
+
+    @Managed(description = "Number of fsyncs of the log")
+    public long getSyncCount()
+    {
+        return syncCount;
+    }
+
+    @Managed(description = "Number of log compactions")
+    public long getCompactionCount()
+    {
+        return compactionCount;
+    }
+
+    @GuardedBy("appendLock")
+    private long append(String record)
+            throws IOException
+    {
+        return append(ImmutableList.of(record));
+    }
+
+    /**
+     * Appends the records with a single write and returns the sequence of the last record.
+     */
+    @GuardedBy("appendLock")
+    private long append(List<String> records)
+            throws IOException
+    {
+        StringBuilder builder = new StringBuilder();
+        for (String record : records) {
+            builder.append(record).append('\n');
+        }
+        if (tornRecord) {
+            // a failed append could not be removed, so end its partial record first
+            builder.insert(0, '\n');
+        }
+        ByteBuffer buffer = Charsets.UTF_8.encode(builder.toString());
+        long position = logChannel.position();
+        try {
+            while (buffer.hasRemaining()) {
+                logChannel.write(buffer);
+            }
+        }
+        catch (IOException e) {
+            // remove the partial record, so the next record is not appended to it
+            try {
+                logChannel.truncate(position);
+                logChannel.position(position);
+            }
+            catch (IOException truncateException) {
+                e.addSuppressed(truncateException);
+                tornRecord = true;
+            }
+            throw e;
+        }
+        tornRecord = false;
+        logRecordCount += records.size();
+        appendedSequence += records.size();
+        return appendedSequence;
+    }
+
+    /**
+     * Waits until the record with the specified sequence is durable.  A writer
+     * that finds its record already covered by another writer's fsync returns
+     * without forcing the log again.
+     */
+    private void sync(long sequence)
+            throws IOException
+    {
+        List<ExpectedSlotStatus> snapshot = null;
+        long segment = 0;
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+
+            FileChannel channel;
+            long targetSequence;
+            synchronized (appendLock) {
+                channel = logChannel;
+                targetSequence = appendedSequence;
+            }
+            channel.force(false);
+            syncedSequence = targetSequence;
+            syncCount++;
+
+            synchronized (appendLock) {
+                if (logRecordCount >= compactionThreshold && !compacting) {
+                    segment = retireLog();
+                    snapshot = ImmutableList.copyOf(expectedStates.values());
+                    compacting = true;
+                }
+            }
+        }
+
+        if (snapshot != null) {
+            // the record is already durable, so a failed compaction is retried by a later write
+            try {
+                writeSnapshot(snapshot, segment);
+            }
+            catch (IOException e) {
+                log.warn(e, "Unable to compact expected state log in %s", dataDir);
+            }
+            finally {
+                synchronized (appendLock) {
+                    compacting = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Renames the log to the next segment file and starts a new log, and
+     * returns the number of the retired segment.  Must be called with both the
+     * sync and append locks held.
+     */
+    @GuardedBy("appendLock")
+    private long retireLog()
+            throws IOException
+    {
+        // every record in the retired segment must be durable before writers move on to the new log
+        logChannel.force(false);
+        File segmentFile = new File(dataDir, LOG_FILE_NAME + "." + nextSegment);
+        java.nio.file.Files.move(logFile.toPath(), segmentFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        FileChannel retiredChannel = logChannel;
+        logChannel = new RandomAccessFile(logFile, "rw").getChannel();
+        Closeables.closeQuietly(retiredChannel);
+        syncDirectory();
+
+        logRecordCount = 0;
+        tornRecord = false;
+        syncedSequence = appendedSequence;
+        return nextSegment++;
+    }
+
+    /**
+     * Writes the state to a new snapshot and deletes the log segments up to
+     * and including the specified segment, which the state contains.
+     */
+    private void writeSnapshot(List<ExpectedSlotStatus> snapshot, long segment)
+            throws IOException
+    {
+        File tempFile = new File(dataDir, SNAPSHOT_FILE_NAME + ".tmp");
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            out.write(snapshotCodec.toJson(snapshot).getBytes(Charsets.UTF_8));
+            out.getFD().sync();
+        }
+        finally {
+            out.close();
+        }
+        java.nio.file.Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+
+        for (File segmentFile : listSegmentFiles()) {
+            if (getSegmentNumber(segmentFile) <= segment) {
+                segmentFile.delete();
+            }
+        }
+        compactionCount++;
+    }
+
+    /**
+     * Returns the retired log segments, oldest first.
+     */
+    private List<File> listSegmentFiles()
+    {
+        List<File> segmentFiles = new ArrayList<>(FileUtils.listFiles(dataDir, new PatternFilenameFilter(SEGMENT_FILE_PATTERN)));
+        Collections.sort(segmentFiles, new Comparator<File>()
+        {
+            @Override
+            public int compare(File left, File right)
+            {
+                return Long.compare(getSegmentNumber(left), getSegmentNumber(right));
+            }
+        });
+        return segmentFiles;
+    }
+
+    private static long getSegmentNumber(File segmentFile)
+    {
+        Matcher matcher = SEGMENT_FILE_PATTERN.matcher(segmentFile.getName());
+        Preconditions.checkArgument(matcher.matches(), "%s is not a log segment", segmentFile);
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private void syncDirectory()
+    {
+        // make the rename durable; not supported on every platform
+        try (FileChannel directory = FileChannel.open(dataDir.toPath())) {
+            directory.force(true);
+        }
+        catch (IOException ignored) {
+        }
+    }
+
+    private void recover()
+            throws IOException
+    {
+        if (snapshotFile.exists()) {
+            for (ExpectedSlotStatus expectedState : snapshotCodec.fromJson(Files.toString(snapshotFile, Charsets.UTF_8))) {
+                expectedStates.put(expectedState.getId(), expectedState);
+            }
+        }
+        else if (!logFile.exists()) {
+            // first start with the log enabled; import state written by FileStateManager
+            for (ExpectedSlotStatus expectedState : new FileStateManager(dataDir, codec).getAllExpectedStates()) {
+                expectedStates.put(expectedState.getId(), expectedState);
+            }
+        }
+
+        // segments retired by a compaction that did not finish are replayed before the log
+        int replayed = 0;
+        for (File segmentFile : listSegmentFiles()) {
+            replayed += replay(segmentFile);
+            nextSegment = Math.max(nextSegment, getSegmentNumber(segmentFile) + 1);
+        }
+        if (logFile.exists()) {
+            replayed += replay(logFile);
+        }
+        log.debug("Loaded %s expected states from %s (%s log records)", expectedStates.size(), dataDir, replayed);
+    }
+
+    private int replay(File file)
+            throws IOException
+    {
+        int replayed = 0;
+        BufferedReader reader = Files.newReader(file, Charsets.UTF_8);
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isEmpty()) {
+                    // the end of a torn record that could not be removed
+                    continue;
+                }
+                try {
+                    if (line.startsWith(SET_RECORD)) {
+                        ExpectedSlotStatus expectedState = codec.fromJson(line.substring(SET_RECORD.length()));
+                        expectedStates.put(expectedState.getId(), expectedState);
+                    }
+                    else if (line.startsWith(DELETE_RECORD)) {
+                        expectedStates.remove(UUID.fromString(line.substring(DELETE_RECORD.length())));
+                    }
+                    else {
+                        throw new IllegalArgumentException("Unknown record type");
+                    }
+                    replayed++;
+                }
+                catch (IllegalArgumentException e) {
+                    // a torn write at the end of the log or a corrupted record; the affected slot
+                    // will be marked as unexpected and someone will resolve the conflict
+                    log.warn("Skipping invalid expected state record in %s: %s", file, e.getMessage());
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return replayed;
+    }
+
+    private static String toSingleLine(String json)
+    {
+        // line breaks in pretty printed json are only whitespace between tokens
+        return json.replace('\r', ' ').replace('\n', ' ');
+    }
+}
@@ -0,0 +1,93 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.airlift.units.Duration;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches lookups, including lookups that found nothing.  Lookups of
+ * immutable keys that found a value are moved to a cache without
+ * expiration; everything else expires after the TTL.  Concurrent lookups of
+ * the same key share a single load.  A load that throws is not cached, so
+ * the next lookup of the key loads it again.
+ */
+class LookupCache<K, V>
+{
+    private final Cache<K, Optional<V>> permanent;
+    private final Cache<K, Optional<V>> expiring;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+    public LookupCache(Duration ttl, long maxSize)
+    {
+        Preconditions.checkNotNull(ttl, "ttl is null");
+        Preconditions.checkArgument(maxSize >= 0, "maxSize is negative");
+
+        permanent = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+        expiring = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite((long) ttl.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public V get(K key, boolean immutable, final Callable<V> loader)
+    {
+        requests.incrementAndGet();
+
+        Optional<V> value = permanent.getIfPresent(key);
+        if (value != null) {
+            return value.orNull();
+        }
+
+        try {
+            // concurrent lookups of the same key wait for a single load
+            value = expiring.get(key, new Callable<Optional<V>>()
+            {
+                @Override
+                public Optional<V> call()
+                        throws Exception
+                {
+                    loads.incrementAndGet();
+                    return Optional.fromNullable(loader.call());
+                }
+            });
+        }
+        catch (ExecutionException | UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+
+        if (immutable && value.isPresent()) {
+            permanent.put(key, value);
+            expiring.invalidate(key);
+        }
+        return value.orNull();
+    }
+
+    public void invalidateAll()
+    {
+        permanent.invalidateAll();
+        expiring.invalidateAll();
+    }
+
+    public long getRequests()
+    {
+        return requests.get();
+    }
+
+    public long getLoads()
+    {
+        return loads.get();
+    }
+}
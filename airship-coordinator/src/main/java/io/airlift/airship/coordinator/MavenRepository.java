@@ -4,19 +4,17 @@ import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.io.ByteProcessor;
-import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import com.google.common.io.InputSupplier;
-import com.google.common.io.Resources;
 import com.google.inject.Inject;
 import io.airlift.airship.coordinator.MavenMetadata.SnapshotVersion;
 import io.airlift.airship.shared.HttpUriBuilder;
 import io.airlift.airship.shared.MavenCoordinates;
 import io.airlift.airship.shared.Repository;
-import io.airlift.log.Logger;
+import io.airlift.http.client.ApacheHttpClient;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -25,6 +23,7 @@ import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,14 +33,28 @@ import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
 import static io.airlift.airship.shared.MavenCoordinates.toBinaryGAV;
 import static io.airlift.airship.shared.MavenCoordinates.toConfigGAV;
 
+/**
+ * Resolves Maven coordinates against a list of Maven repositories.
+ * <p/>
+ * Resolutions and artifact existence checks are cached so installs, upgrades
+ * and listings do not fetch maven-metadata.xml or probe the artifact on every
+ * call, and concurrent lookups of the same coordinates share a single fetch.
+ * Snapshot lookups and lookups that found nothing expire after the configured
+ * TTL; found release versions never change, so they are kept until evicted by
+ * the size bound.  Existence checks are done by {@link ArtifactExistenceChecker}.
+ */
 public class MavenRepository implements Repository
 {
-    private static final Logger log = Logger.get(MavenRepository.class);
-
     private static final Pattern TIMESTAMP_VERSION = Pattern.compile("^(.+)-[0-9]{8}\\.[0-9]{6}\\-[0-9]+$");
+    private static final Duration DEFAULT_CACHE_TTL = new CoordinatorConfig().getRepositoryCacheTtl();
+    private static final long DEFAULT_CACHE_MAX_SIZE = new CoordinatorConfig().getRepositoryCacheMaxSize();
+
     private final List<String> defaultGroupIds;
     private final List<URI> repositoryBases;
 
+    private final LookupCache<MavenCoordinates, MavenCoordinates> resolutions;
+    private final ArtifactExistenceChecker existenceChecker;
+
     public MavenRepository(Iterable<String> defaultGroupIds, URI repositoryBase, URI... repositoryBases)
     {
         this(defaultGroupIds, ImmutableList.<URI>builder().add(repositoryBase).add(repositoryBases).build());
@@ -49,16 +62,37 @@ public class MavenRepository implements Repository
 
     public MavenRepository(Iterable<String> defaultGroupIds, Iterable<URI> repositoryBases)
     {
+        this(defaultGroupIds, repositoryBases, DEFAULT_CACHE_TTL, DEFAULT_CACHE_MAX_SIZE);
+    }
+
+    public MavenRepository(Iterable<String> defaultGroupIds, Iterable<URI> repositoryBases, Duration cacheTtl, long cacheMaxSize)
+    {
+        this(defaultGroupIds, repositoryBases, cacheTtl, cacheMaxSize, new ArtifactExistenceChecker(new ApacheHttpClient(), cacheTtl, cacheMaxSize));
+    }
+
+    public MavenRepository(Iterable<String> defaultGroupIds, Iterable<URI> repositoryBases, Duration cacheTtl, long cacheMaxSize, ArtifactExistenceChecker existenceChecker)
+    {
+        Preconditions.checkNotNull(existenceChecker, "existenceChecker is null");
+
         this.defaultGroupIds = ImmutableList.copyOf(defaultGroupIds);
         for (URI uri : repositoryBases) {
             Preconditions.checkArgument(uri.toASCIIString().endsWith("/"), "Uri must end with a '/' " + uri);
         }
         this.repositoryBases = ImmutableList.copyOf(repositoryBases);
+        this.resolutions = new LookupCache<>(cacheTtl, cacheMaxSize);
+        this.existenceChecker = existenceChecker;
     }
 
-    @Inject
     public MavenRepository(CoordinatorConfig config)
     {
+        this(config, new ArtifactExistenceChecker(new ApacheHttpClient(), config));
+    }
+
+    @Inject
+    public MavenRepository(CoordinatorConfig config, ArtifactExistenceChecker existenceChecker)
+    {
+        Preconditions.checkNotNull(existenceChecker, "existenceChecker is null");
+
         if (config.getDefaultRepositoryGroupId() != null) {
             this.defaultGroupIds = ImmutableList.copyOf(config.getDefaultRepositoryGroupId());
         } else {
@@ -73,6 +107,28 @@ public class MavenRepository implements Repository
             builder.add(URI.create(binaryRepoBase));
         }
         repositoryBases = builder.build();
+
+        resolutions = new LookupCache<>(config.getRepositoryCacheTtl(), config.getRepositoryCacheMaxSize());
+        this.existenceChecker = existenceChecker;
+    }
+
+    @Managed
+    public long getResolutionCacheRequests()
+    {
+        return resolutions.getRequests();
+    }
+
+    @Managed
+    public long getResolutionCacheLoads()
+    {
+        return resolutions.getLoads();
+    }
+
+    @Managed
+    public void flushCache()
+    {
+        resolutions.invalidateAll();
+        existenceChecker.flushCache();
     }
 
     @Override
@@ -275,8 +331,7 @@ public class MavenRepository implements Repository
 
             URI uri = uriBuilder.build();
 
-            // try to download some of the file
-            if (isValidBinary(uri)) {
+            if (existenceChecker.exists(uri, !isSnapshot(coordinates))) {
                 return uri;
             }
 
@@ -290,12 +345,24 @@ public class MavenRepository implements Repository
         }
     }
 
-    public MavenCoordinates resolve(MavenCoordinates coordinates)
+    public MavenCoordinates resolve(final MavenCoordinates coordinates)
     {
         if (coordinates.isResolved()) {
             return coordinates;
         }
 
+        return resolutions.get(coordinates, !isSnapshot(coordinates), new Callable<MavenCoordinates>()
+        {
+            @Override
+            public MavenCoordinates call()
+            {
+                return resolveUncached(coordinates);
+            }
+        });
+    }
+
+    private MavenCoordinates resolveUncached(MavenCoordinates coordinates)
+    {
         List<String> groupIds;
         if (coordinates.getGroupId() != null) {
             groupIds = ImmutableList.of(coordinates.getGroupId());
@@ -355,6 +422,11 @@ public class MavenRepository implements Repository
         return matchedCoordinates.get(0);
     }
 
+    private static boolean isSnapshot(MavenCoordinates coordinates)
+    {
+        return coordinates.getVersion().contains("SNAPSHOT");
+    }
+
     private MavenCoordinates resolveSnapshotTimestamp(MavenCoordinates coordinates, String groupId)
     {
 
@@ -409,38 +481,6 @@ public class MavenRepository implements Repository
         });
     }
 
-    private boolean isValidBinary(URI uri)
-    {
-        log.debug("validating URI: %s", uri);
-        try {
-            InputSupplier<InputStream> inputSupplier = Resources.newInputStreamSupplier(uri.toURL());
-            ByteStreams.readBytes(inputSupplier, new ByteProcessor<Void>()
-            {
-                private int count;
-
-                public boolean processBytes(byte[] buffer, int offset, int length)
-                {
-                    count += length;
-                    // make sure we got at least 10 bytes
-                    return count < 10;
-                }
-
-                public Void getResult()
-                {
-                    return null;
-                }
-            });
-            return true;
-        }
-        catch (FileNotFoundException e) {
-            log.debug("URI does not exist: %s", uri);
-        }
-        catch (Exception e) {
-            log.debug(e, "error validating URI: %s", uri);
-        }
-        return false;
-    }
-
     @Override
     public String toString()
     {
@@ -0,0 +1,18 @@
+package io.airlift.airship.coordinator;
+
+import io.airlift.airship.shared.Installation;
+
+import java.util.List;
+
+/**
+ * Chooses the agents new slots are installed on.
+ */
+public interface PlacementScheduler
+{
+    /**
+     * Returns at most limit of the candidate agents, in order of preference.
+     * Agents that do not have the resources the installation requires are
+     * never returned.
+     */
+    List<RemoteAgent> selectAgents(List<RemoteAgent> candidates, Installation installation, int limit);
+}
@@ -0,0 +1,24 @@
+package io.airlift.airship.coordinator;
+
+/**
+ * How {@link ResourcePlacementScheduler} ranks agents that can run a new slot.
+ */
+public enum PlacementStrategy
+{
+    /**
+     * Prefer the agents that are least utilized after the install, so load
+     * is balanced across the pool.
+     */
+    SPREAD,
+
+    /**
+     * Prefer the agents that are most utilized after the install, so whole
+     * agents stay free for large installations.
+     */
+    BINPACK,
+
+    /**
+     * Prefer the agents with the fewest slots.
+     */
+    LEAST_LOADED
+}
@@ -15,6 +15,9 @@ public interface RemoteAgent
 
     void setInternalUri(URI uri);
 
+    /**
+     * @throws SlotNotCreatedException if the agent certainly did not create a slot
+     */
     SlotStatus install(Installation installation);
 
     List<? extends RemoteSlot> getSlots();
@@ -0,0 +1,264 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Ordering;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.Installation;
+import io.airlift.airship.shared.InstallationUtils;
+import io.airlift.airship.shared.SlotStatus;
+
+import javax.inject.Inject;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * Places new slots based on the resources the agents declare and the
+ * resources used by their slots.
+ * <p/>
+ * Copies of the same assignment are first spread across failure domains,
+ * which are identified by the leading segments of the agent location (for
+ * example /ec2/region/zone).  Within a failure domain, agents are ranked by
+ * the configured {@link PlacementStrategy}.  Scores include how unevenly the
+ * resources of an agent would be used after the install, so an agent is not
+ * left with one resource exhausted and the others stranded.
+ * <p/>
+ * The free resources of each agent are computed once per agent status and
+ * kept until the agent reports a new status, so placement does not walk every
+ * slot of every agent on each install.  Agents with equal scores are chosen in
+ * random order.
+ */
+public class ResourcePlacementScheduler implements PlacementScheduler
+{
+    private static final Splitter LOCATION_SPLITTER = Splitter.on('/').omitEmptyStrings();
+
+    private final PlacementStrategy strategy;
+    private final int failureDomainDepth;
+
+    // agent statuses are immutable and replaced when the agent changes, so weak identity keys drop stale entries
+    private final Cache<AgentStatus, AgentResources> resourceIndex = CacheBuilder.newBuilder().weakKeys().build();
+
+    @Inject
+    public ResourcePlacementScheduler(CoordinatorConfig config)
+    {
+        this(Preconditions.checkNotNull(config, "config is null").getPlacementStrategy(), config.getPlacementFailureDomainDepth());
+    }
+
+    public ResourcePlacementScheduler(PlacementStrategy strategy, int failureDomainDepth)
+    {
+        Preconditions.checkNotNull(strategy, "strategy is null");
+        Preconditions.checkArgument(failureDomainDepth >= 0, "failureDomainDepth is negative");
+
+        this.strategy = strategy;
+        this.failureDomainDepth = failureDomainDepth;
+    }
+
+    @Override
+    public List<RemoteAgent> selectAgents(List<RemoteAgent> candidates, Installation installation, int limit)
+    {
+        Preconditions.checkNotNull(candidates, "candidates is null");
+        Preconditions.checkNotNull(installation, "installation is null");
+        Preconditions.checkArgument(limit >= 0, "limit is negative");
+
+        Map<String, Integer> requiredResources = installation.getResources();
+
+        // shuffle first so the stable sort below orders agents with equal scores randomly
+        List<RemoteAgent> shuffled = newArrayList(candidates);
+        Collections.shuffle(shuffled);
+
+        Map<String, FailureDomain> domains = newHashMap();
+        for (RemoteAgent agent : shuffled) {
+            AgentStatus status = agent.status();
+            AgentResources resources = getResources(status);
+            if (!resources.canRun(requiredResources)) {
+                continue;
+            }
+
+            String domainName = getFailureDomain(status.getLocation());
+            FailureDomain domain = domains.get(domainName);
+            if (domain == null) {
+                domain = new FailureDomain();
+                domains.put(domainName, domain);
+            }
+            domain.add(agent, resources.score(strategy, requiredResources), resources.getCopies(installation.getAssignment()));
+        }
+        for (FailureDomain domain : domains.values()) {
+            domain.sort();
+        }
+
+        // take the best agent of the domain with the fewest copies, preferring the domain with the better agent on ties
+        List<RemoteAgent> selected = newArrayList();
+        while (selected.size() < limit) {
+            FailureDomain best = null;
+            for (FailureDomain domain : domains.values()) {
+                if (domain.hasNext() && (best == null || domain.compareTo(best) < 0)) {
+                    best = domain;
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            selected.add(best.next());
+        }
+        return ImmutableList.copyOf(selected);
+    }
+
+    private AgentResources getResources(AgentStatus status)
+    {
+        AgentResources resources = resourceIndex.getIfPresent(status);
+        if (resources == null) {
+            resources = new AgentResources(status);
+            resourceIndex.put(status, resources);
+        }
+        return resources;
+    }
+
+    private String getFailureDomain(String location)
+    {
+        if (location == null || failureDomainDepth == 0) {
+            return "";
+        }
+        return Joiner.on('/').join(Iterables.limit(LOCATION_SPLITTER.split(location), failureDomainDepth));
+    }
+
+    private static class AgentResources
+    {
+        private final Map<String, Integer> capacity;
+        private final Map<String, Integer> available;
+        private final int slotCount;
+        private final Multiset<Assignment> assignments = HashMultiset.create();
+
+        private AgentResources(AgentStatus status)
+        {
+            this.capacity = ImmutableMap.copyOf(status.getResources());
+            this.available = ImmutableMap.copyOf(InstallationUtils.getAvailableResources(status));
+            this.slotCount = status.getSlotStatuses().size();
+            for (SlotStatus slotStatus : status.getSlotStatuses()) {
+                if (slotStatus.getAssignment() != null) {
+                    assignments.add(slotStatus.getAssignment());
+                }
+            }
+        }
+
+        public boolean canRun(Map<String, Integer> requiredResources)
+        {
+            // agents without declared resources are considered to have unlimited resources
+            return capacity.isEmpty() || InstallationUtils.resourcesAreAvailable(available, requiredResources);
+        }
+
+        public int getCopies(Assignment assignment)
+        {
+            return assignments.count(assignment);
+        }
+
+        /**
+         * Scores the agent for the installation; lower scores are better.
+         */
+        public double score(PlacementStrategy strategy, Map<String, Integer> requiredResources)
+        {
+            // utilization of each declared resource after the install
+            double total = 0;
+            double min = 1;
+            double max = 0;
+            for (Entry<String, Integer> entry : capacity.entrySet()) {
+                if (entry.getValue() <= 0) {
+                    continue;
+                }
+                int used = entry.getValue() - Objects.firstNonNull(available.get(entry.getKey()), 0) + Objects.firstNonNull(requiredResources.get(entry.getKey()), 0);
+                double utilization = Math.min(1.0, (double) used / entry.getValue());
+                total += utilization;
+                min = Math.min(min, utilization);
+                max = Math.max(max, utilization);
+            }
+            double utilization = capacity.isEmpty() ? 0 : total / capacity.size();
+            double fragmentation = max > min ? max - min : 0;
+
+            switch (strategy) {
+                case SPREAD:
+                    return utilization + fragmentation;
+                case BINPACK:
+                    return fragmentation - utilization;
+                case LEAST_LOADED:
+                    // the slot count dominates; utilization only breaks ties
+                    return slotCount + utilization / 2;
+                default:
+                    throw new IllegalArgumentException("Unsupported placement strategy " + strategy);
+            }
+        }
+    }
+
+    private static class FailureDomain
+            implements Comparable<FailureDomain>
+    {
+        private final List<ScoredAgent> agents = newArrayList();
+        private int copies;
+        private int position;
+
+        public void add(RemoteAgent agent, double score, int copies)
+        {
+            agents.add(new ScoredAgent(agent, score));
+            this.copies += copies;
+        }
+
+        public void sort()
+        {
+            Collections.sort(agents, SCORE_ORDERING);
+        }
+
+        public boolean hasNext()
+        {
+            return position < agents.size();
+        }
+
+        public RemoteAgent next()
+        {
+            copies++;
+            return agents.get(position++).agent;
+        }
+
+        @Override
+        public int compareTo(FailureDomain that)
+        {
+            if (copies != that.copies) {
+                return copies < that.copies ? -1 : 1;
+            }
+            return Double.compare(agents.get(position).score, that.agents.get(that.position).score);
+        }
+    }
+
+    private static final Ordering<ScoredAgent> SCORE_ORDERING = new Ordering<ScoredAgent>()
+    {
+        @Override
+        public int compare(ScoredAgent left, ScoredAgent right)
+        {
+            return Double.compare(left.score, right.score);
+        }
+    };
+
+    private static class ScoredAgent
+    {
+        private final RemoteAgent agent;
+        private final double score;
+
+        private ScoredAgent(RemoteAgent agent, double score)
+        {
+            this.agent = agent;
+            this.score = score;
+        }
+    }
+}
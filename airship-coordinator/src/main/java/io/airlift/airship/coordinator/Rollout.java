@@ -0,0 +1,211 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import io.airlift.airship.shared.Assignment;
+import org.codehaus.jackson.annotate.JsonAutoDetect;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import org.codehaus.jackson.annotate.JsonMethod;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Progress of a rolling upgrade.  The slots are upgraded in order, one wave
+ * at a time, and a wave is complete once all of its slots are healthy.  The
+ * wave start time is cleared whenever the current wave must be applied again,
+ * which is safe because applying a wave skips slots that are already upgraded
+ * and running.
+ */
+@Immutable
+@JsonAutoDetect(JsonMethod.NONE)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Rollout
+{
+    private final UUID id;
+    private final RolloutState state;
+    private final Assignment assignment;
+    private final List<UUID> slotIds;
+    private final int waveSize;
+    private final int waveConcurrency;
+    private final int completedSlots;
+    private final Long waveStartTime;
+    private final String statusMessage;
+
+    public Rollout(UUID id, Assignment assignment, List<UUID> slotIds, int waveSize, int waveConcurrency)
+    {
+        this(id, RolloutState.RUNNING, assignment, slotIds, waveSize, waveConcurrency, 0, null, null);
+    }
+
+    public Rollout(UUID id,
+            RolloutState state,
+            Assignment assignment,
+            List<UUID> slotIds,
+            int waveSize,
+            int waveConcurrency,
+            int completedSlots,
+            Long waveStartTime,
+            String statusMessage)
+    {
+        Preconditions.checkNotNull(id, "id is null");
+        Preconditions.checkNotNull(state, "state is null");
+        Preconditions.checkNotNull(assignment, "assignment is null");
+        Preconditions.checkNotNull(slotIds, "slotIds is null");
+        Preconditions.checkArgument(waveSize > 0, "waveSize must be at least 1");
+        Preconditions.checkArgument(waveConcurrency > 0, "waveConcurrency must be at least 1");
+        Preconditions.checkArgument(completedSlots >= 0 && completedSlots <= slotIds.size(), "completedSlots is out of range");
+
+        this.id = id;
+        this.state = state;
+        this.assignment = assignment;
+        this.slotIds = ImmutableList.copyOf(slotIds);
+        this.waveSize = waveSize;
+        this.waveConcurrency = waveConcurrency;
+        this.completedSlots = completedSlots;
+        this.waveStartTime = waveStartTime;
+        this.statusMessage = statusMessage;
+    }
+
+    @JsonCreator
+    public Rollout(@JsonProperty("id") UUID id,
+            @JsonProperty("state") RolloutState state,
+            @JsonProperty("binary") String binary,
+            @JsonProperty("config") String config,
+            @JsonProperty("slotIds") List<UUID> slotIds,
+            @JsonProperty("waveSize") int waveSize,
+            @JsonProperty("waveConcurrency") int waveConcurrency,
+            @JsonProperty("completedSlots") int completedSlots,
+            @JsonProperty("waveStartTime") Long waveStartTime,
+            @JsonProperty("statusMessage") String statusMessage)
+    {
+        this(id, state, new Assignment(binary, config), slotIds, waveSize, waveConcurrency, completedSlots, waveStartTime, statusMessage);
+    }
+
+    @JsonProperty
+    public UUID getId()
+    {
+        return id;
+    }
+
+    @JsonProperty
+    public RolloutState getState()
+    {
+        return state;
+    }
+
+    public Assignment getAssignment()
+    {
+        return assignment;
+    }
+
+    @JsonProperty
+    public String getBinary()
+    {
+        return assignment.getBinary();
+    }
+
+    @JsonProperty
+    public String getConfig()
+    {
+        return assignment.getConfig();
+    }
+
+    @JsonProperty
+    public List<UUID> getSlotIds()
+    {
+        return slotIds;
+    }
+
+    @JsonProperty
+    public int getWaveSize()
+    {
+        return waveSize;
+    }
+
+    @JsonProperty
+    public int getWaveConcurrency()
+    {
+        return waveConcurrency;
+    }
+
+    @JsonProperty
+    public int getCompletedSlots()
+    {
+        return completedSlots;
+    }
+
+    @JsonProperty
+    public Long getWaveStartTime()
+    {
+        return waveStartTime;
+    }
+
+    @JsonProperty
+    public String getStatusMessage()
+    {
+        return statusMessage;
+    }
+
+    @JsonProperty
+    public int getCurrentWave()
+    {
+        return completedSlots / waveSize;
+    }
+
+    @JsonProperty
+    public int getWaveCount()
+    {
+        return (slotIds.size() + waveSize - 1) / waveSize;
+    }
+
+    /**
+     * Returns the slots of the wave in progress, or an empty list if all waves are complete.
+     */
+    public List<UUID> getCurrentWaveSlotIds()
+    {
+        return slotIds.subList(completedSlots, Math.min(completedSlots + waveSize, slotIds.size()));
+    }
+
+    public Rollout changeState(RolloutState state, String statusMessage)
+    {
+        return new Rollout(id, state, assignment, slotIds, waveSize, waveConcurrency, completedSlots, waveStartTime, statusMessage);
+    }
+
+    public Rollout resume()
+    {
+        // apply the current wave again, which also restarts the wave timeout
+        return new Rollout(id, RolloutState.RUNNING, assignment, slotIds, waveSize, waveConcurrency, completedSlots, null, null);
+    }
+
+    public Rollout startWave(long waveStartTime)
+    {
+        return new Rollout(id, state, assignment, slotIds, waveSize, waveConcurrency, completedSlots, waveStartTime, statusMessage);
+    }
+
+    public Rollout completeWave()
+    {
+        int completedSlots = Math.min(this.completedSlots + waveSize, slotIds.size());
+        return new Rollout(id, state, assignment, slotIds, waveSize, waveConcurrency, completedSlots, null, statusMessage);
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Rollout");
+        sb.append("{id=").append(id);
+        sb.append(", state=").append(state);
+        sb.append(", assignment=").append(assignment);
+        sb.append(", slots=").append(slotIds.size());
+        sb.append(", waveSize=").append(waveSize);
+        sb.append(", waveConcurrency=").append(waveConcurrency);
+        sb.append(", completedSlots=").append(completedSlots);
+        sb.append(", waveStartTime=").append(waveStartTime);
+        sb.append(", statusMessage='").append(statusMessage).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+}
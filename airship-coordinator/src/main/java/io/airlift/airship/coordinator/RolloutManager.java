@@ -0,0 +1,448 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
+import com.google.common.io.PatternFilenameFilter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.FileUtils;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.json.JsonCodec;
+import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.TERMINATED;
+import static io.airlift.airship.shared.VersionsUtil.checkSlotsVersion;
+
+/**
+ * Upgrades slots in waves.  Each wave is assigned the new version and
+ * started, and the next wave begins only after every slot of the current
+ * wave is running the new assignment.  Agents report only the lifecycle
+ * state of a slot, so a running slot is considered healthy.  A slot that
+ * crashes right after it starts still answers the start request as running,
+ * so the health of a wave is judged only from agent status polled once the
+ * wave has run for the minimum healthy time.  A wave that does not become
+ * healthy within the wave timeout fails the rollout, which stops it until an
+ * operator resumes or aborts it.
+ * <p/>
+ * Every change to a rollout is written to disk before it takes effect, so
+ * running rollouts continue after a coordinator restart.  Aborting a rollout
+ * stops it, but does not revert the slots that were already upgraded.
+ */
+public class RolloutManager
+{
+    private static final Logger log = Logger.get(RolloutManager.class);
+
+    private final Coordinator coordinator;
+    private final JsonCodec<Rollout> codec;
+    private final File rolloutDir;
+    private final Duration healthCheckInterval;
+    private final Duration waveTimeout;
+    private final Duration minHealthyTime;
+    private final ScheduledExecutorService executor;
+
+    private final ConcurrentMap<UUID, Rollout> rollouts = new ConcurrentHashMap<>();
+
+    @Inject
+    public RolloutManager(Coordinator coordinator, JsonCodec<Rollout> codec, CoordinatorConfig config)
+    {
+        this(coordinator,
+                codec,
+                new File(checkNotNull(config, "config is null").getRolloutDir()),
+                config.getRolloutHealthCheckInterval(),
+                config.getRolloutWaveTimeout(),
+                config.getRolloutMinHealthyTime());
+    }
+
+    public RolloutManager(Coordinator coordinator,
+            JsonCodec<Rollout> codec,
+            File rolloutDir,
+            Duration healthCheckInterval,
+            Duration waveTimeout,
+            Duration minHealthyTime)
+    {
+        Preconditions.checkNotNull(coordinator, "coordinator is null");
+        Preconditions.checkNotNull(codec, "codec is null");
+        Preconditions.checkNotNull(rolloutDir, "rolloutDir is null");
+        Preconditions.checkNotNull(healthCheckInterval, "healthCheckInterval is null");
+        Preconditions.checkNotNull(waveTimeout, "waveTimeout is null");
+        Preconditions.checkNotNull(minHealthyTime, "minHealthyTime is null");
+
+        this.coordinator = coordinator;
+        this.codec = codec;
+        this.rolloutDir = rolloutDir;
+        this.healthCheckInterval = healthCheckInterval;
+        this.waveTimeout = waveTimeout;
+        this.minHealthyTime = minHealthyTime;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("coordinator-rollout").setDaemon(true).build());
+
+        rolloutDir.mkdirs();
+        Preconditions.checkArgument(rolloutDir.isDirectory(), "rolloutDir is not a directory");
+
+        for (File file : FileUtils.listFiles(rolloutDir, new PatternFilenameFilter("[^\\.].*\\.json"))) {
+            try {
+                Rollout rollout = codec.fromJson(Files.toString(file, Charsets.UTF_8));
+                rollouts.put(rollout.getId(), rollout);
+            }
+            catch (Exception e) {
+                log.warn(e, "Skipping invalid rollout file %s", file);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        executor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    processRollouts();
+                }
+                catch (Throwable e) {
+                    log.error(e, "Unexpected exception processing rollouts");
+                }
+            }
+        }, 0, (long) healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    public List<Rollout> getRollouts()
+    {
+        return ImmutableList.copyOf(rollouts.values());
+    }
+
+    public Rollout getRollout(UUID rolloutId)
+    {
+        Preconditions.checkNotNull(rolloutId, "rolloutId is null");
+        return rollouts.get(rolloutId);
+    }
+
+    /**
+     * Creates a rollout of all upgradable slots matching the filter.
+     *
+     * @return the new rollout, or null if no slots match the filter
+     * @throws IllegalStateException if a slot is already part of an unfinished rollout
+     */
+    public synchronized Rollout createRollout(Predicate<SlotStatus> filter, RolloutRequest request, String expectedSlotsVersion)
+    {
+        Preconditions.checkNotNull(filter, "filter is null");
+        Preconditions.checkNotNull(request, "request is null");
+
+        List<SlotStatus> slots = coordinator.getAllSlotsStatus(filter);
+
+        // verify the state of the system hasn't changed
+        checkSlotsVersion(expectedSlotsVersion, slots);
+
+        List<UUID> slotIds = newArrayList();
+        for (SlotStatus slot : slots) {
+            if (Coordinator.isUpgradable(slot)) {
+                slotIds.add(slot.getId());
+            }
+        }
+
+        Assignment assignment = coordinator.getUpgradeAssignment(slots, request.toUpgradeVersions());
+        if (assignment == null) {
+            return null;
+        }
+
+        for (Rollout existing : rollouts.values()) {
+            if (!existing.getState().isDone()) {
+                List<UUID> remaining = existing.getSlotIds().subList(existing.getCompletedSlots(), existing.getSlotIds().size());
+                for (UUID slotId : slotIds) {
+                    if (remaining.contains(slotId)) {
+                        throw new IllegalStateException(String.format("Slot %s is already part of rollout %s", slotId, existing.getId()));
+                    }
+                }
+            }
+        }
+
+        int waveSize = request.getWaveSize(slotIds.size());
+        int waveConcurrency = waveSize;
+        if (request.getWaveConcurrency() != null) {
+            waveConcurrency = Math.max(Math.min(request.getWaveConcurrency(), waveSize), 1);
+        }
+
+        Rollout rollout = new Rollout(UUID.randomUUID(), assignment, slotIds, waveSize, waveConcurrency);
+        store(rollout);
+        log.info("Started %s", rollout);
+
+        triggerProcessing();
+        return rollout;
+    }
+
+    /**
+     * Pauses, resumes or aborts a rollout.
+     *
+     * @return the updated rollout, or null if the rollout does not exist
+     * @throws IllegalStateException if the rollout can not be changed to the specified state
+     */
+    public synchronized Rollout setState(UUID rolloutId, RolloutState state)
+    {
+        Preconditions.checkNotNull(rolloutId, "rolloutId is null");
+        Preconditions.checkNotNull(state, "state is null");
+
+        Rollout rollout = rollouts.get(rolloutId);
+        if (rollout == null) {
+            return null;
+        }
+
+        RolloutState current = rollout.getState();
+        if (current == state) {
+            return rollout;
+        }
+
+        switch (state) {
+            case RUNNING:
+                Preconditions.checkState(current == RolloutState.PAUSED || current == RolloutState.FAILED, "Can not resume a %s rollout", current);
+                rollout = rollout.resume();
+                break;
+            case PAUSED:
+                Preconditions.checkState(current == RolloutState.RUNNING, "Can not pause a %s rollout", current);
+                rollout = rollout.changeState(RolloutState.PAUSED, null);
+                break;
+            case ABORTED:
+                Preconditions.checkState(!current.isDone(), "Can not abort a %s rollout", current);
+                rollout = rollout.changeState(RolloutState.ABORTED, null);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported rollout state: " + state);
+        }
+        store(rollout);
+        log.info("Changed rollout %s from %s to %s", rolloutId, current, state);
+
+        if (state == RolloutState.RUNNING) {
+            triggerProcessing();
+        }
+        return rollout;
+    }
+
+    @Managed(description = "Number of rollouts in progress")
+    public int getRunningRollouts()
+    {
+        int count = 0;
+        for (Rollout rollout : rollouts.values()) {
+            if (rollout.getState() == RolloutState.RUNNING) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Managed(description = "Number of rollouts stopped because a wave did not become healthy")
+    public int getFailedRollouts()
+    {
+        int count = 0;
+        for (Rollout rollout : rollouts.values()) {
+            if (rollout.getState() == RolloutState.FAILED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @VisibleForTesting
+    void processRollouts()
+    {
+        for (Rollout rollout : rollouts.values()) {
+            if (rollout.getState() != RolloutState.RUNNING) {
+                continue;
+            }
+            try {
+                processRollout(rollout);
+            }
+            catch (Exception e) {
+                log.error(e, "Rollout %s failed", rollout.getId());
+                recordFailure(rollout, e.getMessage());
+            }
+        }
+    }
+
+    private void processRollout(Rollout rollout)
+    {
+        List<UUID> wave = rollout.getCurrentWaveSlotIds();
+
+        if (rollout.getWaveStartTime() == null) {
+            if (!applyWave(rollout, wave)) {
+                // rollout was paused or aborted; a resumed rollout applies the whole wave again
+                return;
+            }
+            // the start responses do not show whether the slots stay up, so the health is checked on a later pass
+            recordWaveStarted(rollout, System.currentTimeMillis());
+            return;
+        }
+
+        List<UUID> unhealthySlots = wave;
+        if (coordinator.getLastAgentSweepStartTime() >= rollout.getWaveStartTime() + minHealthyTime.toMillis()) {
+            unhealthySlots = getUnhealthySlots(rollout.getAssignment(), wave);
+            if (unhealthySlots.isEmpty()) {
+                recordWaveCompleted(rollout);
+                return;
+            }
+        }
+        if (System.currentTimeMillis() - rollout.getWaveStartTime() > waveTimeout.toMillis()) {
+            recordFailure(rollout, String.format("Wave %s of %s did not become healthy within %s: %s",
+                    rollout.getCurrentWave() + 1,
+                    rollout.getWaveCount(),
+                    waveTimeout,
+                    unhealthySlots));
+        }
+    }
+
+    /**
+     * @return false if the rollout stopped running before every batch of the wave was applied
+     */
+    private boolean applyWave(Rollout rollout, List<UUID> wave)
+    {
+        // slots that are already upgraded and running are skipped, so a wave can be applied again safely
+        for (List<UUID> batch : Iterables.partition(wave, rollout.getWaveConcurrency())) {
+            if (rollouts.get(rollout.getId()).getState() != RolloutState.RUNNING) {
+                return false;
+            }
+            Predicate<SlotStatus> batchFilter = slotIdIn(ImmutableSet.copyOf(batch));
+            coordinator.upgrade(batchFilter, rollout.getAssignment());
+            coordinator.setState(RUNNING, Predicates.and(batchFilter, Predicates.not(isRunning())), null);
+        }
+        return true;
+    }
+
+    private List<UUID> getUnhealthySlots(Assignment assignment, List<UUID> wave)
+    {
+        ClusterSnapshot snapshot = coordinator.getSnapshot();
+
+        List<UUID> unhealthySlots = newArrayList();
+        for (UUID slotId : wave) {
+            SlotStatus slot = snapshot.getSlot(slotId);
+            if (slot == null || slot.getState() == TERMINATED) {
+                // slot was terminated during the rollout
+                continue;
+            }
+            if (slot.getState() != RUNNING || !assignment.equals(slot.getAssignment())) {
+                unhealthySlots.add(slotId);
+            }
+        }
+        return unhealthySlots;
+    }
+
+    private synchronized void recordWaveStarted(Rollout rollout, long waveStartTime)
+    {
+        Rollout current = rollouts.get(rollout.getId());
+        if (current.getState() != RolloutState.RUNNING || current.getCompletedSlots() != rollout.getCompletedSlots()) {
+            return;
+        }
+        store(current.startWave(waveStartTime));
+    }
+
+    private synchronized void recordWaveCompleted(Rollout rollout)
+    {
+        Rollout current = rollouts.get(rollout.getId());
+        if (current.getState().isDone() || current.getCompletedSlots() != rollout.getCompletedSlots()) {
+            return;
+        }
+        current = current.completeWave();
+        if (current.getCurrentWaveSlotIds().isEmpty()) {
+            current = current.changeState(RolloutState.COMPLETED, null);
+            log.info("Completed rollout %s", current.getId());
+        }
+        store(current);
+    }
+
+    private synchronized void recordFailure(Rollout rollout, String statusMessage)
+    {
+        Rollout current = rollouts.get(rollout.getId());
+        if (current.getState() != RolloutState.RUNNING) {
+            return;
+        }
+        log.warn("Rollout %s failed: %s", rollout.getId(), statusMessage);
+        store(current.changeState(RolloutState.FAILED, statusMessage));
+    }
+
+    private void triggerProcessing()
+    {
+        try {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    processRollouts();
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            // the scheduled run will pick up the change
+            log.debug(e, "Unable to trigger rollout processing");
+        }
+    }
+
+    private void store(Rollout rollout)
+    {
+        File file = new File(rolloutDir, rollout.getId() + ".json");
+        File tempFile = new File(rolloutDir, "." + rollout.getId() + ".json.tmp");
+        try {
+            Files.write(codec.toJson(rollout), tempFile, Charsets.UTF_8);
+            java.nio.file.Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Unable to save rollout " + rollout.getId(), e);
+        }
+        rollouts.put(rollout.getId(), rollout);
+    }
+
+    private static Predicate<SlotStatus> slotIdIn(final Set<UUID> slotIds)
+    {
+        return new Predicate<SlotStatus>()
+        {
+            @Override
+            public boolean apply(SlotStatus slotStatus)
+            {
+                return slotIds.contains(slotStatus.getId());
+            }
+        };
+    }
+
+    private static Predicate<SlotStatus> isRunning()
+    {
+        return new Predicate<SlotStatus>()
+        {
+            @Override
+            public boolean apply(SlotStatus slotStatus)
+            {
+                return slotStatus.getState() == RUNNING;
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package io.airlift.airship.coordinator;
+
+import io.airlift.airship.shared.UpgradeVersions;
+import org.codehaus.jackson.annotate.JsonAutoDetect;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonMethod;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+/**
+ * Request to upgrade slots in waves.  The wave size is either an absolute
+ * number of slots or a percentage of all slots in the rollout; if neither is
+ * set, every slot is upgraded in a single wave.  The wave concurrency limits
+ * how many slots of one wave are upgraded and started at the same time and
+ * defaults to the whole wave.
+ */
+@JsonAutoDetect(JsonMethod.NONE)
+public class RolloutRequest
+{
+    private final String binaryVersion;
+    private final String configVersion;
+    private final Integer waveSize;
+    private final Integer wavePercentage;
+    private final Integer waveConcurrency;
+
+    @JsonCreator
+    public RolloutRequest(
+            @JsonProperty("binaryVersion") String binaryVersion,
+            @JsonProperty("configVersion") String configVersion,
+            @JsonProperty("waveSize") Integer waveSize,
+            @JsonProperty("wavePercentage") Integer wavePercentage,
+            @JsonProperty("waveConcurrency") Integer waveConcurrency)
+    {
+        this.binaryVersion = binaryVersion;
+        this.configVersion = configVersion;
+        this.waveSize = waveSize;
+        this.wavePercentage = wavePercentage;
+        this.waveConcurrency = waveConcurrency;
+    }
+
+    @JsonProperty
+    public String getBinaryVersion()
+    {
+        return binaryVersion;
+    }
+
+    @JsonProperty
+    public String getConfigVersion()
+    {
+        return configVersion;
+    }
+
+    @JsonProperty
+    public Integer getWaveSize()
+    {
+        return waveSize;
+    }
+
+    @JsonProperty
+    public Integer getWavePercentage()
+    {
+        return wavePercentage;
+    }
+
+    @JsonProperty
+    public Integer getWaveConcurrency()
+    {
+        return waveConcurrency;
+    }
+
+    public UpgradeVersions toUpgradeVersions()
+    {
+        return new UpgradeVersions(binaryVersion, configVersion);
+    }
+
+    /**
+     * Returns the number of slots in each wave of a rollout of the specified number of slots.
+     */
+    public int getWaveSize(int slotCount)
+    {
+        if (waveSize != null) {
+            return Math.max(waveSize, 1);
+        }
+        if (wavePercentage != null) {
+            return Math.max((int) Math.ceil(slotCount * wavePercentage / 100.0), 1);
+        }
+        return Math.max(slotCount, 1);
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("RolloutRequest");
+        sb.append("{binaryVersion='").append(binaryVersion).append('\'');
+        sb.append(", configVersion='").append(configVersion).append('\'');
+        sb.append(", waveSize=").append(waveSize);
+        sb.append(", wavePercentage=").append(wavePercentage);
+        sb.append(", waveConcurrency=").append(waveConcurrency);
+        sb.append('}');
+        return sb.toString();
+    }
+}
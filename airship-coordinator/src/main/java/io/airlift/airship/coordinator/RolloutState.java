@@ -0,0 +1,28 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+
+public enum RolloutState
+{
+    RUNNING,
+    PAUSED,
+    FAILED,
+    ABORTED,
+    COMPLETED;
+
+    public static RolloutState lookup(String name)
+    {
+        Preconditions.checkNotNull(name, "name is null");
+        for (RolloutState state : RolloutState.values()) {
+            if (state.name().equalsIgnoreCase(name.trim())) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    public boolean isDone()
+    {
+        return this == ABORTED || this == COMPLETED;
+    }
+}
@@ -0,0 +1,70 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import io.airlift.discovery.client.ServiceDescriptor;
+import io.airlift.discovery.client.ServiceDescriptorsRepresentation;
+import io.airlift.json.JsonCodec;
+import io.airlift.node.NodeInfo;
+
+import java.util.List;
+
+/**
+ * Serializes the service inventory pushed to agents and served to discovery
+ * clients.  The last inventory is kept in serialized form, so an inventory
+ * that has not changed, which {@link HttpServiceInventory} returns as the same
+ * instance, is serialized once no matter how many agents and clients it is
+ * sent to.
+ */
+public class ServiceInventoryJson
+{
+    private final String environment;
+    private final JsonCodec<ServiceDescriptorsRepresentation> codec;
+
+    private volatile SerializedInventory lastInventory;
+
+    @Inject
+    public ServiceInventoryJson(NodeInfo nodeInfo, JsonCodec<ServiceDescriptorsRepresentation> codec)
+    {
+        this(Preconditions.checkNotNull(nodeInfo, "nodeInfo is null").getEnvironment(), codec);
+    }
+
+    public ServiceInventoryJson(String environment, JsonCodec<ServiceDescriptorsRepresentation> codec)
+    {
+        Preconditions.checkNotNull(environment, "environment is null");
+        Preconditions.checkNotNull(codec, "codec is null");
+
+        this.environment = environment;
+        this.codec = codec;
+    }
+
+    /**
+     * Returns the inventory as a JSON service descriptors representation.  The
+     * returned array is shared and must not be modified.
+     */
+    public byte[] toJsonBytes(List<ServiceDescriptor> inventory)
+    {
+        Preconditions.checkNotNull(inventory, "inventory is null");
+
+        SerializedInventory serialized = lastInventory;
+        if (serialized == null || serialized.inventory != inventory) {
+            byte[] json = codec.toJson(new ServiceDescriptorsRepresentation(environment, inventory)).getBytes(Charsets.UTF_8);
+            serialized = new SerializedInventory(inventory, json);
+            lastInventory = serialized;
+        }
+        return serialized.json;
+    }
+
+    private static class SerializedInventory
+    {
+        private final List<ServiceDescriptor> inventory;
+        private final byte[] json;
+
+        private SerializedInventory(List<ServiceDescriptor> inventory, byte[] json)
+        {
+            this.inventory = inventory;
+            this.json = json;
+        }
+    }
+}
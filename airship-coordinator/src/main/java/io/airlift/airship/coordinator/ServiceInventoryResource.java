@@ -15,8 +15,6 @@ package io.airlift.airship.coordinator;
 
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
-import io.airlift.discovery.client.ServiceDescriptorsRepresentation;
-import io.airlift.node.NodeInfo;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -29,24 +27,24 @@ public class ServiceInventoryResource
 {
     private final Coordinator coordinator;
     private final ServiceInventory serviceInventory;
-    private final String environment;
+    private final ServiceInventoryJson serviceInventoryJson;
 
     @Inject
-    public ServiceInventoryResource(Coordinator coordinator, ServiceInventory serviceInventory, NodeInfo nodeInfo)
+    public ServiceInventoryResource(Coordinator coordinator, ServiceInventory serviceInventory, ServiceInventoryJson serviceInventoryJson)
     {
         Preconditions.checkNotNull(coordinator, "coordinator is null");
         Preconditions.checkNotNull(serviceInventory, "serviceInventory is null");
-        Preconditions.checkNotNull(nodeInfo, "nodeInfo is null");
+        Preconditions.checkNotNull(serviceInventoryJson, "serviceInventoryJson is null");
 
         this.coordinator = coordinator;
         this.serviceInventory = serviceInventory;
-        this.environment = nodeInfo.getEnvironment();
+        this.serviceInventoryJson = serviceInventoryJson;
     }
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     public Response getServiceInventory()
     {
-        return Response.ok(new ServiceDescriptorsRepresentation(environment, serviceInventory.getServiceInventory(coordinator.getAllSlotStatus()))).build();
+        return Response.ok(serviceInventoryJson.toJsonBytes(serviceInventory.getServiceInventory(coordinator.getAllSlotStatus())), MediaType.APPLICATION_JSON_TYPE).build();
     }
 }
@@ -0,0 +1,156 @@
+package io.airlift.airship.coordinator;
+
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.AgentStatusRepresentation.AgentStatusRepresentationFactory;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.airship.shared.SlotStatusRepresentation.SlotStatusRepresentationFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+import static com.google.common.base.Objects.equal;
+import static com.google.common.base.Objects.firstNonNull;
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * Keeps the sizes used to shorten agent and slot ids and locations in
+ * representations: the shortest unique id prefix and the number of location
+ * segments shared by every agent or slot.
+ * <p/>
+ * The index remembers the agents and slots of the last update, and only
+ * adds or removes the ids and locations that changed since then, so the
+ * sizes do not have to be recomputed from scratch for every response.
+ */
+@ThreadSafe
+public class ShortNameIndex
+{
+    private final UniquePrefixIndex agentIds = new UniquePrefixIndex(AgentStatusRepresentationFactory.MIN_PREFIX_SIZE);
+    private final CommonSegmentsIndex agentLocations = new CommonSegmentsIndex('/', AgentStatusRepresentationFactory.MIN_LOCATION_SEGMENTS);
+    private final UniquePrefixIndex slotIds = new UniquePrefixIndex(SlotStatusRepresentationFactory.MIN_PREFIX_SIZE);
+    private final CommonSegmentsIndex slotLocations = new CommonSegmentsIndex('/', SlotStatusRepresentationFactory.MIN_LOCATION_SEGMENTS);
+
+    private final Map<String, AgentStatus> agents = newHashMap();
+    private final Map<UUID, String> slots = newHashMap();
+
+    private int agentShortIdPrefixSize = AgentStatusRepresentationFactory.MIN_PREFIX_SIZE;
+    private int agentCommonLocationParts;
+    private int slotShortIdPrefixSize = SlotStatusRepresentationFactory.MIN_PREFIX_SIZE;
+    private int slotCommonLocationParts;
+
+    /**
+     * Updates the index to contain exactly these agents and slots.
+     */
+    public synchronized void update(List<AgentStatus> agentStatuses, List<SlotStatus> slotStatuses)
+    {
+        Map<String, AgentStatus> newAgents = newHashMap();
+        for (AgentStatus agentStatus : agentStatuses) {
+            newAgents.put(agentStatus.getInstanceId(), agentStatus);
+        }
+        for (Iterator<Entry<String, AgentStatus>> iterator = agents.entrySet().iterator(); iterator.hasNext(); ) {
+            Entry<String, AgentStatus> entry = iterator.next();
+            if (!newAgents.containsKey(entry.getKey())) {
+                removeAgent(entry.getValue());
+                iterator.remove();
+            }
+        }
+        for (AgentStatus agentStatus : newAgents.values()) {
+            AgentStatus oldStatus = agents.put(agentStatus.getInstanceId(), agentStatus);
+            // agent statuses are replaced on every change, but the id and location rarely change
+            if (oldStatus != agentStatus &&
+                    (oldStatus == null || !equal(oldStatus.getAgentId(), agentStatus.getAgentId()) || !equal(oldStatus.getLocation(), agentStatus.getLocation()))) {
+                if (oldStatus != null) {
+                    removeAgent(oldStatus);
+                }
+                addAgent(agentStatus);
+            }
+        }
+
+        Map<UUID, String> newSlots = newHashMap();
+        for (SlotStatus slotStatus : slotStatuses) {
+            if (!newSlots.containsKey(slotStatus.getId())) {
+                newSlots.put(slotStatus.getId(), slotStatus.getLocation());
+            }
+        }
+        for (Iterator<Entry<UUID, String>> iterator = slots.entrySet().iterator(); iterator.hasNext(); ) {
+            Entry<UUID, String> entry = iterator.next();
+            if (!newSlots.containsKey(entry.getKey())) {
+                slotIds.remove(entry.getKey().toString());
+                slotLocations.remove(entry.getValue());
+                iterator.remove();
+            }
+        }
+        for (Entry<UUID, String> entry : newSlots.entrySet()) {
+            String oldLocation = slots.put(entry.getKey(), entry.getValue());
+            if (oldLocation == null) {
+                slotIds.add(entry.getKey().toString());
+                slotLocations.add(entry.getValue());
+            }
+            else if (!oldLocation.equals(entry.getValue())) {
+                slotLocations.remove(oldLocation);
+                slotLocations.add(entry.getValue());
+            }
+        }
+
+        agentShortIdPrefixSize = agentIds.getShortestUniquePrefix();
+        agentCommonLocationParts = agentLocations.getCommonPrefixSegments();
+        slotShortIdPrefixSize = slotIds.getShortestUniquePrefix();
+        slotCommonLocationParts = slotLocations.getCommonPrefixSegments();
+    }
+
+    public synchronized int getAgentShortIdPrefixSize()
+    {
+        return agentShortIdPrefixSize;
+    }
+
+    public synchronized int getAgentCommonLocationParts()
+    {
+        return agentCommonLocationParts;
+    }
+
+    public synchronized int getSlotShortIdPrefixSize()
+    {
+        return slotShortIdPrefixSize;
+    }
+
+    public synchronized int getSlotCommonLocationParts()
+    {
+        return slotCommonLocationParts;
+    }
+
+    private void addAgent(AgentStatus agentStatus)
+    {
+        // agents that are still provisioning do not have an id yet
+        if (agentStatus.getAgentId() != null) {
+            agentIds.add(agentStatus.getAgentId());
+        }
+        String location = getLocation(agentStatus);
+        if (location != null) {
+            agentLocations.add(location);
+        }
+    }
+
+    private void removeAgent(AgentStatus agentStatus)
+    {
+        if (agentStatus.getAgentId() != null) {
+            agentIds.remove(agentStatus.getAgentId());
+        }
+        String location = getLocation(agentStatus);
+        if (location != null) {
+            agentLocations.remove(location);
+        }
+    }
+
+    private static String getLocation(AgentStatus agentStatus)
+    {
+        // agent locations are not validated, and one malformed location must not break the whole index
+        String location = firstNonNull(agentStatus.getLocation(), "/");
+        if (!location.startsWith("/")) {
+            return null;
+        }
+        return location;
+    }
+}
@@ -3,14 +3,19 @@ package io.airlift.airship.coordinator;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.simpledb.AmazonSimpleDB;
 import com.amazonaws.services.simpledb.model.Attribute;
+import com.amazonaws.services.simpledb.model.BatchDeleteAttributesRequest;
+import com.amazonaws.services.simpledb.model.BatchPutAttributesRequest;
 import com.amazonaws.services.simpledb.model.CreateDomainRequest;
+import com.amazonaws.services.simpledb.model.DeletableItem;
 import com.amazonaws.services.simpledb.model.DeleteAttributesRequest;
 import com.amazonaws.services.simpledb.model.Item;
 import com.amazonaws.services.simpledb.model.PutAttributesRequest;
 import com.amazonaws.services.simpledb.model.ReplaceableAttribute;
+import com.amazonaws.services.simpledb.model.ReplaceableItem;
 import com.amazonaws.services.simpledb.model.SelectRequest;
 import com.amazonaws.services.simpledb.model.SelectResult;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import io.airlift.airship.shared.Assignment;
 import io.airlift.airship.shared.ExpectedSlotStatus;
 import io.airlift.airship.shared.SlotLifecycleState;
@@ -28,6 +33,10 @@ import static com.google.common.collect.Lists.newArrayList;
 public class SimpleDbStateManager implements StateManager
 {
     private static final Logger log = Logger.get(SimpleDbStateManager.class);
+
+    // maximum number of items in a SimpleDB batch request
+    private static final int MAX_BATCH_SIZE = 25;
+
     private final AmazonSimpleDB simpleDb;
     private final String domainName;
     private boolean domainCreated;
@@ -68,13 +77,8 @@ public class SimpleDbStateManager implements StateManager
         Preconditions.checkNotNull(slotId, "id is null");
 
         if (isDomainCreated()) {
-            List<Attribute> attributes = newArrayList();
-            attributes.add(new Attribute("state", null));
-            attributes.add(new Attribute("binary", null));
-            attributes.add(new Attribute("config", null));
-
             try {
-                simpleDb.deleteAttributes(new DeleteAttributesRequest().withDomainName(domainName).withItemName(slotId.toString()).withAttributes(attributes));
+                simpleDb.deleteAttributes(new DeleteAttributesRequest().withDomainName(domainName).withItemName(slotId.toString()).withAttributes(createDeleteAttributes()));
                 expectedStateStoreUp();
             }
             catch (Exception e) {
@@ -89,15 +93,8 @@ public class SimpleDbStateManager implements StateManager
         Preconditions.checkNotNull(slotStatus, "slotStatus is null");
 
         if (isDomainCreated()) {
-            List<ReplaceableAttribute> attributes = newArrayList();
-            attributes.add(new ReplaceableAttribute("state", slotStatus.getStatus().toString(), true));
-            if (slotStatus.getAssignment() != null) {
-                attributes.add(new ReplaceableAttribute("binary", slotStatus.getAssignment().getBinary(), true));
-                attributes.add(new ReplaceableAttribute("config", slotStatus.getAssignment().getConfig(), true));
-            }
-
             try {
-                simpleDb.putAttributes(new PutAttributesRequest().withDomainName(domainName).withItemName(slotStatus.getId().toString()).withAttributes(attributes));
+                simpleDb.putAttributes(new PutAttributesRequest().withDomainName(domainName).withItemName(slotStatus.getId().toString()).withAttributes(createPutAttributes(slotStatus)));
                 expectedStateStoreUp();
             }
             catch (Exception e) {
@@ -106,6 +103,72 @@ public class SimpleDbStateManager implements StateManager
         }
     }
 
+    @Override
+    public void deleteExpectedStates(Collection<UUID> slotIds)
+    {
+        Preconditions.checkNotNull(slotIds, "slotIds is null");
+
+        if (!slotIds.isEmpty() && isDomainCreated()) {
+            for (List<UUID> batch : Iterables.partition(slotIds, MAX_BATCH_SIZE)) {
+                List<DeletableItem> items = newArrayList();
+                for (UUID slotId : batch) {
+                    items.add(new DeletableItem().withName(slotId.toString()).withAttributes(createDeleteAttributes()));
+                }
+
+                try {
+                    simpleDb.batchDeleteAttributes(new BatchDeleteAttributesRequest().withDomainName(domainName).withItems(items));
+                    expectedStateStoreUp();
+                }
+                catch (Exception e) {
+                    expectedStateStoreDown(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setExpectedStates(Collection<ExpectedSlotStatus> slotStatuses)
+    {
+        Preconditions.checkNotNull(slotStatuses, "slotStatuses is null");
+
+        if (!slotStatuses.isEmpty() && isDomainCreated()) {
+            for (List<ExpectedSlotStatus> batch : Iterables.partition(slotStatuses, MAX_BATCH_SIZE)) {
+                List<ReplaceableItem> items = newArrayList();
+                for (ExpectedSlotStatus slotStatus : batch) {
+                    items.add(new ReplaceableItem().withName(slotStatus.getId().toString()).withAttributes(createPutAttributes(slotStatus)));
+                }
+
+                try {
+                    simpleDb.batchPutAttributes(new BatchPutAttributesRequest().withDomainName(domainName).withItems(items));
+                    expectedStateStoreUp();
+                }
+                catch (Exception e) {
+                    expectedStateStoreDown(e);
+                }
+            }
+        }
+    }
+
+    private static List<Attribute> createDeleteAttributes()
+    {
+        List<Attribute> attributes = newArrayList();
+        attributes.add(new Attribute("state", null));
+        attributes.add(new Attribute("binary", null));
+        attributes.add(new Attribute("config", null));
+        return attributes;
+    }
+
+    private static List<ReplaceableAttribute> createPutAttributes(ExpectedSlotStatus slotStatus)
+    {
+        List<ReplaceableAttribute> attributes = newArrayList();
+        attributes.add(new ReplaceableAttribute("state", slotStatus.getStatus().toString(), true));
+        if (slotStatus.getAssignment() != null) {
+            attributes.add(new ReplaceableAttribute("binary", slotStatus.getAssignment().getBinary(), true));
+            attributes.add(new ReplaceableAttribute("config", slotStatus.getAssignment().getConfig(), true));
+        }
+        return attributes;
+    }
+
     private synchronized boolean isDomainCreated()
     {
         if (!domainCreated) {
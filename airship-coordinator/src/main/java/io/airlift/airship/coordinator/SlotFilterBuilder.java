@@ -5,6 +5,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import io.airlift.airship.shared.HttpUriBuilder;
 import io.airlift.airship.shared.SlotLifecycleState;
@@ -30,6 +31,16 @@ public class SlotFilterBuilder
     }
 
     public static Predicate<SlotStatus> build(UriInfo uriInfo, boolean filterRequired, List<UUID> allUuids)
+    {
+        return fromUriInfo(uriInfo).buildPredicate(filterRequired, allUuids);
+    }
+
+    public static Predicate<SlotStatus> build(UriInfo uriInfo, boolean filterRequired, ClusterSnapshot snapshot)
+    {
+        return fromUriInfo(uriInfo).buildPredicate(filterRequired, snapshot);
+    }
+
+    private static SlotFilterBuilder fromUriInfo(UriInfo uriInfo)
     {
         SlotFilterBuilder builder = new SlotFilterBuilder();
         for (Entry<String, List<String>> entry : uriInfo.getQueryParameters().entrySet()) {
@@ -67,7 +78,7 @@ public class SlotFilterBuilder
                 builder.selectAll();
             }
         }
-        return builder.buildPredicate(filterRequired, allUuids);
+        return builder;
     }
 
     private final List<SlotLifecycleState> stateFilters = Lists.newArrayListWithCapacity(6);
@@ -132,23 +143,45 @@ public class SlotFilterBuilder
     }
 
     public Predicate<SlotStatus> buildPredicate(boolean filterRequired, final List<UUID> allUuids)
+    {
+        return buildPredicate(filterRequired, new Function<String, SlotUuidPredicate>()
+        {
+            @Override
+            public SlotUuidPredicate apply(String shortId)
+            {
+                return new SlotUuidPredicate(shortId, allUuids);
+            }
+        });
+    }
+
+    /**
+     * Builds a filter that expands short slot ids with the indexes of the
+     * snapshot, and that {@link ClusterSnapshot#getSlots(Predicate)} only
+     * evaluates on the candidate slots found in the indexes.
+     */
+    public Predicate<SlotStatus> buildPredicate(boolean filterRequired, final ClusterSnapshot snapshot)
+    {
+        return buildPredicate(filterRequired, new Function<String, SlotUuidPredicate>()
+        {
+            @Override
+            public SlotUuidPredicate apply(String shortId)
+            {
+                return new SlotUuidPredicate(shortId, snapshot);
+            }
+        });
+    }
+
+    private Predicate<SlotStatus> buildPredicate(boolean filterRequired, Function<String, SlotUuidPredicate> uuidPredicateFactory)
     {
         // Filters are evaluated as: set | host | (env & version & type)
         List<Predicate<SlotStatus>> andPredicates = Lists.newArrayListWithCapacity(6);
         if (!slotUuidFilters.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(slotUuidFilters, new Function<String, Predicate<SlotStatus>>()
-            {
-                @Override
-                public Predicate<SlotStatus> apply(String shortId)
-                {
-                    return new SlotUuidPredicate(shortId, allUuids);
-                }
-            }));
+            Predicate<SlotStatus> predicate = IndexedSlotPredicates.or(Lists.transform(slotUuidFilters, uuidPredicateFactory));
             andPredicates.add(predicate);
         }
 
         if (!stateFilters.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(stateFilters, new Function<SlotLifecycleState, StatePredicate>()
+            Predicate<SlotStatus> predicate = IndexedSlotPredicates.or(Lists.transform(stateFilters, new Function<SlotLifecycleState, StatePredicate>()
             {
                 @Override
                 public StatePredicate apply(SlotLifecycleState state)
@@ -160,7 +193,7 @@ public class SlotFilterBuilder
         }
 
         if (!hostGlobs.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(hostGlobs, new Function<String, HostPredicate>()
+            Predicate<SlotStatus> predicate = IndexedSlotPredicates.or(Lists.transform(hostGlobs, new Function<String, HostPredicate>()
             {
                 @Override
                 public HostPredicate apply(String hostGlob)
@@ -172,7 +205,7 @@ public class SlotFilterBuilder
         }
 
         if (!machineGlobs.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(machineGlobs, new Function<String, MachinePredicate>()
+            Predicate<SlotStatus> predicate = IndexedSlotPredicates.or(Lists.transform(machineGlobs, new Function<String, MachinePredicate>()
             {
                 @Override
                 public MachinePredicate apply(String machineGlob)
@@ -184,7 +217,7 @@ public class SlotFilterBuilder
         }
 
         if (!binaryGlobs.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(binaryGlobs, new Function<String, BinarySpecPredicate>()
+            Predicate<SlotStatus> predicate = IndexedSlotPredicates.or(Lists.transform(binaryGlobs, new Function<String, BinarySpecPredicate>()
             {
                 @Override
                 public BinarySpecPredicate apply(String binarySpecPredicate)
@@ -195,7 +228,7 @@ public class SlotFilterBuilder
             andPredicates.add(predicate);
         }
         if (!configGlobs.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(configGlobs, new Function<String, ConfigSpecPredicate>()
+            Predicate<SlotStatus> predicate = IndexedSlotPredicates.or(Lists.transform(configGlobs, new Function<String, ConfigSpecPredicate>()
             {
                 @Override
                 public ConfigSpecPredicate apply(String configSpecPredicate)
@@ -210,7 +243,7 @@ public class SlotFilterBuilder
             return Predicates.alwaysTrue();
         }
         else if (!andPredicates.isEmpty()) {
-            return Predicates.and(andPredicates);
+            return IndexedSlotPredicates.and(andPredicates);
         }
         else if (!filterRequired) {
             return Predicates.alwaysTrue();
@@ -252,25 +285,18 @@ public class SlotFilterBuilder
         return uriBuilder.build();
     }
 
-    public static class SlotUuidPredicate implements Predicate<SlotStatus>
+    public static class SlotUuidPredicate implements IndexedSlotPredicate
     {
         private final UUID uuid;
 
         public SlotUuidPredicate(String shortId, List<UUID> allUuids)
         {
-            Predicate<UUID> startsWithPrefix = Predicates.compose(startsWith(shortId.toLowerCase()), compose(toLowerCase(), StringFunctions.<UUID>toStringFunction()));
-            Collection<UUID> matches = Collections2.filter(allUuids, startsWithPrefix);
-
-            if (matches.size() > 1) {
-                throw new IllegalArgumentException(format("Ambiguous expansion for id '%s': %s", shortId, matches));
-            }
+            this(expandShortId(shortId, allUuids));
+        }
 
-            if (matches.isEmpty()) {
-                uuid = null;
-            }
-            else {
-                uuid = matches.iterator().next();
-            }
+        public SlotUuidPredicate(String shortId, ClusterSnapshot snapshot)
+        {
+            this(expandShortId(shortId, snapshot));
         }
 
         public SlotUuidPredicate(UUID uuid)
@@ -286,9 +312,65 @@ public class SlotFilterBuilder
                     uuid != null &&
                     uuid.equals(slotStatus.getId());
         }
+
+        @Override
+        public Collection<SlotStatus> getCandidates(ClusterSnapshot snapshot)
+        {
+            SlotStatus slot = uuid == null ? null : snapshot.getSlot(uuid);
+            if (slot == null) {
+                return ImmutableList.of();
+            }
+            return ImmutableList.of(slot);
+        }
+
+        private static UUID expandShortId(String shortId, List<UUID> allUuids)
+        {
+            // a complete id is a point lookup and does not need to be expanded
+            UUID fullId = parseUuid(shortId);
+            if (fullId != null) {
+                return fullId;
+            }
+
+            Predicate<UUID> startsWithPrefix = Predicates.compose(startsWith(shortId.toLowerCase()), compose(toLowerCase(), StringFunctions.<UUID>toStringFunction()));
+            return getOnlyMatch(shortId, Collections2.filter(allUuids, startsWithPrefix));
+        }
+
+        private static UUID expandShortId(String shortId, ClusterSnapshot snapshot)
+        {
+            UUID fullId = parseUuid(shortId);
+            if (fullId != null) {
+                return fullId;
+            }
+            return getOnlyMatch(shortId, snapshot.getSlotIdsByPrefix(shortId));
+        }
+
+        private static UUID getOnlyMatch(String shortId, Collection<UUID> matches)
+        {
+            if (matches.size() > 1) {
+                throw new IllegalArgumentException(format("Ambiguous expansion for id '%s': %s", shortId, matches));
+            }
+
+            if (matches.isEmpty()) {
+                return null;
+            }
+            return matches.iterator().next();
+        }
+
+        private static UUID parseUuid(String id)
+        {
+            if (id.length() != 36) {
+                return null;
+            }
+            try {
+                return UUID.fromString(id);
+            }
+            catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
     }
 
-    public static class HostPredicate implements Predicate<SlotStatus>
+    public static class HostPredicate implements IndexedSlotPredicate
     {
         private final UriHostPredicate predicate;
 
@@ -303,9 +385,22 @@ public class SlotFilterBuilder
             return slotStatus != null &&
                     (predicate.apply(slotStatus.getExternalUri()) || predicate.apply(slotStatus.getSelf()));
         }
+
+        @Override
+        public Collection<SlotStatus> getCandidates(ClusterSnapshot snapshot)
+        {
+            return snapshot.getSlotsByHost(new Predicate<String>()
+            {
+                @Override
+                public boolean apply(String host)
+                {
+                    return predicate.applyToHost(host);
+                }
+            });
+        }
     }
 
-    public static class MachinePredicate implements Predicate<SlotStatus>
+    public static class MachinePredicate implements IndexedSlotPredicate
     {
         private final GlobPredicate predicate;
 
@@ -319,9 +414,15 @@ public class SlotFilterBuilder
         {
             return slotStatus != null && predicate.apply(slotStatus.getInstanceId());
         }
+
+        @Override
+        public Collection<SlotStatus> getCandidates(ClusterSnapshot snapshot)
+        {
+            return snapshot.getSlotsByMachine(predicate);
+        }
     }
 
-    public static class StatePredicate implements Predicate<SlotStatus>
+    public static class StatePredicate implements IndexedSlotPredicate
     {
         private final SlotLifecycleState state;
 
@@ -335,9 +436,15 @@ public class SlotFilterBuilder
         {
             return slotStatus.getState() == state;
         }
+
+        @Override
+        public Collection<SlotStatus> getCandidates(ClusterSnapshot snapshot)
+        {
+            return snapshot.getSlotsByState(state);
+        }
     }
 
-    public static class BinarySpecPredicate implements Predicate<SlotStatus>
+    public static class BinarySpecPredicate implements IndexedSlotPredicate
     {
         private final Predicate<CharSequence> glob;
 
@@ -352,9 +459,15 @@ public class SlotFilterBuilder
             return slotStatus != null &&
                     glob.apply(slotStatus.getAssignment().getBinary());
         }
+
+        @Override
+        public Collection<SlotStatus> getCandidates(ClusterSnapshot snapshot)
+        {
+            return snapshot.getSlotsByBinary(glob);
+        }
     }
 
-    public static class ConfigSpecPredicate implements Predicate<SlotStatus>
+    public static class ConfigSpecPredicate implements IndexedSlotPredicate
     {
         private final Predicate<CharSequence> glob;
 
@@ -369,5 +482,11 @@ public class SlotFilterBuilder
             return slotStatus != null &&
                     glob.apply(slotStatus.getAssignment().getConfig());
         }
+
+        @Override
+        public Collection<SlotStatus> getCandidates(ClusterSnapshot snapshot)
+        {
+            return snapshot.getSlotsByConfig(glob);
+        }
     }
 }
@@ -0,0 +1,242 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.airlift.airship.shared.Installation;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.log.Logger;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Installs slots on many agents in parallel.  The number of concurrent
+ * installs is bounded across all callers.  Installations that download the
+ * binary through peer agents are dispatched one level of the distribution
+ * tree at a time, starting with the agents that download from the
+ * repository, so every agent finds the binary cached by its parent instead
+ * of falling back to the repository.  When an agent certainly did not
+ * create the slot (see {@link SlotNotCreatedException}), the installation is
+ * retried on the next spare candidate, so a single bad agent does not reduce
+ * the number of slots installed.  Any other failure, such as a read timeout,
+ * may hide a slot the agent did create, so it is never retried.  Failed
+ * installations are reported per agent instead of failing the whole batch.
+ */
+public class SlotInstallExecutor
+{
+    private static final Logger log = Logger.get(SlotInstallExecutor.class);
+
+    private final ExecutorService executor;
+
+    private final AtomicInteger installsInFlight = new AtomicInteger();
+    private final AtomicLong totalInstalls = new AtomicLong();
+    private final AtomicLong failedInstalls = new AtomicLong();
+    private final AtomicLong retriedInstalls = new AtomicLong();
+
+    public SlotInstallExecutor(int maxConcurrency)
+    {
+        Preconditions.checkArgument(maxConcurrency > 0, "maxConcurrency must be at least 1");
+
+        this.executor = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactoryBuilder().setNameFormat("coordinator-slot-install-%s").setDaemon(true).build());
+    }
+
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Installs each installation on the candidate at the same index.
+     * Candidates past the number of installations are used, in order, to
+     * replace agents that did not create a slot.
+     */
+    public InstallResult install(List<RemoteAgent> candidates, List<Installation> installations)
+    {
+        Preconditions.checkNotNull(candidates, "candidates is null");
+        Preconditions.checkNotNull(installations, "installations is null");
+        Preconditions.checkArgument(candidates.size() >= installations.size(), "fewer candidates than installations");
+
+        Queue<RemoteAgent> spareAgents = new ArrayDeque<>(candidates.subList(installations.size(), candidates.size()));
+        SlotStatus[] results = new SlotStatus[installations.size()];
+        SlotInstall[] failures = new SlotInstall[installations.size()];
+
+        // the depth of an agent in the distribution tree is the number of peers it downloads through
+        SortedMap<Integer, List<Integer>> levels = new TreeMap<>();
+        for (int i = 0; i < installations.size(); i++) {
+            int depth = installations.get(i).getBinaryPeers().size();
+            List<Integer> level = levels.get(depth);
+            if (level == null) {
+                level = newArrayList();
+                levels.put(depth, level);
+            }
+            level.add(i);
+        }
+        for (List<Integer> level : levels.values()) {
+            installLevel(level, candidates, installations, spareAgents, results, failures);
+        }
+
+        ImmutableList.Builder<SlotStatus> slots = ImmutableList.builder();
+        ImmutableMap.Builder<String, String> failureMessages = ImmutableMap.builder();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) {
+                slots.add(results[i]);
+            }
+            else {
+                failureMessages.put(failures[i].agent.status().getInstanceId(), Objects.firstNonNull(failures[i].failure.getMessage(), "Install failed"));
+            }
+        }
+        return new InstallResult(slots.build(), failureMessages.build());
+    }
+
+    private void installLevel(List<Integer> level,
+            List<RemoteAgent> candidates,
+            List<Installation> installations,
+            Queue<RemoteAgent> spareAgents,
+            SlotStatus[] results,
+            SlotInstall[] failures)
+    {
+        CompletionService<SlotInstall> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<SlotInstall>> futures = newArrayList();
+        for (int index : level) {
+            futures.add(completionService.submit(new SlotInstall(index, candidates.get(index), installations.get(index))));
+        }
+
+        try {
+            for (int pending = level.size(); pending > 0; pending--) {
+                SlotInstall slotInstall = completionService.take().get();
+                if (slotInstall.failure == null) {
+                    results[slotInstall.index] = slotInstall.slotStatus;
+                    continue;
+                }
+
+                failedInstalls.incrementAndGet();
+                log.error(slotInstall.failure, "Install of %s on agent %s failed", slotInstall.installation.getAssignment(), slotInstall.agent.status().getAgentId());
+
+                RemoteAgent spareAgent = null;
+                if (slotInstall.failure instanceof SlotNotCreatedException) {
+                    spareAgent = spareAgents.poll();
+                }
+                if (spareAgent != null) {
+                    retriedInstalls.incrementAndGet();
+                    futures.add(completionService.submit(new SlotInstall(slotInstall.index, spareAgent, slotInstall.installation)));
+                    pending++;
+                }
+                else {
+                    failures[slotInstall.index] = slotInstall;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            for (Future<SlotInstall> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        }
+        catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    public int getInstallsInFlight()
+    {
+        return installsInFlight.get();
+    }
+
+    public long getTotalInstalls()
+    {
+        return totalInstalls.get();
+    }
+
+    public long getFailedInstalls()
+    {
+        return failedInstalls.get();
+    }
+
+    public long getRetriedInstalls()
+    {
+        return retriedInstalls.get();
+    }
+
+    public static class InstallResult
+    {
+        private final List<SlotStatus> slots;
+        private final Map<String, String> failures;
+
+        public InstallResult(List<SlotStatus> slots, Map<String, String> failures)
+        {
+            this.slots = ImmutableList.copyOf(slots);
+            this.failures = ImmutableMap.copyOf(failures);
+        }
+
+        /**
+         * The installed slots, in the same order as the installations.
+         */
+        public List<SlotStatus> getSlots()
+        {
+            return slots;
+        }
+
+        /**
+         * The failure message of every installation that was not installed,
+         * keyed by the instance id of the agent it last failed on.
+         */
+        public Map<String, String> getFailures()
+        {
+            return failures;
+        }
+    }
+
+    private class SlotInstall
+            implements Callable<SlotInstall>
+    {
+        private final int index;
+        private final RemoteAgent agent;
+        private final Installation installation;
+        private volatile SlotStatus slotStatus;
+        private volatile Exception failure;
+
+        private SlotInstall(int index, RemoteAgent agent, Installation installation)
+        {
+            this.index = index;
+            this.agent = agent;
+            this.installation = installation;
+        }
+
+        @Override
+        public SlotInstall call()
+        {
+            installsInFlight.incrementAndGet();
+            try {
+                slotStatus = agent.install(installation);
+            }
+            catch (Exception e) {
+                failure = e;
+            }
+            finally {
+                installsInFlight.decrementAndGet();
+                totalInstalls.incrementAndGet();
+            }
+            return this;
+        }
+    }
+}
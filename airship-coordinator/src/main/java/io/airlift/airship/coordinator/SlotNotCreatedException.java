@@ -0,0 +1,20 @@
+package io.airlift.airship.coordinator;
+
+/**
+ * Thrown by {@link RemoteAgent#install} when the agent certainly did not
+ * create a slot, for example because the agent could not be reached or
+ * rejected the request.  Only these failures can be retried on another
+ * agent without risking a second slot for the same install.
+ */
+public class SlotNotCreatedException extends RuntimeException
+{
+    public SlotNotCreatedException(String message)
+    {
+        super(message);
+    }
+
+    public SlotNotCreatedException(String message, Throwable cause)
+    {
+        super(message, cause);
+    }
+}
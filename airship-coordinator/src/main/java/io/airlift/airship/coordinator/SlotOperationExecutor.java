@@ -0,0 +1,172 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.airship.shared.SlotLifecycleState.UNKNOWN;
+
+/**
+ * Applies an operation to many slots in parallel.  The number of concurrent
+ * operations is bounded across all callers, and every operation has its own
+ * timeout measured from the moment it starts running.  A slot whose operation
+ * fails or times out is reported with an unknown state and a status message
+ * instead of failing the whole batch, which matches how a remote slot reports
+ * an agent that could not be reached.
+ */
+public class SlotOperationExecutor
+{
+    private static final Logger log = Logger.get(SlotOperationExecutor.class);
+
+    private final ExecutorService executor;
+    private final long timeoutNanos;
+
+    private final AtomicInteger operationsInFlight = new AtomicInteger();
+    private final AtomicLong totalOperations = new AtomicLong();
+    private final AtomicLong failedOperations = new AtomicLong();
+    private final AtomicLong timedOutOperations = new AtomicLong();
+
+    public SlotOperationExecutor(int maxConcurrency, Duration timeout)
+    {
+        Preconditions.checkArgument(maxConcurrency > 0, "maxConcurrency must be at least 1");
+        Preconditions.checkNotNull(timeout, "timeout is null");
+
+        this.executor = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactoryBuilder().setNameFormat("coordinator-slot-operation-%s").setDaemon(true).build());
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos((long) timeout.toMillis());
+    }
+
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Applies the operation to every slot and returns the resulting statuses
+     * in the same order as the slots.
+     */
+    public List<SlotStatus> execute(List<? extends RemoteSlot> slots, Function<RemoteSlot, SlotStatus> operation)
+    {
+        Preconditions.checkNotNull(slots, "slots is null");
+        Preconditions.checkNotNull(operation, "operation is null");
+
+        List<SlotOperation> operations = newArrayList();
+        for (RemoteSlot slot : slots) {
+            SlotOperation slotOperation = new SlotOperation(slot, operation);
+            slotOperation.future = executor.submit(slotOperation);
+            operations.add(slotOperation);
+        }
+
+        ImmutableList.Builder<SlotStatus> results = ImmutableList.builder();
+        for (SlotOperation slotOperation : operations) {
+            results.add(slotOperation.getResult());
+        }
+        return results.build();
+    }
+
+    public int getOperationsInFlight()
+    {
+        return operationsInFlight.get();
+    }
+
+    public long getTotalOperations()
+    {
+        return totalOperations.get();
+    }
+
+    public long getFailedOperations()
+    {
+        return failedOperations.get();
+    }
+
+    public long getTimedOutOperations()
+    {
+        return timedOutOperations.get();
+    }
+
+    private class SlotOperation
+            implements Callable<SlotStatus>
+    {
+        private final RemoteSlot slot;
+        private final Function<RemoteSlot, SlotStatus> operation;
+        private volatile Future<SlotStatus> future;
+        private volatile long startNanos;
+        private volatile boolean started;
+
+        private SlotOperation(RemoteSlot slot, Function<RemoteSlot, SlotStatus> operation)
+        {
+            this.slot = slot;
+            this.operation = operation;
+        }
+
+        @Override
+        public SlotStatus call()
+        {
+            startNanos = System.nanoTime();
+            started = true;
+            operationsInFlight.incrementAndGet();
+            try {
+                return operation.apply(slot);
+            }
+            finally {
+                operationsInFlight.decrementAndGet();
+                totalOperations.incrementAndGet();
+            }
+        }
+
+        public SlotStatus getResult()
+        {
+            try {
+                while (true) {
+                    try {
+                        if (!started) {
+                            // still queued behind other operations; the timeout does not start until it runs
+                            return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+                        }
+                        return future.get(Math.max(startNanos + timeoutNanos - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                    }
+                    catch (TimeoutException e) {
+                        if (!started && executor.isShutdown()) {
+                            return errorStatus("Coordinator is shutting down");
+                        }
+                        if (started && System.nanoTime() - startNanos >= timeoutNanos) {
+                            future.cancel(true);
+                            timedOutOperations.incrementAndGet();
+                            return errorStatus(String.format("Operation timed out after %s", Duration.nanosSince(startNanos).convertToMostSuccinctTimeUnit()));
+                        }
+                    }
+                }
+            }
+            catch (ExecutionException e) {
+                failedOperations.incrementAndGet();
+                log.error(e.getCause(), "Operation on slot %s failed", slot.getId());
+                return errorStatus(e.getCause().getMessage());
+            }
+            catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                return errorStatus("Interrupted while waiting for operation");
+            }
+        }
+
+        private SlotStatus errorStatus(String statusMessage)
+        {
+            return slot.status().changeState(UNKNOWN).changeStatusMessage(statusMessage);
+        }
+    }
+}
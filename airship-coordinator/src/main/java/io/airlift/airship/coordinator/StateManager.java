@@ -12,4 +12,8 @@ public interface StateManager
     void deleteExpectedState(UUID slotId);
 
     void setExpectedState(ExpectedSlotStatus slotStatus);
+
+    void deleteExpectedStates(Collection<UUID> slotIds);
+
+    void setExpectedStates(Collection<ExpectedSlotStatus> slotStatuses);
 }
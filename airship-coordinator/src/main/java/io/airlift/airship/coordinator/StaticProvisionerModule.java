@@ -20,6 +20,7 @@ import io.airlift.airship.coordinator.auth.AuthorizedKeyStore;
 import io.airlift.airship.coordinator.auth.FileAuthorizedKeyStore;
 import io.airlift.airship.coordinator.auth.FileAuthorizedKeyStoreConfig;
 import io.airlift.configuration.ConfigurationModule;
+import org.weakref.jmx.guice.MBeanModule;
 
 public class StaticProvisionerModule
         implements Module
@@ -32,7 +33,10 @@ public class StaticProvisionerModule
         binder.bind(Provisioner.class).to(StaticProvisioner.class).in(Scopes.SINGLETON);
         ConfigurationModule.bindConfig(binder).to(StaticProvisionerConfig.class);
 
-        binder.bind(StateManager.class).to(FileStateManager.class).in(Scopes.SINGLETON);
+        binder.bind(CachingStateManager.class).in(Scopes.SINGLETON);
+        binder.bind(StateManager.class).to(CachingStateManager.class);
+        binder.bind(StateManager.class).annotatedWith(ForCachingStateManager.class).toProvider(FileStateManagerProvider.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(CachingStateManager.class).withGeneratedName();
         ConfigurationModule.bindConfig(binder).to(FileStateManagerConfig.class);
 
         binder.bind(AuthorizedKeyStore.class).to(FileAuthorizedKeyStore.class).in(Scopes.SINGLETON);
@@ -0,0 +1,128 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.TreeMap;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Keeps the length of the shortest prefix that uniquely identifies every
+ * string in a changing set, with the same result as
+ * {@link io.airlift.airship.shared.Strings#shortestUniquePrefix(java.util.Collection, int)}.
+ * <p/>
+ * In sorted order, the shortest unique prefix is one more than the longest
+ * common prefix of two neighbouring strings.  The strings are kept sorted
+ * along with the common prefix lengths of all neighbours, so adding or
+ * removing a string only updates its own neighbours, in O(log n).
+ */
+@NotThreadSafe
+public class UniquePrefixIndex
+{
+    private final int minSize;
+    private final TreeMap<String, Integer> strings = new TreeMap<>();
+    private final TreeMap<Integer, Integer> neighbourPrefixes = new TreeMap<>();
+    private int duplicates;
+
+    public UniquePrefixIndex(int minSize)
+    {
+        this.minSize = minSize;
+    }
+
+    public void add(String string)
+    {
+        Preconditions.checkNotNull(string, "string is null");
+
+        Integer count = strings.get(string);
+        if (count != null) {
+            strings.put(string, count + 1);
+            duplicates++;
+            return;
+        }
+
+        String lower = strings.lowerKey(string);
+        String higher = strings.higherKey(string);
+        if (lower != null && higher != null) {
+            removePrefix(commonPrefixLength(lower, higher));
+        }
+        if (lower != null) {
+            addPrefix(commonPrefixLength(lower, string));
+        }
+        if (higher != null) {
+            addPrefix(commonPrefixLength(string, higher));
+        }
+        strings.put(string, 1);
+    }
+
+    public void remove(String string)
+    {
+        Preconditions.checkNotNull(string, "string is null");
+
+        Integer count = strings.get(string);
+        Preconditions.checkArgument(count != null, "%s is not in the index", string);
+        if (count > 1) {
+            strings.put(string, count - 1);
+            duplicates--;
+            return;
+        }
+
+        strings.remove(string);
+        String lower = strings.lowerKey(string);
+        String higher = strings.higherKey(string);
+        if (lower != null) {
+            removePrefix(commonPrefixLength(lower, string));
+        }
+        if (higher != null) {
+            removePrefix(commonPrefixLength(string, higher));
+        }
+        if (lower != null && higher != null) {
+            addPrefix(commonPrefixLength(lower, higher));
+        }
+    }
+
+    /**
+     * Returns the length of the shortest unique prefix, but at least the
+     * minimum size.  There is no unique prefix when the same string was added
+     * more than once, so the full strings must be used.
+     */
+    public int getShortestUniquePrefix()
+    {
+        if (strings.size() + duplicates < 2) {
+            return minSize;
+        }
+        if (duplicates > 0) {
+            return Integer.MAX_VALUE;
+        }
+        return max(neighbourPrefixes.lastKey() + 1, minSize);
+    }
+
+    private void addPrefix(int length)
+    {
+        Integer count = neighbourPrefixes.get(length);
+        neighbourPrefixes.put(length, count == null ? 1 : count + 1);
+    }
+
+    private void removePrefix(int length)
+    {
+        int count = neighbourPrefixes.get(length);
+        if (count == 1) {
+            neighbourPrefixes.remove(length);
+        }
+        else {
+            neighbourPrefixes.put(length, count - 1);
+        }
+    }
+
+    private static int commonPrefixLength(String a, String b)
+    {
+        int length = min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+}
@@ -22,8 +22,14 @@ public class UriHostPredicate implements Predicate<URI>
         if (uri == null) {
             return false;
         }
+        return applyToHost(uri.getHost());
+    }
 
-        String host = uri.getHost();
+    /**
+     * Applies the glob to a host name, or to the address the host name resolves to.
+     */
+    public boolean applyToHost(@Nullable String host)
+    {
         if (host == null) {
             return false;
         }
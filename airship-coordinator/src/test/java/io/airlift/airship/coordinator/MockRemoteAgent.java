@@ -63,7 +63,7 @@ public class MockRemoteAgent implements RemoteAgent
     {
     }
 
-    void setSlotStatus(SlotStatus slotStatus)
+    synchronized void setSlotStatus(SlotStatus slotStatus)
     {
         AgentStatus agentStatus = getAgentStatus().changeSlotStatus(slotStatus);
         setAgentStatus(agentStatus);
@@ -80,7 +80,9 @@ public class MockRemoteAgent implements RemoteAgent
         checkNotNull(installation, "installation is null");
 
         AgentStatus agentStatus = getAgentStatus();
-        Preconditions.checkState(agentStatus.getState() != OFFLINE, "agent is offline");
+        if (agentStatus.getState() == OFFLINE) {
+            throw new SlotNotCreatedException("agent is offline");
+        }
 
         UUID slotId = UUID.randomUUID();
         SlotStatus slotStatus = createSlotStatus(slotId,
@@ -74,7 +74,7 @@ public class TestAdminResource
     public void testGetCoordinatorsDefault()
     {
         URI requestUri = URI.create("http://localhost/v1/admin/coordinator");
-        Response response = resource.getAllCoordinators(MockUriInfo.from(requestUri));
+        Response response = resource.getAllCoordinators(MockUriInfo.from(requestUri), null);
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
         assertNull(response.getMetadata().get("Content-Type")); // content type is set by jersey based on @Produces
 
@@ -114,7 +114,7 @@ public class TestAdminResource
         coordinator.updateAllCoordinators();
 
         URI requestUri = URI.create("http://localhost/v1/admin/coordinator");
-        Response response = resource.getAllCoordinators(MockUriInfo.from(requestUri));
+        Response response = resource.getAllCoordinators(MockUriInfo.from(requestUri), null);
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
         assertNull(response.getMetadata().get("Content-Type")); // content type is set by jersey based on @Produces
 
@@ -185,7 +185,7 @@ public class TestAdminResource
 
 
         requestUri = URI.create("http://localhost/v1/admin/coordinator");
-        response = resource.getAllCoordinators(MockUriInfo.from(requestUri));
+        response = resource.getAllCoordinators(MockUriInfo.from(requestUri), null);
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
         assertNull(response.getMetadata().get("Content-Type")); // content type is set by jersey based on @Produces
 
@@ -205,7 +205,7 @@ public class TestAdminResource
     public void testGetAllAgentsEmpty()
     {
         URI requestUri = URI.create("http://localhost/v1/admin/agent");
-        Response response = resource.getAllAgents(MockUriInfo.from(requestUri));
+        Response response = resource.getAllAgents(MockUriInfo.from(requestUri), null);
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
         assertEqualsNoOrder((Iterable<?>) response.getEntity(), ImmutableList.of());
         assertNull(response.getMetadata().get("Content-Type")); // content type is set by jersey based on @Produces
@@ -238,7 +238,7 @@ public class TestAdminResource
         coordinator.updateAllAgents();
 
         URI requestUri = URI.create("http://localhost/v1/admin/agent");
-        Response response = resource.getAllAgents(MockUriInfo.from(requestUri));
+        Response response = resource.getAllAgents(MockUriInfo.from(requestUri), null);
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
         assertNull(response.getMetadata().get("Content-Type")); // content type is set by jersey based on @Produces
 
@@ -296,7 +296,7 @@ public class TestAdminResource
 
 
         requestUri = URI.create("http://localhost/v1/admin/agent");
-        response = resource.getAllAgents(MockUriInfo.from(requestUri));
+        response = resource.getAllAgents(MockUriInfo.from(requestUri), null);
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
         assertNull(response.getMetadata().get("Content-Type")); // content type is set by jersey based on @Produces
 
@@ -0,0 +1,198 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.airship.shared.AgentLifecycleState;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.CoordinatorLifecycleState;
+import io.airlift.airship.shared.CoordinatorStatus;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestAgentStatusSweep
+{
+    private final Map<String, AgentStatus> agentStatuses = new ConcurrentHashMap<>();
+    private MockProvisioner provisioner;
+    private TestingMavenRepository repository;
+    private Coordinator coordinator;
+
+    @BeforeMethod
+    public void setUp()
+            throws Exception
+    {
+        agentStatuses.clear();
+        provisioner = new MockProvisioner();
+        repository = new TestingMavenRepository();
+    }
+
+    @AfterMethod
+    public void tearDown()
+            throws Exception
+    {
+        if (coordinator != null) {
+            coordinator.stop();
+        }
+        repository.destroy();
+    }
+
+    @Test
+    public void testAgentsArePolledInParallel()
+    {
+        // every update waits for all the others, so the sweep only succeeds if all four run at once
+        final CyclicBarrier barrier = new CyclicBarrier(4);
+        final AtomicInteger updated = new AtomicInteger();
+        coordinator = createCoordinator(4, new Duration(30, TimeUnit.SECONDS), new RemoteAgentFactory()
+        {
+            @Override
+            public RemoteAgent createRemoteAgent(Instance instance, AgentLifecycleState state)
+            {
+                return new MockRemoteAgent(instance.getInstanceId(), agentStatuses)
+                {
+                    @Override
+                    public void updateStatus()
+                    {
+                        try {
+                            barrier.await(10, TimeUnit.SECONDS);
+                            updated.incrementAndGet();
+                        }
+                        catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                };
+            }
+        });
+        addAgents("a", "b", "c", "d");
+
+        coordinator.updateAllAgents();
+        assertEquals(updated.get(), 4);
+        assertEquals(coordinator.getLastAgentSweepTimedOutAgents(), 0);
+        assertEquals(coordinator.getLastAgentSweepSkippedAgents(), 0);
+    }
+
+    @Test
+    public void testSlowAgentExceedsBudgetAndIsSkipped()
+            throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Set<String> slowAgents = ImmutableSet.of("slow");
+        final AtomicInteger fastUpdates = new AtomicInteger();
+        coordinator = createCoordinator(4, new Duration(200, TimeUnit.MILLISECONDS), new RemoteAgentFactory()
+        {
+            @Override
+            public RemoteAgent createRemoteAgent(final Instance instance, AgentLifecycleState state)
+            {
+                return new MockRemoteAgent(instance.getInstanceId(), agentStatuses)
+                {
+                    @Override
+                    public void updateStatus()
+                    {
+                        if (!slowAgents.contains(instance.getInstanceId())) {
+                            fastUpdates.incrementAndGet();
+                            return;
+                        }
+                        try {
+                            release.await(10, TimeUnit.SECONDS);
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                };
+            }
+        });
+        addAgents("slow", "fast-1", "fast-2");
+
+        // the sweep gives up on the slow agent when the budget runs out
+        long start = System.nanoTime();
+        coordinator.updateAllAgents();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertEquals(coordinator.getLastAgentSweepTimedOutAgents(), 1);
+        assertEquals(coordinator.getLastAgentSweepSkippedAgents(), 0);
+        assertEquals(fastUpdates.get(), 2);
+        assertEquals(coordinator.getAgentUpdatesInFlight(), 1);
+
+        // the slow agent is still being updated, so the next sweep skips it instead of queueing another update
+        coordinator.updateAllAgents();
+        assertEquals(coordinator.getLastAgentSweepTimedOutAgents(), 0);
+        assertEquals(coordinator.getLastAgentSweepSkippedAgents(), 1);
+        assertEquals(fastUpdates.get(), 4);
+
+        // once the agent answers it is polled again
+        release.countDown();
+        for (int i = 0; i < 100 && coordinator.getAgentUpdatesInFlight() > 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(coordinator.getAgentUpdatesInFlight(), 0);
+        coordinator.updateAllAgents();
+        assertEquals(coordinator.getLastAgentSweepTimedOutAgents(), 0);
+        assertEquals(coordinator.getLastAgentSweepSkippedAgents(), 0);
+        assertEquals(coordinator.getTotalTimedOutAgents(), 1);
+        assertEquals(coordinator.getTotalSkippedAgents(), 1);
+    }
+
+    private Coordinator createCoordinator(int maxConcurrency, Duration sweepTimeout, RemoteAgentFactory agentFactory)
+    {
+        CoordinatorStatus coordinatorStatus = new CoordinatorStatus(UUID.randomUUID().toString(),
+                CoordinatorLifecycleState.ONLINE,
+                "this-coordinator-instance-id",
+                URI.create("fake://coordinator/internal"),
+                URI.create("fake://coordinator/external"),
+                "/local/location",
+                "this-coordinator-instance-type");
+
+        CoordinatorConfig config = new CoordinatorConfig();
+        return new Coordinator(coordinatorStatus,
+                provisioner.getCoordinatorFactory(),
+                agentFactory,
+                repository,
+                provisioner,
+                new InMemoryStateManager(),
+                new MockServiceInventory(),
+                new Duration(1, TimeUnit.DAYS),
+                false,
+                maxConcurrency,
+                sweepTimeout,
+                config.getSlotOperationMaxConcurrency(),
+                config.getSlotOperationTimeout(),
+                config.getArtifactFanout(),
+                config.isArtifactProxyEnabled(),
+                config.getInstallMaxConcurrency(),
+                new ResourcePlacementScheduler(config));
+    }
+
+    private void addAgents(String... instanceIds)
+    {
+        for (String instanceId : instanceIds) {
+            URI uri = URI.create("fake://" + instanceId + "/");
+            AgentStatus agentStatus = new AgentStatus(instanceId,
+                    AgentLifecycleState.ONLINE,
+                    instanceId,
+                    uri,
+                    uri,
+                    "/location/" + instanceId,
+                    "instance.type",
+                    ImmutableList.<SlotStatus>of(),
+                    ImmutableMap.<String, Integer>of());
+            agentStatuses.put(instanceId, agentStatus);
+            provisioner.addAgents(agentStatus);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.airlift.http.client.ApacheHttpClient;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestArtifactExistenceChecker
+{
+    private HttpServer server;
+    private URI baseUri;
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private volatile boolean headSupported = true;
+    private volatile boolean available = true;
+
+    @BeforeMethod
+    public void setUp()
+            throws Exception
+    {
+        requests.clear();
+        headSupported = true;
+        available = true;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new ArtifactHandler());
+        server.start();
+        baseUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testHead()
+    {
+        ArtifactExistenceChecker checker = createChecker(new Duration(1, TimeUnit.HOURS));
+
+        assertTrue(checker.exists(baseUri.resolve("artifact")));
+        assertFalse(checker.exists(baseUri.resolve("missing")));
+        assertEquals(requests, ImmutableList.of("HEAD /artifact", "HEAD /missing"));
+        assertEquals(checker.getHeadFallbacks(), 0);
+    }
+
+    @Test
+    public void testRangedGetFallback()
+    {
+        headSupported = false;
+        ArtifactExistenceChecker checker = createChecker(new Duration(1, TimeUnit.HOURS));
+
+        assertTrue(checker.exists(baseUri.resolve("artifact")));
+        assertEquals(requests, ImmutableList.of("HEAD /artifact", "GET /artifact bytes=0-0"));
+        assertEquals(checker.getHeadFallbacks(), 1);
+    }
+
+    @Test
+    public void testCache()
+    {
+        ArtifactExistenceChecker checker = createChecker(new Duration(1, TimeUnit.HOURS));
+
+        assertTrue(checker.exists(baseUri.resolve("artifact")));
+        assertTrue(checker.exists(baseUri.resolve("artifact")));
+        assertFalse(checker.exists(baseUri.resolve("missing")));
+        assertFalse(checker.exists(baseUri.resolve("missing")));
+        assertEquals(requests.size(), 2);
+        assertEquals(checker.getCacheRequests(), 4);
+        assertEquals(checker.getCacheLoads(), 2);
+
+        checker.flushCache();
+        assertTrue(checker.exists(baseUri.resolve("artifact")));
+        assertEquals(requests.size(), 3);
+    }
+
+    @Test
+    public void testImmutableLocationsDoNotExpire()
+    {
+        ArtifactExistenceChecker checker = createChecker(new Duration(0, TimeUnit.SECONDS));
+
+        assertTrue(checker.exists(baseUri.resolve("artifact"), true));
+        assertTrue(checker.exists(baseUri.resolve("artifact"), true));
+        assertEquals(requests.size(), 1);
+
+        assertTrue(checker.exists(baseUri.resolve("snapshot")));
+        assertTrue(checker.exists(baseUri.resolve("snapshot")));
+        assertEquals(requests.size(), 3);
+    }
+
+    @Test
+    public void testTransientFailureIsNotCached()
+    {
+        ArtifactExistenceChecker checker = createChecker(new Duration(1, TimeUnit.HOURS));
+
+        // the repository is briefly unavailable
+        available = false;
+        assertFalse(checker.exists(baseUri.resolve("artifact"), true));
+        assertEquals(checker.getTransientFailures(), 1);
+
+        // the artifact is found as soon as the repository is back
+        available = true;
+        assertTrue(checker.exists(baseUri.resolve("artifact"), true));
+        assertEquals(checker.getCacheLoads(), 2);
+
+        // a missing artifact is still cached
+        assertFalse(checker.exists(baseUri.resolve("missing")));
+        assertFalse(checker.exists(baseUri.resolve("missing")));
+        assertEquals(checker.getCacheLoads(), 3);
+        assertEquals(checker.getTransientFailures(), 1);
+    }
+
+    private static ArtifactExistenceChecker createChecker(Duration cacheTtl)
+    {
+        return new ArtifactExistenceChecker(new ApacheHttpClient(), cacheTtl, 100);
+    }
+
+    private class ArtifactHandler
+            implements HttpHandler
+    {
+        @Override
+        public void handle(HttpExchange exchange)
+                throws IOException
+        {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            requests.add(method + " " + path + (range == null ? "" : " " + range));
+            try {
+                if (!available) {
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                if (path.equals("/missing")) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                if (method.equals("HEAD")) {
+                    exchange.sendResponseHeaders(headSupported ? 200 : 403, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(range == null ? 200 : 206, 1);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write('x');
+                }
+            }
+            finally {
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import io.airlift.airship.coordinator.ArtifactProxy.CachedArtifact;
+import io.airlift.units.DataSize;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+public class TestArtifactProxy
+{
+    private File tempDir;
+    private File repoDir;
+    private File cacheDir;
+
+    @BeforeMethod
+    public void setUp()
+            throws Exception
+    {
+        tempDir = Files.createTempDir().getCanonicalFile();
+        repoDir = new File(tempDir, "repo");
+        repoDir.mkdirs();
+        cacheDir = new File(tempDir, "cache");
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        if (tempDir != null) {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Test
+    public void testRepeatedGetDoesNotDownload()
+            throws Exception
+    {
+        ArtifactProxy proxy = new ArtifactProxy(cacheDir, new DataSize(1, DataSize.Unit.MEGABYTE));
+        File artifact = writeArtifact("apple-1.0.tar.gz", "apple", true);
+
+        assertContents(proxy, artifact, "apple");
+        assertEquals(proxy.getMisses(), 1);
+
+        // the artifact is served from the cache even though it is no longer available upstream
+        artifact.delete();
+        assertContents(proxy, artifact, "apple");
+        assertEquals(proxy.getMisses(), 1);
+        assertEquals(proxy.getHits(), 1);
+    }
+
+    @Test
+    public void testSnapshotDownloadedWhenChanged()
+            throws Exception
+    {
+        ArtifactProxy proxy = new ArtifactProxy(cacheDir, new DataSize(1, DataSize.Unit.MEGABYTE));
+        File artifact = writeArtifact("apple-1.0-SNAPSHOT.tar.gz", "apple", true);
+
+        try (CachedArtifact oldSnapshot = proxy.get(artifact.toURI())) {
+            assertContents(proxy, artifact, "apple");
+            assertEquals(proxy.getMisses(), 1);
+
+            writeArtifact("apple-1.0-SNAPSHOT.tar.gz", "new apple", true);
+            assertContents(proxy, artifact, "new apple");
+            assertEquals(proxy.getMisses(), 2);
+
+            // a request still reading the old snapshot is not affected
+            assertEquals(read(oldSnapshot), "apple");
+        }
+    }
+
+    @Test
+    public void testChecksumMismatch()
+            throws Exception
+    {
+        ArtifactProxy proxy = new ArtifactProxy(cacheDir, new DataSize(1, DataSize.Unit.MEGABYTE));
+        File artifact = writeArtifact("apple-1.0.tar.gz", "apple", true);
+        Files.write("banana", artifact, Charsets.UTF_8);
+
+        // the artifact is streamed while it is downloaded, so the mismatch fails the read
+        try (CachedArtifact cachedArtifact = proxy.get(artifact.toURI())) {
+            read(cachedArtifact);
+            fail("expected IOException");
+        }
+        catch (IOException expected) {
+        }
+        assertEquals(proxy.getSizeInBytes(), 0);
+
+        // the failed download is not cached
+        Files.write("apple", artifact, Charsets.UTF_8);
+        assertContents(proxy, artifact, "apple");
+        assertEquals(proxy.getMisses(), 2);
+    }
+
+    @Test
+    public void testEviction()
+            throws Exception
+    {
+        ArtifactProxy proxy = new ArtifactProxy(cacheDir, new DataSize(10, DataSize.Unit.BYTE));
+        File apple = writeArtifact("apple-1.0.tar.gz", "apple-1", false);
+        File banana = writeArtifact("banana-1.0.tar.gz", "banana-1", false);
+
+        assertContents(proxy, apple, "apple-1");
+        assertContents(proxy, banana, "banana-1");
+        assertEquals(proxy.getEvictions(), 1);
+        assertFalse(proxy.getSizeInBytes() > 10);
+    }
+
+    @Test
+    public void testServeRange()
+            throws Exception
+    {
+        ArtifactProxy proxy = new ArtifactProxy(cacheDir, new DataSize(1, DataSize.Unit.MEGABYTE));
+        File artifact = writeArtifact("apple-1.0.tar.gz", "0123456789", false);
+
+        Response response = ArtifactResponses.serve(proxy, artifact.toURI(), null);
+        assertEquals(response.getStatus(), 200);
+        assertEquals(write(response), "0123456789");
+
+        response = ArtifactResponses.serve(proxy, artifact.toURI(), "bytes=4-");
+        assertEquals(response.getStatus(), 206);
+        assertEquals(response.getMetadata().getFirst("Content-Range"), "bytes 4-9/10");
+        assertEquals(write(response), "456789");
+
+        response = ArtifactResponses.serve(proxy, artifact.toURI(), "bytes=10-");
+        assertEquals(response.getStatus(), 416);
+        assertNull(response.getEntity());
+
+        response = ArtifactResponses.serve(proxy, new File(repoDir, "missing.tar.gz").toURI(), null);
+        assertEquals(response.getStatus(), 404);
+    }
+
+    @Test
+    public void testAgentVerifiesBinaryServedThroughProxy()
+            throws Exception
+    {
+        ArtifactProxy proxy = new ArtifactProxy(cacheDir, new DataSize(1, DataSize.Unit.MEGABYTE));
+        TestingMavenRepository repository = new TestingMavenRepository();
+        try {
+            File artifact = new File(repository.getTargetRepo(), "food/fruit/apple/1.0/apple-1.0.tar.gz");
+            String publishedChecksum = Files.hash(artifact, Hashing.sha1()).toString();
+            Files.write(publishedChecksum, new File(artifact.getPath() + ".sha1"), Charsets.UTF_8);
+            BinaryResource resource = new BinaryResource(repository, proxy, true);
+
+            // the agent reads the checksum published next to the proxy uri of the binary
+            Response response = resource.getBinary("food.fruit:apple:1.0.sha1", null);
+            assertEquals(response.getStatus(), 200);
+            assertEquals(response.getEntity(), publishedChecksum);
+
+            // and verifies the bytes the proxy serves against it
+            response = resource.getBinary("food.fruit:apple:1.0", null);
+            assertEquals(response.getStatus(), 200);
+            assertEquals(Hashing.sha1().hashBytes(toByteArray(response)).toString(), publishedChecksum);
+
+            // once cached, the checksum of the cached copy is served
+            Files.write("tampered", artifact, Charsets.UTF_8);
+            assertEquals(resource.getBinary("food.fruit:apple:1.0.sha1", null).getEntity(), publishedChecksum);
+
+            assertEquals(resource.getBinary("food.fruit:apple:1.0.md5", null).getStatus(), 404);
+        }
+        finally {
+            repository.destroy();
+        }
+    }
+
+    @Test
+    public void testHeadDoesNotDownload()
+            throws Exception
+    {
+        ArtifactProxy proxy = new ArtifactProxy(cacheDir, new DataSize(1, DataSize.Unit.MEGABYTE));
+        File artifact = writeArtifact("apple-1.0.tar.gz", "0123456789", true);
+
+        Response response = ArtifactResponses.head(proxy, artifact.toURI());
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.getMetadata().getFirst("Content-Length"), 10L);
+        assertNull(response.getEntity());
+        assertEquals(proxy.getMisses(), 0);
+        assertEquals(proxy.getSizeInBytes(), 0);
+
+        response = ArtifactResponses.head(proxy, new File(repoDir, "missing.tar.gz").toURI());
+        assertEquals(response.getStatus(), 404);
+
+        // a cached artifact is answered from the cache
+        assertContents(proxy, artifact, "0123456789");
+        artifact.delete();
+        response = ArtifactResponses.head(proxy, artifact.toURI());
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.getMetadata().getFirst("Content-Length"), 10L);
+    }
+
+    private File writeArtifact(String name, String contents, boolean publishChecksum)
+            throws IOException
+    {
+        File file = new File(repoDir, name);
+        Files.write(contents, file, Charsets.UTF_8);
+        if (publishChecksum) {
+            String checksum = Hashing.sha1().hashString(contents, Charsets.UTF_8).toString();
+            Files.write(checksum + "  " + name, new File(repoDir, name + ".sha1"), Charsets.UTF_8);
+        }
+        return file;
+    }
+
+    private static void assertContents(ArtifactProxy proxy, File artifact, String expected)
+            throws IOException
+    {
+        try (CachedArtifact cachedArtifact = proxy.get(artifact.toURI())) {
+            assertEquals(read(cachedArtifact), expected);
+        }
+    }
+
+    private static String read(CachedArtifact artifact)
+            throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        artifact.transferTo(0, artifact.getLength(), Channels.newChannel(out));
+        return new String(out.toByteArray(), Charsets.UTF_8);
+    }
+
+    private static String write(Response response)
+            throws IOException
+    {
+        return new String(toByteArray(response), Charsets.UTF_8);
+    }
+
+    private static byte[] toByteArray(Response response)
+            throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+        return out.toByteArray();
+    }
+}
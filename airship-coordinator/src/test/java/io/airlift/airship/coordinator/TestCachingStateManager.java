@@ -0,0 +1,142 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.airship.shared.ExpectedSlotStatus;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
+import static io.airlift.airship.shared.ExtraAssertions.assertEqualsNoOrder;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestCachingStateManager
+{
+    private CountingStateManager backingStore;
+    private CachingStateManager stateManager;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        backingStore = new CountingStateManager();
+        stateManager = new CachingStateManager(backingStore, new Duration(1, TimeUnit.DAYS));
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        stateManager.stop();
+    }
+
+    @Test
+    public void testReadsAreCached()
+    {
+        assertEquals(backingStore.getReadCount(), 1);
+
+        Collection<ExpectedSlotStatus> states = stateManager.getAllExpectedStates();
+        assertTrue(states.isEmpty());
+        assertSame(stateManager.getAllExpectedStates(), states);
+        assertEquals(backingStore.getReadCount(), 1);
+    }
+
+    @Test
+    public void testWriteThrough()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), RUNNING, BANANA_ASSIGNMENT);
+
+        long version = stateManager.getVersion();
+        stateManager.setExpectedState(apple);
+        stateManager.setExpectedState(banana);
+        assertEquals(stateManager.getVersion(), version + 2);
+
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(apple, banana));
+        assertEqualsNoOrder(backingStore.getAllExpectedStates(), ImmutableList.of(apple, banana));
+
+        stateManager.deleteExpectedState(apple.getId());
+        assertEquals(stateManager.getVersion(), version + 3);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(banana));
+        assertEqualsNoOrder(backingStore.getAllExpectedStates(), ImmutableList.of(banana));
+
+        // deleting an unknown slot is not a change
+        stateManager.deleteExpectedState(UUID.randomUUID());
+        assertEquals(stateManager.getVersion(), version + 3);
+    }
+
+    @Test
+    public void testBatchWrites()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), RUNNING, BANANA_ASSIGNMENT);
+
+        long version = stateManager.getVersion();
+        stateManager.setExpectedStates(ImmutableList.of(apple, banana));
+        assertEquals(stateManager.getVersion(), version + 1);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(apple, banana));
+        assertEqualsNoOrder(backingStore.getAllExpectedStates(), ImmutableList.of(apple, banana));
+
+        stateManager.deleteExpectedStates(ImmutableList.of(apple.getId(), banana.getId(), UUID.randomUUID()));
+        assertEquals(stateManager.getVersion(), version + 2);
+        assertTrue(stateManager.getAllExpectedStates().isEmpty());
+        assertTrue(backingStore.getAllExpectedStates().isEmpty());
+
+        // empty batches and deleting unknown slots are not changes
+        stateManager.setExpectedStates(ImmutableList.<ExpectedSlotStatus>of());
+        stateManager.deleteExpectedStates(ImmutableList.of(UUID.randomUUID()));
+        assertEquals(stateManager.getVersion(), version + 2);
+    }
+
+    @Test
+    public void testReconcile()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        stateManager.setExpectedState(apple);
+
+        // nothing changed in the backing store
+        Collection<ExpectedSlotStatus> states = stateManager.getAllExpectedStates();
+        long version = stateManager.getVersion();
+        assertFalse(stateManager.reconcile());
+        assertSame(stateManager.getAllExpectedStates(), states);
+        assertEquals(stateManager.getVersion(), version);
+
+        // another coordinator changed the state of the slot
+        ExpectedSlotStatus runningApple = new ExpectedSlotStatus(apple.getId(), RUNNING, APPLE_ASSIGNMENT);
+        backingStore.setExpectedState(runningApple);
+        assertEquals(stateManager.getAllExpectedStates().iterator().next().getStatus(), STOPPED);
+
+        assertTrue(stateManager.reconcile());
+        assertNotSame(stateManager.getAllExpectedStates(), states);
+        assertEquals(stateManager.getVersion(), version + 1);
+        assertEquals(stateManager.getAllExpectedStates().iterator().next().getStatus(), RUNNING);
+        assertEquals(stateManager.getReconcileChangeCount(), 1);
+    }
+
+    private static class CountingStateManager extends InMemoryStateManager
+    {
+        private int readCount;
+
+        @Override
+        public Collection<ExpectedSlotStatus> getAllExpectedStates()
+        {
+            readCount++;
+            return super.getAllExpectedStates();
+        }
+
+        public int getReadCount()
+        {
+            return readCount;
+        }
+    }
+}
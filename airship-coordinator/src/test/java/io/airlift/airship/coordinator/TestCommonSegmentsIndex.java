@@ -0,0 +1,90 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.airship.shared.Strings.commonPrefixSegments;
+import static org.testng.Assert.assertEquals;
+
+public class TestCommonSegmentsIndex
+{
+    @Test
+    public void testAddAndRemove()
+    {
+        CommonSegmentsIndex index = new CommonSegmentsIndex('/', 0);
+        assertEquals(index.getCommonPrefixSegments(), 0);
+
+        index.add("/a/a/a");
+        assertEquals(index.getCommonPrefixSegments(), 3);
+
+        index.add("/a/a/a");
+        assertEquals(index.getCommonPrefixSegments(), 3);
+
+        index.add("/a/a/b");
+        assertEquals(index.getCommonPrefixSegments(), 2);
+
+        index.add("/a");
+        assertEquals(index.getCommonPrefixSegments(), 1);
+
+        index.remove("/a/a/b");
+        index.remove("/a");
+        assertEquals(index.getCommonPrefixSegments(), 3);
+    }
+
+    @Test
+    public void testMinSize()
+    {
+        CommonSegmentsIndex index = new CommonSegmentsIndex('/', 2);
+        index.add("/a/a/a");
+        index.add("/a/a/a/b");
+        assertEquals(index.getCommonPrefixSegments(), 1);
+
+        index.add("/");
+        assertEquals(index.getCommonPrefixSegments(), 0);
+    }
+
+    @Test
+    public void testSegmentsAreComparedWhole()
+    {
+        // by character "/a/b!" sorts between "/a/b" and "/a/b/c", which share two segments
+        CommonSegmentsIndex index = new CommonSegmentsIndex('/', 0);
+        index.add("/a/b");
+        index.add("/a/b!");
+        index.add("/a/b/c");
+        assertEquals(index.getCommonPrefixSegments(), 1);
+        assertEquals(index.getCommonPrefixSegments(), commonPrefixSegments('/', ImmutableList.of("/a/b", "/a/b!", "/a/b/c")));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMissingSeparator()
+    {
+        new CommonSegmentsIndex('/', 0).add("a/b");
+    }
+
+    @Test
+    public void testMatchesFullComputation()
+    {
+        Random random = new Random(42);
+        CommonSegmentsIndex index = new CommonSegmentsIndex('/', 2);
+        List<String> locations = newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            if (locations.isEmpty() || random.nextInt(3) != 0) {
+                StringBuilder location = new StringBuilder();
+                int segments = 1 + random.nextInt(5);
+                for (int segment = 0; segment < segments; segment++) {
+                    location.append('/').append("ab".charAt(random.nextInt(2)));
+                }
+                locations.add(location.toString());
+                index.add(location.toString());
+            }
+            else {
+                index.remove(locations.remove(random.nextInt(locations.size())));
+            }
+            assertEquals(index.getCommonPrefixSegments(), commonPrefixSegments('/', ImmutableList.copyOf(locations), 2));
+        }
+    }
+}
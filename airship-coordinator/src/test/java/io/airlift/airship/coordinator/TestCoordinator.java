@@ -25,9 +25,12 @@ import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
 import static io.airlift.airship.shared.AssignmentHelper.RESOLVED_APPLE_ASSIGNMENT;
 import static io.airlift.airship.shared.AssignmentHelper.SHORT_APPLE_ASSIGNMENT;
 import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 public class TestCoordinator
@@ -326,6 +329,87 @@ public class TestCoordinator
         assertEquals(coordinator.getAgent(instanceId).getState(), AgentLifecycleState.ONLINE);
     }
 
+    @Test
+    public void testSnapshot()
+    {
+        provisioner.addAgent("instance-id", URI.create("fake://appleServer1/"));
+        coordinator.updateAllAgents();
+
+        // snapshot is reused while nothing changes
+        ClusterSnapshot snapshot = coordinator.getSnapshot();
+        assertEquals(snapshot.getAgents(), coordinator.getAgents());
+        assertTrue(snapshot.getSlots().isEmpty());
+        assertSame(coordinator.getSnapshot(), snapshot);
+        coordinator.updateAllAgents();
+        assertSame(coordinator.getSnapshot(), snapshot);
+
+        // install changes the expected state
+        List<SlotStatus> slots = coordinator.install(Predicates.<AgentStatus>alwaysTrue(), 1, APPLE_ASSIGNMENT);
+        ClusterSnapshot newSnapshot = coordinator.getSnapshot();
+        assertNotSame(newSnapshot, snapshot);
+        assertTrue(newSnapshot.getVersion() > snapshot.getVersion());
+        assertEquals(Iterables.getOnlyElement(newSnapshot.getSlots()).getId(), Iterables.getOnlyElement(slots).getId());
+        assertSame(coordinator.getSnapshot(), newSnapshot);
+    }
+
+    @Test
+    public void testSnapshotIndexes()
+    {
+        UUID slotId = UUID.randomUUID();
+        SlotStatus slot = createSlotStatus(slotId,
+                URI.create("fake://appleServer1/v1/agent/slot/apple"),
+                URI.create("fake://APPLE-external/v1/agent/slot/apple"),
+                "instance-id",
+                "/location",
+                STOPPED,
+                APPLE_ASSIGNMENT,
+                "/apple",
+                ImmutableMap.<String, Integer>of());
+        URI agentUri = URI.create("fake://appleServer1/");
+        provisioner.addAgents(new AgentStatus("agent-id",
+                AgentLifecycleState.ONLINE,
+                "instance-id",
+                agentUri,
+                agentUri,
+                "/location",
+                "instance.type",
+                ImmutableList.of(slot),
+                ImmutableMap.<String, Integer>of()));
+        coordinator.updateAllAgents();
+
+        ClusterSnapshot snapshot = coordinator.getSnapshot();
+        assertEquals(snapshot.getAgentByAgentId("agent-id").getInstanceId(), "instance-id");
+        assertNull(snapshot.getAgentByAgentId("unknown"));
+        assertEquals(snapshot.getAgentBySlotId(slotId).getAgentId(), "agent-id");
+        assertEquals(snapshot.getSlot(slotId).getId(), slotId);
+        assertNull(snapshot.getSlot(UUID.randomUUID()));
+        assertEquals(Iterables.getOnlyElement(snapshot.getSlotsByHost("appleserver1")).getId(), slotId);
+        assertEquals(Iterables.getOnlyElement(snapshot.getSlotsByHost("apple-external")).getId(), slotId);
+        assertEquals(Iterables.getOnlyElement(snapshot.getSlotsByBinary(APPLE_ASSIGNMENT.getBinary())).getId(), slotId);
+        assertEquals(Iterables.getOnlyElement(snapshot.getSlotsByConfig(APPLE_ASSIGNMENT.getConfig())).getId(), slotId);
+        assertTrue(snapshot.getSlotsByBinary("food.fruit:banana:1.0").isEmpty());
+
+        assertSame(coordinator.getAgentByAgentId("agent-id"), snapshot.getAgentByAgentId("agent-id"));
+        assertSame(coordinator.getSlot(slotId), snapshot.getSlot(slotId));
+    }
+
+    @Test
+    public void testTerminateAgent()
+    {
+        provisioner.addAgent("agent-id", URI.create("fake://appleServer1/"));
+        coordinator.updateAllAgents();
+        assertEquals(coordinator.getAgents().size(), 1);
+
+        assertNull(coordinator.terminateAgent("unknown"));
+        assertEquals(coordinator.getAgents().size(), 1);
+
+        AgentStatus terminated = coordinator.terminateAgent("agent-id");
+        assertEquals(terminated.getAgentId(), "agent-id");
+        assertEquals(terminated.getState(), AgentLifecycleState.TERMINATED);
+        assertTrue(coordinator.getAgents().isEmpty());
+        assertNull(coordinator.getAgentByAgentId("agent-id"));
+    }
+
     @Test
     public void testInstallWithinShortBinarySpec()
     {
@@ -75,7 +75,8 @@ public class TestCoordinatorAssignmentResource
                 MOCK_REPO,
                 provisioner,
                 new InMemoryStateManager(),
-                new MockServiceInventory());
+                new MockServiceInventory(),
+                new ResourcePlacementScheduler(new CoordinatorConfig()));
         resource = new CoordinatorAssignmentResource(coordinator, MOCK_REPO);
 
         apple1SlotId = UUID.randomUUID();
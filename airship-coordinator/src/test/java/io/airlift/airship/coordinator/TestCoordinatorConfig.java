@@ -3,6 +3,7 @@ package io.airlift.airship.coordinator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.airlift.configuration.testing.ConfigAssertions;
+import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
@@ -19,7 +20,27 @@ public class TestCoordinatorConfig
         ConfigAssertions.assertRecordedDefaults(ConfigAssertions.recordDefaults(CoordinatorConfig.class)
                 .setAirshipVersion(null)
                 .setStatusExpiration(new Duration(30, TimeUnit.SECONDS))
+                .setAgentStatusMaxConcurrency(32)
+                .setAgentStatusTimeout(new Duration(10, TimeUnit.SECONDS))
+                .setAgentStatusSweepTimeout(new Duration(30, TimeUnit.SECONDS))
+                .setAgentStatusLongPollWait(new Duration(0, TimeUnit.SECONDS))
+                .setExpectedStateRefreshInterval(new Duration(30, TimeUnit.SECONDS))
+                .setSlotOperationMaxConcurrency(64)
+                .setSlotOperationTimeout(new Duration(5, TimeUnit.MINUTES))
+                .setArtifactFanout(4)
+                .setPlacementStrategy(PlacementStrategy.SPREAD)
+                .setPlacementFailureDomainDepth(3)
+                .setInstallMaxConcurrency(16)
+                .setRolloutDir("rollouts")
+                .setRolloutHealthCheckInterval(new Duration(5, TimeUnit.SECONDS))
+                .setRolloutWaveTimeout(new Duration(10, TimeUnit.MINUTES))
+                .setRolloutMinHealthyTime(new Duration(30, TimeUnit.SECONDS))
                 .setServiceInventoryCacheDir("service-inventory-cache")
+                .setArtifactProxyEnabled(false)
+                .setArtifactProxyCacheDir("artifact-proxy-cache")
+                .setArtifactProxyMaxSize(new DataSize(10, DataSize.Unit.GIGABYTE))
+                .setRepositoryCacheTtl(new Duration(1, TimeUnit.MINUTES))
+                .setRepositoryCacheMaxSize(10_000)
                 .setAgentDefaultConfig(null)
                 .setAllowDuplicateInstallationsOnAnAgent(false)
                 .setRepositories("")
@@ -36,7 +57,27 @@ public class TestCoordinatorConfig
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("airship.version", "99.9")
                 .put("coordinator.status.expiration", "1m")
+                .put("coordinator.agent-status.max-concurrency", "8")
+                .put("coordinator.agent-status.timeout", "3s")
+                .put("coordinator.agent-status.sweep-timeout", "20s")
+                .put("coordinator.agent-status.long-poll-wait", "15s")
+                .put("coordinator.expected-state.refresh-interval", "2m")
+                .put("coordinator.slot-operation.max-concurrency", "16")
+                .put("coordinator.slot-operation.timeout", "90s")
+                .put("coordinator.artifact.fanout", "2")
+                .put("coordinator.placement.strategy", "BINPACK")
+                .put("coordinator.placement.failure-domain-depth", "2")
+                .put("coordinator.install.max-concurrency", "4")
+                .put("coordinator.rollout.dir", "rollout-state")
+                .put("coordinator.rollout.health-check-interval", "1s")
+                .put("coordinator.rollout.wave-timeout", "3m")
+                .put("coordinator.rollout.min-healthy-time", "1m")
                 .put("coordinator.service-inventory.cache-dir", "si-cache")
+                .put("coordinator.artifact-proxy.enabled", "true")
+                .put("coordinator.artifact-proxy.cache-dir", "proxy-cache")
+                .put("coordinator.artifact-proxy.max-size", "2GB")
+                .put("coordinator.repository.cache-ttl", "5m")
+                .put("coordinator.repository.cache-max-size", "500")
                 .put("coordinator.agent.default-config", "agent:config:1")
                 .put("coordinator.allow-duplicate-installations-on-an-agent", "true")
                 .put("coordinator.repository", "repo1,repo2,repo3")
@@ -49,7 +90,27 @@ public class TestCoordinatorConfig
         CoordinatorConfig expected = new CoordinatorConfig()
                 .setAirshipVersion("99.9")
                 .setStatusExpiration(new Duration(1, TimeUnit.MINUTES))
+                .setAgentStatusMaxConcurrency(8)
+                .setAgentStatusTimeout(new Duration(3, TimeUnit.SECONDS))
+                .setAgentStatusSweepTimeout(new Duration(20, TimeUnit.SECONDS))
+                .setAgentStatusLongPollWait(new Duration(15, TimeUnit.SECONDS))
+                .setExpectedStateRefreshInterval(new Duration(2, TimeUnit.MINUTES))
+                .setSlotOperationMaxConcurrency(16)
+                .setSlotOperationTimeout(new Duration(90, TimeUnit.SECONDS))
+                .setArtifactFanout(2)
+                .setPlacementStrategy(PlacementStrategy.BINPACK)
+                .setPlacementFailureDomainDepth(2)
+                .setInstallMaxConcurrency(4)
+                .setRolloutDir("rollout-state")
+                .setRolloutHealthCheckInterval(new Duration(1, TimeUnit.SECONDS))
+                .setRolloutWaveTimeout(new Duration(3, TimeUnit.MINUTES))
+                .setRolloutMinHealthyTime(new Duration(1, TimeUnit.MINUTES))
                 .setServiceInventoryCacheDir("si-cache")
+                .setArtifactProxyEnabled(true)
+                .setArtifactProxyCacheDir("proxy-cache")
+                .setArtifactProxyMaxSize(new DataSize(2, DataSize.Unit.GIGABYTE))
+                .setRepositoryCacheTtl(new Duration(5, TimeUnit.MINUTES))
+                .setRepositoryCacheMaxSize(500)
                 .setAgentDefaultConfig("agent:config:1")
                 .setAllowDuplicateInstallationsOnAnAgent(true)
                 .setRepositories(ImmutableList.of("repo1", "repo2", "repo3"))
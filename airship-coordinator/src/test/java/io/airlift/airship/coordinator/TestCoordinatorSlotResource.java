@@ -1,5 +1,6 @@
 package io.airlift.airship.coordinator;
 
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
@@ -17,6 +18,8 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.net.URI;
@@ -35,6 +38,7 @@ import static io.airlift.airship.shared.Strings.shortestUniquePrefix;
 import static java.lang.Math.min;
 import static java.util.Arrays.asList;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 
 public class TestCoordinatorSlotResource
@@ -61,7 +65,8 @@ public class TestCoordinatorSlotResource
                 repository,
                 provisioner,
                 new InMemoryStateManager(),
-                new MockServiceInventory());
+                new MockServiceInventory(),
+                new ResourcePlacementScheduler(new CoordinatorConfig()));
         resource = new CoordinatorSlotResource(coordinator, repository);
     }
 
@@ -108,7 +113,7 @@ public class TestCoordinatorSlotResource
         int prefixSize = shortestUniquePrefix(asList(slot1.getId().toString(), slot2.getId().toString()), MIN_PREFIX_SIZE);
 
         URI requestUri = URI.create("http://localhost/v1/slot");
-        Response response = resource.getAllSlots(MockUriInfo.from(requestUri));
+        Response response = resource.getAllSlots(MockUriInfo.from(requestUri), null);
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
         assertEqualsNoOrder((Iterable<?>) response.getEntity(),
                 ImmutableList.of(SlotStatusRepresentation.from(slot1, prefixSize, repository), SlotStatusRepresentation.from(slot2, prefixSize, repository)));
@@ -151,7 +156,7 @@ public class TestCoordinatorSlotResource
         int prefixSize = shortestUniquePrefix(asList(slot1.getId().toString(), slot2.getId().toString()), MIN_PREFIX_SIZE);
 
         URI requestUri = URI.create("http://localhost/v1/slot?host=foo");
-        Response response = resource.getAllSlots(MockUriInfo.from(requestUri));
+        Response response = resource.getAllSlots(MockUriInfo.from(requestUri), null);
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
         assertEqualsNoOrder((Iterable<?>) response.getEntity(), ImmutableList.of(SlotStatusRepresentation.from(slot1, prefixSize, repository)));
         assertNull(response.getMetadata().get("Content-Type")); // content type is set by jersey based on @Produces
@@ -161,12 +166,38 @@ public class TestCoordinatorSlotResource
     public void testGetAllSlotEmpty()
     {
         URI requestUri = URI.create("http://localhost/v1/slot?state=unknown");
-        Response response = resource.getAllSlots(MockUriInfo.from(requestUri));
+        Response response = resource.getAllSlots(MockUriInfo.from(requestUri), null);
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
         assertEqualsNoOrder((Iterable<?>) response.getEntity(), ImmutableList.of());
         assertNull(response.getMetadata().get("Content-Type")); // content type is set by jersey based on @Produces
     }
 
+    @Test
+    public void testGetAllSlotsNotModified()
+    {
+        URI requestUri = URI.create("http://localhost/v1/slot?host=foo");
+        Response response = resource.getAllSlots(MockUriInfo.from(requestUri), null);
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        EntityTag entityTag = (EntityTag) response.getMetadata().getFirst(HttpHeaders.ETAG);
+        assertNotNull(entityTag);
+
+        // same request with the current tag is not modified
+        response = resource.getAllSlots(MockUriInfo.from(requestUri), entityTag.toString());
+        assertEquals(response.getStatus(), Response.Status.NOT_MODIFIED.getStatusCode());
+        assertNull(response.getEntity());
+
+        // a different filter produces a different representation
+        response = resource.getAllSlots(MockUriInfo.from(URI.create("http://localhost/v1/slot?host=bar")), entityTag.toString());
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+
+        // a new slot changes the tag
+        provisioner.addAgent(UUID.randomUUID().toString(), URI.create("fake://foo/"), ImmutableMap.of("cpu", 8, "memory", 1024));
+        coordinator.updateAllAgents();
+        coordinator.install(Predicates.<AgentStatus>alwaysTrue(), 1, APPLE_ASSIGNMENT);
+        response = resource.getAllSlots(MockUriInfo.from(requestUri), entityTag.toString());
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+    }
+
     @Test
     public void testInstallOne()
     {
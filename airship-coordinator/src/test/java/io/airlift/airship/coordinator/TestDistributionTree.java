@@ -0,0 +1,66 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestDistributionTree
+{
+    private static final List<URI> AGENTS;
+
+    static {
+        ImmutableList.Builder<URI> agents = ImmutableList.builder();
+        for (int i = 0; i < 8; i++) {
+            agents.add(URI.create("http://agent" + i + ":8080"));
+        }
+        AGENTS = agents.build();
+    }
+
+    @Test
+    public void testRootsUseRepository()
+    {
+        assertEquals(DistributionTree.getPeers(AGENTS, 0, 2), ImmutableList.of());
+        assertEquals(DistributionTree.getPeers(AGENTS, 1, 2), ImmutableList.of());
+    }
+
+    @Test
+    public void testChildrenUseAncestors()
+    {
+        assertEquals(DistributionTree.getPeers(AGENTS, 2, 2), ImmutableList.of(AGENTS.get(0)));
+        assertEquals(DistributionTree.getPeers(AGENTS, 3, 2), ImmutableList.of(AGENTS.get(0)));
+        assertEquals(DistributionTree.getPeers(AGENTS, 5, 2), ImmutableList.of(AGENTS.get(1)));
+        assertEquals(DistributionTree.getPeers(AGENTS, 7, 2), ImmutableList.of(AGENTS.get(2), AGENTS.get(0)));
+    }
+
+    @Test
+    public void testEachParentServesFanoutChildren()
+    {
+        int[] children = new int[AGENTS.size()];
+        for (int i = 0; i < AGENTS.size(); i++) {
+            List<URI> peers = DistributionTree.getPeers(AGENTS, i, 3);
+            if (!peers.isEmpty()) {
+                children[AGENTS.indexOf(peers.get(0))]++;
+            }
+        }
+        assertEquals(Ints.asList(children), ImmutableList.of(3, 2, 0, 0, 0, 0, 0, 0));
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        assertEquals(DistributionTree.getPeers(AGENTS, 7, 0), ImmutableList.of());
+    }
+
+    @Test
+    public void testUnknownUriSkipped()
+    {
+        List<URI> agents = Arrays.asList(AGENTS.get(0), AGENTS.get(1), null, AGENTS.get(3), AGENTS.get(4), AGENTS.get(5), AGENTS.get(6), AGENTS.get(7));
+        assertEquals(DistributionTree.getPeers(agents, 7, 2), ImmutableList.of(AGENTS.get(0)));
+    }
+}
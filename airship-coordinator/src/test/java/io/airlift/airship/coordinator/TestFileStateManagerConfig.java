@@ -13,6 +13,8 @@ public class TestFileStateManagerConfig
     {
         ConfigAssertions.assertRecordedDefaults(ConfigAssertions.recordDefaults(FileStateManagerConfig.class)
                 .setExpectedStateDir("expected-state")
+                .setLogEnabled(false)
+                .setLogCompactionThreshold(10000)
         );
     }
 
@@ -21,10 +23,14 @@ public class TestFileStateManagerConfig
     {
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("coordinator.expected-state.dir", "state")
+                .put("coordinator.expected-state.log.enabled", "true")
+                .put("coordinator.expected-state.log.compaction-threshold", "500")
                 .build();
 
         FileStateManagerConfig expected = new FileStateManagerConfig()
-                .setExpectedStateDir("state");
+                .setExpectedStateDir("state")
+                .setLogEnabled(true)
+                .setLogCompactionThreshold(500);
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
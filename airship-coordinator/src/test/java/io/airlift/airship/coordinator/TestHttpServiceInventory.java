@@ -0,0 +1,123 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.SlotLifecycleState;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.discovery.client.ServiceDescriptor;
+import io.airlift.discovery.client.ServiceState;
+import io.airlift.json.JsonCodec;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+public class TestHttpServiceInventory
+{
+    private static final JsonCodec<List<ServiceDescriptor>> DESCRIPTORS_CODEC = JsonCodec.listJsonCodec(ServiceDescriptor.class);
+
+    private File tempDir;
+    private File configFile;
+    private String config;
+    private HttpServiceInventory serviceInventory;
+
+    @BeforeMethod
+    public void setUp()
+            throws Exception
+    {
+        tempDir = createTempDir("service-inventory");
+        configFile = new File(tempDir, "apple-1.0.config");
+        config = "@" + configFile.toURI();
+
+        List<ServiceDescriptor> descriptors = ImmutableList.of(new ServiceDescriptor(null,
+                null,
+                "apple",
+                "general",
+                null,
+                null,
+                ImmutableMap.of("http", "http://${airship.host}:8080/${airship.host}", "static", "value")));
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(configFile))) {
+            out.putNextEntry(new ZipEntry("airship-service-inventory.json"));
+            out.write(DESCRIPTORS_CODEC.toJson(descriptors).getBytes(UTF_8));
+        }
+
+        serviceInventory = new HttpServiceInventory(new HttpRepository(ImmutableList.<URI>of(), null, null, null),
+                DESCRIPTORS_CODEC,
+                new File(tempDir, "cache"));
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void testInterpolation()
+    {
+        SlotStatus slot = createSlot(UUID.randomUUID(), "host1", SlotLifecycleState.RUNNING);
+
+        List<ServiceDescriptor> inventory = serviceInventory.getServiceInventory(ImmutableList.of(slot));
+        assertEquals(inventory.size(), 1);
+        ServiceDescriptor descriptor = inventory.get(0);
+        assertEquals(descriptor.getNodeId(), slot.getId().toString());
+        assertEquals(descriptor.getType(), "apple");
+        assertEquals(descriptor.getPool(), "general");
+        assertEquals(descriptor.getLocation(), "/host1");
+        assertEquals(descriptor.getState(), ServiceState.RUNNING);
+        assertEquals(descriptor.getProperties(), ImmutableMap.of("http", "http://host1:8080/host1", "static", "value"));
+    }
+
+    @Test
+    public void testInventoryChangesOnlyWhenSlotsChange()
+    {
+        UUID id = UUID.randomUUID();
+        List<ServiceDescriptor> inventory = serviceInventory.getServiceInventory(ImmutableList.of(createSlot(id, "host1", SlotLifecycleState.RUNNING)));
+        assertSame(serviceInventory.getServiceInventory(ImmutableList.of(createSlot(id, "host1", SlotLifecycleState.RUNNING))), inventory);
+
+        List<ServiceDescriptor> stopped = serviceInventory.getServiceInventory(ImmutableList.of(createSlot(id, "host1", SlotLifecycleState.STOPPED)));
+        assertNotSame(stopped, inventory);
+        assertEquals(stopped.get(0).getState(), ServiceState.STOPPED);
+    }
+
+    @Test
+    public void testConfigIsReadOnce()
+    {
+        serviceInventory.getServiceInventory(ImmutableList.of(createSlot(UUID.randomUUID(), "host1", SlotLifecycleState.RUNNING)));
+
+        // neither the config nor the disk copy is read again
+        deleteRecursively(tempDir);
+        List<ServiceDescriptor> inventory = serviceInventory.getServiceInventory(ImmutableList.of(createSlot(UUID.randomUUID(), "host2", SlotLifecycleState.RUNNING)));
+        assertEquals(inventory.size(), 1);
+        assertEquals(inventory.get(0).getProperties().get("http"), "http://host2:8080/host2");
+    }
+
+    private SlotStatus createSlot(UUID id, String host, SlotLifecycleState state)
+    {
+        return createSlotStatus(id,
+                URI.create("http://" + host + "/v1/agent/slot/apple"),
+                URI.create("http://" + host + "/v1/agent/slot/apple"),
+                "instance",
+                "/" + host,
+                state,
+                new Assignment("food.fruit:apple:1.0", config),
+                "/apple",
+                ImmutableMap.<String, Integer>of());
+    }
+}
@@ -0,0 +1,166 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import io.airlift.airship.shared.ExpectedSlotStatus;
+import io.airlift.json.JsonCodec;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.UUID;
+
+import static io.airlift.airship.coordinator.LogStructuredStateManager.LOG_FILE_NAME;
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
+import static io.airlift.airship.shared.ExtraAssertions.assertEqualsNoOrder;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestLogStructuredStateManager
+{
+    private static final JsonCodec<ExpectedSlotStatus> CODEC = JsonCodec.jsonCodec(ExpectedSlotStatus.class);
+
+    private File dataDir;
+    private LogStructuredStateManager stateManager;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        dataDir = Files.createTempDir();
+        stateManager = new LogStructuredStateManager(dataDir, CODEC, 100);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        stateManager.stop();
+        deleteRecursively(dataDir);
+    }
+
+    @Test
+    public void testReplay()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+        ExpectedSlotStatus runningBanana = new ExpectedSlotStatus(banana.getId(), RUNNING, BANANA_ASSIGNMENT);
+
+        stateManager.setExpectedState(apple);
+        stateManager.setExpectedState(banana);
+        stateManager.setExpectedState(runningBanana);
+        stateManager.deleteExpectedState(apple.getId());
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(banana));
+        assertEquals(stateManager.getLogRecordCount(), 4);
+
+        // restart and verify the log is replayed
+        stateManager.stop();
+        stateManager = new LogStructuredStateManager(dataDir, CODEC, 100);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(banana));
+        assertEquals(stateManager.getAllExpectedStates().iterator().next().getStatus(), RUNNING);
+
+        // startup compacts the replayed log into a snapshot
+        assertEquals(stateManager.getLogRecordCount(), 0);
+    }
+
+    @Test
+    public void testBatchWrites()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+        ExpectedSlotStatus cherry = new ExpectedSlotStatus(UUID.randomUUID(), RUNNING, APPLE_ASSIGNMENT);
+
+        // each batch is a single fsync
+        long syncs = stateManager.getSyncCount();
+        stateManager.setExpectedStates(ImmutableList.of(apple, banana, cherry));
+        assertEquals(stateManager.getSyncCount(), syncs + 1);
+        stateManager.deleteExpectedStates(ImmutableList.of(apple.getId(), banana.getId()));
+        assertEquals(stateManager.getSyncCount(), syncs + 2);
+        assertEquals(stateManager.getLogRecordCount(), 5);
+
+        stateManager.stop();
+        stateManager = new LogStructuredStateManager(dataDir, CODEC, 100);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(cherry));
+    }
+
+    @Test
+    public void testCompaction()
+    {
+        stateManager.stop();
+        stateManager = new LogStructuredStateManager(dataDir, CODEC, 3);
+        long compactions = stateManager.getCompactionCount();
+
+        for (int i = 0; i < 10; i++) {
+            stateManager.setExpectedState(new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT));
+        }
+        assertEquals(stateManager.getCompactionCount(), compactions + 3);
+        assertEquals(stateManager.getLogRecordCount(), 1);
+
+        stateManager.stop();
+        stateManager = new LogStructuredStateManager(dataDir, CODEC, 3);
+        assertEquals(stateManager.getAllExpectedStates().size(), 10);
+    }
+
+    @Test
+    public void testTornRecordIsSkipped()
+            throws Exception
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        stateManager.setExpectedState(apple);
+        stateManager.stop();
+
+        // simulate a crash in the middle of writing a record
+        Files.append("set {\"id\":\"" + UUID.randomUUID(), new File(dataDir, LOG_FILE_NAME), Charsets.UTF_8);
+
+        stateManager = new LogStructuredStateManager(dataDir, CODEC, 100);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(apple));
+
+        // new records are readable after the torn record
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+        stateManager.setExpectedState(banana);
+        stateManager.stop();
+        stateManager = new LogStructuredStateManager(dataDir, CODEC, 100);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(apple, banana));
+    }
+
+    @Test
+    public void testRetiredSegmentIsReplayed()
+            throws Exception
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus runningApple = new ExpectedSlotStatus(apple.getId(), RUNNING, APPLE_ASSIGNMENT);
+        stateManager.setExpectedState(apple);
+        stateManager.stop();
+
+        // simulate a crash after the log was retired for a compaction, but before the snapshot was written
+        File logFile = new File(dataDir, LOG_FILE_NAME);
+        File segmentFile = new File(dataDir, LOG_FILE_NAME + ".7");
+        assertTrue(logFile.renameTo(segmentFile));
+        Files.write("set " + CODEC.toJson(runningApple).replace('\n', ' ') + "\n", logFile, Charsets.UTF_8);
+
+        // the segment is replayed before the log, and deleted once the state is in the snapshot
+        stateManager = new LogStructuredStateManager(dataDir, CODEC, 100);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(runningApple));
+        assertEquals(stateManager.getAllExpectedStates().iterator().next().getStatus(), RUNNING);
+        assertFalse(segmentFile.exists());
+    }
+
+    @Test
+    public void testImportFileStateManager()
+    {
+        stateManager.stop();
+        deleteRecursively(dataDir);
+
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        new FileStateManager(dataDir, CODEC).setExpectedState(apple);
+
+        stateManager = new LogStructuredStateManager(dataDir, CODEC, 100);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(apple));
+        assertTrue(new File(dataDir, LogStructuredStateManager.SNAPSHOT_FILE_NAME).isFile());
+    }
+}
@@ -1,5 +1,8 @@
 package io.airlift.airship.coordinator;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import io.airlift.units.Duration;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -7,6 +10,9 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
 
 public class TestMavenRepository
 {
@@ -136,4 +142,50 @@ public class TestMavenRepository
         Assert.assertFalse(repo.configEqualsIgnoreVersion("@apple:1.0", "@banana:1.0"));
         Assert.assertFalse(repo.binaryEqualsIgnoreVersion("apple:1.0", "banana:1.0"));
     }
+
+    @Test
+    public void releaseResolutionIsCached()
+            throws Exception
+    {
+        MavenRepository cachingRepo = createRepository(new Duration(0, TimeUnit.SECONDS));
+        URI uri = cachingRepo.binaryToHttpUri("apple:1.0");
+
+        // found release versions are kept even after the ttl
+        deleteRecursively(new File(repo.getTargetRepo(), "food/fruit/apple/1.0"));
+        Assert.assertEquals(cachingRepo.binaryResolve("apple:1.0"), "food.fruit:apple:1.0");
+        Assert.assertEquals(cachingRepo.binaryToHttpUri("apple:1.0"), uri);
+        Assert.assertEquals(cachingRepo.getResolutionCacheLoads(), 1);
+    }
+
+    @Test
+    public void snapshotResolutionExpires()
+            throws Exception
+    {
+        MavenRepository cachingRepo = createRepository(new Duration(0, TimeUnit.SECONDS));
+        Assert.assertEquals(cachingRepo.binaryResolve("banana:2.0-SNAPSHOT"), "food.fruit:banana:2.0-20110311.201909-1");
+
+        deleteRecursively(new File(repo.getTargetRepo(), "food/fruit/banana/2.0-SNAPSHOT"));
+        Assert.assertNull(cachingRepo.binaryResolve("banana:2.0-SNAPSHOT"));
+    }
+
+    @Test
+    public void missingArtifactIsCached()
+            throws Exception
+    {
+        MavenRepository cachingRepo = createRepository(new Duration(1, TimeUnit.HOURS));
+        Assert.assertNull(cachingRepo.binaryResolve("apple:3.0"));
+
+        File appleArchiveV3 = new File(repo.getTargetRepo(), "food/fruit/apple/3.0/apple-3.0.tar.gz");
+        appleArchiveV3.getParentFile().mkdirs();
+        Files.copy(new File(repo.getTargetRepo(), "food/fruit/apple/1.0/apple-1.0.tar.gz"), appleArchiveV3);
+        Assert.assertNull(cachingRepo.binaryResolve("apple:3.0"));
+
+        cachingRepo.flushCache();
+        Assert.assertEquals(cachingRepo.binaryResolve("apple:3.0"), "food.fruit:apple:3.0");
+    }
+
+    private MavenRepository createRepository(Duration cacheTtl)
+    {
+        return new MavenRepository(ImmutableList.of("prod", "food.fruit"), ImmutableList.of(repo.getTargetRepo().toURI()), cacheTtl, 1000);
+    }
 }
@@ -0,0 +1,155 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.airship.shared.AgentLifecycleState;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.Installation;
+import io.airlift.airship.shared.SlotLifecycleState;
+import io.airlift.airship.shared.SlotStatus;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestResourcePlacementScheduler
+{
+    private static final Assignment APPLE = new Assignment("food.fruit:apple:1.0", "@apple.config");
+    private static final Assignment BANANA = new Assignment("food.fruit:banana:1.0", "@banana.config");
+
+    private final Map<String, AgentStatus> agentStatuses = new ConcurrentHashMap<>();
+
+    @BeforeMethod
+    public void setUp()
+    {
+        agentStatuses.clear();
+    }
+
+    @Test
+    public void testAgentsWithoutResourcesAreSkipped()
+    {
+        RemoteAgent small = createAgent("small", "/a/b/c/small", ImmutableMap.of("memory", 512));
+        RemoteAgent unlimited = createAgent("unlimited", "/a/b/c/unlimited", ImmutableMap.<String, Integer>of());
+
+        ResourcePlacementScheduler scheduler = new ResourcePlacementScheduler(PlacementStrategy.SPREAD, 0);
+        List<RemoteAgent> agents = scheduler.selectAgents(ImmutableList.of(small, unlimited), createInstallation(ImmutableMap.of("memory", 1024)), 2);
+        assertEquals(agents, ImmutableList.of(unlimited));
+    }
+
+    @Test
+    public void testSpread()
+    {
+        RemoteAgent busy = createAgent("busy", "/a/b/c/busy", ImmutableMap.of("memory", 1000, "cpu", 4), createSlot(BANANA, ImmutableMap.of("memory", 500, "cpu", 2)));
+        RemoteAgent idle = createAgent("idle", "/a/b/c/idle", ImmutableMap.of("memory", 1000, "cpu", 4));
+
+        ResourcePlacementScheduler scheduler = new ResourcePlacementScheduler(PlacementStrategy.SPREAD, 0);
+        Installation installation = createInstallation(ImmutableMap.of("memory", 250, "cpu", 1));
+        assertEquals(scheduler.selectAgents(ImmutableList.of(busy, idle), installation, 1), ImmutableList.of(idle));
+        assertEquals(scheduler.selectAgents(ImmutableList.of(busy, idle), installation, 2), ImmutableList.of(idle, busy));
+    }
+
+    @Test
+    public void testBinpack()
+    {
+        RemoteAgent busy = createAgent("busy", "/a/b/c/busy", ImmutableMap.of("memory", 1000, "cpu", 4), createSlot(BANANA, ImmutableMap.of("memory", 500, "cpu", 2)));
+        RemoteAgent idle = createAgent("idle", "/a/b/c/idle", ImmutableMap.of("memory", 1000, "cpu", 4));
+
+        ResourcePlacementScheduler scheduler = new ResourcePlacementScheduler(PlacementStrategy.BINPACK, 0);
+        Installation installation = createInstallation(ImmutableMap.of("memory", 250, "cpu", 1));
+        assertEquals(scheduler.selectAgents(ImmutableList.of(busy, idle), installation, 1), ImmutableList.of(busy));
+    }
+
+    @Test
+    public void testBinpackAvoidsFragmentation()
+    {
+        // the first agent would be fuller, but its memory would be exhausted with half of its cpu left over
+        RemoteAgent unbalanced = createAgent("unbalanced", "/a/b/c/unbalanced", ImmutableMap.of("memory", 1000, "cpu", 4), createSlot(BANANA, ImmutableMap.of("memory", 750, "cpu", 1)));
+        RemoteAgent balanced = createAgent("balanced", "/a/b/c/balanced", ImmutableMap.of("memory", 1000, "cpu", 4), createSlot(BANANA, ImmutableMap.of("memory", 375, "cpu", 2)));
+
+        ResourcePlacementScheduler scheduler = new ResourcePlacementScheduler(PlacementStrategy.BINPACK, 0);
+        Installation installation = createInstallation(ImmutableMap.of("memory", 250, "cpu", 1));
+        assertEquals(scheduler.selectAgents(ImmutableList.of(unbalanced, balanced), installation, 1), ImmutableList.of(balanced));
+    }
+
+    @Test
+    public void testLeastLoaded()
+    {
+        RemoteAgent two = createAgent("two", "/a/b/c/two", ImmutableMap.<String, Integer>of(), createSlot(BANANA, ImmutableMap.<String, Integer>of()), createSlot(BANANA, ImmutableMap.<String, Integer>of()));
+        RemoteAgent one = createAgent("one", "/a/b/c/one", ImmutableMap.<String, Integer>of(), createSlot(BANANA, ImmutableMap.<String, Integer>of()));
+
+        ResourcePlacementScheduler scheduler = new ResourcePlacementScheduler(PlacementStrategy.LEAST_LOADED, 0);
+        assertEquals(scheduler.selectAgents(ImmutableList.of(two, one), createInstallation(ImmutableMap.<String, Integer>of()), 1), ImmutableList.of(one));
+    }
+
+    @Test
+    public void testFailureDomains()
+    {
+        Map<String, Integer> capacity = ImmutableMap.of("memory", 1000);
+        RemoteAgent zoneA1 = createAgent("a1", "/ec2/us-east/a/a1", capacity, createSlot(BANANA, ImmutableMap.of("memory", 500)));
+        RemoteAgent zoneA2 = createAgent("a2", "/ec2/us-east/a/a2", capacity, createSlot(BANANA, ImmutableMap.of("memory", 400)));
+        RemoteAgent zoneB1 = createAgent("b1", "/ec2/us-east/b/b1", capacity);
+        RemoteAgent zoneB2 = createAgent("b2", "/ec2/us-east/b/b2", capacity);
+        List<RemoteAgent> candidates = ImmutableList.of(zoneA1, zoneA2, zoneB1, zoneB2);
+        Installation installation = createInstallation(ImmutableMap.of("memory", 100));
+
+        // bin packing alone would put both copies in zone a
+        ResourcePlacementScheduler scheduler = new ResourcePlacementScheduler(PlacementStrategy.BINPACK, 0);
+        assertEquals(scheduler.selectAgents(candidates, installation, 2), ImmutableList.of(zoneA1, zoneA2));
+
+        // one copy in each zone, still packing within the zone
+        scheduler = new ResourcePlacementScheduler(PlacementStrategy.BINPACK, 3);
+        List<RemoteAgent> agents = scheduler.selectAgents(candidates, installation, 2);
+        assertEquals(agents.size(), 2);
+        assertEquals(agents.get(0), zoneA1);
+        assertTrue(agents.get(1) == zoneB1 || agents.get(1) == zoneB2);
+    }
+
+    @Test
+    public void testFailureDomainsCountExistingCopies()
+    {
+        Map<String, Integer> capacity = ImmutableMap.of("memory", 1000);
+        RemoteAgent zoneA = createAgent("a", "/ec2/us-east/a/a", capacity, createSlot(APPLE, ImmutableMap.of("memory", 100)));
+        RemoteAgent zoneB = createAgent("b", "/ec2/us-east/b/b", capacity, createSlot(BANANA, ImmutableMap.of("memory", 500)));
+        RemoteAgent zoneC = createAgent("c", "/ec2/us-east/c/c", capacity);
+
+        ResourcePlacementScheduler scheduler = new ResourcePlacementScheduler(PlacementStrategy.SPREAD, 3);
+        List<RemoteAgent> agents = scheduler.selectAgents(ImmutableList.of(zoneA, zoneB, zoneC), createInstallation(ImmutableMap.of("memory", 100)), 3);
+        assertEquals(agents, ImmutableList.of(zoneC, zoneB, zoneA));
+    }
+
+    private RemoteAgent createAgent(String instanceId, String location, Map<String, Integer> resources, SlotStatus... slots)
+    {
+        URI uri = URI.create("fake://agent/" + instanceId);
+        agentStatuses.put(instanceId, new AgentStatus(instanceId,
+                AgentLifecycleState.ONLINE,
+                instanceId,
+                uri,
+                uri,
+                location,
+                "instance.type",
+                ImmutableList.copyOf(slots),
+                resources));
+        return new MockRemoteAgent(instanceId, agentStatuses);
+    }
+
+    private static SlotStatus createSlot(Assignment assignment, Map<String, Integer> resources)
+    {
+        UUID id = UUID.randomUUID();
+        URI uri = URI.create("fake://slot/" + id);
+        return createSlotStatus(id, uri, uri, "instance", "/location", SlotLifecycleState.STOPPED, assignment, "/" + id, resources);
+    }
+
+    private static Installation createInstallation(Map<String, Integer> resources)
+    {
+        return new Installation("apple", APPLE, URI.create("fake://apple.tar.gz"), URI.create("fake://apple.config"), resources);
+    }
+}
@@ -0,0 +1,413 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import io.airlift.airship.shared.AgentLifecycleState;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.airship.shared.UpgradeVersions;
+import io.airlift.http.server.HttpServerConfig;
+import io.airlift.http.server.HttpServerInfo;
+import io.airlift.json.JsonCodec;
+import io.airlift.node.NodeInfo;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.airship.coordinator.TestingMavenRepository.MOCK_REPO;
+import static io.airlift.airship.shared.AgentLifecycleState.ONLINE;
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+public class TestRolloutManager
+{
+    private static final JsonCodec<Rollout> CODEC = JsonCodec.jsonCodec(Rollout.class);
+    private static final UpgradeVersions UPGRADE_VERSIONS = new UpgradeVersions("2.0", null);
+    private static final Assignment UPGRADED_APPLE_ASSIGNMENT = UPGRADE_VERSIONS.upgradeAssignment(MOCK_REPO, APPLE_ASSIGNMENT);
+
+    private final Predicate<SlotStatus> appleFilter = new Predicate<SlotStatus>()
+    {
+        @Override
+        public boolean apply(SlotStatus slotStatus)
+        {
+            return APPLE_ASSIGNMENT.equals(slotStatus.getAssignment());
+        }
+    };
+
+    private final Map<String, AgentStatus> agentStatuses = new ConcurrentHashMap<>();
+    private final Set<UUID> crashingSlots = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+    private final Set<UUID> stoppingSlots = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+    private volatile Runnable onSlotStart;
+
+    private Coordinator coordinator;
+    private File rolloutDir;
+    private RolloutManager rolloutManager;
+    private String agentId;
+    private List<UUID> appleSlotIds;
+    private UUID bananaSlotId;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        NodeInfo nodeInfo = new NodeInfo("testing");
+
+        agentStatuses.clear();
+        crashingSlots.clear();
+        stoppingSlots.clear();
+        onSlotStart = null;
+
+        MockProvisioner provisioner = new MockProvisioner();
+        coordinator = new Coordinator(nodeInfo,
+                new HttpServerInfo(new HttpServerConfig(), nodeInfo),
+                new CoordinatorConfig().setStatusExpiration(new Duration(1, TimeUnit.DAYS)),
+                provisioner.getCoordinatorFactory(),
+                new TestingAgentFactory(),
+                MOCK_REPO,
+                provisioner,
+                new InMemoryStateManager(),
+                new MockServiceInventory(),
+                new ResourcePlacementScheduler(new CoordinatorConfig()));
+
+        ImmutableList.Builder<SlotStatus> slots = ImmutableList.builder();
+        ImmutableList.Builder<UUID> appleSlotIds = ImmutableList.builder();
+        for (int i = 0; i < 4; i++) {
+            SlotStatus slot = createSlot(APPLE_ASSIGNMENT);
+            slots.add(slot);
+            appleSlotIds.add(slot.getId());
+        }
+        this.appleSlotIds = appleSlotIds.build();
+        SlotStatus bananaSlot = createSlot(BANANA_ASSIGNMENT);
+        slots.add(bananaSlot);
+        bananaSlotId = bananaSlot.getId();
+
+        agentId = UUID.randomUUID().toString();
+        AgentStatus agentStatus = new AgentStatus(agentId,
+                ONLINE,
+                "instance-id",
+                URI.create("fake://agent/"),
+                URI.create("fake://agent/"),
+                "/unknown/location",
+                "instance.type",
+                slots.build(),
+                ImmutableMap.<String, Integer>of());
+        agentStatuses.put(agentStatus.getInstanceId(), agentStatus);
+        provisioner.addAgents(agentStatus);
+        coordinator.updateAllAgents();
+
+        rolloutDir = Files.createTempDir();
+        rolloutManager = createRolloutManager(new Duration(1, TimeUnit.DAYS));
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        rolloutManager.stop();
+        coordinator.stop();
+        deleteRecursively(rolloutDir);
+    }
+
+    @Test
+    public void testRolloutInWaves()
+    {
+        Rollout rollout = rolloutManager.createRollout(appleFilter, new RolloutRequest("2.0", null, 2, null, null), null);
+        assertNotNull(rollout);
+        assertEquals(rollout.getAssignment(), UPGRADED_APPLE_ASSIGNMENT);
+        assertEquals(rollout.getWaveCount(), 2);
+
+        // first wave is started, but not considered healthy until the agents are polled
+        rolloutManager.processRollouts();
+        rollout = rolloutManager.getRollout(rollout.getId());
+        assertEquals(rollout.getState(), RolloutState.RUNNING);
+        assertEquals(rollout.getCompletedSlots(), 0);
+        assertNotNull(rollout.getWaveStartTime());
+
+        coordinator.updateAllAgents();
+        rolloutManager.processRollouts();
+        rollout = rolloutManager.getRollout(rollout.getId());
+        assertEquals(rollout.getState(), RolloutState.RUNNING);
+        assertEquals(rollout.getCompletedSlots(), 2);
+
+        List<UUID> firstWave = rollout.getSlotIds().subList(0, 2);
+        List<UUID> secondWave = rollout.getSlotIds().subList(2, 4);
+        assertSlots(firstWave, RUNNING, UPGRADED_APPLE_ASSIGNMENT);
+        assertSlots(secondWave, STOPPED, APPLE_ASSIGNMENT);
+
+        // second wave
+        processWave();
+        rollout = rolloutManager.getRollout(rollout.getId());
+        assertEquals(rollout.getState(), RolloutState.COMPLETED);
+        assertEquals(rollout.getCompletedSlots(), 4);
+        assertSlots(appleSlotIds, RUNNING, UPGRADED_APPLE_ASSIGNMENT);
+        assertSlots(ImmutableList.of(bananaSlotId), STOPPED, BANANA_ASSIGNMENT);
+    }
+
+    @Test
+    public void testWavePercentage()
+    {
+        Rollout rollout = rolloutManager.createRollout(appleFilter, new RolloutRequest("2.0", null, null, 25, 1), null);
+        assertEquals(rollout.getWaveSize(), 1);
+        assertEquals(rollout.getWaveCount(), 4);
+        assertEquals(rollout.getWaveConcurrency(), 1);
+    }
+
+    @Test
+    public void testPauseResumeAbort()
+    {
+        Rollout rollout = rolloutManager.createRollout(appleFilter, new RolloutRequest("2.0", null, 1, null, null), null);
+        UUID rolloutId = rollout.getId();
+
+        assertEquals(rolloutManager.setState(rolloutId, RolloutState.PAUSED).getState(), RolloutState.PAUSED);
+        rolloutManager.processRollouts();
+        assertEquals(rolloutManager.getRollout(rolloutId).getCompletedSlots(), 0);
+        assertSlots(appleSlotIds, STOPPED, APPLE_ASSIGNMENT);
+
+        assertEquals(rolloutManager.setState(rolloutId, RolloutState.RUNNING).getState(), RolloutState.RUNNING);
+        processWave();
+        assertEquals(rolloutManager.getRollout(rolloutId).getCompletedSlots(), 1);
+
+        assertEquals(rolloutManager.setState(rolloutId, RolloutState.ABORTED).getState(), RolloutState.ABORTED);
+        rolloutManager.processRollouts();
+        assertEquals(rolloutManager.getRollout(rolloutId).getCompletedSlots(), 1);
+
+        try {
+            rolloutManager.setState(rolloutId, RolloutState.RUNNING);
+            fail("expected IllegalStateException");
+        }
+        catch (IllegalStateException expected) {
+        }
+
+        assertNull(rolloutManager.setState(UUID.randomUUID(), RolloutState.PAUSED));
+    }
+
+    @Test
+    public void testOverlappingRollout()
+    {
+        rolloutManager.createRollout(appleFilter, new RolloutRequest("2.0", null, 1, null, null), null);
+        try {
+            rolloutManager.createRollout(appleFilter, new RolloutRequest("2.0", null, 1, null, null), null);
+            fail("expected IllegalStateException");
+        }
+        catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testProgressSurvivesRestart()
+    {
+        Rollout rollout = rolloutManager.createRollout(appleFilter, new RolloutRequest("2.0", null, 2, null, null), null);
+        processWave();
+        rolloutManager.stop();
+
+        rolloutManager = createRolloutManager(new Duration(1, TimeUnit.DAYS));
+        Rollout restored = rolloutManager.getRollout(rollout.getId());
+        assertNotNull(restored);
+        assertEquals(restored.getState(), RolloutState.RUNNING);
+        assertEquals(restored.getCompletedSlots(), 2);
+        assertEquals(restored.getSlotIds(), rollout.getSlotIds());
+        assertEquals(restored.getAssignment(), UPGRADED_APPLE_ASSIGNMENT);
+
+        processWave();
+        assertEquals(rolloutManager.getRollout(rollout.getId()).getState(), RolloutState.COMPLETED);
+        assertSlots(appleSlotIds, RUNNING, UPGRADED_APPLE_ASSIGNMENT);
+    }
+
+    @Test
+    public void testHealthGate()
+            throws Exception
+    {
+        rolloutManager.stop();
+        rolloutManager = createRolloutManager(new Duration(0, TimeUnit.MILLISECONDS));
+
+        // the slots crash as soon as they are started
+        crashingSlots.addAll(appleSlotIds);
+
+        Rollout rollout = rolloutManager.createRollout(appleFilter, new RolloutRequest("2.0", null, 2, null, null), null);
+        rolloutManager.processRollouts();
+        Thread.sleep(10);
+        coordinator.updateAllAgents();
+        rolloutManager.processRollouts();
+
+        rollout = rolloutManager.getRollout(rollout.getId());
+        assertEquals(rollout.getState(), RolloutState.FAILED);
+        assertEquals(rollout.getCompletedSlots(), 0);
+        assertNotNull(rollout.getStatusMessage());
+
+        // second wave was not touched
+        assertSlots(rollout.getSlotIds().subList(2, 4), STOPPED, APPLE_ASSIGNMENT);
+
+        // once the slots stay up the rollout can be resumed
+        crashingSlots.clear();
+        rolloutManager.setState(rollout.getId(), RolloutState.RUNNING);
+        processWave();
+        assertEquals(rolloutManager.getRollout(rollout.getId()).getCompletedSlots(), 2);
+    }
+
+    @Test
+    public void testSlotStoppedAfterStart()
+            throws Exception
+    {
+        rolloutManager.stop();
+        rolloutManager = createRolloutManager(new Duration(0, TimeUnit.MILLISECONDS));
+
+        // the slots answer the start request as running, but stop right after
+        stoppingSlots.addAll(appleSlotIds);
+
+        Rollout rollout = rolloutManager.createRollout(appleFilter, new RolloutRequest("2.0", null, 2, null, null), null);
+        rolloutManager.processRollouts();
+        assertEquals(rolloutManager.getRollout(rollout.getId()).getState(), RolloutState.RUNNING);
+
+        Thread.sleep(10);
+        coordinator.updateAllAgents();
+        rolloutManager.processRollouts();
+
+        rollout = rolloutManager.getRollout(rollout.getId());
+        assertEquals(rollout.getState(), RolloutState.FAILED);
+        assertEquals(rollout.getCompletedSlots(), 0);
+        assertSlots(rollout.getSlotIds().subList(0, 2), STOPPED, UPGRADED_APPLE_ASSIGNMENT);
+        assertSlots(rollout.getSlotIds().subList(2, 4), STOPPED, APPLE_ASSIGNMENT);
+    }
+
+    @Test
+    public void testMinHealthyTime()
+    {
+        rolloutManager.stop();
+        rolloutManager = createRolloutManager(new Duration(1, TimeUnit.DAYS), new Duration(1, TimeUnit.DAYS));
+
+        // the wave is running, but has not been running for long enough
+        Rollout rollout = rolloutManager.createRollout(appleFilter, new RolloutRequest("2.0", null, 2, null, null), null);
+        processWave();
+
+        rollout = rolloutManager.getRollout(rollout.getId());
+        assertEquals(rollout.getState(), RolloutState.RUNNING);
+        assertEquals(rollout.getCompletedSlots(), 0);
+        assertSlots(rollout.getSlotIds().subList(0, 2), RUNNING, UPGRADED_APPLE_ASSIGNMENT);
+    }
+
+    @Test
+    public void testPauseBetweenBatches()
+    {
+        // one wave of four slots, upgraded one slot at a time
+        final Rollout rollout = rolloutManager.createRollout(appleFilter, new RolloutRequest("2.0", null, 4, null, 1), null);
+        onSlotStart = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                onSlotStart = null;
+                rolloutManager.setState(rollout.getId(), RolloutState.PAUSED);
+            }
+        };
+
+        rolloutManager.processRollouts();
+        Rollout paused = rolloutManager.getRollout(rollout.getId());
+        assertEquals(paused.getState(), RolloutState.PAUSED);
+        assertNull(paused.getWaveStartTime());
+        assertSlots(rollout.getSlotIds().subList(0, 1), RUNNING, UPGRADED_APPLE_ASSIGNMENT);
+        assertSlots(rollout.getSlotIds().subList(1, 4), STOPPED, APPLE_ASSIGNMENT);
+
+        // resuming applies the rest of the wave
+        rolloutManager.setState(rollout.getId(), RolloutState.RUNNING);
+        processWave();
+        assertEquals(rolloutManager.getRollout(rollout.getId()).getState(), RolloutState.COMPLETED);
+        assertSlots(appleSlotIds, RUNNING, UPGRADED_APPLE_ASSIGNMENT);
+    }
+
+    private RolloutManager createRolloutManager(Duration waveTimeout)
+    {
+        return createRolloutManager(waveTimeout, new Duration(0, TimeUnit.MILLISECONDS));
+    }
+
+    private RolloutManager createRolloutManager(Duration waveTimeout, Duration minHealthyTime)
+    {
+        return new RolloutManager(coordinator, CODEC, rolloutDir, new Duration(1, TimeUnit.DAYS), waveTimeout, minHealthyTime);
+    }
+
+    /**
+     * Applies the current wave, polls the agents and checks the health of the wave.
+     */
+    private void processWave()
+    {
+        rolloutManager.processRollouts();
+        coordinator.updateAllAgents();
+        rolloutManager.processRollouts();
+    }
+
+    private void assertSlots(List<UUID> slotIds, Object state, Assignment assignment)
+    {
+        AgentStatus agentStatus = coordinator.getAgentByAgentId(agentId);
+        for (UUID slotId : slotIds) {
+            SlotStatus slotStatus = agentStatus.getSlotStatus(slotId);
+            assertEquals(slotStatus.getState(), state);
+            assertEquals(slotStatus.getAssignment(), assignment);
+        }
+    }
+
+    private static SlotStatus createSlot(Assignment assignment)
+    {
+        UUID slotId = UUID.randomUUID();
+        URI self = URI.create("fake://agent/v1/agent/slot/" + slotId);
+        return createSlotStatus(slotId, self, self, "instance", "/location", STOPPED, assignment, "/" + slotId, ImmutableMap.<String, Integer>of());
+    }
+
+    private class TestingAgentFactory
+            implements RemoteAgentFactory
+    {
+        @Override
+        public RemoteAgent createRemoteAgent(Instance instance, AgentLifecycleState state)
+        {
+            return new MockRemoteAgent(instance.getInstanceId(), agentStatuses)
+            {
+                @Override
+                public List<? extends RemoteSlot> getSlots()
+                {
+                    List<RemoteSlot> slots = newArrayList();
+                    for (SlotStatus slotStatus : getAgentStatus().getSlotStatuses()) {
+                        slots.add(new MockRemoteSlot(slotStatus, this)
+                        {
+                            @Override
+                            public SlotStatus start()
+                            {
+                                Runnable callback = onSlotStart;
+                                if (callback != null) {
+                                    callback.run();
+                                }
+                                if (crashingSlots.contains(getId())) {
+                                    return status();
+                                }
+                                SlotStatus slotStatus = super.start();
+                                if (stoppingSlots.contains(getId())) {
+                                    setSlotStatus(slotStatus.changeState(STOPPED));
+                                }
+                                return slotStatus;
+                            }
+                        });
+                    }
+                    return slots;
+                }
+            };
+        }
+    }
+}
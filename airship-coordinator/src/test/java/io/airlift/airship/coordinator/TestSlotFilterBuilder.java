@@ -3,9 +3,13 @@ package io.airlift.airship.coordinator;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import io.airlift.airship.coordinator.SlotFilterBuilder.SlotUuidPredicate;
+import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.ExpectedSlotStatus;
 import io.airlift.airship.shared.MockUriInfo;
+import io.airlift.airship.shared.SlotLifecycleState;
 import io.airlift.airship.shared.SlotStatus;
 import io.airlift.airship.coordinator.SlotFilterBuilder.BinarySpecPredicate;
 import io.airlift.airship.coordinator.SlotFilterBuilder.ConfigSpecPredicate;
@@ -23,6 +27,7 @@ import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
 import static io.airlift.airship.shared.SlotLifecycleState.UNKNOWN;
 import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
 import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
@@ -202,4 +207,66 @@ public class TestSlotFilterBuilder
         assertFalse(new ConfigSpecPredicate("@prod:apple:x:1.0").apply(status));
         assertFalse(buildFilter("config", "@prod:apple:x:1.0").apply(status));
     }
+
+    @Test
+    public void testIndexedFilterMatchesFullScan()
+    {
+        Assignment banana = new Assignment("food.fruit:banana:2.0", "@prod:banana:2.0");
+        List<SlotStatus> slots = ImmutableList.of(
+                createSlot("12345678-0000-0000-0000-000000000001", "apple-1.example.com", "machine-1", RUNNING, APPLE_ASSIGNMENT),
+                createSlot("12345678-0000-0000-0000-000000000002", "apple-2.example.com", "machine-2", UNKNOWN, APPLE_ASSIGNMENT),
+                createSlot("abcdef00-0000-0000-0000-000000000003", "banana-1.example.com", "machine-1", RUNNING, banana),
+                createSlot("abcdef00-0000-0000-0000-000000000004", "banana-2.example.com", "machine-3", UNKNOWN, banana));
+        ClusterSnapshot snapshot = new ClusterSnapshot(0, ImmutableList.<AgentStatus>of(), ImmutableList.<ExpectedSlotStatus>of(), slots);
+
+        for (String query : ImmutableList.of(
+                "uuid=abcdef00-0000-0000-0000-000000000003",
+                "uuid=abcdef00-0000-0000-0000-000000000004&uuid=12345678-0000-0000-0000-000000000001",
+                "state=running",
+                "state=unknown&state=running",
+                "host=apple-*",
+                "host=BANANA-1.example.com",
+                "machine=machine-1",
+                "binary=apple",
+                "binary=*:banana:*",
+                "config=@prod:banana:*",
+                "state=running&binary=banana",
+                "state=unknown&host=apple-*&machine=machine-2",
+                "binary=cherry")) {
+            Predicate<SlotStatus> filter = SlotFilterBuilder.build(MockUriInfo.from("fake://localhost?" + query), true, snapshot);
+            assertTrue(filter instanceof IndexedSlotPredicate, query);
+            assertEquals(snapshot.getSlots(filter), ImmutableList.copyOf(Iterables.filter(slots, filter)), query);
+        }
+    }
+
+    @Test
+    public void testShortIdExpansionUsesSnapshot()
+    {
+        ClusterSnapshot snapshot = new ClusterSnapshot(0, ImmutableList.<AgentStatus>of(), ImmutableList.<ExpectedSlotStatus>of(), ImmutableList.of(
+                createSlot("12345678-0000-0000-0000-000000000001", "apple-1.example.com", "machine-1", RUNNING, APPLE_ASSIGNMENT),
+                createSlot("12345678-0000-0000-0000-000000000002", "apple-2.example.com", "machine-2", RUNNING, APPLE_ASSIGNMENT),
+                createSlot("abcdef00-0000-0000-0000-000000000003", "banana-1.example.com", "machine-3", RUNNING, APPLE_ASSIGNMENT)));
+
+        List<SlotStatus> slots = snapshot.getSlots(SlotFilterBuilder.build(MockUriInfo.from("fake://localhost?uuid=ABC"), true, snapshot));
+        assertEquals(slots.size(), 1);
+        assertEquals(slots.get(0).getId(), UUID.fromString("abcdef00-0000-0000-0000-000000000003"));
+
+        assertTrue(snapshot.getSlots(SlotFilterBuilder.build(MockUriInfo.from("fake://localhost?uuid=fff"), true, snapshot)).isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testAmbiguousShortIdWithSnapshot()
+    {
+        ClusterSnapshot snapshot = new ClusterSnapshot(0, ImmutableList.<AgentStatus>of(), ImmutableList.<ExpectedSlotStatus>of(), ImmutableList.of(
+                createSlot("12345678-0000-0000-0000-000000000001", "apple-1.example.com", "machine-1", RUNNING, APPLE_ASSIGNMENT),
+                createSlot("12345678-0000-0000-0000-000000000002", "apple-2.example.com", "machine-2", RUNNING, APPLE_ASSIGNMENT)));
+
+        SlotFilterBuilder.build(MockUriInfo.from("fake://localhost?uuid=1234"), true, snapshot);
+    }
+
+    private static SlotStatus createSlot(String id, String host, String instanceId, SlotLifecycleState state, Assignment assignment)
+    {
+        URI uri = URI.create("fake://" + host + "/" + id);
+        return createSlotStatus(UUID.fromString(id), uri, uri, instanceId, "/location", state, assignment, "/" + id, ImmutableMap.<String, Integer>of());
+    }
 }
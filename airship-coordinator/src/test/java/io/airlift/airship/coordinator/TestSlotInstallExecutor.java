@@ -0,0 +1,215 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.airship.coordinator.SlotInstallExecutor.InstallResult;
+import io.airlift.airship.shared.AgentLifecycleState;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.Installation;
+import io.airlift.airship.shared.SlotStatus;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestSlotInstallExecutor
+{
+    private static final Installation INSTALLATION = new Installation("apple",
+            APPLE_ASSIGNMENT,
+            URI.create("fake://repository/apple.tar.gz"),
+            URI.create("fake://repository/apple.config"),
+            ImmutableMap.<String, Integer>of());
+
+    private final Map<String, AgentStatus> agentStatuses = new ConcurrentHashMap<>();
+    private SlotInstallExecutor executor;
+
+    @AfterMethod
+    public void tearDown()
+    {
+        agentStatuses.clear();
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+
+    @Test
+    public void testInstallsRunInParallel()
+    {
+        executor = new SlotInstallExecutor(4);
+
+        // every install waits for all the others, so this only completes if all four run at once
+        final CyclicBarrier barrier = new CyclicBarrier(4);
+        ImmutableList.Builder<RemoteAgent> agents = ImmutableList.builder();
+        for (int i = 0; i < 4; i++) {
+            addAgent("agent-" + i, AgentLifecycleState.ONLINE);
+            agents.add(new MockRemoteAgent("agent-" + i, agentStatuses)
+            {
+                @Override
+                public SlotStatus install(Installation installation)
+                {
+                    try {
+                        barrier.await(10, TimeUnit.SECONDS);
+                    }
+                    catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    return super.install(installation);
+                }
+            });
+        }
+
+        List<SlotStatus> slots = executor.install(agents.build(), Collections.nCopies(4, INSTALLATION)).getSlots();
+        assertEquals(slots.size(), 4);
+        for (int i = 0; i < slots.size(); i++) {
+            assertEquals(slots.get(i).getState(), STOPPED);
+            assertTrue(slots.get(i).getSelf().toString().startsWith("fake://agent-" + i + "/"));
+        }
+        assertEquals(executor.getTotalInstalls(), 4);
+        assertEquals(executor.getInstallsInFlight(), 0);
+    }
+
+    @Test
+    public void testFailedInstallIsRetriedOnSpareAgent()
+    {
+        executor = new SlotInstallExecutor(2);
+
+        List<RemoteAgent> agents = ImmutableList.of(
+                addAgent("offline", AgentLifecycleState.OFFLINE),
+                addAgent("online", AgentLifecycleState.ONLINE),
+                addAgent("spare", AgentLifecycleState.ONLINE));
+
+        InstallResult result = executor.install(agents, ImmutableList.of(INSTALLATION, INSTALLATION));
+        assertEquals(result.getFailures(), ImmutableMap.of());
+        List<SlotStatus> slots = result.getSlots();
+        assertEquals(slots.size(), 2);
+        assertEquals(slots.get(0).getState(), STOPPED);
+        assertTrue(slots.get(0).getSelf().toString().startsWith("fake://spare/"));
+        assertEquals(slots.get(1).getState(), STOPPED);
+        assertTrue(slots.get(1).getSelf().toString().startsWith("fake://online/"));
+
+        assertEquals(executor.getTotalInstalls(), 3);
+        assertEquals(executor.getFailedInstalls(), 1);
+        assertEquals(executor.getRetriedInstalls(), 1);
+    }
+
+    @Test
+    public void testFailureIsReportedWhenNoSpareAgentIsLeft()
+    {
+        executor = new SlotInstallExecutor(2);
+
+        List<RemoteAgent> agents = ImmutableList.of(
+                addAgent("online", AgentLifecycleState.ONLINE),
+                addAgent("offline", AgentLifecycleState.OFFLINE));
+
+        InstallResult result = executor.install(agents, ImmutableList.of(INSTALLATION, INSTALLATION));
+        assertEquals(result.getSlots().size(), 1);
+        assertEquals(result.getSlots().get(0).getState(), STOPPED);
+        assertEquals(result.getFailures(), ImmutableMap.of("offline", "agent is offline"));
+
+        assertEquals(executor.getFailedInstalls(), 1);
+        assertEquals(executor.getRetriedInstalls(), 0);
+    }
+
+    @Test
+    public void testFailureThatMayHaveCreatedSlotIsNotRetried()
+    {
+        executor = new SlotInstallExecutor(2);
+
+        // a read timeout does not tell whether the agent created the slot, so a retry could install it twice
+        addAgent("timeout", AgentLifecycleState.ONLINE);
+        List<RemoteAgent> agents = ImmutableList.of(
+                new MockRemoteAgent("timeout", agentStatuses)
+                {
+                    @Override
+                    public SlotStatus install(Installation installation)
+                    {
+                        throw new RuntimeException("Read timed out");
+                    }
+                },
+                addAgent("spare", AgentLifecycleState.ONLINE));
+
+        InstallResult result = executor.install(agents, ImmutableList.of(INSTALLATION));
+        assertEquals(result.getSlots(), ImmutableList.of());
+        assertEquals(result.getFailures(), ImmutableMap.of("timeout", "Read timed out"));
+
+        assertEquals(executor.getTotalInstalls(), 1);
+        assertEquals(executor.getFailedInstalls(), 1);
+        assertEquals(executor.getRetriedInstalls(), 0);
+    }
+
+    @Test
+    public void testTreeLevelsInstallInOrder()
+    {
+        executor = new SlotInstallExecutor(8);
+
+        // an agent serves the binary to its children only once it has installed it
+        final Set<URI> cached = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
+        final AtomicInteger repositoryDownloads = new AtomicInteger();
+        final AtomicInteger peerDownloads = new AtomicInteger();
+        ImmutableList.Builder<RemoteAgent> agents = ImmutableList.builder();
+        List<URI> agentUris = newArrayList();
+        for (int i = 0; i < 7; i++) {
+            addAgent("agent-" + i, AgentLifecycleState.ONLINE);
+            final URI agentUri = URI.create("fake://agent-" + i + "/");
+            agentUris.add(agentUri);
+            agents.add(new MockRemoteAgent("agent-" + i, agentStatuses)
+            {
+                @Override
+                public SlotStatus install(Installation installation)
+                {
+                    boolean fromPeer = false;
+                    for (URI peer : installation.getBinaryPeers()) {
+                        fromPeer |= cached.contains(peer);
+                    }
+                    if (fromPeer) {
+                        peerDownloads.incrementAndGet();
+                    }
+                    else {
+                        repositoryDownloads.incrementAndGet();
+                    }
+                    cached.add(agentUri);
+                    return super.install(installation);
+                }
+            });
+        }
+
+        List<Installation> installations = newArrayList();
+        for (int i = 0; i < agentUris.size(); i++) {
+            installations.add(INSTALLATION.withBinaryPeers(DistributionTree.getPeers(agentUris, i, 2)));
+        }
+
+        InstallResult result = executor.install(agents.build(), installations);
+        assertEquals(result.getSlots().size(), 7);
+        assertEquals(repositoryDownloads.get(), 2);
+        assertEquals(peerDownloads.get(), 5);
+    }
+
+    private RemoteAgent addAgent(String instanceId, AgentLifecycleState state)
+    {
+        URI uri = URI.create("fake://" + instanceId + "/");
+        agentStatuses.put(instanceId, new AgentStatus(instanceId,
+                state,
+                instanceId,
+                uri,
+                uri,
+                "/location/" + instanceId,
+                "instance.type",
+                ImmutableList.<SlotStatus>of(),
+                ImmutableMap.<String, Integer>of()));
+        return new MockRemoteAgent(instanceId, agentStatuses);
+    }
+}
@@ -0,0 +1,151 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static io.airlift.airship.shared.SlotLifecycleState.UNKNOWN;
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestSlotOperationExecutor
+{
+    private final MockRemoteAgent agent = new MockRemoteAgent("instance", new ConcurrentHashMap<String, AgentStatus>());
+    private SlotOperationExecutor executor;
+
+    @AfterMethod
+    public void tearDown()
+    {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+
+    @Test
+    public void testOperationsRunInParallel()
+    {
+        executor = new SlotOperationExecutor(8, new Duration(1, TimeUnit.MINUTES));
+
+        List<RemoteSlot> slots = createSlots(8, APPLE_ASSIGNMENT);
+
+        // every operation waits for all the others, so this only completes if all eight run at once
+        final CyclicBarrier barrier = new CyclicBarrier(slots.size());
+        List<SlotStatus> results = executor.execute(slots, new Function<RemoteSlot, SlotStatus>()
+        {
+            @Override
+            public SlotStatus apply(RemoteSlot slot)
+            {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                return slot.start();
+            }
+        });
+
+        assertEquals(results.size(), slots.size());
+        for (int i = 0; i < slots.size(); i++) {
+            assertEquals(results.get(i).getId(), slots.get(i).getId());
+            assertEquals(results.get(i).getState(), RUNNING);
+        }
+    }
+
+    @Test
+    public void testFailuresAreCollected()
+    {
+        executor = new SlotOperationExecutor(2, new Duration(1, TimeUnit.MINUTES));
+
+        // an unassigned slot can not be started
+        List<RemoteSlot> slots = ImmutableList.<RemoteSlot>builder()
+                .addAll(createSlots(2, APPLE_ASSIGNMENT))
+                .addAll(createSlots(1, null))
+                .addAll(createSlots(2, APPLE_ASSIGNMENT))
+                .build();
+
+        List<SlotStatus> results = executor.execute(slots, new Function<RemoteSlot, SlotStatus>()
+        {
+            @Override
+            public SlotStatus apply(RemoteSlot slot)
+            {
+                return slot.start();
+            }
+        });
+
+        assertEquals(results.size(), 5);
+        for (int i = 0; i < slots.size(); i++) {
+            assertEquals(results.get(i).getId(), slots.get(i).getId());
+            assertEquals(results.get(i).getState(), i == 2 ? UNKNOWN : RUNNING);
+        }
+        assertNotNull(results.get(2).getStatusMessage());
+        assertEquals(executor.getFailedOperations(), 1);
+        assertEquals(executor.getTotalOperations(), 5);
+    }
+
+    @Test
+    public void testTimeout()
+    {
+        executor = new SlotOperationExecutor(2, new Duration(100, TimeUnit.MILLISECONDS));
+
+        final RemoteSlot slowSlot = createSlots(1, APPLE_ASSIGNMENT).get(0);
+        List<RemoteSlot> slots = ImmutableList.<RemoteSlot>builder()
+                .add(slowSlot)
+                .addAll(createSlots(3, APPLE_ASSIGNMENT))
+                .build();
+
+        List<SlotStatus> results = executor.execute(slots, new Function<RemoteSlot, SlotStatus>()
+        {
+            @Override
+            public SlotStatus apply(RemoteSlot slot)
+            {
+                if (slot == slowSlot) {
+                    try {
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return slot.start();
+            }
+        });
+
+        assertEquals(results.get(0).getState(), UNKNOWN);
+        assertTrue(results.get(0).getStatusMessage().contains("timed out"));
+        for (SlotStatus result : results.subList(1, results.size())) {
+            assertEquals(result.getState(), RUNNING);
+        }
+        assertEquals(executor.getTimedOutOperations(), 1);
+    }
+
+    private List<RemoteSlot> createSlots(int count, Assignment assignment)
+    {
+        ImmutableList.Builder<RemoteSlot> slots = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            UUID slotId = UUID.randomUUID();
+            URI self = URI.create("fake://agent/slot/" + slotId);
+            SlotStatus slotStatus = createSlotStatus(slotId, self, self, "instance", "/location", STOPPED, assignment, "/" + slotId, ImmutableMap.<String, Integer>of());
+            slots.add(new MockRemoteSlot(slotStatus, agent));
+        }
+        return slots.build();
+    }
+}
@@ -0,0 +1,91 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.airship.shared.Strings.shortestUniquePrefix;
+import static org.testng.Assert.assertEquals;
+
+public class TestUniquePrefixIndex
+{
+    @Test
+    public void testAddAndRemove()
+    {
+        UniquePrefixIndex index = new UniquePrefixIndex(1);
+        assertEquals(index.getShortestUniquePrefix(), 1);
+
+        index.add("abc");
+        assertEquals(index.getShortestUniquePrefix(), 1);
+
+        index.add("abd");
+        assertEquals(index.getShortestUniquePrefix(), 3);
+
+        index.add("b");
+        assertEquals(index.getShortestUniquePrefix(), 3);
+
+        index.add("ab");
+        assertEquals(index.getShortestUniquePrefix(), 3);
+
+        index.remove("abd");
+        assertEquals(index.getShortestUniquePrefix(), 3);
+
+        index.remove("abc");
+        assertEquals(index.getShortestUniquePrefix(), 1);
+
+        index.remove("ab");
+        assertEquals(index.getShortestUniquePrefix(), 1);
+    }
+
+    @Test
+    public void testMinSize()
+    {
+        UniquePrefixIndex index = new UniquePrefixIndex(4);
+        index.add("a");
+        index.add("b");
+        assertEquals(index.getShortestUniquePrefix(), 4);
+    }
+
+    @Test
+    public void testDuplicates()
+    {
+        UniquePrefixIndex index = new UniquePrefixIndex(1);
+        index.add("a");
+        index.add("a");
+        assertEquals(index.getShortestUniquePrefix(), Integer.MAX_VALUE);
+
+        index.add("b");
+        index.remove("a");
+        assertEquals(index.getShortestUniquePrefix(), 1);
+    }
+
+    @Test
+    public void testMatchesFullComputation()
+    {
+        Random random = new Random(42);
+        UniquePrefixIndex index = new UniquePrefixIndex(4);
+        List<String> ids = newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            if (ids.isEmpty() || random.nextInt(3) != 0) {
+                // ids from a small alphabet so neighbours share long prefixes
+                StringBuilder builder = new StringBuilder();
+                for (int position = 0; position < 8; position++) {
+                    builder.append("ab".charAt(random.nextInt(2)));
+                }
+                String id = builder.toString();
+                if (ids.contains(id)) {
+                    continue;
+                }
+                ids.add(id);
+                index.add(id);
+            }
+            else {
+                index.remove(ids.remove(random.nextInt(ids.size())));
+            }
+            assertEquals(index.getShortestUniquePrefix(), shortestUniquePrefix(ImmutableList.copyOf(ids), 4));
+        }
+    }
+}
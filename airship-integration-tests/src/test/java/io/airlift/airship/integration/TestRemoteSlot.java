@@ -47,6 +47,7 @@ import io.airlift.jaxrs.JaxrsModule;
 import io.airlift.json.JsonCodec;
 import io.airlift.json.JsonModule;
 import io.airlift.node.testing.TestingNodeModule;
+import io.airlift.units.Duration;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
@@ -56,6 +57,7 @@ import java.io.File;
 import java.net.URI;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
 import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
@@ -130,7 +132,8 @@ public class TestRemoteSlot
                 JsonCodec.jsonCodec(InstallationRepresentation.class),
                 JsonCodec.jsonCodec(AgentStatusRepresentation.class),
                 JsonCodec.jsonCodec(SlotStatusRepresentation.class),
-                JsonCodec.jsonCodec(ServiceDescriptorsRepresentation.class));
+                JsonCodec.jsonCodec(ServiceDescriptorsRepresentation.class),
+                new Duration(0, TimeUnit.SECONDS));
     }
 
     @BeforeMethod
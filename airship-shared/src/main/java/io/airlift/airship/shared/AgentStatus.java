@@ -113,6 +113,9 @@ public class AgentStatus
 
     public AgentStatus changeInternalUri(URI internalUri)
     {
+        if (Objects.equal(this.internalUri, internalUri)) {
+            return this;
+        }
         return new AgentStatus(agentId, state, instanceId, internalUri, externalUri, location, instanceType, slots.values(), resources);
     }
 
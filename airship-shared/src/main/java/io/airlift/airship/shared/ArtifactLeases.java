@@ -0,0 +1,112 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+
+import javax.annotation.concurrent.GuardedBy;
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the cached artifacts that are in use, so eviction never deletes an
+ * artifact while it is being installed or sent, and provides the striped
+ * locks that make concurrent requests for an artifact wait for a single
+ * download.
+ * <p/>
+ * Callers that add an artifact to the cache synchronize on this object while
+ * they move it into place and acquire it, so eviction cannot delete it first.
+ */
+public class ArtifactLeases
+{
+    private static final int LOCK_STRIPES = 64;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    // artifact name -> number of users
+    @GuardedBy("this")
+    private final Map<String, Integer> leases = new HashMap<>();
+
+    public ArtifactLeases()
+    {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the lock that serializes downloads of the artifact with the
+     * specified key.
+     */
+    public Object getLock(Object key)
+    {
+        Preconditions.checkNotNull(key, "key is null");
+        return locks[(key.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    public synchronized void acquire(String name)
+    {
+        Integer count = leases.get(name);
+        leases.put(name, count == null ? 1 : count + 1);
+    }
+
+    public synchronized void release(String name)
+    {
+        Integer count = leases.get(name);
+        if (count == null || count <= 1) {
+            leases.remove(name);
+        }
+        else {
+            leases.put(name, count - 1);
+        }
+    }
+
+    public synchronized boolean isLeased(String name)
+    {
+        return leases.containsKey(name);
+    }
+
+    /**
+     * Deletes the least recently used of the specified files that are not
+     * leased until their total size is at most the specified size, and
+     * returns the deleted files.
+     */
+    public synchronized List<File> evict(List<File> files, long maxSizeInBytes)
+    {
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= maxSizeInBytes) {
+            return ImmutableList.of();
+        }
+
+        List<File> leastRecentlyUsed = Ordering.natural().onResultOf(new Function<File, Long>()
+        {
+            @Override
+            public Long apply(File file)
+            {
+                return file.lastModified();
+            }
+        }).sortedCopy(files);
+
+        ImmutableList.Builder<File> evicted = ImmutableList.builder();
+        for (File file : leastRecentlyUsed) {
+            if (size <= maxSizeInBytes) {
+                break;
+            }
+            if (leases.containsKey(file.getName())) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+                evicted.add(file);
+            }
+        }
+        return evicted.build();
+    }
+}
@@ -0,0 +1,86 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers shared by the artifact caches of the agent and the coordinator.
+ */
+public final class ArtifactUtils
+{
+    public static final Pattern SHA1_PATTERN = Pattern.compile("[0-9a-f]{40}");
+    public static final Pattern MD5_PATTERN = Pattern.compile("[0-9a-f]{32}");
+    public static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(10);
+    public static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(1);
+
+    private ArtifactUtils()
+    {
+    }
+
+    /**
+     * Opens a connection to the artifact with the connect and read timeouts
+     * used for all artifact downloads.
+     */
+    public static URLConnection openConnection(URI uri)
+            throws IOException
+    {
+        URLConnection connection = uri.toURL().openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    /**
+     * Reads the SHA-1 checksum Maven repositories publish next to each
+     * artifact.  Returns null if the repository does not publish one.
+     */
+    public static String getPublishedChecksum(URI uri)
+    {
+        return getPublishedChecksum(uri, ".sha1", SHA1_PATTERN);
+    }
+
+    public static String getPublishedChecksum(URI uri, String suffix, Pattern pattern)
+    {
+        URLConnection connection = null;
+        try {
+            connection = openConnection(URI.create(uri.toString() + suffix));
+            try (InputStream in = connection.getInputStream()) {
+                return toChecksum(new String(ByteStreams.toByteArray(in), Charsets.UTF_8), pattern);
+            }
+        }
+        catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+        finally {
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+    }
+
+    public static String toChecksum(String value, Pattern pattern)
+    {
+        // checksum files may contain the file name after the checksum
+        String checksum = value.trim().split("\\s+")[0].toLowerCase();
+        if (!pattern.matcher(checksum).matches()) {
+            return null;
+        }
+        return checksum;
+    }
+
+    /**
+     * Snapshot artifacts can change under the same URI.
+     */
+    public static boolean isSnapshot(URI uri)
+    {
+        return uri.toString().contains("SNAPSHOT");
+    }
+}
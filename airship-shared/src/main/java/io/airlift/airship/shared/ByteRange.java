@@ -0,0 +1,106 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The single byte range of an HTTP Range request, with inclusive bounds.
+ */
+public final class ByteRange
+{
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end)
+    {
+        Preconditions.checkArgument(start >= 0, "start is negative");
+        Preconditions.checkArgument(end >= start, "end is before start");
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Parses a Range header for an entity of the specified length.  Returns
+     * null if the header is absent, malformed or asks for several ranges, in
+     * which case the whole entity is sent.
+     *
+     * @throws IllegalArgumentException if the range starts after the end of the entity
+     */
+    public static ByteRange parse(String header, long length)
+    {
+        if (header == null || !header.trim().startsWith("bytes=")) {
+            return null;
+        }
+        String spec = header.trim().substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (spec.contains(",") || dash < 0) {
+            return null;
+        }
+
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        long start;
+        long end;
+        try {
+            if (first.isEmpty()) {
+                // suffix range: the last n bytes
+                long suffix = last.isEmpty() ? -1 : Long.parseLong(last);
+                if (suffix < 0) {
+                    return null;
+                }
+                if (suffix == 0) {
+                    throw new IllegalArgumentException("Range is not satisfiable: " + header);
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            }
+            else {
+                start = Long.parseLong(first);
+                end = length - 1;
+                if (!last.isEmpty()) {
+                    long lastByte = Long.parseLong(last);
+                    if (lastByte < start) {
+                        return null;
+                    }
+                    end = Math.min(lastByte, end);
+                }
+            }
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (start >= length) {
+            throw new IllegalArgumentException("Range is not satisfiable: " + header);
+        }
+        return new ByteRange(start, end);
+    }
+
+    public long getStart()
+    {
+        return start;
+    }
+
+    public long getEnd()
+    {
+        return end;
+    }
+
+    public long getLength()
+    {
+        return end - start + 1;
+    }
+
+    /**
+     * Returns the value of the Content-Range header for this range.
+     */
+    public String toContentRange(long length)
+    {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return start + "-" + end;
+    }
+}
@@ -7,8 +7,10 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.airlift.units.Duration;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -33,16 +35,15 @@ public class FileUtils
     }
 
     public static void extractTar(File tarFile, File targetDirectory, Duration timeLimit)
-            throws CommandFailedException
+            throws IOException
     {
         Preconditions.checkNotNull(tarFile, "tarFile is null");
         Preconditions.checkNotNull(targetDirectory, "targetDirectory is null");
         Preconditions.checkArgument(targetDirectory.isDirectory(), "targetDirectory is not a directory: " + targetDirectory.getAbsolutePath());
 
-        new Command("tar", "zxf", tarFile.getAbsolutePath())
-                .setDirectory(targetDirectory)
-                .setTimeLimit(timeLimit)
-                .execute(executor);
+        try (InputStream in = new FileInputStream(tarFile)) {
+            TarExtractor.extractTarGz(in, targetDirectory.toPath(), null, timeLimit);
+        }
     }
 
     public static void createSymbolicLink(File source, File target)
@@ -14,10 +14,12 @@
 package io.airlift.airship.shared;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import javax.annotation.concurrent.Immutable;
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 
 @Immutable
@@ -28,20 +30,37 @@ public class Installation
     private final URI binaryFile;
     private final URI configFile;
     private final Map<String, Integer> resources;
+    private final List<URI> binaryPeers;
 
     public Installation(String shortName, Assignment assignment, URI binaryFile, URI configFile, Map<String, Integer> resources)
+    {
+        this(shortName, assignment, binaryFile, configFile, resources, ImmutableList.<URI>of());
+    }
+
+    public Installation(String shortName, Assignment assignment, URI binaryFile, URI configFile, Map<String, Integer> resources, List<URI> binaryPeers)
     {
         Preconditions.checkNotNull(shortName, "shortName is null");
         Preconditions.checkNotNull(assignment, "assignment is null");
         Preconditions.checkNotNull(binaryFile, "binaryFile is null");
         Preconditions.checkNotNull(configFile, "configFile is null");
         Preconditions.checkNotNull(resources, "resources is null");
+        Preconditions.checkNotNull(binaryPeers, "binaryPeers is null");
 
         this.shortName = shortName;
         this.assignment = assignment;
         this.binaryFile = binaryFile;
         this.configFile = configFile;
         this.resources = ImmutableMap.copyOf(resources);
+        this.binaryPeers = ImmutableList.copyOf(binaryPeers);
+    }
+
+    /**
+     * Returns a copy of this installation that downloads the binary through
+     * the specified agents.
+     */
+    public Installation withBinaryPeers(List<URI> binaryPeers)
+    {
+        return new Installation(shortName, assignment, binaryFile, configFile, resources, binaryPeers);
     }
 
     public String getShortName()
@@ -69,6 +88,18 @@ public class Installation
         return resources;
     }
 
+    /**
+     * Returns the agents the binary should be downloaded through, nearest
+     * first.  The first agent is asked for the binary and fetches it through
+     * the remaining agents, so only the last agent of the chain downloads
+     * from the repository.  If the list is empty, or the first agent fails,
+     * the binary is downloaded from the repository directly.
+     */
+    public List<URI> getBinaryPeers()
+    {
+        return binaryPeers;
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -104,6 +135,7 @@ public class Installation
         sb.append(", binaryFile=").append(binaryFile);
         sb.append(", configFile=").append(configFile);
         sb.append(", resources=").append(resources);
+        sb.append(", binaryPeers=").append(binaryPeers);
         sb.append('}');
         return sb.toString();
     }
@@ -13,6 +13,9 @@
  */
 package io.airlift.airship.shared;
 
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import org.codehaus.jackson.annotate.JsonAutoDetect;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonMethod;
@@ -20,6 +23,7 @@ import org.codehaus.jackson.annotate.JsonProperty;
 
 import javax.validation.constraints.NotNull;
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 
 @JsonAutoDetect(JsonMethod.NONE)
@@ -30,6 +34,7 @@ public class InstallationRepresentation
     private final String binaryFile;
     private final String configFile;
     private final Map<String, Integer> resources;
+    private final List<String> binaryPeers;
 
     public static InstallationRepresentation from(Installation installation)
     {
@@ -39,7 +44,8 @@ public class InstallationRepresentation
                 AssignmentRepresentation.from(assignment),
                 installation.getBinaryFile().toString(),
                 installation.getConfigFile().toString(),
-                installation.getResources());
+                installation.getResources(),
+                ImmutableList.copyOf(Lists.transform(installation.getBinaryPeers(), Functions.toStringFunction())));
     }
 
     @JsonCreator
@@ -48,13 +54,15 @@ public class InstallationRepresentation
             @JsonProperty("assignment") AssignmentRepresentation assignmentRepresentation,
             @JsonProperty("binaryFile") String binaryFile,
             @JsonProperty("configFile") String configFile,
-            @JsonProperty("resources") Map<String, Integer> resources)
+            @JsonProperty("resources") Map<String, Integer> resources,
+            @JsonProperty("binaryPeers") List<String> binaryPeers)
     {
         this.shortName = shortName;
         this.assignment = assignmentRepresentation;
         this.binaryFile = binaryFile;
         this.configFile = configFile;
         this.resources = resources;
+        this.binaryPeers = binaryPeers;
     }
 
     @JsonProperty
@@ -91,9 +99,21 @@ public class InstallationRepresentation
         return resources;
     }
 
+    @JsonProperty
+    public List<String> getBinaryPeers()
+    {
+        return binaryPeers;
+    }
+
     public Installation toInstallation()
     {
-        Installation installation = new Installation(shortName, assignment.toAssignment(), URI.create(binaryFile), URI.create(configFile), resources);
+        ImmutableList.Builder<URI> peers = ImmutableList.builder();
+        if (binaryPeers != null) {
+            for (String binaryPeer : binaryPeers) {
+                peers.add(URI.create(binaryPeer));
+            }
+        }
+        Installation installation = new Installation(shortName, assignment.toAssignment(), URI.create(binaryFile), URI.create(configFile), resources, peers.build());
         return installation;
     }
 
@@ -132,6 +152,7 @@ public class InstallationRepresentation
         sb.append(", binaryFile='").append(binaryFile).append('\'');
         sb.append(", configFile=").append(configFile);
         sb.append(", resources=").append(resources);
+        sb.append(", binaryPeers=").append(binaryPeers);
         sb.append('}');
         return sb.toString();
     }
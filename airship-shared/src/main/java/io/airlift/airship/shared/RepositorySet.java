@@ -1,23 +1,40 @@
 package io.airlift.airship.shared;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import javax.inject.Inject;
 import java.net.URI;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newTreeSet;
 
+/**
+ * Combines several repositories.  Lookups that may go to a remote repository,
+ * such as resolving, upgrading and locating artifacts, query all repositories
+ * in parallel.
+ */
 public class RepositorySet implements Repository
 {
     private final Set<Repository> repositories;
+    private final ExecutorService executor;
 
     @Inject
     public RepositorySet(Set<Repository> repositories)
     {
         Preconditions.checkNotNull(repositories, "repositories is null");
         this.repositories = ImmutableSet.copyOf(repositories);
+        this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("repository-lookup-%s").setDaemon(true).build());
     }
 
     @Override
@@ -56,15 +73,16 @@ public class RepositorySet implements Repository
     }
 
     @Override
-    public String configResolve(String config)
+    public String configResolve(final String config)
     {
-        Set<String> configs = newTreeSet();
-        for (Repository repository : repositories) {
-            String resolved = repository.configResolve(config);
-            if (resolved != null) {
-                configs.add(resolved);
+        Set<String> configs = lookup(new Function<Repository, String>()
+        {
+            @Override
+            public String apply(Repository repository)
+            {
+                return repository.configResolve(config);
             }
-        }
+        });
 
         if (configs.size() > 1) {
             throw new RuntimeException(String.format("Ambiguous config %s matched %s", config, configs));
@@ -79,15 +97,16 @@ public class RepositorySet implements Repository
 
 
     @Override
-    public String configUpgrade(String config, String version)
+    public String configUpgrade(final String config, final String version)
     {
-        Set<String> configs = newTreeSet();
-        for (Repository repository : repositories) {
-            String resolved = repository.configUpgrade(config, version);
-            if (resolved != null) {
-                configs.add(resolved);
+        Set<String> configs = lookup(new Function<Repository, String>()
+        {
+            @Override
+            public String apply(Repository repository)
+            {
+                return repository.configUpgrade(config, version);
             }
-        }
+        });
 
         if (configs.size() > 1) {
             throw new RuntimeException(String.format("Ambiguous upgrade version %s for config %s matched %s", version, config, configs));
@@ -112,15 +131,16 @@ public class RepositorySet implements Repository
     }
 
     @Override
-    public URI configToHttpUri(String config)
+    public URI configToHttpUri(final String config)
     {
-        Set<URI> httpUris = newTreeSet();
-        for (Repository repository : repositories) {
-            URI httpUri = repository.configToHttpUri(config);
-            if (httpUri != null) {
-                httpUris.add(httpUri);
+        Set<URI> httpUris = lookup(new Function<Repository, URI>()
+        {
+            @Override
+            public URI apply(Repository repository)
+            {
+                return repository.configToHttpUri(config);
             }
-        }
+        });
 
         if (httpUris.size() > 1) {
             throw new RuntimeException(String.format("Ambiguous config %s found %s", config, httpUris));
@@ -152,15 +172,16 @@ public class RepositorySet implements Repository
     }
 
     @Override
-    public String binaryResolve(String binary)
+    public String binaryResolve(final String binary)
     {
-        Set<String> binaries = newTreeSet();
-        for (Repository repository : repositories) {
-            String resolved = repository.binaryResolve(binary);
-            if (resolved != null) {
-                binaries.add(resolved);
+        Set<String> binaries = lookup(new Function<Repository, String>()
+        {
+            @Override
+            public String apply(Repository repository)
+            {
+                return repository.binaryResolve(binary);
             }
-        }
+        });
 
         if (binaries.size() > 1) {
             throw new RuntimeException(String.format("Ambiguous binary %s matched %s", binary, binaries));
@@ -174,15 +195,16 @@ public class RepositorySet implements Repository
     }
 
     @Override
-    public String binaryUpgrade(String binary, String version)
+    public String binaryUpgrade(final String binary, final String version)
     {
-        Set<String> binaries = newTreeSet();
-        for (Repository repository : repositories) {
-            String resolved = repository.binaryUpgrade(binary, version);
-            if (resolved != null) {
-                binaries.add(resolved);
+        Set<String> binaries = lookup(new Function<Repository, String>()
+        {
+            @Override
+            public String apply(Repository repository)
+            {
+                return repository.binaryUpgrade(binary, version);
             }
-        }
+        });
 
         if (binaries.size() > 1) {
             throw new RuntimeException(String.format("Ambiguous upgrade version %s for binary %s matched %s", version, binary, binaries));
@@ -207,15 +229,16 @@ public class RepositorySet implements Repository
     }
 
     @Override
-    public URI binaryToHttpUri(String binary)
+    public URI binaryToHttpUri(final String binary)
     {
-        Set<URI> httpUris = newTreeSet();
-        for (Repository repository : repositories) {
-            URI httpUri = repository.binaryToHttpUri(binary);
-            if (httpUri != null) {
-                httpUris.add(httpUri);
+        Set<URI> httpUris = lookup(new Function<Repository, URI>()
+        {
+            @Override
+            public URI apply(Repository repository)
+            {
+                return repository.binaryToHttpUri(binary);
             }
-        }
+        });
 
         if (httpUris.size() > 1) {
             throw new RuntimeException(String.format("Ambiguous binary %s found %s", binary, httpUris));
@@ -228,6 +251,52 @@ public class RepositorySet implements Repository
         return httpUris.iterator().next();
     }
 
+    private <T extends Comparable<T>> Set<T> lookup(final Function<Repository, T> lookup)
+    {
+        Set<T> results = newTreeSet();
+        if (repositories.size() == 1) {
+            T result = lookup.apply(repositories.iterator().next());
+            if (result != null) {
+                results.add(result);
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = newArrayList();
+        for (final Repository repository : repositories) {
+            futures.add(executor.submit(new Callable<T>()
+            {
+                @Override
+                public T call()
+                {
+                    return lookup.apply(repository);
+                }
+            }));
+        }
+
+        try {
+            for (Future<T> future : futures) {
+                T result = future.get();
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        }
+        catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
     @Override
     public String toString()
     {
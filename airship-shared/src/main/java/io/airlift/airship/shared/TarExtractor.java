@@ -0,0 +1,629 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.airlift.units.Duration;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Extracts gzip compressed tar archives without forking a tar process.
+ * The archive is read as a stream, so it never needs to be copied to disk
+ * first.  Small files are buffered and written by a pool of writer threads
+ * while the archive is read; large files are streamed to disk directly.
+ * <p/>
+ * Regular files, directories, symbolic links and hard links are supported in
+ * the ustar, GNU (long names) and pax formats.  Permissions and modification
+ * times are restored.  Entries and link targets that would end up outside
+ * of the target directory are rejected.  Entries are never written through a
+ * symbolic link created by the archive, and once the archive is extracted
+ * every symbolic link is resolved on disk to make sure it stays inside the
+ * target directory, since a later entry can change what an earlier link
+ * points to.
+ */
+public class TarExtractor
+{
+    private static final int BLOCK_SIZE = 512;
+    private static final int MAX_BUFFERED_FILE_SIZE = 1024 * 1024;
+    private static final int MAX_BUFFERED_BYTES = 32 * 1024 * 1024;
+    private static final int MAX_SYMBOLIC_LINK_DEPTH = 40;
+
+    private static final boolean POSIX_SUPPORTED = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    private static final ExecutorService writeExecutor = Executors.newFixedThreadPool(4, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("tar-writer-%s").build());
+
+    private final Path targetDirectory;
+    private final Path realTargetDirectory;
+    private final long deadline;
+    private final Semaphore bufferedBytes = new Semaphore(MAX_BUFFERED_BYTES);
+    private final List<Future<?>> pendingWrites = new ArrayList<>();
+    private final Map<Path, Integer> directoryModes = new LinkedHashMap<>();
+    private final List<Path> symbolicLinks = new ArrayList<>();
+
+    /**
+     * Extracts the gzip compressed tar stream into the target directory.  If
+     * an expected SHA-1 checksum is specified, the compressed stream is
+     * verified while it is extracted.
+     */
+    public static void extractTarGz(InputStream in, Path targetDirectory, String expectedSha1, Duration timeLimit)
+            throws IOException
+    {
+        Preconditions.checkNotNull(in, "in is null");
+        Preconditions.checkNotNull(targetDirectory, "targetDirectory is null");
+        Preconditions.checkArgument(Files.isDirectory(targetDirectory), "targetDirectory is not a directory: %s", targetDirectory);
+        Preconditions.checkNotNull(timeLimit, "timeLimit is null");
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+
+        DigestInputStream digestIn = new DigestInputStream(in, digest);
+        InputStream tarIn = new GZIPInputStream(digestIn, 64 * 1024);
+        new TarExtractor(targetDirectory, timeLimit).extract(tarIn);
+
+        // read the rest of the stream so the checksum covers the whole archive
+        drain(tarIn);
+        drain(digestIn);
+
+        if (expectedSha1 != null) {
+            String checksum = DigestUtils.toHex(digest.digest());
+            if (!checksum.equalsIgnoreCase(expectedSha1)) {
+                throw new IOException(String.format("Checksum of archive is %s but expected %s", checksum, expectedSha1));
+            }
+        }
+    }
+
+    private TarExtractor(Path targetDirectory, Duration timeLimit)
+            throws IOException
+    {
+        this.targetDirectory = targetDirectory.toAbsolutePath().normalize();
+        this.realTargetDirectory = targetDirectory.toRealPath();
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos((long) timeLimit.toMillis());
+    }
+
+    private void extract(InputStream in)
+            throws IOException
+    {
+        try {
+            byte[] header = new byte[BLOCK_SIZE];
+            String longName = null;
+            String longLinkName = null;
+            Map<String, String> paxHeaders = ImmutableMap.of();
+
+            while (readHeader(in, header)) {
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("Extracting archive did not complete within the time limit");
+                }
+
+                char type = (char) header[156];
+                long size = parseNumber(header, 124, 12);
+
+                // headers that describe the next entry
+                switch (type) {
+                    case 'L':
+                        longName = readString(in, size);
+                        continue;
+                    case 'K':
+                        longLinkName = readString(in, size);
+                        continue;
+                    case 'x':
+                        paxHeaders = parsePaxHeaders(readBytes(in, size));
+                        continue;
+                    case 'g':
+                        skip(in, size);
+                        continue;
+                }
+
+                String name = firstNonNull(paxHeaders.get("path"), longName, getName(header));
+                String linkName = firstNonNull(paxHeaders.get("linkpath"), longLinkName, parseString(header, 157, 100));
+                if (paxHeaders.containsKey("size")) {
+                    size = Long.parseLong(paxHeaders.get("size"));
+                }
+                int mode = (int) parseNumber(header, 100, 8);
+                long modifiedTime = parseNumber(header, 136, 12);
+
+                longName = null;
+                longLinkName = null;
+                paxHeaders = ImmutableMap.of();
+
+                Path path = resolve(name);
+                switch (type) {
+                    case '0':
+                    case '\0':
+                    case '7':
+                        writeFile(in, path, size, mode, modifiedTime);
+                        break;
+                    case '5':
+                        if (!path.equals(targetDirectory)) {
+                            createDirectory(path);
+                            directoryModes.put(path, mode);
+                        }
+                        skip(in, size);
+                        break;
+                    case '2':
+                        createSymbolicLink(path, linkName);
+                        skip(in, size);
+                        break;
+                    case '1':
+                        createHardLink(path, resolve(linkName));
+                        skip(in, size);
+                        break;
+                    default:
+                        throw new IOException(String.format("Unsupported entry type '%s' for %s", type, name));
+                }
+            }
+
+            waitForPendingWrites();
+            checkSymbolicLinks();
+
+            // directories may not be writable, so their permissions are restored last
+            for (Entry<Path, Integer> entry : directoryModes.entrySet()) {
+                setPermissions(entry.getKey(), entry.getValue());
+            }
+        }
+        finally {
+            // never leave writers running after a failure, the caller will delete the target
+            for (Future<?> pendingWrite : pendingWrites) {
+                pendingWrite.cancel(false);
+            }
+            for (Future<?> pendingWrite : pendingWrites) {
+                try {
+                    pendingWrite.get();
+                }
+                catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    private void writeFile(InputStream in, final Path path, long size, final int mode, final long modifiedTime)
+            throws IOException
+    {
+        createParentDirectories(path);
+        Files.deleteIfExists(path);
+
+        if (size > MAX_BUFFERED_FILE_SIZE) {
+            try (OutputStream out = Files.newOutputStream(path)) {
+                byte[] buffer = new byte[64 * 1024];
+                long remaining = size;
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new EOFException("Unexpected end of archive while reading " + targetDirectory.relativize(path));
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+            finishFile(path, mode, modifiedTime);
+            skipPadding(in, size);
+            return;
+        }
+
+        final byte[] data = readBytes(in, size);
+        bufferedBytes.acquireUninterruptibly(data.length);
+        try {
+            pendingWrites.add(writeExecutor.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                        throws IOException
+                {
+                    try {
+                        Files.write(path, data);
+                        finishFile(path, mode, modifiedTime);
+                        return null;
+                    }
+                    finally {
+                        bufferedBytes.release(data.length);
+                    }
+                }
+            }));
+        }
+        catch (RuntimeException e) {
+            bufferedBytes.release(data.length);
+            throw e;
+        }
+    }
+
+    private void createSymbolicLink(Path path, String linkName)
+            throws IOException
+    {
+        Path target = Paths.get(linkName);
+        if (target.isAbsolute() || !path.getParent().resolve(target).normalize().startsWith(targetDirectory)) {
+            throw new IOException(String.format("Symbolic link %s points outside of the target directory: %s", targetDirectory.relativize(path), linkName));
+        }
+
+        // a queued write must not end up going through the new link
+        waitForPendingWrites();
+
+        createParentDirectories(path);
+        Files.deleteIfExists(path);
+        Files.createSymbolicLink(path, target);
+        symbolicLinks.add(path);
+    }
+
+    private void createHardLink(Path path, Path target)
+            throws IOException
+    {
+        // the target may still be in a write queue
+        waitForPendingWrites();
+
+        if (Files.isSymbolicLink(target)) {
+            throw new IOException(String.format("Hard link %s points to a symbolic link: %s", targetDirectory.relativize(path), targetDirectory.relativize(target)));
+        }
+        checkInsideTarget(target.getParent().toRealPath(), target);
+
+        createParentDirectories(path);
+        Files.deleteIfExists(path);
+        Files.createLink(path, target);
+    }
+
+    private void createDirectory(Path path)
+            throws IOException
+    {
+        createParentDirectories(path);
+        if (Files.isSymbolicLink(path)) {
+            throw new IOException("Archive entry is a directory inside of a symbolic link: " + targetDirectory.relativize(path));
+        }
+        if (!Files.isDirectory(path)) {
+            Files.createDirectory(path);
+        }
+    }
+
+    /**
+     * Creates the missing parent directories of the path, without following
+     * any symbolic link, and verifies the parent is really inside the target.
+     */
+    private void createParentDirectories(Path path)
+            throws IOException
+    {
+        Path parent = path.getParent();
+        Path directory = targetDirectory;
+        for (Path name : targetDirectory.relativize(parent)) {
+            if (name.toString().isEmpty()) {
+                continue;
+            }
+            directory = directory.resolve(name);
+            if (Files.isSymbolicLink(directory)) {
+                throw new IOException(String.format("Archive entry %s is inside of symbolic link %s", targetDirectory.relativize(path), targetDirectory.relativize(directory)));
+            }
+            if (!Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+                Files.createDirectory(directory);
+            }
+            else if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+                throw new IOException(String.format("Archive entry %s is inside of file %s", targetDirectory.relativize(path), targetDirectory.relativize(directory)));
+            }
+        }
+        checkInsideTarget(parent.toRealPath(), path);
+    }
+
+    /**
+     * Resolves every symbolic link created from the archive on disk, the same
+     * way the operating system would, and verifies it is inside the target.
+     */
+    private void checkSymbolicLinks()
+            throws IOException
+    {
+        for (Path link : symbolicLinks) {
+            if (Files.isSymbolicLink(link)) {
+                checkInsideTarget(resolveOnDisk(link.getParent().toRealPath(), Files.readSymbolicLink(link), 0), link);
+            }
+        }
+    }
+
+    private Path resolveOnDisk(Path directory, Path relativePath, int depth)
+            throws IOException
+    {
+        if (depth > MAX_SYMBOLIC_LINK_DEPTH) {
+            throw new IOException("Too many levels of symbolic links in archive");
+        }
+        if (relativePath.isAbsolute()) {
+            throw new IOException("Symbolic link points outside of the target directory: " + relativePath);
+        }
+
+        // ".." in a path that went through a link goes to the parent of the link target, not of the link
+        Path current = directory;
+        for (Path name : relativePath) {
+            String segment = name.toString();
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                current = current.getParent();
+                if (current == null) {
+                    throw new IOException("Symbolic link points outside of the target directory: " + relativePath);
+                }
+                continue;
+            }
+            Path next = current.resolve(segment);
+            if (Files.isSymbolicLink(next)) {
+                next = resolveOnDisk(current, Files.readSymbolicLink(next), depth + 1);
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    private void checkInsideTarget(Path realPath, Path entry)
+            throws IOException
+    {
+        if (!realPath.startsWith(realTargetDirectory)) {
+            throw new IOException("Archive entry is outside of the target directory: " + targetDirectory.relativize(entry));
+        }
+    }
+
+    private void waitForPendingWrites()
+            throws IOException
+    {
+        try {
+            for (Future<?> pendingWrite : pendingWrites) {
+                pendingWrite.get();
+            }
+            pendingWrites.clear();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting archive", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error writing file", e.getCause());
+        }
+    }
+
+    private Path resolve(String name)
+            throws IOException
+    {
+        Path path = targetDirectory.resolve(name).normalize();
+        if (!path.startsWith(targetDirectory)) {
+            throw new IOException("Archive entry is outside of the target directory: " + name);
+        }
+        return path;
+    }
+
+    private static void finishFile(Path path, int mode, long modifiedTime)
+            throws IOException
+    {
+        setPermissions(path, mode);
+        Files.setLastModifiedTime(path, FileTime.from(modifiedTime, TimeUnit.SECONDS));
+    }
+
+    private static void setPermissions(Path path, int mode)
+            throws IOException
+    {
+        if (!POSIX_SUPPORTED) {
+            return;
+        }
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        PosixFilePermission[] values = PosixFilePermission.values();
+        for (int i = 0; i < values.length; i++) {
+            // values are ordered from OWNER_READ (0400) to OTHERS_EXECUTE (0001)
+            if ((mode & (1 << (values.length - 1 - i))) != 0) {
+                permissions.add(values[i]);
+            }
+        }
+        Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS).setPermissions(permissions);
+    }
+
+    /**
+     * Reads the next header, returning false at the end of the archive.
+     */
+    private static boolean readHeader(InputStream in, byte[] header)
+            throws IOException
+    {
+        int read = 0;
+        while (read < header.length) {
+            int count = in.read(header, read, header.length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        if (read == 0) {
+            // archive without end of archive marker
+            return false;
+        }
+        if (read != header.length) {
+            throw new EOFException("Unexpected end of archive");
+        }
+
+        boolean empty = true;
+        for (byte b : header) {
+            if (b != 0) {
+                empty = false;
+                break;
+            }
+        }
+        if (empty) {
+            return false;
+        }
+
+        long expected = parseNumber(header, 148, 8);
+        long unsignedSum = 0;
+        long signedSum = 0;
+        for (int i = 0; i < header.length; i++) {
+            byte b = (i >= 148 && i < 156) ? (byte) ' ' : header[i];
+            unsignedSum += b & 0xFF;
+            signedSum += b;
+        }
+        if (expected != unsignedSum && expected != signedSum) {
+            throw new IOException("Archive is corrupt: invalid header checksum");
+        }
+        return true;
+    }
+
+    private static String getName(byte[] header)
+    {
+        String name = parseString(header, 0, 100);
+
+        // only POSIX ustar archives use the prefix field
+        String magic = new String(header, 257, 6, Charsets.US_ASCII);
+        if (magic.equals("ustar\0")) {
+            String prefix = parseString(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                name = prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    private static Map<String, String> parsePaxHeaders(byte[] data)
+            throws IOException
+    {
+        // records have the form "<length> <key>=<value>\n" where the length includes the whole record
+        Map<String, String> headers = new LinkedHashMap<>();
+        int position = 0;
+        while (position < data.length && data[position] != 0) {
+            int space = position;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, position, space - position, Charsets.US_ASCII));
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("Archive is corrupt: invalid pax header");
+            }
+            if (length <= 0 || position + length > data.length) {
+                throw new IOException("Archive is corrupt: invalid pax header");
+            }
+
+            String record = new String(data, space + 1, position + length - space - 2, Charsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                headers.put(record.substring(0, equals), record.substring(equals + 1));
+            }
+            position += length;
+        }
+        return headers;
+    }
+
+    private static long parseNumber(byte[] header, int offset, int length)
+            throws IOException
+    {
+        // large values are stored in base-256 with the high bit of the first byte set
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7F;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (header[offset + i] & 0xFF);
+            }
+            return value;
+        }
+
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value != 0 || b == 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Archive is corrupt: invalid number in header");
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    private static String parseString(byte[] header, int offset, int length)
+    {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, Charsets.UTF_8);
+    }
+
+    private static String readString(InputStream in, long size)
+            throws IOException
+    {
+        byte[] data = readBytes(in, size);
+        return parseString(data, 0, data.length);
+    }
+
+    private static byte[] readBytes(InputStream in, long size)
+            throws IOException
+    {
+        Preconditions.checkArgument(size <= Integer.MAX_VALUE, "entry is too large");
+        byte[] data = new byte[(int) size];
+        ByteStreams.readFully(in, data);
+        skipPadding(in, size);
+        return data;
+    }
+
+    private static void skip(InputStream in, long size)
+            throws IOException
+    {
+        ByteStreams.skipFully(in, size);
+        skipPadding(in, size);
+    }
+
+    private static void skipPadding(InputStream in, long size)
+            throws IOException
+    {
+        long remainder = size % BLOCK_SIZE;
+        if (remainder != 0) {
+            ByteStreams.skipFully(in, BLOCK_SIZE - remainder);
+        }
+    }
+
+    private static void drain(InputStream in)
+            throws IOException
+    {
+        byte[] buffer = new byte[4096];
+        while (in.read(buffer) >= 0) {
+            // discard
+        }
+    }
+
+    private static String firstNonNull(String... values)
+    {
+        for (String value : values) {
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -2,7 +2,9 @@ package io.airlift.airship.shared;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -20,6 +22,8 @@ public class VersionsUtil
 
     public static final String AIRSHIP_COORDINATOR_VERSION_HEADER = "x-airship-coordinator-version";
 
+    public static final String AIRSHIP_MAX_WAIT_HEADER = "x-airship-max-wait";
+
     private VersionsUtil()
     {
     }
@@ -78,6 +82,33 @@ public class VersionsUtil
         }
     }
 
+    /**
+     * Checks if an If-None-Match header value matches the specified version.
+     * Versions are used directly as entity tags.
+     */
+    public static boolean isNotModified(String ifNoneMatch, String version)
+    {
+        if (ifNoneMatch == null || version == null) {
+            return false;
+        }
+
+        for (String tag : Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                tag = tag.substring(1, tag.length() - 1);
+            }
+            if (tag.equals(version)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static String createSlotVersion(UUID id, SlotLifecycleState state, Assignment assignment)
     {
         String data = Joiner.on("||").useForNull("--NULL--").join(id, state, assignment);
@@ -128,6 +159,84 @@ public class VersionsUtil
         return DigestUtils.md5Hex(agentVersions.values().toString());
     }
 
+    /**
+     * Creates an entity tag for a slot listing.  Unlike the slots version, the
+     * tag covers every field in the representation, and the listing request
+     * query, because short ids and filters depend on the full slot set.
+     */
+    public static String createSlotsEntityTag(String query, Iterable<SlotStatus> allSlots)
+    {
+        Preconditions.checkNotNull(allSlots, "allSlots is null");
+
+        Map<UUID, String> slotTags = new TreeMap<UUID, String>();
+        for (SlotStatus slot : allSlots) {
+            slotTags.put(slot.getId(), createSlotEntityTag(slot));
+        }
+        return DigestUtils.md5Hex(Joiner.on("||").useForNull("--NULL--").join(query, slotTags.values()));
+    }
+
+    public static String createAgentsEntityTag(String query, Iterable<AgentStatus> allAgents, Iterable<UUID> allSlotIds)
+    {
+        Preconditions.checkNotNull(allAgents, "allAgents is null");
+        Preconditions.checkNotNull(allSlotIds, "allSlotIds is null");
+
+        Map<String, String> agentTags = new TreeMap<String, String>();
+        for (AgentStatus agent : allAgents) {
+            Map<UUID, String> slotTags = new TreeMap<UUID, String>();
+            for (SlotStatus slot : agent.getSlotStatuses()) {
+                slotTags.put(slot.getId(), createSlotEntityTag(slot));
+            }
+            String agentTag = Joiner.on("|").useForNull("--NULL--").join(
+                    agent.getAgentId(),
+                    agent.getState(),
+                    agent.getInstanceId(),
+                    agent.getInternalUri(),
+                    agent.getExternalUri(),
+                    agent.getLocation(),
+                    agent.getInstanceType(),
+                    ImmutableSortedMap.copyOf(agent.getResources()),
+                    slotTags.values());
+            agentTags.put(agent.getAgentId() + agent.getInstanceId(), agentTag);
+        }
+        return DigestUtils.md5Hex(Joiner.on("||").useForNull("--NULL--").join(query, agentTags.values(), ImmutableSortedSet.copyOf(allSlotIds)));
+    }
+
+    public static String createCoordinatorsEntityTag(String query, Iterable<CoordinatorStatus> allCoordinators)
+    {
+        Preconditions.checkNotNull(allCoordinators, "allCoordinators is null");
+
+        Map<String, String> coordinatorTags = new TreeMap<String, String>();
+        for (CoordinatorStatus coordinator : allCoordinators) {
+            String coordinatorTag = Joiner.on("|").useForNull("--NULL--").join(
+                    coordinator.getCoordinatorId(),
+                    coordinator.getState(),
+                    coordinator.getInstanceId(),
+                    coordinator.getInternalUri(),
+                    coordinator.getExternalUri(),
+                    coordinator.getLocation(),
+                    coordinator.getInstanceType());
+            coordinatorTags.put(coordinator.getCoordinatorId() + coordinator.getInstanceId(), coordinatorTag);
+        }
+        return DigestUtils.md5Hex(Joiner.on("||").useForNull("--NULL--").join(query, coordinatorTags.values()));
+    }
+
+    private static String createSlotEntityTag(SlotStatus slot)
+    {
+        return Joiner.on("|").useForNull("--NULL--").join(
+                slot.getId(),
+                slot.getSelf(),
+                slot.getExternalUri(),
+                slot.getInstanceId(),
+                slot.getLocation(),
+                slot.getAssignment(),
+                slot.getState(),
+                slot.getExpectedState(),
+                slot.getExpectedAssignment(),
+                slot.getStatusMessage(),
+                slot.getInstallPath(),
+                ImmutableSortedMap.copyOf(slot.getResources()));
+    }
+
     public static String createVersion(String coordinatorId, CoordinatorLifecycleState state)
     {
         List<Object> parts = new ArrayList<Object>();
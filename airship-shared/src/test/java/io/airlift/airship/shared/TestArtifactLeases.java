@@ -0,0 +1,90 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestArtifactLeases
+{
+    private File tempDir;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        tempDir = Files.createTempDir();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed()
+            throws Exception
+    {
+        File apple = writeFile("apple", "12345", 3000);
+        File banana = writeFile("banana", "12345", 1000);
+        File cherry = writeFile("cherry", "12345", 2000);
+
+        ArtifactLeases leases = new ArtifactLeases();
+        assertEquals(leases.evict(ImmutableList.of(apple, banana, cherry), 15), ImmutableList.of());
+        assertEquals(leases.evict(ImmutableList.of(apple, banana, cherry), 10), ImmutableList.of(banana));
+        assertEquals(leases.evict(ImmutableList.of(apple, cherry), 0), ImmutableList.of(cherry, apple));
+        assertFalse(apple.exists());
+    }
+
+    @Test
+    public void testLeasedFilesAreNotEvicted()
+            throws Exception
+    {
+        File apple = writeFile("apple", "12345", 1000);
+        File banana = writeFile("banana", "12345", 2000);
+
+        ArtifactLeases leases = new ArtifactLeases();
+        leases.acquire("apple");
+        leases.acquire("apple");
+        assertTrue(leases.isLeased("apple"));
+
+        List<File> evicted = leases.evict(ImmutableList.of(apple, banana), 5);
+        assertEquals(evicted, ImmutableList.of(banana));
+        assertTrue(apple.exists());
+
+        // the file can be evicted once every lease is released
+        leases.release("apple");
+        assertEquals(leases.evict(ImmutableList.of(apple), 0), ImmutableList.of());
+        leases.release("apple");
+        assertFalse(leases.isLeased("apple"));
+        assertEquals(leases.evict(ImmutableList.of(apple), 0), ImmutableList.of(apple));
+    }
+
+    @Test
+    public void testLockIsStableForKey()
+    {
+        ArtifactLeases leases = new ArtifactLeases();
+        assertSame(leases.getLock("apple"), leases.getLock(new String("apple")));
+    }
+
+    private File writeFile(String name, String contents, long lastModified)
+            throws IOException
+    {
+        File file = new File(tempDir, name);
+        Files.write(contents, file, Charsets.UTF_8);
+        file.setLastModified(lastModified);
+        return file;
+    }
+}
@@ -0,0 +1,57 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.URI;
+
+import static io.airlift.airship.shared.ArtifactUtils.MD5_PATTERN;
+import static io.airlift.airship.shared.ArtifactUtils.SHA1_PATTERN;
+import static io.airlift.airship.shared.ArtifactUtils.getPublishedChecksum;
+import static io.airlift.airship.shared.ArtifactUtils.isSnapshot;
+import static io.airlift.airship.shared.ArtifactUtils.toChecksum;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestArtifactUtils
+{
+    private static final String SHA1 = "2aae6c35c94fcfb415dbe95f408b9ce91ee846ed";
+
+    @Test
+    public void testToChecksum()
+    {
+        assertEquals(toChecksum(SHA1, SHA1_PATTERN), SHA1);
+        assertEquals(toChecksum(SHA1.toUpperCase() + "  apple-1.0.tar.gz\n", SHA1_PATTERN), SHA1);
+        assertEquals(toChecksum("5eb63bbbe01eeed093cb22bb8f5acdc3", MD5_PATTERN), "5eb63bbbe01eeed093cb22bb8f5acdc3");
+        assertNull(toChecksum("5eb63bbbe01eeed093cb22bb8f5acdc3", SHA1_PATTERN));
+        assertNull(toChecksum("<html>not found</html>", SHA1_PATTERN));
+    }
+
+    @Test
+    public void testGetPublishedChecksum()
+            throws Exception
+    {
+        File tempDir = Files.createTempDir();
+        try {
+            File artifact = new File(tempDir, "apple-1.0.tar.gz");
+            Files.write(SHA1 + "  apple-1.0.tar.gz", new File(tempDir, "apple-1.0.tar.gz.sha1"), Charsets.UTF_8);
+            assertEquals(getPublishedChecksum(artifact.toURI()), SHA1);
+            assertNull(getPublishedChecksum(artifact.toURI(), ".md5", MD5_PATTERN));
+        }
+        finally {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Test
+    public void testIsSnapshot()
+    {
+        assertTrue(isSnapshot(URI.create("http://repo/apple/1.0-SNAPSHOT/apple-1.0-SNAPSHOT.tar.gz")));
+        assertFalse(isSnapshot(URI.create("http://repo/apple/1.0/apple-1.0.tar.gz")));
+    }
+}
@@ -0,0 +1,68 @@
+package io.airlift.airship.shared;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+public class TestByteRange
+{
+    @Test
+    public void testParse()
+    {
+        assertRange(ByteRange.parse("bytes=0-99", 1000), 0, 99);
+        assertRange(ByteRange.parse("bytes=500-", 1000), 500, 999);
+        assertRange(ByteRange.parse("bytes=-100", 1000), 900, 999);
+        assertRange(ByteRange.parse("bytes= 10 - 20 ", 1000), 10, 20);
+    }
+
+    @Test
+    public void testClampedToLength()
+    {
+        assertRange(ByteRange.parse("bytes=900-2000", 1000), 900, 999);
+        assertRange(ByteRange.parse("bytes=-2000", 1000), 0, 999);
+    }
+
+    @Test
+    public void testIgnored()
+    {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-10", 1000));
+        assertNull(ByteRange.parse("bytes=0-10,20-30", 1000));
+        assertNull(ByteRange.parse("bytes=20-10", 1000));
+        assertNull(ByteRange.parse("bytes=abc-", 1000));
+        assertNull(ByteRange.parse("bytes=-", 1000));
+    }
+
+    @Test
+    public void testNotSatisfiable()
+    {
+        assertNotSatisfiable("bytes=1000-", 1000);
+        assertNotSatisfiable("bytes=-0", 1000);
+        assertNotSatisfiable("bytes=0-", 0);
+    }
+
+    @Test
+    public void testContentRange()
+    {
+        assertEquals(ByteRange.parse("bytes=10-19", 1000).toContentRange(1000), "bytes 10-19/1000");
+        assertEquals(ByteRange.parse("bytes=10-19", 1000).getLength(), 10);
+    }
+
+    private static void assertRange(ByteRange range, long start, long end)
+    {
+        assertEquals(range.getStart(), start);
+        assertEquals(range.getEnd(), end);
+    }
+
+    private static void assertNotSatisfiable(String header, long length)
+    {
+        try {
+            ByteRange.parse(header, length);
+            fail("expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException expected) {
+        }
+    }
+}
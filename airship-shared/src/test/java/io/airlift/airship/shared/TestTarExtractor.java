@@ -0,0 +1,238 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static io.airlift.airship.shared.FileUtils.createTar;
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.FileUtils.extractTar;
+import static io.airlift.airship.shared.TarExtractor.extractTarGz;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestTarExtractor
+{
+    private static final Duration TIME_LIMIT = new Duration(1, TimeUnit.MINUTES);
+
+    private File tempDir;
+    private File targetDir;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        tempDir = createTempDir("tar-test");
+        targetDir = new File(tempDir, "target");
+        targetDir.mkdirs();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        if (tempDir != null) {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Test
+    public void testExtract()
+            throws Exception
+    {
+        File sourceDir = new File(tempDir, "apple-1.0");
+        File binDir = new File(sourceDir, "bin");
+        binDir.mkdirs();
+        File launcher = new File(binDir, "launcher");
+        Files.write("#!/bin/sh\n", launcher, UTF_8);
+        launcher.setExecutable(true, true);
+        Files.write("readme", new File(sourceDir, "README.txt"), UTF_8);
+        java.nio.file.Files.createSymbolicLink(new File(sourceDir, "run").toPath(), new File("bin/launcher").toPath());
+
+        // a path that does not fit in the ustar name field
+        String longPath = Strings.repeat("directory/", 15) + "file.txt";
+        File longFile = new File(sourceDir, longPath);
+        longFile.getParentFile().mkdirs();
+        Files.write("long", longFile, UTF_8);
+
+        // a file that is streamed instead of buffered
+        byte[] largeData = new byte[3 * 1024 * 1024];
+        for (int i = 0; i < largeData.length; i++) {
+            largeData[i] = (byte) i;
+        }
+        Files.write(largeData, new File(sourceDir, "large.bin"));
+
+        File archive = new File(tempDir, "apple-1.0.tar.gz");
+        createTar(sourceDir, archive);
+
+        extractTar(archive, targetDir, TIME_LIMIT);
+
+        File rootDir = new File(targetDir, "apple-1.0");
+        assertEquals(Files.toString(new File(rootDir, "README.txt"), UTF_8), "readme");
+        assertEquals(Files.toString(new File(rootDir, longPath), UTF_8), "long");
+        assertEquals(Files.toByteArray(new File(rootDir, "large.bin")), largeData);
+        assertTrue(new File(rootDir, "bin/launcher").canExecute());
+        assertFalse(new File(rootDir, "README.txt").canExecute());
+
+        java.nio.file.Path link = new File(rootDir, "run").toPath();
+        assertTrue(java.nio.file.Files.isSymbolicLink(link));
+        assertEquals(java.nio.file.Files.readSymbolicLink(link).toString(), "bin/launcher");
+    }
+
+    @Test
+    public void testChecksum()
+            throws Exception
+    {
+        byte[] archive = createArchive(entry("apple/README.txt", '0', "readme", null));
+        String checksum = Hashing.sha1().hashBytes(archive).toString();
+
+        extractTarGz(new ByteArrayInputStream(archive), targetDir.toPath(), checksum, TIME_LIMIT);
+        assertEquals(Files.toString(new File(targetDir, "apple/README.txt"), UTF_8), "readme");
+
+        try {
+            extractTarGz(new ByteArrayInputStream(archive), targetDir.toPath(), Strings.repeat("0", 40), TIME_LIMIT);
+            fail("expected IOException");
+        }
+        catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testCorruptHeader()
+            throws Exception
+    {
+        byte[] tar = entry("apple/README.txt", '0', "readme", null);
+        tar[10] ^= 1;
+        assertExtractFails(createArchive(tar));
+    }
+
+    @Test
+    public void testPathTraversal()
+            throws Exception
+    {
+        assertExtractFails(createArchive(entry("../evil.txt", '0', "evil", null)));
+        assertFalse(new File(tempDir, "evil.txt").exists());
+
+        assertExtractFails(createArchive(entry("/tmp/evil.txt", '0', "evil", null)));
+    }
+
+    @Test
+    public void testSymbolicLinkOutsideTarget()
+            throws Exception
+    {
+        assertExtractFails(createArchive(entry("apple/link", '2', "", "../../outside")));
+        assertExtractFails(createArchive(entry("apple/link", '2', "", "/etc")));
+    }
+
+    @Test
+    public void testWriteThroughSymbolicLink()
+            throws Exception
+    {
+        // each entry is inside the target as written, but on disk "l" is the parent of the target
+        assertExtractFails(createArchive(
+                entry("s", '2', "", "."),
+                entry("s/l", '2', "", ".."),
+                entry("l/x", '0', "evil", null)));
+        assertFalse(new File(tempDir, "x").exists());
+        assertFalse(new File(targetDir, "l").exists());
+    }
+
+    @Test
+    public void testSymbolicLinkRetargetedOutside()
+            throws Exception
+    {
+        // "x" is inside the target until "d" is created as a link to the target itself
+        assertExtractFails(createArchive(
+                entry("x", '2', "", "d/.."),
+                entry("d", '2', "", ".")));
+    }
+
+    @Test
+    public void testHardLinkToSymbolicLink()
+            throws Exception
+    {
+        assertExtractFails(createArchive(
+                entry("link", '2', "", "."),
+                entry("copy", '1', "", "link")));
+        assertFalse(new File(targetDir, "copy").exists());
+    }
+
+    private void assertExtractFails(byte[] archive)
+    {
+        try (InputStream in = new ByteArrayInputStream(archive)) {
+            extractTarGz(in, targetDir.toPath(), null, TIME_LIMIT);
+            fail("expected IOException");
+        }
+        catch (IOException expected) {
+        }
+    }
+
+    private static byte[] createArchive(byte[]... entries)
+            throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            for (byte[] entry : entries) {
+                gzip.write(entry);
+            }
+            // end of archive marker
+            gzip.write(new byte[1024]);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates a ustar entry with the data padded to the block size.
+     */
+    private static byte[] entry(String name, char type, String data, String linkName)
+    {
+        byte[] content = data.getBytes(UTF_8);
+        byte[] entry = new byte[512 + ((content.length + 511) / 512) * 512];
+
+        put(entry, 0, name);
+        put(entry, 100, "0000644");
+        put(entry, 108, "0000000");
+        put(entry, 116, "0000000");
+        put(entry, 124, String.format("%011o", content.length));
+        put(entry, 136, String.format("%011o", 0));
+        entry[156] = (byte) type;
+        if (linkName != null) {
+            put(entry, 157, linkName);
+        }
+        put(entry, 257, "ustar");
+        put(entry, 263, "00");
+
+        // checksum is computed with the checksum field filled with spaces
+        put(entry, 148, "        ");
+        long checksum = 0;
+        for (int i = 0; i < 512; i++) {
+            checksum += entry[i] & 0xFF;
+        }
+        put(entry, 148, String.format("%06o", checksum));
+        entry[154] = 0;
+        entry[155] = ' ';
+
+        System.arraycopy(content, 0, entry, 512, content.length);
+        return entry;
+    }
+
+    private static void put(byte[] header, int offset, String value)
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+}